@@ -0,0 +1,80 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.codec.ContentStoreBlockCodec;
+import nl.inl.blacklab.performance.SyntheticCorpus;
+
+/**
+ * Encoding and decoding content store blocks (no index needed).
+ * <p>
+ * Blocks contain XML from the synthetic corpus, like the documents stored in a real content store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentStoreBlockCodecBenchmark {
+
+    /** Codec to use: 0 = uncompressed, 1 = zlib (see {@link ContentStoreBlockCodec#fromCode(byte)}) */
+    @Param({ "0", "1" })
+    public byte codecCode;
+
+    /** Number of characters per block */
+    @Param({ "4096", "32768" })
+    public int blockSize;
+
+    private ContentStoreBlockCodec codec;
+
+    private String block;
+
+    private byte[] encoded;
+
+    private byte[] decodeBuffer;
+
+    @Setup(Level.Trial)
+    public void createBlock() throws IOException {
+        codec = ContentStoreBlockCodec.fromCode(codecCode);
+        SyntheticCorpus corpus = new SyntheticCorpus(1, blockSize, 50_000, 1);
+        block = corpus.document(0).substring(0, blockSize);
+        encoded = encode();
+        decodeBuffer = new byte[blockSize * 4]; // enough for any UTF-8
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        try (ContentStoreBlockCodec.Encoder encoder = codec.getEncoder()) {
+            return encoder.encode(block, 0, block.length());
+        }
+    }
+
+    @Benchmark
+    public String decode() throws IOException {
+        try (ContentStoreBlockCodec.Decoder decoder = codec.getDecoder()) {
+            return decoder.decode(encoded, 0, encoded.length);
+        }
+    }
+
+    @Benchmark
+    public int decodeToBuffer() throws IOException {
+        try (ContentStoreBlockCodec.Decoder decoder = codec.getDecoder()) {
+            return decoder.decode(encoded, 0, encoded.length, decodeBuffer, 0, decodeBuffer.length);
+        }
+    }
+}
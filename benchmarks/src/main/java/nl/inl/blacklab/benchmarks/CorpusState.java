@@ -0,0 +1,68 @@
+package nl.inl.blacklab.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.performance.SyntheticCorpus;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.QueryInfo;
+
+/**
+ * Benchmark state with an index of a synthetic corpus.
+ * <p>
+ * The index is created the first time it's needed and reused after that (see {@link SyntheticCorpus}).
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param("200")
+    public int numberOfDocs;
+
+    @Param("5000")
+    public int docLength;
+
+    @Param("50000")
+    public int vocabularySize;
+
+    @Param("1")
+    public long seed;
+
+    protected BlackLabIndex index;
+
+    @Setup(Level.Trial)
+    public void openIndex() {
+        index = new SyntheticCorpus(numberOfDocs, docLength, vocabularySize, seed).open();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeIndex() {
+        index.close();
+    }
+
+    /**
+     * Parse a Corpus Query Language query.
+     *
+     * Single quotes are replaced with double quotes, so queries can be used in annotations more easily.
+     *
+     * @param cql query
+     * @return the query (not yet optimized or rewritten)
+     */
+    protected BLSpanQuery query(String cql) {
+        try {
+            QueryInfo queryInfo = QueryInfo.create(index);
+            BLSpanQuery query = CorpusQueryLanguageParser.parse(cql.replace('\'', '"')).toQuery(queryInfo);
+            query.setQueryInfo(queryInfo);
+            return query;
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+}
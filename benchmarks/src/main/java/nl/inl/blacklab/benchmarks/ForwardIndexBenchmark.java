@@ -0,0 +1,87 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.forwardindex.ForwardIndexSegmentReader;
+import nl.inl.blacklab.search.BlackLabIndexIntegrated;
+
+/**
+ * Reading parts of documents from the forward index of a segment
+ * (SegmentForwardIndex.Reader.retrievePart), e.g. to build concordances or sort on context.
+ * <p>
+ * Segment readers may only be used from one thread, so run this with one thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForwardIndexBenchmark extends CorpusState {
+
+    /** How many parts to retrieve per benchmark invocation */
+    private static final int NUMBER_OF_PARTS = 1000;
+
+    /** Length of each part in tokens */
+    @Param({ "10", "100", "1000" })
+    public int partLength;
+
+    /** Lucene field containing the forward index for the word annotation */
+    private String luceneField;
+
+    /** Parts to retrieve: segment reader, document and start */
+    private ForwardIndexSegmentReader[] partReader;
+    private int[] partDoc;
+    private int[] partStart;
+
+    @Setup(Level.Trial)
+    public void chooseParts() {
+        luceneField = index.mainAnnotatedField().mainAnnotation().forwardIndexSensitivity().luceneField();
+        List<LeafReaderContext> leaves = index.reader().leaves();
+        List<ForwardIndexSegmentReader> segmentReaders = new ArrayList<>();
+        for (LeafReaderContext lrc: leaves)
+            segmentReaders.add(BlackLabIndexIntegrated.forwardIndex(lrc));
+
+        Random random = new Random(seed);
+        partReader = new ForwardIndexSegmentReader[NUMBER_OF_PARTS];
+        partDoc = new int[NUMBER_OF_PARTS];
+        partStart = new int[NUMBER_OF_PARTS];
+        int i = 0;
+        while (i < NUMBER_OF_PARTS) {
+            int leaf = random.nextInt(leaves.size());
+            int docId = random.nextInt(leaves.get(leaf).reader().maxDoc());
+            ForwardIndexSegmentReader segmentReader = segmentReaders.get(leaf);
+            long length = segmentReader.docLength(luceneField, docId);
+            if (length < partLength)
+                continue; // (e.g. the index metadata document)
+            partReader[i] = segmentReader;
+            partDoc[i] = docId;
+            partStart[i] = random.nextInt((int) length - partLength + 1);
+            i++;
+        }
+    }
+
+    @Benchmark
+    public long retrievePart() {
+        long sum = 0;
+        for (int i = 0; i < NUMBER_OF_PARTS; i++) {
+            int[] part = partReader[i].retrievePart(luceneField, partDoc[i], partStart[i], partStart[i] + partLength);
+            sum += part[0] + part[part.length - 1];
+        }
+        return sum;
+    }
+}
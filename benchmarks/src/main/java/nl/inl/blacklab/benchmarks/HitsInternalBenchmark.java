@@ -0,0 +1,118 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import nl.inl.blacklab.performance.ZipfDistribution;
+import nl.inl.blacklab.search.results.EphemeralHit;
+import nl.inl.blacklab.search.results.HitsInternal;
+import nl.inl.blacklab.search.results.HitsInternalMutable;
+
+/**
+ * Storing and reading hits in HitsInternal (no index needed).
+ * <p>
+ * Hits are generated like those of a frequent term: increasing documents, with a
+ * Zipfian number of hits per document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitsInternalBenchmark {
+
+    @Param("1000000")
+    public int numberOfHits;
+
+    /** Use the locking implementation (as used when hits are fetched by multiple threads)? */
+    @Param({ "false", "true" })
+    public boolean mustLock;
+
+    private int[] docs;
+
+    private int[] starts;
+
+    private HitsInternal hits;
+
+    @Setup(Level.Trial)
+    public void generateHits() {
+        Random random = new Random(1);
+        ZipfDistribution hitsPerDoc = new ZipfDistribution(1000, 1.0, random);
+        docs = new int[numberOfHits];
+        starts = new int[numberOfHits];
+        int doc = 0, start = 0, leftInDoc = 0;
+        for (int i = 0; i < numberOfHits; i++) {
+            if (leftInDoc == 0) {
+                doc += 1 + random.nextInt(3);
+                start = 0;
+                leftInDoc = 1 + hitsPerDoc.next();
+            }
+            start += 1 + random.nextInt(50);
+            docs[i] = doc;
+            starts[i] = start;
+            leftInDoc--;
+        }
+        hits = fill();
+    }
+
+    @Benchmark
+    public HitsInternal fill() {
+        HitsInternalMutable result = HitsInternal.create(16, false, mustLock);
+        for (int i = 0; i < numberOfHits; i++)
+            result.add(docs[i], starts[i], starts[i] + 1, null);
+        return result;
+    }
+
+    @Benchmark
+    public long readByIndex() {
+        long sum = 0;
+        long n = hits.size();
+        for (long i = 0; i < n; i++)
+            sum += hits.doc(i) + hits.start(i) + hits.end(i);
+        return sum;
+    }
+
+    @Benchmark
+    public long readEphemeral() {
+        long sum = 0;
+        EphemeralHit hit = new EphemeralHit();
+        long n = hits.size();
+        for (long i = 0; i < n; i++) {
+            hits.getEphemeral(i, hit);
+            sum += hit.doc() + hit.start() + hit.end();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (EphemeralHit hit: hits)
+            sum += hit.doc() + hit.start() + hit.end();
+        return sum;
+    }
+
+    @Benchmark
+    public long iterateDocs() {
+        long sum = 0;
+        IntIterator it = hits.docsIterator();
+        while (it.hasNext())
+            sum += it.nextInt();
+        return sum;
+    }
+}
@@ -0,0 +1,131 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
+import nl.inl.blacklab.search.fimatch.ForwardIndexAccessorLeafReader;
+import nl.inl.blacklab.search.fimatch.ForwardIndexDocument;
+import nl.inl.blacklab.search.fimatch.Nfa;
+import nl.inl.blacklab.search.fimatch.NfaState;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.SpanQueryFiSeq;
+import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+
+/**
+ * Matching an NFA against the forward index (NfaState.findMatches).
+ * <p>
+ * The NFA is tried at every position of a number of documents, like a forward index
+ * matching query would do for an anchor that occurs everywhere.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NfaBenchmark extends CorpusState {
+
+    @Param({
+        "[pos='adj'] [pos='nou']",
+        "[pos='adj']{1,3} [pos='nou']",
+        "[word='ka.*'] [pos='vrb']"
+    })
+    public String pattern;
+
+    /** How many documents to match in */
+    @Param("20")
+    public int docsToMatch;
+
+    /** A document to match in */
+    private static class Doc {
+        final ForwardIndexAccessorLeafReader leafAccessor;
+
+        final int segmentDocId;
+
+        final int length;
+
+        Doc(ForwardIndexAccessorLeafReader leafAccessor, int segmentDocId, int length) {
+            this.leafAccessor = leafAccessor;
+            this.segmentDocId = segmentDocId;
+            this.length = length;
+        }
+    }
+
+    private NfaState startingState;
+
+    private final List<Doc> docs = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void createNfa() throws IOException {
+        IndexReader reader = index.reader();
+        BLSpanQuery query = query(pattern);
+        BLSpanQuery rewritten;
+        synchronized (ClauseCombinerNfa.class) {
+            // Don't turn (part of) the query into an NFA ourselves; we want all of it
+            ClauseCombinerNfa.setForwardIndexMatchingEnabled(false);
+            try {
+                rewritten = query.optimize(reader).rewrite(reader);
+            } finally {
+                ClauseCombinerNfa.setForwardIndexMatchingEnabled(true);
+            }
+        }
+        if (!rewritten.canMakeNfa())
+            throw new BlackLabRuntimeException("Cannot make NFA for " + rewritten);
+        ForwardIndexAccessor fiAccessor = index.forwardIndexAccessor(rewritten.getField());
+        Nfa nfa = rewritten.getNfa(fiAccessor, SpanQueryFiSeq.DIR_TO_RIGHT);
+        nfa.finish();
+        nfa.lookupAnnotationNumbers(fiAccessor, new IdentityHashMap<>());
+        startingState = nfa.getStartingState();
+
+        docs.clear();
+        for (LeafReaderContext lrc: reader.leaves()) {
+            ForwardIndexAccessorLeafReader leafAccessor = fiAccessor.getForwardIndexAccessorLeafReader(lrc);
+            for (int docId = 0; docId < lrc.reader().maxDoc() && docs.size() < docsToMatch; docId++) {
+                int length = leafAccessor.getDocLength(docId);
+                if (length > 0) // (skip e.g. the index metadata document)
+                    docs.add(new Doc(leafAccessor, docId, length));
+            }
+        }
+    }
+
+    @Benchmark
+    public long findMatches() {
+        long matches = 0;
+        for (Doc doc: docs) {
+            ForwardIndexDocument fiDoc = doc.leafAccessor.advanceForwardIndexDoc(doc.segmentDocId);
+            for (int pos = 0; pos < doc.length; pos++)
+                matches += startingState.findMatches(fiDoc, pos, SpanQueryFiSeq.DIR_TO_RIGHT).size();
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public long matches() {
+        long matches = 0;
+        for (Doc doc: docs) {
+            ForwardIndexDocument fiDoc = doc.leafAccessor.advanceForwardIndexDoc(doc.segmentDocId);
+            for (int pos = 0; pos < doc.length; pos++) {
+                if (startingState.matches(fiDoc, pos, SpanQueryFiSeq.DIR_TO_RIGHT))
+                    matches++;
+            }
+        }
+        return matches;
+    }
+}
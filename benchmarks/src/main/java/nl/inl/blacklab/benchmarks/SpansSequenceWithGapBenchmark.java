@@ -0,0 +1,86 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.spans.SpanWeight.Postings;
+import org.apache.lucene.search.spans.Spans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.BLSpanWeight;
+import nl.inl.blacklab.search.lucene.BLSpans;
+import nl.inl.blacklab.search.lucene.HitQueryContext;
+import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+
+/**
+ * Finding hits for sequences with a gap (SpansSequenceWithGap).
+ * <p>
+ * Forward index matching is disabled while rewriting, so the gap is resolved
+ * using the reverse index. Only the spans are iterated; hits are not stored.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpansSequenceWithGapBenchmark extends CorpusState {
+
+    @Param({
+        "[pos='art'] []{1,3} [pos='nou']",
+        "[lemma='ka'] []{0,5} [word='lo']",
+        "[pos='adj'] [] [pos='nou']"
+    })
+    public String pattern;
+
+    private BLSpanWeight weight;
+
+    /** Field we search */
+    private String field;
+
+    @Setup(Level.Trial)
+    public void createWeight() throws IOException {
+        IndexReader reader = index.reader();
+        BLSpanQuery query = query(pattern);
+        BLSpanQuery rewritten;
+        synchronized (ClauseCombinerNfa.class) {
+            ClauseCombinerNfa.setForwardIndexMatchingEnabled(false);
+            try {
+                rewritten = query.optimize(reader).rewrite(reader);
+            } finally {
+                ClauseCombinerNfa.setForwardIndexMatchingEnabled(true);
+            }
+        }
+        field = rewritten.getField();
+        weight = rewritten.createWeight(index.searcher(), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+    }
+
+    @Benchmark
+    public long findHits() throws IOException {
+        long hits = 0;
+        for (LeafReaderContext lrc: index.reader().leaves()) {
+            BLSpans spans = weight.getSpans(lrc, Postings.POSITIONS);
+            if (spans == null)
+                continue;
+            spans = BLSpans.ensureSortedUnique(spans);
+            spans.setHitQueryContext(new HitQueryContext(null, field).withSpans(spans));
+            while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
+                while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS)
+                    hits++;
+            }
+        }
+        return hits;
+    }
+}
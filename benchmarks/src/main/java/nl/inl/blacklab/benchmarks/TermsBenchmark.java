@@ -0,0 +1,90 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Looking up sort positions of term ids (TermsReaderAbstract.idToSortPosition), as done
+ * when sorting or grouping hits on an annotation.
+ * <p>
+ * We look up the term ids of the tokens in the corpus, so frequent terms are looked up
+ * more often, like when sorting real hits. For comparison, we also look up uniformly
+ * distributed term ids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TermsBenchmark extends CorpusState {
+
+    /** Number of term ids to look up per benchmark invocation */
+    private static final int NUMBER_OF_LOOKUPS = 100_000;
+
+    @Param({ "SENSITIVE", "INSENSITIVE" })
+    public MatchSensitivity sensitivity;
+
+    private Terms terms;
+
+    /** Term ids of tokens in the corpus */
+    private int[] corpusTermIds;
+
+    /** Uniformly distributed term ids */
+    private int[] uniformTermIds;
+
+    @Setup(Level.Trial)
+    public void chooseTermIds() {
+        AnnotationForwardIndex afi = index.annotationForwardIndex(index.mainAnnotatedField().mainAnnotation());
+        terms = afi.terms();
+
+        corpusTermIds = new int[NUMBER_OF_LOOKUPS];
+        int n = 0;
+        for (int docId = 0; docId < index.reader().maxDoc() && n < NUMBER_OF_LOOKUPS; docId++) {
+            if (afi.docLength(docId) <= 0)
+                continue; // (e.g. the index metadata document)
+            int[] tokens = afi.getDocument(docId);
+            int length = Math.min(tokens.length, NUMBER_OF_LOOKUPS - n);
+            System.arraycopy(tokens, 0, corpusTermIds, n, length);
+            n += length;
+        }
+        if (n < NUMBER_OF_LOOKUPS)
+            throw new IllegalStateException("Corpus too small, need " + NUMBER_OF_LOOKUPS + " tokens");
+
+        Random random = new Random(seed);
+        uniformTermIds = new int[NUMBER_OF_LOOKUPS];
+        for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+            uniformTermIds[i] = random.nextInt(terms.numberOfTerms());
+    }
+
+    private long sortPositions(int[] termIds) {
+        long sum = 0;
+        for (int termId: termIds)
+            sum += terms.idToSortPosition(termId, sensitivity);
+        return sum;
+    }
+
+    @Benchmark
+    public long corpusTerms() {
+        return sortPositions(corpusTermIds);
+    }
+
+    @Benchmark
+    public long uniformTerms() {
+        return sortPositions(uniformTermIds);
+    }
+}
@@ -33,6 +33,7 @@ public enum WebserviceParameter {
     SAMPLE("sample"),
     SAMPLE_NUMBER("samplenum"),
     SAMPLE_SEED("sampleseed"),
+    SAMPLE_MODE("samplemode"),
     HIT_FILTER_CRITERIUM("hitfiltercrit"),
     HIT_FILTER_VALUE("hitfilterval"),
 
@@ -56,6 +57,7 @@ public enum WebserviceParameter {
     WORD_END("wordend"),
 
     EXPLAIN_QUERY_REWRITE("explain"),
+    PROFILE("profile"), // report how much work each part of the query did? [no]
 
     // on field info page, show (non-sub) values for annotation?
     // also controls which annotations' values are sent back with hits
@@ -79,6 +81,7 @@ public enum WebserviceParameter {
     GROUP_BY("group"),
     VIEW_GROUP("viewgroup"),
     INCLUDE_GROUP_CONTENTS("includegroupcontents"), // include hits with the group response? (false)
+    PARTIAL_GROUPS("partialgroups"), // return the largest groups so far if grouping is still running? (false)
 
     // for term frequency
     PROPERTY("property"), // DEPRECATED, now called "annotation",
@@ -154,7 +157,9 @@ public enum WebserviceParameter {
         defaultValues.put(MAX_HITS_TO_RETRIEVE, "1000000");
         defaultValues.put(NUMBER_OF_RESULTS, "50");
         defaultValues.put(OMIT_EMPTY_CAPTURES, "no");
+        defaultValues.put(PARTIAL_GROUPS, "no");
         defaultValues.put(PATTERN_LANGUAGE, "default");
+        defaultValues.put(PROFILE, "no");
         defaultValues.put(PROPERTY, Constants.DEFAULT_MAIN_ANNOT_NAME); // deprecated, use "annotation" now
         defaultValues.put(REL_SEPARATE_SPANS, "yes");
         defaultValues.put(SENSITIVE, "no");
@@ -0,0 +1,62 @@
+package nl.inl.blacklab.search;
+
+import java.util.Collection;
+
+import org.apache.lucene.document.Document;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.search.indexmetadata.MetadataField;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestDocMetadataLoader {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    @Test
+    public void testMetadataMatchesStoredDocument() {
+        BlackLabIndex index = testIndex.index();
+        String tokenLengthField = index.mainAnnotatedField().tokenLengthField();
+        for (int docNumber = 0; docNumber < TestIndex.DOC_LENGTHS_TOKENS.length; docNumber++) {
+            int docId = testIndex.getDocIdForDocNumber(docNumber);
+            Document expected = index.luceneDoc(docId);
+            Document metadata = index.docMetadata().metadata(docId);
+            Assert.assertEquals(expected.get("title"), metadata.get("title"));
+            Assert.assertEquals(expected.get("pid"), metadata.get("pid"));
+            Assert.assertEquals(expected.get(tokenLengthField), metadata.get(tokenLengthField));
+            Assert.assertEquals(index.mayView(expected), index.mayView(metadata));
+        }
+    }
+
+    @Test
+    public void testCachedDocumentNotModified() {
+        BlackLabIndex index = testIndex.index();
+        int docId = testIndex.getDocIdForDocNumber(0);
+        Document metadata = index.docMetadata().metadata(docId);
+        String title = metadata.get("title");
+        metadata.removeFields("title");
+        Assert.assertEquals(title, index.docMetadata().metadata(docId).get("title"));
+    }
+
+    @Test
+    public void testPid() {
+        BlackLabIndex index = testIndex.index();
+        MetadataField pidField = index.metadataFields().pidField();
+        for (int docNumber = 0; docNumber < TestIndex.DOC_LENGTHS_TOKENS.length; docNumber++) {
+            int docId = testIndex.getDocIdForDocNumber(docNumber);
+            String expected = pidField == null ? null : index.luceneDoc(docId).get(pidField.name());
+            Assert.assertEquals(expected, index.docMetadata().pid(docId));
+            index.docMetadata().metadata(docId); // now it's cached
+            Assert.assertEquals(expected, index.docMetadata().pid(docId));
+        }
+    }
+}
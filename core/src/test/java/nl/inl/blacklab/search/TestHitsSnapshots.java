@@ -0,0 +1,115 @@
+package nl.inl.blacklab.search;
+
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentId;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsSnapshots;
+import nl.inl.blacklab.searches.SearchEmpty;
+import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.testutil.TestIndex;
+import nl.inl.util.UtilsForTesting;
+
+@RunWith(Parameterized.class)
+public class TestHitsSnapshots {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private static void assertSameHits(Hits expected, Hits actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.doc(i), actual.doc(i));
+            Assert.assertEquals(expected.start(i), actual.start(i));
+            Assert.assertEquals(expected.end(i), actual.end(i));
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws InvalidQuery {
+        try (UtilsForTesting.TestDir dir = UtilsForTesting.createBlackLabTestDir("HitsSnapshots")) {
+            BlackLabIndex index = testIndex.index();
+            HitsSnapshots snapshots = new HitsSnapshots(index, dir.file().getPath(), 0, Long.MAX_VALUE, Long.MAX_VALUE);
+            SearchEmpty search = index.search();
+            BLSpanQuery query = CorpusQueryLanguageParser.parse("'the'").toQuery(search.queryInfo());
+            SearchHits sorted = search.find(query).sort(new HitPropertyDocumentId().reverse());
+            Assert.assertNull(snapshots.load(sorted));
+
+            Hits hits = sorted.execute();
+            snapshots.save(sorted, hits);
+            Hits fromSnapshot = snapshots.load(sorted);
+            Assert.assertNotNull(fromSnapshot);
+            assertSameHits(hits, fromSnapshot);
+            Assert.assertEquals(hits.hitsStats().countedTotal(), fromSnapshot.hitsStats().countedTotal());
+            Assert.assertEquals(hits.docsStats().countedTotal(), fromSnapshot.docsStats().countedTotal());
+            assertSameHits(hits.window(1, 2), fromSnapshot.window(1, 2));
+
+            // An equal search that was constructed separately uses the same snapshot
+            BLSpanQuery sameQuery = CorpusQueryLanguageParser.parse("'the'").toQuery(search.queryInfo());
+            SearchHits sameSorted = search.find(sameQuery).sort(new HitPropertyDocumentId().reverse());
+            Assert.assertEquals(sorted, sameSorted);
+            Assert.assertNotNull(snapshots.load(sameSorted));
+
+            // A different sort doesn't use this snapshot
+            SearchHits sortedByText = search.find(query).sort(new HitPropertyHitText(index, MatchSensitivity.INSENSITIVE));
+            Assert.assertNull(snapshots.load(sortedByText));
+        }
+    }
+
+    @Test
+    public void testMinHits() throws InvalidQuery {
+        try (UtilsForTesting.TestDir dir = UtilsForTesting.createBlackLabTestDir("HitsSnapshots")) {
+            BlackLabIndex index = testIndex.index();
+            HitsSnapshots snapshots = new HitsSnapshots(index, dir.file().getPath(), 1000, Long.MAX_VALUE, Long.MAX_VALUE);
+            SearchEmpty search = index.search();
+            BLSpanQuery query = CorpusQueryLanguageParser.parse("'the'").toQuery(search.queryInfo());
+            SearchHits sorted = search.find(query).sort(new HitPropertyDocumentId());
+            snapshots.save(sorted, sorted.execute());
+            Assert.assertNull(snapshots.load(sorted));
+        }
+    }
+
+    @Test
+    public void testRemoveOldSnapshots() throws InvalidQuery {
+        try (UtilsForTesting.TestDir dir = UtilsForTesting.createBlackLabTestDir("HitsSnapshots")) {
+            BlackLabIndex index = testIndex.index();
+            SearchEmpty search = index.search();
+            BLSpanQuery query = CorpusQueryLanguageParser.parse("'the'").toQuery(search.queryInfo());
+            SearchHits sorted = search.find(query).sort(new HitPropertyDocumentId());
+            Hits hits = sorted.execute();
+
+            // Small enough and recently used: kept
+            HitsSnapshots snapshots = new HitsSnapshots(index, dir.file().getPath(), 0, Long.MAX_VALUE, Long.MAX_VALUE);
+            snapshots.save(sorted, hits);
+            snapshots.removeOldSnapshots();
+            Assert.assertNotNull(snapshots.load(sorted));
+
+            // Directory too large: removed
+            HitsSnapshots small = new HitsSnapshots(index, dir.file().getPath(), 0, 0, Long.MAX_VALUE);
+            small.removeOldSnapshots();
+            Assert.assertNull(small.load(sorted));
+
+            // Not used for too long: removed
+            snapshots.save(sorted, hits);
+            Assert.assertTrue(dir.file().listFiles()[0].setLastModified(System.currentTimeMillis() - 10_000));
+            HitsSnapshots shortLived = new HitsSnapshots(index, dir.file().getPath(), 0, Long.MAX_VALUE, 1000);
+            shortLived.removeOldSnapshots();
+            Assert.assertNull(shortLived.load(sorted));
+        }
+    }
+}
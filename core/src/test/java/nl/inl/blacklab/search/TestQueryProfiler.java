@@ -0,0 +1,60 @@
+package nl.inl.blacklab.search;
+
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.QueryProfiler;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestQueryProfiler {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private Hits find(String pattern, boolean profile) throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        BLSpanQuery query = CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index));
+        Hits hits = index.find(query, SearchSettings.defaults().withProfile(profile));
+        hits.size(); // make sure all hits have been found
+        return hits;
+    }
+
+    @Test
+    public void testNoProfile() throws InvalidQuery {
+        Assert.assertNull(find("'the' 'quick'", false).queryInfo().profiler());
+    }
+
+    @Test
+    public void testProfile() throws InvalidQuery {
+        Hits hits = find("'the' | 'fox'", true);
+        QueryProfiler profiler = hits.queryInfo().profiler();
+        Assert.assertNotNull(profiler);
+        Assert.assertEquals(1, profiler.getRoots().size());
+        QueryProfiler.Node root = profiler.getRoots().get(0);
+        QueryProfiler.Stats total = root.total();
+        Assert.assertTrue(hits.size() > 0);
+        Assert.assertTrue(total.getHits() >= hits.size());
+        Assert.assertTrue(total.getDocs() > 0);
+        Assert.assertEquals(2, root.getChildren().size());
+        long childHits = 0;
+        for (QueryProfiler.Node child: root.getChildren())
+            childHits += child.total().getHits();
+        Assert.assertTrue(childHits >= total.getHits());
+    }
+}
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search;
 
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -322,4 +323,31 @@ public class TestQueryRewrite {
         //  assertRewriteResult("[lemma='.*' & word='.*']", "ANYTOKEN(1, 1)");
     }
 
+    @Test
+    public void testRewriteCache() throws Exception {
+        QueryRewriteCache cache = new QueryRewriteCache(1_000_000);
+        AtomicInteger rewrites = new AtomicInteger();
+        QueryRewriteCache.Rewriter rewriter = q -> {
+            rewrites.incrementAndGet();
+            return q.optimize(index.reader()).rewrite(index.reader());
+        };
+        BLSpanQuery q1 = getPatternFromCql("'qu[^a]ck'").toQuery(QueryInfo.create(index));
+        BLSpanQuery q2 = getPatternFromCql("'qu[^a]ck'").toQuery(QueryInfo.create(index));
+        BLSpanQuery rewritten = cache.get(q1, index.reader(), rewriter);
+        Assert.assertSame(rewritten, cache.get(q2, index.reader(), rewriter));
+        Assert.assertEquals(1, rewrites.get());
+
+        // The shared rewritten query doesn't refer to the first search's QueryInfo
+        Assert.assertNotSame(q1.queryInfo(), rewritten.queryInfo());
+        Assert.assertEquals(q1.queryInfo().field(), rewritten.queryInfo().field());
+
+        // Different optimization settings: rewrite again
+        ClauseCombinerNfa.setForwardIndexMatchingEnabled(true);
+        cache.get(q1, index.reader(), rewriter);
+        Assert.assertEquals(2, rewrites.get());
+
+        cache.removeForReader(index.reader());
+        cache.get(q1, index.reader(), rewriter);
+        Assert.assertEquals(3, rewrites.get());
+    }
 }
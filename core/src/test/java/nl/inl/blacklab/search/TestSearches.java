@@ -1,5 +1,6 @@
 package nl.inl.blacklab.search;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -11,6 +12,9 @@ import java.util.Set;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.spans.BLSpanOrQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
@@ -38,6 +42,7 @@ import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpanTermQuery;
 import nl.inl.blacklab.search.lucene.MatchInfo;
 import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+import nl.inl.blacklab.search.lucene.SpansTermDisjunction;
 import nl.inl.blacklab.search.results.DocResult;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
@@ -103,6 +108,48 @@ public class TestSearches {
         Assert.assertEquals(expected, testIndex.findConc(new SpanQueryFiltered(patternQuery, filterQuery)));
     }
 
+    private static BLSpanOrQuery termOr(List<String> words) {
+        BLSpanQuery[] clauses = words.stream()
+                .map(w -> new BLSpanTermQuery(null, new Term("contents%word@i", w)))
+                .toArray(BLSpanQuery[]::new);
+        BLSpanOrQuery query = new BLSpanOrQuery(clauses);
+        query.setClausesAreSimpleTermsInSameAnnotation(true);
+        return query;
+    }
+
+    @Test
+    public void testManyTermsOr() {
+        // Many terms are matched using SpansTermDisjunction; results should be the same as the regular OR.
+        // Try reading no terms up front, some of them, and (for this small index) all of them.
+        List<String> words = List.of("the", "fox", "dog", "be", "aap", "question");
+        List<String> manyWords = new ArrayList<>(words);
+        for (int i = 0; i < 100; i++)
+            manyWords.add("nonexistent" + i);
+
+        // Filters to make sure we skip ahead using advance(), both from the start and from a matching document
+        BooleanQuery filterFirstAndLast = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("contents%word@i", "fox")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term("contents%word@i", "question")), BooleanClause.Occur.SHOULD)
+                .build();
+        List<Query> filters = List.of(new TermQuery(new Term("contents%word@i", "question")), filterFirstAndLast);
+
+        for (int maxRareTermFreq: List.of(0, 2, SpansTermDisjunction.DEFAULT_MAX_RARE_TERM_FREQ)) {
+            SpansTermDisjunction.setMaxRareTermFreq(maxRareTermFreq);
+            try {
+                List<String> expected = testIndex.findConc(termOr(words));
+                Assert.assertFalse(expected.isEmpty());
+                Assert.assertEquals(expected, testIndex.findConc(termOr(manyWords)));
+                for (Query filter: filters) {
+                    expected = testIndex.findConc(new SpanQueryFiltered(termOr(words), filter));
+                    Assert.assertFalse(expected.isEmpty());
+                    Assert.assertEquals(expected, testIndex.findConc(new SpanQueryFiltered(termOr(manyWords), filter)));
+                }
+            } finally {
+                SpansTermDisjunction.setMaxRareTermFreq(SpansTermDisjunction.DEFAULT_MAX_RARE_TERM_FREQ);
+            }
+        }
+    }
+
     @Test
     public void testSequences() {
         List<String> expected = Arrays.asList(
@@ -0,0 +1,58 @@
+package nl.inl.blacklab.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.search.results.CorpusSize;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestSubcorpusStatistics {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private void assertSize(Query filter, long expectedDocs, long expectedTokens) {
+        BlackLabIndex index = testIndex.index();
+        String tokenLengthField = index.mainAnnotatedField().tokenLengthField();
+
+        // Only documents first, then with tokens (uses the cached documents)
+        CorpusSize docsOnly = index.subcorpusStatistics().size(filter, null);
+        Assert.assertEquals(expectedDocs, docsOnly.getDocuments());
+        Assert.assertFalse(docsOnly.hasTokenCount());
+        CorpusSize size = index.subcorpusStatistics().size(filter, tokenLengthField);
+        Assert.assertEquals(expectedDocs, size.getDocuments());
+        Assert.assertEquals(expectedTokens, size.getTokens());
+
+        // Through DocResults (same filter, so cached)
+        CorpusSize fromDocResults = index.queryDocuments(filter).subcorpusSize();
+        Assert.assertEquals(expectedDocs, fromDocResults.getDocuments());
+        Assert.assertEquals(expectedTokens, fromDocResults.getTokens());
+    }
+
+    @Test
+    public void testAllDocs() {
+        long totalTokens = Arrays.stream(TestIndex.DOC_LENGTHS_TOKENS).sum();
+        assertSize(new MatchAllDocsQuery(), TestIndex.DOC_LENGTHS_TOKENS.length, totalTokens);
+    }
+
+    @Test
+    public void testFilter() {
+        assertSize(new TermQuery(new Term("title", "star")), 1, TestIndex.DOC_LENGTHS_TOKENS[2]);
+        assertSize(new TermQuery(new Term("title", "nosuchword")), 0, 0);
+    }
+}
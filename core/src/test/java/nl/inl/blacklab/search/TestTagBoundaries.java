@@ -0,0 +1,145 @@
+package nl.inl.blacklab.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.forwardindex.TagBoundaries;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.lucene.MatchInfo;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestTagBoundaries {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    /** Integrated index that stores the boundaries of s and p tags (the other test indexes don't) */
+    private static TestIndex testIndexWithBoundaries;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndexWithBoundaries = TestIndex.getWithBoundaryTags(List.of("s", "p"));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        testIndexWithBoundaries.close();
+    }
+
+    private boolean isIntegrated() {
+        return testIndex.getIndexType() == BlackLabIndex.IndexType.INTEGRATED;
+    }
+
+    private static MatchInfo findTag(Hit hit) {
+        for (MatchInfo mi: hit.matchInfo()) {
+            if (mi != null && mi.getType() == MatchInfo.Type.INLINE_TAG)
+                return mi;
+        }
+        return null;
+    }
+
+    @Test
+    public void testStoredBoundaries() {
+        if (!isIntegrated())
+            return; // only the integrated index stores tag boundaries
+        // By default, no boundaries are stored
+        BlackLabIndexIntegrated defaultIndex = (BlackLabIndexIntegrated) testIndex.index();
+        Assert.assertNull(defaultIndex.tagBoundaries(defaultIndex.mainAnnotatedField(), "s",
+                testIndex.getDocIdForDocNumber(3)));
+
+        BlackLabIndexIntegrated index = (BlackLabIndexIntegrated) testIndexWithBoundaries.index();
+        AnnotatedField field = index.mainAnnotatedField();
+
+        TagBoundaries sentences = index.tagBoundaries(field, "s", testIndexWithBoundaries.getDocIdForDocNumber(3));
+        Assert.assertNotNull(sentences);
+        Assert.assertEquals(2, sentences.size());
+        Assert.assertEquals(0, sentences.start(0));
+        Assert.assertEquals(6, sentences.end(0));
+        Assert.assertEquals(6, sentences.start(1));
+        Assert.assertEquals(10, sentences.end(1));
+        Assert.assertEquals(1, sentences.findEnclosing(8, 9));
+        Assert.assertEquals(-1, sentences.findEnclosing(5, 7));
+
+        // Document without sentences
+        TagBoundaries none = index.tagBoundaries(field, "s", testIndexWithBoundaries.getDocIdForDocNumber(1));
+        Assert.assertNotNull(none);
+        Assert.assertEquals(0, none.size());
+
+        // Tag that isn't configured
+        Assert.assertNull(index.tagBoundaries(field, "entity", testIndexWithBoundaries.getDocIdForDocNumber(0)));
+    }
+
+    @Test
+    public void testNested() {
+        TagBoundaries nested = new TagBoundaries(new int[] { 0, 2, 3, 10 }, new int[] { 8, 4, 7, 12 });
+        Assert.assertEquals(0, nested.findEnclosing(3, 4));
+        Assert.assertEquals(0, nested.findEnclosing(5, 8));
+        Assert.assertEquals(-1, nested.findEnclosing(5, 9));
+        Assert.assertEquals(3, nested.findEnclosing(10, 11));
+        Assert.assertEquals(-1, nested.findEnclosing(9, 10));
+    }
+
+    @Test
+    public void testWithin() {
+        // Same results with or without stored boundaries, including the captured tag
+        checkWithin(testIndex);
+        checkWithin(testIndexWithBoundaries);
+        Assert.assertEquals(testIndex.findConc("'the' within <s/>"),
+                testIndexWithBoundaries.findConc("'the' within <s/>"));
+        Assert.assertEquals(testIndex.findConc("<s/> containing 'the'"),
+                testIndexWithBoundaries.findConc("<s/> containing 'the'"));
+    }
+
+    private static void checkWithin(TestIndex testIndex) {
+        Hits hits = testIndex.find("'the' within <s/>");
+        Assert.assertEquals(4, hits.size());
+        int docId = testIndex.getDocIdForDocNumber(3);
+        Hit hitInSecondSentence = null;
+        for (Hit hit: hits) {
+            if (hit.doc() == docId)
+                hitInSecondSentence = hit;
+        }
+        Assert.assertNotNull(hitInSecondSentence);
+        Assert.assertEquals(8, hitInSecondSentence.start());
+        MatchInfo tag = findTag(hitInSecondSentence);
+        Assert.assertNotNull(tag);
+        Assert.assertEquals(6, tag.getSpanStart());
+        Assert.assertEquals(10, tag.getSpanEnd());
+
+        Assert.assertEquals(0, testIndex.find("'noot' within <s/>").size());
+        Assert.assertEquals(3, testIndex.find("'the' within <entity/>").size());
+    }
+
+    @Test
+    public void testContextFromBoundaries() {
+        if (!isIntegrated())
+            return; // only the integrated index stores tag boundaries
+        // The tag isn't captured by the query, so the stored boundaries are used
+        Hits hits = testIndexWithBoundaries.find("'question'");
+        Assert.assertEquals(1, hits.size());
+        Annotation word = testIndexWithBoundaries.index().mainAnnotatedField().mainAnnotation();
+        Kwic kwic = hits.kwics(ContextSize.get(0, 0, true, "s", 100)).get(hits.get(0));
+        List<String> words = new ArrayList<>(kwic.before(word));
+        words.addAll(kwic.match(word));
+        words.addAll(kwic.after(word));
+        Assert.assertEquals(List.of("That", "is", "the", "question"), words);
+    }
+}
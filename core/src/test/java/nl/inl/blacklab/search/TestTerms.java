@@ -13,6 +13,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
@@ -74,4 +75,26 @@ public class TestTerms {
             });
         }
     }
+
+    @Test
+    public void testUnloadAndReload() {
+        // Use a dedicated index, so we don't affect other tests using the shared one
+        TestIndex dedicated = TestIndex.get(indexType);
+        try {
+            BlackLabIndex index = dedicated.index();
+            AnnotationForwardIndex afi = index.annotationForwardIndex(index.mainAnnotatedField().mainAnnotation());
+            Terms original = afi.terms();
+            index.unloadMemory();
+            Terms reloaded = afi.terms();
+            if (indexType == BlackLabIndex.IndexType.INTEGRATED)
+                Assert.assertNotSame(original, reloaded);
+            Assert.assertEquals(original.numberOfTerms(), reloaded.numberOfTerms());
+            for (int i = 0; i < original.numberOfTerms(); i++) {
+                Assert.assertEquals(original.get(i), reloaded.get(i));
+            }
+            Assert.assertTrue(index.estimatedMemoryUsage() > 0 || indexType == BlackLabIndex.IndexType.EXTERNAL_FILES);
+        } finally {
+            dedicated.close();
+        }
+    }
 }
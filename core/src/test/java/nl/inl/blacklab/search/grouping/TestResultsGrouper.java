@@ -12,6 +12,7 @@ import nl.inl.blacklab.resultproperty.HitPropertyDocumentId;
 import nl.inl.blacklab.resultproperty.PropertyValueInt;
 import nl.inl.blacklab.search.results.HitGroup;
 import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.HitGroupsIncremental;
 import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.Results;
@@ -21,15 +22,19 @@ public class TestResultsGrouper {
     final int[] start = { 1, 2, 3, 4, 5, 6 };
     final int[] end   = { 7, 8, 9, 10, 11, 12 };
 
-    @Test
-    public void testGrouper() {
+    private Hits createHits() {
         MockBlackLabIndex index = new MockBlackLabIndex();
-        
+
         IndexSearcher indexSearcher = Mockito.mock(IndexSearcher.class);
         Mockito.when(indexSearcher.getSimilarity()).thenReturn(new BM25Similarity());
 
         index.setIndexSearcher(indexSearcher);
-        Hits hits = Hits.list(QueryInfo.create(index), doc, start, end);
+        return Hits.list(QueryInfo.create(index), doc, start, end);
+    }
+
+    @Test
+    public void testGrouper() {
+        Hits hits = createHits();
         HitProperty crit = new HitPropertyDocumentId();
         HitGroups grouper = hits.group(crit, Results.NO_LIMIT);
 
@@ -46,4 +51,33 @@ public class TestResultsGrouper {
         PropertyValueInt three = new PropertyValueInt(3);
         Assert.assertEquals(1, grouper.get(three).size());
     }
+
+    @Test
+    public void testIncrementalGrouper() {
+        Hits hits = createHits();
+        HitProperty crit = new HitPropertyDocumentId();
+        HitGroupsIncremental incremental = new HitGroupsIncremental(hits, crit, 2);
+
+        // Nothing grouped yet
+        HitGroups snapshot = incremental.snapshot();
+        Assert.assertEquals(0, snapshot.size());
+        Assert.assertFalse(snapshot.hitsStats().done());
+
+        // Same groups as regular grouping, but only 2 hits stored per group
+        HitGroups groups = incremental.run();
+        HitGroups expected = hits.group(crit, Results.NO_LIMIT);
+        Assert.assertEquals(expected.size(), groups.size());
+        for (HitGroup group: expected) {
+            Assert.assertEquals(group.size(), groups.get(group.identity()).size());
+            Assert.assertEquals(Math.min(2, group.size()), groups.get(group.identity()).storedResults().size());
+        }
+        Assert.assertTrue(groups.hitsStats().done());
+
+        // A snapshot now has all groups, but no hits
+        snapshot = incremental.snapshot();
+        Assert.assertEquals(3, snapshot.size());
+        Assert.assertEquals(3, snapshot.get(new PropertyValueInt(1)).size());
+        Assert.assertEquals(6, snapshot.hitsStats().processedSoFar());
+        Assert.assertFalse(snapshot.hitsStats().done());
+    }
 }
@@ -0,0 +1,63 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.TestUtil;
+import nl.inl.blacklab.mocks.MockSpans;
+import nl.inl.blacklab.mocks.MockSpansInBuckets;
+
+public class TestSpansInBucketsPerDocumentSorted {
+
+    private static SpansInBuckets sorted(boolean sortByStartPoint) {
+        int[] doc = { 1, 1, 1, 2, 2, 2 };
+        int[] start = { 1, 2, 3, 1, 1, 4 };
+        int[] end = { 9, 3, 5, 6, 2, 5 };
+        BLSpans spans = new MockSpans(doc, start, end);
+        return new SpansInBucketsPerDocumentSorted(spans, sortByStartPoint);
+    }
+
+    @Test
+    public void testSortByStartPoint() throws IOException {
+        SpansInBuckets exp = MockSpansInBuckets.fromLists(
+                new int[] { 1, 2 },
+                new int[] { 0, 3 },
+                new int[] { 1, 2, 3, 1, 1, 4 },
+                new int[] { 9, 3, 5, 2, 6, 5 });
+        TestUtil.assertEquals(exp, sorted(true));
+    }
+
+    @Test
+    public void testSortByEndPoint() throws IOException {
+        SpansInBuckets exp = MockSpansInBuckets.fromLists(
+                new int[] { 1, 2 },
+                new int[] { 0, 3 },
+                new int[] { 2, 3, 1, 1, 4, 1 },
+                new int[] { 3, 5, 9, 2, 5, 6 });
+        TestUtil.assertEquals(exp, sorted(false));
+    }
+
+    @Test
+    public void testLargeBucket() throws IOException {
+        // More hits than the initial buffer capacity, in reverse end point order
+        int n = SpansInBuckets.LIST_INITIAL_CAPACITY * 3;
+        int[] doc = new int[n];
+        int[] start = new int[n];
+        int[] end = new int[n];
+        for (int i = 0; i < n; i++) {
+            doc[i] = 1;
+            start[i] = i;
+            end[i] = 2 * n - i;
+        }
+        SpansInBuckets spans = new SpansInBucketsPerDocumentSorted(new MockSpans(doc, start, end), false);
+        Assert.assertEquals(1, spans.nextDoc());
+        Assert.assertEquals(1, spans.nextBucket());
+        Assert.assertEquals(n, spans.bucketSize());
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(n - 1 - i, spans.startPosition(i));
+            Assert.assertEquals(n + 1 + i, spans.endPosition(i));
+        }
+    }
+}
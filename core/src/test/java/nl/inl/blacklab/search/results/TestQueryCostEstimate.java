@@ -0,0 +1,62 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestQueryCostEstimate {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private QueryCostEstimate estimate(String cql, Query filter) throws InvalidQuery, IOException {
+        BlackLabIndex index = testIndex.index();
+        QueryInfo queryInfo = QueryInfo.create(index);
+        BLSpanQuery query = CorpusQueryLanguageParser.parse(cql).toQuery(queryInfo, filter);
+        query.setQueryInfo(queryInfo);
+        return QueryCostEstimate.estimate(index, query);
+    }
+
+    @Test
+    public void testTerm() throws InvalidQuery, IOException {
+        QueryCostEstimate estimate = estimate("\"the\"", null);
+        Assert.assertEquals(4, estimate.hits());
+        Assert.assertEquals(1.0, estimate.filterSelectivity(), 0.0001);
+    }
+
+    @Test
+    public void testFiltered() throws InvalidQuery, IOException {
+        // Only 1 of 4 documents matches the filter
+        QueryCostEstimate estimate = estimate("\"the\"", new TermQuery(new Term("title", "star")));
+        Assert.assertEquals(0.25, estimate.filterSelectivity(), 0.0001);
+        Assert.assertEquals(1, estimate.hits());
+
+        // The second time, the fraction of documents matching the filter is remembered
+        estimate = estimate("\"the\"", new TermQuery(new Term("title", "star")));
+        Assert.assertEquals(0.25, estimate.filterSelectivity(), 0.0001);
+    }
+
+    @Test
+    public void testNoHits() throws InvalidQuery, IOException {
+        Assert.assertEquals(0, estimate("\"nosuchword\"", null).hits());
+    }
+}
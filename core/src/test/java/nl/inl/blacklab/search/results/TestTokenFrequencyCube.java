@@ -0,0 +1,125 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestTokenFrequencyCube {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<BlackLabIndex.IndexType> typeToUse() {
+        return List.of(BlackLabIndex.IndexType.EXTERNAL_FILES, BlackLabIndex.IndexType.INTEGRATED);
+    }
+
+    @Parameterized.Parameter
+    public BlackLabIndex.IndexType indexType;
+
+    private TestIndex testIndex;
+
+    private Directory dir;
+
+    private TokenFrequencyCube cube;
+
+    private Terms terms;
+
+    @Before
+    public void setUp() throws IOException {
+        testIndex = TestIndex.get(indexType);
+        BlackLabIndex index = testIndex.index();
+        dir = FSDirectory.open(index.indexDirectory().toPath());
+        cube = openCube();
+        terms = index.annotationForwardIndex(cube.annotation()).terms();
+    }
+
+    private TokenFrequencyCube openCube() throws IOException {
+        return openCube(true);
+    }
+
+    private TokenFrequencyCube openCube(boolean build) throws IOException {
+        BlackLabIndex index = testIndex.index();
+        Annotation word = index.mainAnnotatedField().annotation("word");
+        long indexVersion = ((DirectoryReader) index.reader()).getVersion();
+        return TokenFrequencyCube.open(index, dir, indexVersion, word, MatchSensitivity.INSENSITIVE, List.of("title"),
+                build);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cube.close();
+        dir.close();
+        testIndex.close();
+    }
+
+    private List<Integer> docs(int... docNumbers) {
+        List<Integer> docIds = new ArrayList<>();
+        for (int docNumber: docNumbers)
+            docIds.add(testIndex.getDocIdForDocNumber(docNumber));
+        return docIds;
+    }
+
+    private static long totalHits(TokenFrequencyCube cube) {
+        AtomicLong hits = new AtomicLong();
+        cube.forEachGroup((tuple, termId, sortPosition, h, d) -> hits.addAndGet(h));
+        return hits.get();
+    }
+
+    @Test
+    public void testTotals() {
+        long expected = 0;
+        for (int length: TestIndex.DOC_LENGTHS_TOKENS)
+            expected += length;
+        Assert.assertEquals(expected, totalHits(cube));
+    }
+
+    @Test
+    public void testSubset() throws IOException {
+        Map<String, Long> hits = new HashMap<>();
+        cube.forEachGroup(docs(1), (tuple, termId, sortPosition, h, d) -> {
+            Assert.assertEquals(1, d);
+            hits.put(terms.get(termId), h);
+        });
+        Assert.assertEquals(Map.of("noot", 3L, "mier", 4L, "aap", 5L), hits);
+    }
+
+    @Test
+    public void testSubsetSubtractingExcludedDocs() throws IOException {
+        // Most documents are included, so this subtracts the excluded one from the totals
+        AtomicLong hits = new AtomicLong();
+        cube.forEachGroup(docs(1, 2, 3), (tuple, termId, sortPosition, h, d) -> {
+            Assert.assertNotEquals(testIndex.getDocIdForDocNumber(0), cube.representativeDoc(tuple));
+            hits.addAndGet(h);
+        });
+        Assert.assertEquals(TestIndex.DOC_LENGTHS_TOKENS[1] + TestIndex.DOC_LENGTHS_TOKENS[2] +
+                TestIndex.DOC_LENGTHS_TOKENS[3], hits.get());
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        long expected = totalHits(cube);
+        try (TokenFrequencyCube reopened = openCube(false)) {
+            Assert.assertNotNull(reopened); // data file was written by setUp
+            Assert.assertEquals(expected, totalHits(reopened));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package nl.inl.blacklab.searches;
+
+import java.util.Collection;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultsStats;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.results.TermHitCounter;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestSearchCountFromPostings {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private BLSpanQuery query(String pattern, Query filter) throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        return CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index), filter);
+    }
+
+    private void assertSameCounts(String pattern, Query filter, SearchSettings settings) throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        Hits hits = index.find(query(pattern, filter), settings);
+        ResultsStats expectedHits = hits.hitsStats();
+        ResultsStats expectedDocs = hits.docsStats();
+        expectedHits.countedTotal(); // wait until done
+
+        SearchHits search = index.search(index.mainAnnotatedField(), false).find(query(pattern, filter), settings);
+        ResultsStats actualHits = search.hitCount().execute();
+        ResultsStats actualDocs = search.docCount().execute();
+        Assert.assertEquals(expectedHits.processedTotal(), actualHits.processedTotal());
+        Assert.assertEquals(expectedHits.countedTotal(), actualHits.countedTotal());
+        Assert.assertEquals(expectedHits.maxStats(), actualHits.maxStats());
+        if (!expectedHits.maxStats().hitsCountedExceededMaximum()) {
+            // (if we stopped counting, which docs were counted depends on the order hits were found in)
+            Assert.assertEquals(expectedDocs.countedTotal(), actualDocs.countedTotal());
+        }
+        Assert.assertEquals(expectedHits.countedTotal(), search.count().execute().countedTotal());
+    }
+
+    private void assertCountable(String pattern, Query filter) throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        BLSpanQuery query = query(pattern, filter);
+        Assert.assertTrue(TermHitCounter.isCandidate(query));
+        BLSpanQuery rewritten = index.explain(query).rewrittenQuery();
+        Assert.assertNotNull(TermHitCounter.forQuery(index, rewritten));
+    }
+
+    @Test
+    public void testTerm() throws InvalidQuery {
+        assertCountable("'the'", null);
+        assertSameCounts("'the'", null, SearchSettings.defaults());
+        assertSameCounts("'noSuchWord'", null, SearchSettings.defaults());
+    }
+
+    @Test
+    public void testOr() throws InvalidQuery {
+        assertCountable("'the' | 'fox'", null);
+        assertSameCounts("'the' | 'fox'", null, SearchSettings.defaults());
+        assertSameCounts("'b.*'", null, SearchSettings.defaults());
+    }
+
+    @Test
+    public void testFiltered() throws InvalidQuery {
+        Query filter = new TermQuery(new Term("title", "star"));
+        assertCountable("'the'", filter);
+        assertSameCounts("'the'", filter, SearchSettings.defaults());
+        assertSameCounts("'the' | 'fox'", filter, SearchSettings.defaults());
+    }
+
+    @Test
+    public void testLimits() throws InvalidQuery {
+        assertSameCounts("'the'", null, SearchSettings.get(2, 3));
+        assertSameCounts("'the' | 'fox'", null, SearchSettings.get(1, 100));
+    }
+
+    @Test
+    public void testNotCountable() throws InvalidQuery {
+        Assert.assertFalse(TermHitCounter.isCandidate(query("'the' 'quick'", null)));
+        assertSameCounts("'the' 'quick'", null, SearchSettings.defaults());
+    }
+}
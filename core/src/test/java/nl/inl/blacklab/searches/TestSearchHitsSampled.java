@@ -0,0 +1,124 @@
+package nl.inl.blacklab.searches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SampleParameters;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.textpattern.TextPatternAnyToken;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestSearchHitsSampled {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private BlackLabIndex index;
+
+    private List<String> allHits;
+
+    @Before
+    public void setUp() throws InvalidQuery {
+        index = testIndex.index();
+        allHits = hitList(search().execute());
+    }
+
+    private SearchHits search() {
+        return search(null);
+    }
+
+    private SearchHits search(SearchSettings settings) {
+        BLSpanQuery query = new TextPatternAnyToken(1, 1).toQuery(QueryInfo.create(index));
+        return index.search(index.mainAnnotatedField(), false).find(query, settings);
+    }
+
+    private Hits sample(SampleParameters parameters) throws InvalidQuery {
+        return search().sample(parameters).execute();
+    }
+
+    private static List<String> hitList(Hits hits) {
+        List<String> result = new ArrayList<>();
+        for (Hit hit: hits)
+            result.add(hit.doc() + ":" + hit.start() + "-" + hit.end());
+        // (hits from different segments may be interleaved differently each time)
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testStreamingFixedNumber() throws InvalidQuery {
+        SampleParameters parameters = SampleParameters.fixedNumber(10, 42).withMode(SampleParameters.Mode.STREAMING);
+        Hits hits = sample(parameters);
+        List<String> sample = hitList(hits);
+        Assert.assertEquals(10, sample.size());
+        Assert.assertTrue(allHits.containsAll(sample));
+        Assert.assertTrue(hits.isSample());
+        Assert.assertEquals(10, hits.hitsStats().countedTotal());
+
+        // Same seed, same sample
+        Assert.assertEquals(sample, hitList(sample(parameters)));
+    }
+
+    @Test
+    public void testStreamingFixedNumberWithMaxCount() throws InvalidQuery {
+        // Only part of the hits is considered; that part must not depend on thread scheduling
+        SearchSettings settings = SearchSettings.defaults().withMaxHitsToCount(allHits.size() / 2);
+        SampleParameters parameters = SampleParameters.fixedNumber(5, 42).withMode(SampleParameters.Mode.STREAMING);
+        List<String> sample = hitList(search(settings).sample(parameters).execute());
+        Assert.assertEquals(5, sample.size());
+        for (int i = 0; i < 5; i++)
+            Assert.assertEquals(sample, hitList(search(settings).sample(parameters).execute()));
+    }
+
+    @Test
+    public void testStreamingFixedNumberMoreThanTotal() throws InvalidQuery {
+        SampleParameters parameters = SampleParameters.fixedNumber(100, 1).withMode(SampleParameters.Mode.STREAMING);
+        Assert.assertEquals(allHits.size(), hitList(sample(parameters)).size());
+    }
+
+    @Test
+    public void testStreamingPercentage() throws InvalidQuery {
+        SampleParameters none = SampleParameters.percentage(0, 1).withMode(SampleParameters.Mode.STREAMING);
+        Assert.assertEquals(0, sample(none).size());
+        SampleParameters all = SampleParameters.percentage(1, 1).withMode(SampleParameters.Mode.STREAMING);
+        Assert.assertEquals(allHits, hitList(sample(all)));
+
+        SampleParameters half = SampleParameters.percentage(0.5, 1337).withMode(SampleParameters.Mode.STREAMING);
+        List<String> sample = hitList(sample(half));
+        Assert.assertTrue(allHits.containsAll(sample));
+        Assert.assertEquals(sample, hitList(sample(half)));
+    }
+
+    @Test
+    public void testDocuments() throws InvalidQuery {
+        SampleParameters none = SampleParameters.percentage(0, 1).withMode(SampleParameters.Mode.DOCUMENTS);
+        Assert.assertEquals(0, sample(none).size());
+        SampleParameters all = SampleParameters.percentage(1, 1).withMode(SampleParameters.Mode.DOCUMENTS);
+        Assert.assertEquals(allHits, hitList(sample(all)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDocumentsRequiresPercentage() {
+        SampleParameters.fixedNumber(10, 1).withMode(SampleParameters.Mode.DOCUMENTS);
+    }
+}
@@ -11,6 +11,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 
+import nl.inl.blacklab.config.BLConfigIndexing;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
@@ -48,7 +49,19 @@ public class TestIndex {
     private static TestIndex testIndexExternalPre;
 
     public static TestIndex get(IndexType indexType) {
-        return new TestIndex(false, indexType);
+        return new TestIndex(false, indexType, null);
+    }
+
+    /**
+     * Create an integrated test index that stores the boundaries of the specified tags.
+     *
+     * Other test indexes use the default configuration, which doesn't store any.
+     *
+     * @param boundaryTags tags to store boundaries for
+     * @return the test index (close it when done)
+     */
+    public static TestIndex getWithBoundaryTags(List<String> boundaryTags) {
+        return new TestIndex(false, IndexType.INTEGRATED, boundaryTags);
     }
 
     private synchronized static TestIndex getPreindexed(IndexType indexType) {
@@ -69,8 +82,8 @@ public class TestIndex {
     public synchronized static TestIndex getReusable(IndexType indexType) {
         if (testIndexExternal == null) {
             // Instantiate reusable testindexes
-            testIndexExternal = new TestIndex(false, IndexType.EXTERNAL_FILES);
-            testIndexIntegrated = new TestIndex(false, IndexType.INTEGRATED);
+            testIndexExternal = new TestIndex(false, IndexType.EXTERNAL_FILES, null);
+            testIndexIntegrated = new TestIndex(false, IndexType.INTEGRATED, null);
             // Make sure files are cleaned up at the end
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 testIndexExternal.close();
@@ -83,7 +96,7 @@ public class TestIndex {
     }
 
     public static TestIndex getWithTestDelete(IndexType indexType) {
-        return new TestIndex(true, indexType);
+        return new TestIndex(true, indexType, null);
     }
 
     public static Collection<TestIndex> typesForTests() {
@@ -189,11 +202,17 @@ public class TestIndex {
     }
 
     /** Create a temporary index, delete the directory when finished */
-    private TestIndex(boolean testDelete, IndexType indexType) {
+    private TestIndex(boolean testDelete, IndexType indexType, List<String> boundaryTags) {
         // Get a temporary directory for our test index
         dir = UtilsForTesting.createBlackLabTestDir("TestIndex");
         indexDir = dir.file();
 
+        // Store tag boundaries while indexing, if requested (restore the global setting afterwards)
+        BLConfigIndexing indexingConfig = BlackLab.config().getIndexing();
+        List<String> defaultBoundaryTags = indexingConfig.getBoundaryTags();
+        if (boundaryTags != null)
+            indexingConfig.setBoundaryTags(boundaryTags);
+
         // Instantiate the BlackLab indexer, supplying our DocIndexer class
         try {
             BlackLabIndexWriter indexWriter = BlackLab.openForWriting(indexDir, true, TEST_FORMAT_NAME, null, indexType);
@@ -216,6 +235,7 @@ public class TestIndex {
             } finally {
                 // Finalize and close the index.
                 indexer.close();
+                indexingConfig.setBoundaryTags(defaultBoundaryTags);
             }
 
             // Create the BlackLab index object
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.codec;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -24,6 +25,7 @@ import org.apache.lucene.util.Accountables;
 
 import net.jcip.annotations.ThreadSafe;
 import nl.inl.blacklab.forwardindex.ForwardIndexSegmentReader;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
 
 /**
  * Adds forward index reading to default FieldsProducer.
@@ -55,6 +57,9 @@ public class BlackLab40PostingsReader extends BlackLabPostingsReader {
     /** The forward index */
     private final SegmentForwardIndex forwardIndex;
 
+    /** The stored inline tag boundaries, or null if this segment doesn't have them */
+    private final SegmentTagBoundaries tagBoundaries;
+
     /** Terms object for each field */
     private final Map<String, BLTerms> termsPerField = new HashMap<>();
 
@@ -67,6 +72,12 @@ public class BlackLab40PostingsReader extends BlackLabPostingsReader {
         if (delegateFormatName == null)
             throw new IllegalStateException("Opening the segment FI should have set the delegate format name");
 
+        // Tag boundaries are optional (not stored if disabled, or in older indexes)
+        String tagBoundariesFileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix,
+                BlackLabPostingsFormat.TB_FIELDS_EXT);
+        boolean hasTagBoundaries = Arrays.asList(state.directory.listAll()).contains(tagBoundariesFileName);
+        tagBoundaries = hasTagBoundaries ? new SegmentTagBoundaries(this) : null;
+
         PostingsFormat delegatePostingsFormat = PostingsFormat.forName(delegateFormatName);
         delegateFieldsProducer = delegatePostingsFormat.fieldsProducer(state);
     }
@@ -79,6 +90,8 @@ public class BlackLab40PostingsReader extends BlackLabPostingsReader {
     @Override
     public void close() throws IOException {
         forwardIndex.close();
+        if (tagBoundaries != null)
+            tagBoundaries.close();
         delegateFieldsProducer.close();
     }
 
@@ -183,6 +196,18 @@ public class BlackLab40PostingsReader extends BlackLabPostingsReader {
         return forwardIndex.reader();
     }
 
+    /**
+     * Create a tag boundaries reader for this segment.
+     *
+     * The returned reader is not threadsafe and shouldn't be stored.
+     *
+     * @return tag boundaries segment reader, or null if this segment has no stored tag boundaries
+     */
+    @Override
+    public TagBoundariesSegmentReader tagBoundaries() {
+        return tagBoundaries == null ? null : tagBoundaries.reader();
+    }
+
 //    /**
 //     * Get the BlackLab40PostingsReader for the given leafreader.
 //     *
@@ -29,6 +29,7 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.BytesRef;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndexIntegrated;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
 import nl.inl.blacklab.search.lucene.RelationInfo;
@@ -148,6 +149,9 @@ public class BlackLab40PostingsWriter extends BlackLabPostingsWriter {
             allActions.add(new PWPluginForwardIndex(this));
             if (RelationInfo.writeRelationInfoToIndex())
                 allActions.add(new PWPluginRelationInfo(this));
+            List<String> boundaryTags = BlackLab.config().getIndexing().getBoundaryTags();
+            if (boundaryTags != null && !boundaryTags.isEmpty())
+                allActions.add(new PWPluginTagBoundaries(this, boundaryTags));
 
             // Write our postings extension information
 
@@ -44,6 +44,25 @@ public abstract class BlackLabPostingsFormat extends PostingsFormat {
      */
     static final String RI_RELATIONS_TMP_EXT = EXT_RELINFO_PREFIX + "relations.tmp";
 
+    /** Every tag boundaries file extension will be prefixed with this. */
+    private static final String EXT_TAG_BOUNDARIES_PREFIX = "bltb.";
+
+    /** Extension for the tag boundaries fields file. This stores the relations field name, the tag name
+     and the offset in the tag boundaries index file where the document offsets for this tag are stored. */
+    static final String TB_FIELDS_EXT = EXT_TAG_BOUNDARIES_PREFIX + "fields";
+
+    /** Extension for the tag boundaries index file, that stores the number of documents containing the tag,
+     then the document id, offset in the boundaries file and number of tags for each of those documents. */
+    static final String TB_INDEX_EXT = EXT_TAG_BOUNDARIES_PREFIX + "index";
+
+    /** Extension for the tag boundaries file, where the start and end position of each tag are stored. */
+    static final String TB_BOUNDARIES_EXT = EXT_TAG_BOUNDARIES_PREFIX + "boundaries";
+
+    /** Extension for the temporary tag boundaries file that will be converted later.
+     * The temporary file contains the unsorted boundaries for each tag term in each doc (and each field)
+     */
+    static final String TB_BOUNDARIES_TMP_EXT = EXT_TAG_BOUNDARIES_PREFIX + "boundaries.tmp";
+
     public BlackLabPostingsFormat(String name) {
         super(name);
     }
@@ -6,12 +6,15 @@ import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.store.IndexInput;
 
 import nl.inl.blacklab.forwardindex.ForwardIndexSegmentReader;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
 
 public abstract class BlackLabPostingsReader extends FieldsProducer {
     public abstract BlackLabStoredFieldsReader getStoredFieldsReader();
 
     public abstract ForwardIndexSegmentReader forwardIndex();
 
+    public abstract TagBoundariesSegmentReader tagBoundaries();
+
     @Override
     public abstract BLTerms terms(String s) throws IOException;
 
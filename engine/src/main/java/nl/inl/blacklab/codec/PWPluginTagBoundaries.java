@@ -0,0 +1,291 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import nl.inl.blacklab.analysis.PayloadUtils;
+import nl.inl.blacklab.search.BlackLabIndexIntegrated;
+import nl.inl.blacklab.search.indexmetadata.RelationUtil;
+import nl.inl.blacklab.search.lucene.RelationInfo;
+
+/**
+ * Hook into the postings writer to store the boundaries of configured inline tags (e.g. s, p).
+ *
+ * For each relations field, configured tag and document containing the tag, we store the start and
+ * end positions of all occurrences of the tag, sorted by start position. This allows us to quickly
+ * check if a hit is inside such a tag, or to expand a hit's context to the enclosing tag, without
+ * having to decode the relation payloads.
+ *
+ * While writing the postings, boundaries are streamed to a temporary file (a tag may consist of several
+ * terms, e.g. one per attribute value, so they arrive in chunks per term and document). Only the location
+ * of each chunk is kept in memory. When the segment is done, the chunks are combined and sorted per
+ * document and written to the tag boundaries files. The index file only contains records for documents
+ * that contain the tag.
+ */
+class PWPluginTagBoundaries implements PWPlugin {
+
+    /** Size of a record in the index file: document id (int), offset in boundaries file (long) and number of tags (int) */
+    static final long INDEX_RECORD_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /** Where to find the boundaries of one tag in one field in the temporary file */
+    private static class TagChunks {
+
+        final String luceneField;
+
+        final String tagName;
+
+        /** Document id for each chunk (one chunk per term and document) */
+        final IntArrayList docIds = new IntArrayList();
+
+        /** Offset in the temporary file for each chunk */
+        final LongArrayList offsets = new LongArrayList();
+
+        /** Number of tags in each chunk */
+        final IntArrayList counts = new IntArrayList();
+
+        TagChunks(String luceneField, String tagName) {
+            this.luceneField = luceneField;
+            this.tagName = tagName;
+        }
+    }
+
+    private final BlackLab40PostingsWriter postingsWriter;
+
+    /** Names of the inline tags to store boundaries for */
+    private final Set<String> tagNames;
+
+    /** Field name, tag name and offset in the index file for each tag we stored */
+    private final IndexOutput outFieldsFile;
+
+    /** For each tag: number of documents, then document id, offset in boundaries file and number of tags
+     *  for each document containing the tag */
+    private final IndexOutput outIndexFile;
+
+    /** Start and end position of each tag */
+    private final IndexOutput outBoundariesFile;
+
+    /** Unsorted start and end position of each tag, per term and document (converted in finalize()) */
+    private IndexOutput outTempBoundariesFile;
+
+    /** Chunks in the temporary file for each field and tag, in the order we encountered them */
+    private final List<TagChunks> allTagChunks = new ArrayList<>();
+
+    /** Buffer for sorting a document's boundaries, packed as (start << 32) | end */
+    private long[] sortBuffer = LongArrays.EMPTY_ARRAY;
+
+
+    // PER FIELD
+
+    private String currentField;
+
+    /** Does this field's payload start with a primary value indicator? */
+    private boolean payloadIndicatesPrimaryValues;
+
+    /** Chunks for each tag name in this field */
+    private Map<String, TagChunks> tagChunksInField;
+
+
+    // PER TERM
+
+    /** Chunks for the current term's tag, or null if we're not interested in this term */
+    private TagChunks currentTermChunks;
+
+
+    // PER DOCUMENT
+
+    private int currentDocId;
+
+    /** Offset of the current document's chunk in the temporary file */
+    private long currentDocOffset;
+
+    /** Number of tags in the current document's chunk */
+    private int currentDocCount;
+
+    private final RelationInfo relationInfo = RelationInfo.create();
+
+    PWPluginTagBoundaries(BlackLab40PostingsWriter postingsWriter, Collection<String> tagNames) throws IOException {
+        this.postingsWriter = postingsWriter;
+        this.tagNames = new TreeSet<>(tagNames);
+
+        outFieldsFile = postingsWriter.createOutput(BlackLabPostingsFormat.TB_FIELDS_EXT);
+        outIndexFile = postingsWriter.createOutput(BlackLabPostingsFormat.TB_INDEX_EXT);
+        outBoundariesFile = postingsWriter.createOutput(BlackLabPostingsFormat.TB_BOUNDARIES_EXT);
+        outTempBoundariesFile = postingsWriter.createOutput(BlackLabPostingsFormat.TB_BOUNDARIES_TMP_EXT);
+    }
+
+    @Override
+    public boolean startField(FieldInfo fieldInfo) {
+        if (!BlackLabIndexIntegrated.isRelationsField(fieldInfo))
+            return false;
+        currentField = fieldInfo.name;
+        payloadIndicatesPrimaryValues = BlackLabIndexIntegrated.isForwardIndexField(fieldInfo);
+        tagChunksInField = new LinkedHashMap<>();
+        return true;
+    }
+
+    @Override
+    public void startTerm(BytesRef term) {
+        currentTermChunks = null;
+        String termStr = term.utf8ToString();
+        // Each tag occurrence has exactly one term that is not an optimization term, so skip those
+        if (RelationUtil.isOptimizationTerm(termStr))
+            return;
+        String fullType = RelationUtil.fullTypeFromIndexedTerm(termStr);
+        if (!RelationUtil.classFromFullType(fullType).equals(RelationUtil.CLASS_INLINE_TAG))
+            return;
+        String tagName = RelationUtil.typeFromFullType(fullType);
+        if (tagNames.contains(tagName)) {
+            currentTermChunks = tagChunksInField.computeIfAbsent(tagName, __ -> {
+                TagChunks chunks = new TagChunks(currentField, tagName);
+                allTagChunks.add(chunks);
+                return chunks;
+            });
+        }
+    }
+
+    @Override
+    public void startDocument(int docId, int nOccurrences) {
+        if (currentTermChunks == null)
+            return;
+        currentDocId = docId;
+        currentDocOffset = outTempBoundariesFile.getFilePointer();
+        currentDocCount = 0;
+    }
+
+    @Override
+    public void termOccurrence(int position, BytesRef payload) throws IOException {
+        if (currentTermChunks == null || payload == null)
+            return;
+        byte[] bytes = BytesRef.deepCopyOf(payload).bytes;
+        ByteArrayDataInput dataInput = PayloadUtils.getDataInput(bytes, payloadIndicatesPrimaryValues);
+        relationInfo.deserialize(position, dataInput);
+        outTempBoundariesFile.writeInt(relationInfo.getSpanStart());
+        outTempBoundariesFile.writeInt(relationInfo.getSpanEnd());
+        currentDocCount++;
+    }
+
+    @Override
+    public void endDocument() {
+        if (currentTermChunks == null || currentDocCount == 0)
+            return;
+        currentTermChunks.docIds.add(currentDocId);
+        currentTermChunks.offsets.add(currentDocOffset);
+        currentTermChunks.counts.add(currentDocCount);
+    }
+
+    @Override
+    public void endTerm() {
+        currentTermChunks = null;
+    }
+
+    @Override
+    public void endField() {
+        tagChunksInField = null;
+        currentField = null;
+    }
+
+    @Override
+    public void finalize() throws IOException {
+        CodecUtil.writeFooter(outTempBoundariesFile);
+        outTempBoundariesFile.close();
+        outTempBoundariesFile = null;
+
+        try (IndexInput inTempBoundariesFile = postingsWriter.openInput(BlackLabPostingsFormat.TB_BOUNDARIES_TMP_EXT)) {
+            // For each field and tag we found...
+            for (TagChunks chunks: allTagChunks) {
+                outFieldsFile.writeString(chunks.luceneField);
+                outFieldsFile.writeString(chunks.tagName);
+                outFieldsFile.writeLong(outIndexFile.getFilePointer());
+                writeTag(chunks, inTempBoundariesFile);
+            }
+        } finally {
+            // Clean up after ourselves
+            postingsWriter.deleteIndexFile(BlackLabPostingsFormat.TB_BOUNDARIES_TMP_EXT);
+        }
+
+        CodecUtil.writeFooter(outFieldsFile);
+        CodecUtil.writeFooter(outIndexFile);
+        CodecUtil.writeFooter(outBoundariesFile);
+    }
+
+    /**
+     * Write the sorted boundaries per document for a tag, and the index records to find them.
+     *
+     * @param chunks where to find the tag's boundaries in the temporary file
+     * @param inTempBoundariesFile temporary file
+     */
+    private void writeTag(TagChunks chunks, IndexInput inTempBoundariesFile) throws IOException {
+        // Chunks are in document order per term; bring the chunks for each document together
+        int numberOfChunks = chunks.docIds.size();
+        int[] order = new int[numberOfChunks];
+        for (int i = 0; i < numberOfChunks; i++)
+            order[i] = i;
+        IntArrays.mergeSort(order, (a, b) -> Integer.compare(chunks.docIds.getInt(a), chunks.docIds.getInt(b)));
+
+        int numberOfDocs = 0;
+        for (int i = 0; i < numberOfChunks; i++) {
+            if (i == 0 || chunks.docIds.getInt(order[i]) != chunks.docIds.getInt(order[i - 1]))
+                numberOfDocs++;
+        }
+        outIndexFile.writeInt(numberOfDocs);
+
+        // For each document containing the tag...
+        int i = 0;
+        while (i < numberOfChunks) {
+            int docId = chunks.docIds.getInt(order[i]);
+            int n = 0;
+            for (int j = i; j < numberOfChunks && chunks.docIds.getInt(order[j]) == docId; j++)
+                n += chunks.counts.getInt(order[j]);
+            sortBuffer = LongArrays.grow(sortBuffer, n);
+
+            // Read the document's boundaries from all its chunks
+            int k = 0;
+            for (; i < numberOfChunks && chunks.docIds.getInt(order[i]) == docId; i++) {
+                inTempBoundariesFile.seek(chunks.offsets.getLong(order[i]));
+                for (int c = 0; c < chunks.counts.getInt(order[i]); c++) {
+                    int start = inTempBoundariesFile.readInt();
+                    int end = inTempBoundariesFile.readInt();
+                    sortBuffer[k++] = ((long) start << 32) | end;
+                }
+            }
+
+            // Write sorted boundaries and record where to find them
+            // (positions are non-negative, so this sorts by start, then end)
+            Arrays.sort(sortBuffer, 0, n);
+            outIndexFile.writeInt(docId);
+            outIndexFile.writeLong(outBoundariesFile.getFilePointer());
+            outIndexFile.writeInt(n);
+            for (k = 0; k < n; k++) {
+                outBoundariesFile.writeInt((int) (sortBuffer[k] >>> 32));
+                outBoundariesFile.writeInt((int) sortBuffer[k]);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        outFieldsFile.close();
+        outIndexFile.close();
+        outBoundariesFile.close();
+        if (outTempBoundariesFile != null)
+            outTempBoundariesFile.close();
+    }
+}
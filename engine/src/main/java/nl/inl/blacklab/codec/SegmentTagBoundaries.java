@@ -0,0 +1,150 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.IndexInput;
+
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
+
+/**
+ * Manages read access to the stored inline tag boundaries for a single segment.
+ */
+@ThreadSafe
+public class SegmentTagBoundaries implements AutoCloseable {
+
+    /** Offset in the index file for each relations field and tag name */
+    private final Map<String, Map<String, Long>> indexOffsets = new HashMap<>();
+
+    /** Contains document id, offset in the boundaries file and number of tags for each field, tag and
+     *  document containing the tag */
+    private IndexInput _indexFile;
+
+    /** Contains the start and end position of each tag */
+    private IndexInput _boundariesFile;
+
+    public SegmentTagBoundaries(BlackLabPostingsReader postingsReader) throws IOException {
+        try (IndexInput fieldsFile = postingsReader.openIndexFile(BlackLabPostingsFormat.TB_FIELDS_EXT)) {
+            long size = fieldsFile.length();
+            while (fieldsFile.getFilePointer() < (size - CodecUtil.footerLength())) {
+                String luceneField = fieldsFile.readString();
+                String tagName = fieldsFile.readString();
+                long offset = fieldsFile.readLong();
+                indexOffsets.computeIfAbsent(luceneField, __ -> new HashMap<>()).put(tagName, offset);
+            }
+        }
+
+        _indexFile = postingsReader.openIndexFile(BlackLabPostingsFormat.TB_INDEX_EXT);
+        _boundariesFile = postingsReader.openIndexFile(BlackLabPostingsFormat.TB_BOUNDARIES_EXT);
+    }
+
+    private synchronized IndexInput getCloneOfIndexFile() {
+        // synchronized because clone() is not thread-safe
+        return _indexFile.clone();
+    }
+
+    private synchronized IndexInput getCloneOfBoundariesFile() {
+        // synchronized because clone() is not thread-safe
+        return _boundariesFile.clone();
+    }
+
+    @Override
+    public void close() {
+        try {
+            _indexFile.close();
+            _boundariesFile.close();
+            _indexFile = _boundariesFile = null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a new TagBoundariesSegmentReader on this segment.
+     * Though the reader is not threadsafe, a new instance is returned every time,
+     * so this function can be used from multiple threads.
+     */
+    public TagBoundariesSegmentReader reader() {
+        return new Reader();
+    }
+
+    /**
+     * A tag boundaries reader for a single segment.
+     *
+     * This can be used by a single thread to read from a segment.
+     * Not thread-safe because it contains state (file pointers).
+     */
+    @NotThreadSafe
+    public class Reader implements TagBoundariesSegmentReader {
+
+        private IndexInput _index;
+
+        private IndexInput _boundaries;
+
+        /** Returned by get(); reused for each document we read */
+        private final TagBoundaries tagBoundaries = new TagBoundaries();
+
+        private IndexInput index() {
+            if (_index == null)
+                _index = getCloneOfIndexFile();
+            return _index;
+        }
+
+        private IndexInput boundaries() {
+            if (_boundaries == null)
+                _boundaries = getCloneOfBoundariesFile();
+            return _boundaries;
+        }
+
+        private Long indexOffset(String luceneField, String tagName) {
+            Map<String, Long> offsetPerTag = indexOffsets.get(luceneField);
+            return offsetPerTag == null ? null : offsetPerTag.get(tagName);
+        }
+
+        @Override
+        public boolean has(String luceneField, String tagName) {
+            return indexOffset(luceneField, tagName) != null;
+        }
+
+        @Override
+        public TagBoundaries get(String luceneField, String tagName, int docId) {
+            Long indexOffset = indexOffset(luceneField, tagName);
+            if (indexOffset == null)
+                return null;
+            try {
+                // Binary search for the document's record (only documents containing the tag have one)
+                IndexInput index = index();
+                index.seek(indexOffset);
+                int numberOfDocs = index.readInt();
+                long recordsOffset = indexOffset + Integer.BYTES;
+                int min = 0, max = numberOfDocs - 1;
+                while (min <= max) {
+                    int i = (min + max) >>> 1;
+                    index.seek(recordsOffset + i * PWPluginTagBoundaries.INDEX_RECORD_SIZE);
+                    int recordDocId = index.readInt();
+                    if (recordDocId < docId) {
+                        min = i + 1;
+                    } else if (recordDocId > docId) {
+                        max = i - 1;
+                    } else {
+                        long offset = index.readLong();
+                        int n = index.readInt();
+                        IndexInput boundaries = boundaries();
+                        boundaries.seek(offset);
+                        tagBoundaries.read(boundaries, n);
+                        return tagBoundaries;
+                    }
+                }
+                return TagBoundaries.EMPTY;
+            } catch (IOException e) {
+                throw new BlackLabRuntimeException(e);
+            }
+        }
+    }
+}
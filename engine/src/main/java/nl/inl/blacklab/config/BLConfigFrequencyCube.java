@@ -0,0 +1,67 @@
+package nl.inl.blacklab.config;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precomputed token frequency aggregate ("frequency cube") to maintain for each index.
+ *
+ * Grouping all tokens by this annotation plus exactly these metadata fields can then be
+ * answered from the cube instead of scanning the forward index.
+ */
+public class BLConfigFrequencyCube {
+
+    /** Annotated field (empty for the main annotated field) */
+    private String field = "";
+
+    /** Annotation to count terms for */
+    private String annotation = "";
+
+    /** Sensitivity to group the annotation's terms with */
+    private String sensitivity = "insensitive";
+
+    /** Metadata fields to group on (may be empty) */
+    private List<String> metadata = Collections.emptyList();
+
+    public String getField() {
+        return field;
+    }
+
+    @SuppressWarnings("unused")
+    public void setField(String field) {
+        this.field = field == null ? "" : field;
+    }
+
+    public String getAnnotation() {
+        return annotation;
+    }
+
+    @SuppressWarnings("unused")
+    public void setAnnotation(String annotation) {
+        this.annotation = annotation;
+    }
+
+    public String getSensitivity() {
+        return sensitivity;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSensitivity(String sensitivity) {
+        this.sensitivity = sensitivity;
+    }
+
+    public List<String> getMetadata() {
+        return metadata;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMetadata(List<String> metadata) {
+        this.metadata = metadata == null ? Collections.emptyList() : metadata;
+    }
+
+    @Override
+    public String toString() {
+        return "frequency cube " + (field.isEmpty() ? "" : field + "/") + annotation + " (" + sensitivity + ") x " +
+                metadata;
+    }
+}
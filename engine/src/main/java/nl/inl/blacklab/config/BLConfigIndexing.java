@@ -1,5 +1,8 @@
 package nl.inl.blacklab.config;
 
+import java.util.Collections;
+import java.util.List;
+
 import nl.inl.blacklab.search.indexmetadata.IndexMetadataExternal;
 import nl.inl.util.DownloadCache;
 
@@ -22,8 +25,17 @@ public class BLConfigIndexing {
     
     int numberOfThreads = 2;
 
+    /** Split input files of at least this many MB and index the parts in parallel (0 = never split) */
+    int splitFilesLargerThanMegs = 0;
+
+    /** When splitting files, add documents to the index in file order? */
+    boolean preserveDocumentOrder = false;
+
     int maxNumberOfIndicesPerUser = 10;
 
+    /** Inline tags to store per-document boundaries for (integrated index only; none by default) */
+    List<String> boundaryTags = Collections.emptyList();
+
     public DownloadCache.Config downloadCacheConfig() {
         return new DownloadCache.Config() {
             @Override
@@ -108,6 +120,24 @@ public class BLConfigIndexing {
         this.numberOfThreads = numberOfThreads;
     }
 
+    public int getSplitFilesLargerThanMegs() {
+        return splitFilesLargerThanMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSplitFilesLargerThanMegs(int splitFilesLargerThanMegs) {
+        this.splitFilesLargerThanMegs = splitFilesLargerThanMegs;
+    }
+
+    public boolean isPreserveDocumentOrder() {
+        return preserveDocumentOrder;
+    }
+
+    @SuppressWarnings("unused")
+    public void setPreserveDocumentOrder(boolean preserveDocumentOrder) {
+        this.preserveDocumentOrder = preserveDocumentOrder;
+    }
+
     public int getMaxNumberOfIndicesPerUser() {
         return maxNumberOfIndicesPerUser;
     }
@@ -117,6 +147,15 @@ public class BLConfigIndexing {
         this.maxNumberOfIndicesPerUser = maxNumberOfIndicesPerUser;
     }
 
+    public List<String> getBoundaryTags() {
+        return boundaryTags;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBoundaryTags(List<String> boundaryTags) {
+        this.boundaryTags = boundaryTags;
+    }
+
     @SuppressWarnings("unused")
     public void setUserIndexMaxTokenCount(int maxTokenCount) {
         this.userIndexMaxTokenCount = maxTokenCount;
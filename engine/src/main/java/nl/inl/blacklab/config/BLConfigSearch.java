@@ -1,5 +1,8 @@
 package nl.inl.blacklab.config;
 
+import java.util.Collections;
+import java.util.List;
+
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
 import nl.inl.blacklab.search.results.ContextSize;
@@ -22,6 +25,98 @@ public class BLConfigSearch {
      */
     private boolean enableHugeResultSets = true;
 
+    /**
+     * Above how many hits should hits be stored off-heap, in compact (bit-packed) form?
+     *
+     * Hits up to this number are kept in regular on-heap lists; hits beyond it are stored
+     * in off-heap memory, to reduce heap usage and GC pauses for huge result sets.
+     * Only applies if enableHugeResultSets is true. -1 (the default) keeps all hits on-heap.
+     */
+    private long offHeapHitsThreshold = -1;
+
+    /**
+     * Token frequency aggregates to precompute for each index (in the background, after opening).
+     *
+     * Requests that group all tokens by one of these annotation and metadata combinations
+     * are answered from the precomputed aggregate instead of scanning the forward index.
+     */
+    private List<BLConfigFrequencyCube> frequencyCubes = Collections.emptyList();
+
+    /**
+     * Directory to store frequency cube data files in (in a subdirectory per index).
+     *
+     * Leave empty to store them in the index directory.
+     */
+    private String frequencyCubesDir = "";
+
+    /**
+     * Build frequency cubes that have no up-to-date data file (in the background, after opening)?
+     *
+     * Building reads the forward index of every document, so this is off by default;
+     * if off, only existing up-to-date data files are used.
+     */
+    private boolean buildFrequencyCubes = false;
+
+    /**
+     * How many documents' metadata to cache per index (for describing documents in results).
+     *
+     * Set to 0 to disable caching.
+     */
+    private long docMetadataCacheSize = 10_000;
+
+    /**
+     * Approximately how much memory (in megabytes) to use per index for caching
+     * the documents matching subcorpus filters.
+     *
+     * Set to 0 to disable caching.
+     */
+    private int subcorpusCacheSizeMegs = 50;
+
+    /**
+     * Directory to write snapshots of large sorted hit lists to, so they can be reused
+     * after they were evicted from the cache, after a restart or by another server
+     * sharing this directory.
+     *
+     * Leave empty to disable snapshots.
+     */
+    private String hitsSnapshotDir = "";
+
+    /**
+     * Minimum number of hits a sorted hit list must have to be written to a snapshot.
+     */
+    private long hitsSnapshotMinHits = 100_000;
+
+    /**
+     * Max. total size of the snapshot directory. If it grows larger, the least recently used
+     * snapshots are removed.
+     */
+    private long hitsSnapshotMaxSizeMegs = 10_000;
+
+    /**
+     * Snapshots that haven't been used for this long are removed (e.g. those for older versions of a corpus).
+     */
+    private int hitsSnapshotMaxAgeHours = 168;
+
+    /**
+     * Approximately how much memory (in MB) to use for keeping optimized and rewritten queries,
+     * so popular queries don't have to be rewritten (e.g. expanding wildcards against the terms list)
+     * for each search.
+     *
+     * Set to 0 to disable caching.
+     */
+    private int queryRewriteCacheSizeMegs = 20;
+
+    /**
+     * Max. number of background initializations (e.g. opening forward indexes) to run in parallel.
+     */
+    private int initializationThreads = 2;
+
+    /**
+     * Only run an additional initialization in parallel if at least this much heap memory
+     * (in megabytes) is free.
+     */
+    private int initializationMinFreeMemoryMegs = 500;
+
     public BLConfigCollator getCollator() {
         return collator;
     }
@@ -75,6 +170,123 @@ public class BLConfigSearch {
         this.enableHugeResultSets = enableHugeResultSets;
     }
 
+    public long getOffHeapHitsThreshold() {
+        return offHeapHitsThreshold;
+    }
+
+    @SuppressWarnings("unused")
+    public void setOffHeapHitsThreshold(long offHeapHitsThreshold) {
+        this.offHeapHitsThreshold = offHeapHitsThreshold;
+    }
+
+    public List<BLConfigFrequencyCube> getFrequencyCubes() {
+        return frequencyCubes;
+    }
+
+    @SuppressWarnings("unused")
+    public void setFrequencyCubes(List<BLConfigFrequencyCube> frequencyCubes) {
+        this.frequencyCubes = frequencyCubes == null ? Collections.emptyList() : frequencyCubes;
+    }
+
+    public String getFrequencyCubesDir() {
+        return frequencyCubesDir;
+    }
+
+    @SuppressWarnings("unused")
+    public void setFrequencyCubesDir(String frequencyCubesDir) {
+        this.frequencyCubesDir = frequencyCubesDir;
+    }
+
+    public boolean isBuildFrequencyCubes() {
+        return buildFrequencyCubes;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBuildFrequencyCubes(boolean buildFrequencyCubes) {
+        this.buildFrequencyCubes = buildFrequencyCubes;
+    }
+
+    public long getDocMetadataCacheSize() {
+        return docMetadataCacheSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setDocMetadataCacheSize(long docMetadataCacheSize) {
+        this.docMetadataCacheSize = docMetadataCacheSize;
+    }
+
+    public int getSubcorpusCacheSizeMegs() {
+        return subcorpusCacheSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSubcorpusCacheSizeMegs(int subcorpusCacheSizeMegs) {
+        this.subcorpusCacheSizeMegs = subcorpusCacheSizeMegs;
+    }
+
+    public String getHitsSnapshotDir() {
+        return hitsSnapshotDir;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHitsSnapshotDir(String hitsSnapshotDir) {
+        this.hitsSnapshotDir = hitsSnapshotDir;
+    }
+
+    public long getHitsSnapshotMinHits() {
+        return hitsSnapshotMinHits;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHitsSnapshotMinHits(long hitsSnapshotMinHits) {
+        this.hitsSnapshotMinHits = hitsSnapshotMinHits;
+    }
+
+    public long getHitsSnapshotMaxSizeMegs() {
+        return hitsSnapshotMaxSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHitsSnapshotMaxSizeMegs(long hitsSnapshotMaxSizeMegs) {
+        this.hitsSnapshotMaxSizeMegs = hitsSnapshotMaxSizeMegs;
+    }
+
+    public int getHitsSnapshotMaxAgeHours() {
+        return hitsSnapshotMaxAgeHours;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHitsSnapshotMaxAgeHours(int hitsSnapshotMaxAgeHours) {
+        this.hitsSnapshotMaxAgeHours = hitsSnapshotMaxAgeHours;
+    }
+
+    public int getQueryRewriteCacheSizeMegs() {
+        return queryRewriteCacheSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryRewriteCacheSizeMegs(int queryRewriteCacheSizeMegs) {
+        this.queryRewriteCacheSizeMegs = queryRewriteCacheSizeMegs;
+    }
+
+    public int getInitializationThreads() {
+        return initializationThreads;
+    }
+
+    @SuppressWarnings("unused")
+    public void setInitializationThreads(int initializationThreads) {
+        this.initializationThreads = initializationThreads;
+    }
+
+    public int getInitializationMinFreeMemoryMegs() {
+        return initializationMinFreeMemoryMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setInitializationMinFreeMemoryMegs(int initializationMinFreeMemoryMegs) {
+        this.initializationMinFreeMemoryMegs = initializationMinFreeMemoryMegs;
+    }
+
     /**
      * Apply the search configuration settings to an opened index.
      *
@@ -26,6 +26,25 @@ public interface AnnotationForwardIndex {
      */
     void initialize();
 
+    /**
+     * Free in-memory data (e.g. the terms list) to save memory.
+     *
+     * The data is reloaded automatically when it's needed again.
+     * Does nothing if this forward index doesn't support this.
+     */
+    default void unload() {
+        // not supported by default
+    }
+
+    /**
+     * Estimate how much heap memory this forward index uses.
+     *
+     * @return approximate size in bytes (0 if unknown or not loaded)
+     */
+    default long estimatedMemoryUsage() {
+        return 0;
+    }
+
     /**
      * Retrieve one or more parts from the specified content, in the form of token
      * ids.
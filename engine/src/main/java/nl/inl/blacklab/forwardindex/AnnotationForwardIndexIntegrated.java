@@ -49,9 +49,8 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
     /** Collators to use for comparisons */
     private final Collators collators;
 
-    private Terms terms;
-
-    private boolean initialized = false;
+    /** Our terms, or null if not loaded (yet, or again after unload()) */
+    private volatile TermsIntegrated terms;
 
     /** Index of segments by their doc base (the number to add to get global docId) */
     private final LeafReaderLookup leafReaderLookup;
@@ -72,32 +71,47 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
     }
 
     @Override
-    public synchronized void initialize() {
-        if (initialized) {
-            return;
-        }
-
-        try {
-            this.terms = new TermsIntegrated(collators, indexReader, luceneField);
-            this.initialized = true;
-        } catch (InterruptedException e) {
-            throw new InterruptedSearch("Intialization of Forward Index was interrupted", e);
-        }
+    public void initialize() {
+        terms();
     }
 
     @Override
     public Terms terms() {
-        initialize();
+        TermsIntegrated t = terms;
+        return t == null ? loadTerms() : t;
+    }
+
+    private synchronized TermsIntegrated loadTerms() {
+        if (terms == null) {
+            try {
+                terms = new TermsIntegrated(collators, indexReader, luceneField, this::terms);
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch("Intialization of Forward Index was interrupted", e);
+            }
+        }
         return terms;
     }
 
+    @Override
+    public synchronized void unload() {
+        // Anyone still using the terms keeps a reference; the next call to terms() reloads them.
+        // (term ids are assigned in index order, so the reloaded terms use the same ids)
+        terms = null;
+    }
+
+    @Override
+    public long estimatedMemoryUsage() {
+        TermsIntegrated t = terms;
+        return t == null ? 0 : t.estimatedMemoryUsage();
+    }
+
     @Override
     public List<int[]> retrievePartsInt(int docId, int[] start, int[] end) {
-        initialize();
+        Terms t = terms();
         LeafReaderContext lrc = leafReaderLookup.forId(docId);
         ForwardIndexSegmentReader fi = BlackLabIndexIntegrated.forwardIndex(lrc);
         List<int[]> segmentResults = fi.retrieveParts(luceneField, docId - lrc.docBase, start, end);
-        return terms.segmentIdsToGlobalIds(lrc.ord, segmentResults);
+        return t.segmentIdsToGlobalIds(lrc.ord, segmentResults);
     }
 
     @Override
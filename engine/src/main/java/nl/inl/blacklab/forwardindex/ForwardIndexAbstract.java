@@ -3,7 +3,6 @@ package nl.inl.blacklab.forwardindex;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,6 +10,7 @@ import org.apache.lucene.store.AlreadyClosedException;
 
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.InitializationScheduler;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 
@@ -58,13 +58,14 @@ public abstract class ForwardIndexAbstract implements ForwardIndex {
         this.field = field;
 
         // Open forward indexes
-        ExecutorService executorService = index.blackLab().initializationExecutorService();
+        InitializationScheduler scheduler = index.blackLab().initializationScheduler();
         for (Annotation annotation: field.annotations()) {
             if (!annotation.hasForwardIndex())
                 continue;
             AnnotationForwardIndex afi = get(annotation);
-            // Automatically initialize forward index (in the background)
-            executorService.execute(() -> {
+            // Automatically initialize forward index (in the background).
+            // Keyed by the forward index, so a search that needs it can move it to the front of the queue.
+            scheduler.execute(afi, () -> {
                 try {
                     afi.initialize();
                 } catch (AlreadyClosedException|InterruptedSearch e) {
@@ -137,6 +138,8 @@ public abstract class ForwardIndexAbstract implements ForwardIndex {
         }
         if (afi == null)
             afi = openAnnotationForwardIndex(annotation, index);
+        else if (initialized)
+            index.blackLab().initializationScheduler().prioritize(afi); // we need it soon
         return afi;
     }
 
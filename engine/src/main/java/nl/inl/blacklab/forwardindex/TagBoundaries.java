@@ -0,0 +1,152 @@
+package nl.inl.blacklab.forwardindex;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.DataInput;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Start and end positions of all occurrences of an inline tag (e.g. s, p) in a document.
+ *
+ * Tags are sorted by start position, then by end position.
+ *
+ * A {@link TagBoundariesSegmentReader} reuses the same instance for every document it reads,
+ * so the contents are only valid until the next call to its get method.
+ */
+@NotThreadSafe
+public class TagBoundaries {
+
+    /** No tags in this document */
+    public static final TagBoundaries EMPTY = new TagBoundaries(new int[0], new int[0]);
+
+    /** Number of tags (our arrays may be larger if we're reused) */
+    private int size;
+
+    /** Start position of each tag */
+    private int[] starts;
+
+    /** End position of each tag */
+    private int[] ends;
+
+    /** Maximum end position of the tags up to and including each index.
+     *  Used to find enclosing tags with a binary search, even if tags are nested. */
+    private int[] maxEnds;
+
+    /**
+     * Construct empty tag boundaries, to be filled using {@link #read(DataInput, int)}.
+     */
+    public TagBoundaries() {
+        this(new int[0], new int[0]);
+    }
+
+    /**
+     * Construct the tag boundaries.
+     *
+     * @param starts start positions, sorted
+     * @param ends end positions, corresponding to the start positions
+     */
+    public TagBoundaries(int[] starts, int[] ends) {
+        if (starts.length != ends.length)
+            throw new IllegalArgumentException("starts and ends must be of equal length");
+        this.starts = starts;
+        this.ends = ends;
+        maxEnds = new int[ends.length];
+        size = starts.length;
+        calculateMaxEnds();
+    }
+
+    /**
+     * Replace our contents with tags read from a file.
+     *
+     * Our arrays are reused if they're large enough.
+     *
+     * @param in where to read the tags, as (start, end) int pairs, sorted
+     * @param n number of tags to read
+     */
+    public void read(DataInput in, int n) throws IOException {
+        if (starts.length < n) {
+            int capacity = Math.max(n, starts.length * 2);
+            starts = new int[capacity];
+            ends = new int[capacity];
+            maxEnds = new int[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            starts[i] = in.readInt();
+            ends[i] = in.readInt();
+        }
+        size = n;
+        calculateMaxEnds();
+    }
+
+    private void calculateMaxEnds() {
+        int maxEnd = -1;
+        for (int i = 0; i < size; i++) {
+            maxEnd = Math.max(maxEnd, ends[i]);
+            maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * Number of tags in the document.
+     *
+     * @return number of tags
+     */
+    public int size() {
+        return size;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Find the first tag (in sort order) that encloses the specified span.
+     *
+     * If there's several nested tags enclosing the span, this will be the one
+     * starting first (and if these start at the same position, the shortest one).
+     *
+     * @param start start of the span
+     * @param end end of the span
+     * @return index of the enclosing tag, or -1 if there is none
+     */
+    public int findEnclosing(int start, int end) {
+        // Find the last tag starting at or before our start position
+        int last = lastStartingAtOrBefore(start);
+        if (last < 0 || maxEnds[last] < end)
+            return -1;
+
+        // The first tag (up to last) whose end is at or after our end position encloses us
+        int min = 0, max = last;
+        while (min < max) {
+            int i = (min + max) >>> 1;
+            if (maxEnds[i] >= end)
+                max = i;
+            else
+                min = i + 1;
+        }
+        return min;
+    }
+
+    /**
+     * Find the last tag starting at or before the specified position.
+     *
+     * @param position position
+     * @return index of the tag, or -1 if all tags start after the position
+     */
+    public int lastStartingAtOrBefore(int position) {
+        int min = 0, max = size - 1;
+        while (min <= max) {
+            int i = (min + max) >>> 1;
+            if (starts[i] <= position)
+                min = i + 1;
+            else
+                max = i - 1;
+        }
+        return max;
+    }
+}
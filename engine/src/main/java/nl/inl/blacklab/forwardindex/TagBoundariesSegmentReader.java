@@ -0,0 +1,34 @@
+package nl.inl.blacklab.forwardindex;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Provides read access to the stored inline tag boundaries in a single Lucene index segment.
+ *
+ * Implementations are not intended to be threadsafe, but to be used by a single
+ * thread.
+ */
+@NotThreadSafe
+public interface TagBoundariesSegmentReader {
+
+    /**
+     * Get the boundaries of an inline tag in a document.
+     *
+     * The returned object may be reused by the next call, so it is only valid until then.
+     *
+     * @param luceneField relations field, e.g. "contents%_relation@s"
+     * @param tagName inline tag name, e.g. "s"
+     * @param docId segment-local document id
+     * @return tag boundaries, or null if boundaries weren't stored for this tag
+     */
+    TagBoundaries get(String luceneField, String tagName, int docId);
+
+    /**
+     * Were boundaries stored for this tag in this segment?
+     *
+     * @param luceneField relations field, e.g. "contents%_relation@s"
+     * @param tagName inline tag name, e.g. "s"
+     * @return true if boundaries are available
+     */
+    boolean has(String luceneField, String tagName);
+}
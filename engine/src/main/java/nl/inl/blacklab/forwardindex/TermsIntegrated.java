@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -79,8 +80,17 @@ public class TermsIntegrated extends TermsReaderAbstract {
      */
     private final Map<Integer, int[]> segmentToGlobalTermIds = new HashMap<>();
 
-    public TermsIntegrated(Collators collators, IndexReader indexReader, String luceneField)
-            throws InterruptedException {
+    /**
+     * Read the terms from the index.
+     *
+     * @param collators collators to sort terms with
+     * @param indexReader index to read terms from
+     * @param luceneField field to read terms from
+     * @param termsForSegments how the segments should get the global terms object. Usually the forward index,
+     *                         which may unload and reload the terms; see {@link BLTerms#setTermsIntegrated(Supplier, int)}.
+     */
+    public TermsIntegrated(Collators collators, IndexReader indexReader, String luceneField,
+            Supplier<Terms> termsForSegments) throws InterruptedException {
         super(collators);
 
         try (BlockTimer bt = BlockTimer.create(LOG_TIMINGS, "Determine " + luceneField + " terms list")) {
@@ -90,7 +100,7 @@ public class TermsIntegrated extends TermsReaderAbstract {
             // Read the terms from all the different segments and determine global term ids
             Pair<TermInIndex[], String[]> termAndStrings;
             try (BlockTimer bt2 = BlockTimer.create(LOG_TIMINGS, luceneField + ": readTermsFromIndex")) {
-                termAndStrings = readTermsFromIndex();
+                termAndStrings = readTermsFromIndex(termsForSegments);
             }
             TermInIndex[] terms = termAndStrings.getLeft();
             String[] termStrings = termAndStrings.getRight();
@@ -143,7 +153,7 @@ public class TermsIntegrated extends TermsReaderAbstract {
         }
     }
 
-    private Pair<TermInIndex[], String[]> readTermsFromIndex() throws InterruptedException {
+    private Pair<TermInIndex[], String[]> readTermsFromIndex(Supplier<Terms> termsForSegments) throws InterruptedException {
         // Globally unique terms that occur in our index (sorted by global id)
         Map<String, TermInIndex> globalTermIds = new LinkedHashMap<>();
 
@@ -151,7 +161,7 @@ public class TermsIntegrated extends TermsReaderAbstract {
         // Probably because reading from a single file sequentially is more efficient than alternating between
         // several files..?
         for (LeafReaderContext l: indexReader.leaves()) {
-            readTermsFromSegment(globalTermIds, l);
+            readTermsFromSegment(globalTermIds, l, termsForSegments);
         }
 
         TermInIndex[] terms = globalTermIds.values().toArray(TermInIndex[]::new);
@@ -159,8 +169,8 @@ public class TermsIntegrated extends TermsReaderAbstract {
         return Pair.of(terms, termStrings);
     }
 
-    private void readTermsFromSegment(Map<String, TermInIndex> globalTermIds, LeafReaderContext lrc)
-            throws InterruptedException {
+    private void readTermsFromSegment(Map<String, TermInIndex> globalTermIds, LeafReaderContext lrc,
+            Supplier<Terms> termsForSegments) throws InterruptedException {
         BLTerms segmentTerms;
         try {
             segmentTerms = (BLTerms) lrc.reader().terms(luceneField);
@@ -171,7 +181,7 @@ public class TermsIntegrated extends TermsReaderAbstract {
             // can happen if segment only contains index metadata doc
             return;
         }
-        segmentTerms.setTermsIntegrated(this, lrc.ord);
+        segmentTerms.setTermsIntegrated(termsForSegments, lrc.ord);
         TermsIntegratedSegment s = new TermsIntegratedSegment(BlackLabCodecUtil.getPostingsReader(lrc),
                 luceneField, lrc.ord);
 
@@ -253,4 +263,12 @@ public class TermsIntegrated extends TermsReaderAbstract {
         return id < 0 ? id : mapping[id];
     }
 
+    @Override
+    public long estimatedMemoryUsage() {
+        long size = super.estimatedMemoryUsage();
+        for (int[] mapping: segmentToGlobalTermIds.values())
+            size += (long) Integer.BYTES * mapping.length;
+        return size;
+    }
+
 }
@@ -129,6 +129,22 @@ public abstract class TermsReaderAbstract implements Terms {
         }
     }
 
+    /**
+     * Estimate how much heap memory the terms take.
+     *
+     * @return approximate size in bytes
+     */
+    public long estimatedMemoryUsage() {
+        return Integer.BYTES * (long) (lengthOf(insensitivePosition2GroupOffset) + lengthOf(sensitivePosition2GroupOffset) +
+                lengthOf(termId2SensitivePosition) + lengthOf(termId2InsensitivePosition) + lengthOf(groupTermIds)) +
+                Long.BYTES * (long) (termId2CharDataOffset == null ? 0 : termId2CharDataOffset.length) +
+                (termCharData == null ? 0 : termCharData.size64());
+    }
+
+    private static int lengthOf(int[] array) {
+        return array == null ? 0 : array.length;
+    }
+
     private TIntObjectHashMap<IntList> findTermIdsForSortPositions(int[] termIdToSortPosition) {
         // Invert the mapping of term id-> insensitive sort position into insensitive sort position -> term ids
         TIntObjectHashMap<IntList> sortPosition2TermIds = new TIntObjectHashMap<>(numberOfTerms);
@@ -244,4 +244,26 @@ public interface Indexer {
 
     void setNumberOfThreadsToUse(int numberOfThreadsToUse);
 
+    /**
+     * Split large input files and index the parts in parallel?
+     *
+     * Only used when indexing with multiple threads. Only works for files on disk (not in archives)
+     * in configuration-based XML formats and tabular formats with document tags. The file is split
+     * between documents, and the elements surrounding the documents are repeated in each part.
+     * Note that XPaths that refer to content outside the document should not be used with this
+     * option, except for the start tags of enclosing elements.
+     *
+     * @param minFileSizeBytes split files at least this large, or 0 to never split (the default)
+     */
+    void setSplitFilesLargerThan(long minFileSizeBytes);
+
+    /**
+     * When splitting large input files, add documents to the index in file order?
+     *
+     * Parsing still happens in parallel, but documents may be held in memory until it's their turn.
+     *
+     * @param preserveDocumentOrder if true, documents will be added in file order
+     */
+    void setPreserveDocumentOrder(boolean preserveDocumentOrder);
+
 }
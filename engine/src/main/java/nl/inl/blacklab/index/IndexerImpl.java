@@ -26,6 +26,7 @@ import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndexExternal;
 import nl.inl.blacklab.index.annotated.AnnotatedFieldWriter;
 import nl.inl.blacklab.index.annotated.AnnotationWriter;
+import nl.inl.blacklab.indexers.config.InputFileSplitter;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.BlackLabIndexWriter;
@@ -59,6 +60,24 @@ class IndexerImpl implements DocWriter, Indexer {
         @Override
         public void file(FileReference file) throws MalformedInputFile, PluginException {
             InputFormat inputFormat = DocumentFormats.getFormat(IndexerImpl.this.formatIdentifier).orElseThrow();
+            if (splitFilesLargerThan > 0 && numberOfThreadsToUse > 1) {
+                // Large file with many documents? Split it and index the parts in parallel.
+                SplitFileIndexer splitFileIndexer = splitFileIndexer();
+                InputFileSplitter splitter = splitFileIndexer.splitterFor(file, inputFormat, splitFilesLargerThan);
+                if (splitter != null) {
+                    listener().fileStarted(file.getPath());
+                    int docsDone;
+                    try {
+                        docsDone = splitFileIndexer.index(file, inputFormat, splitter);
+                    } catch (Throwable e) {
+                        throw new RuntimeException("Error while indexing input file: " + file.getPath(), e);
+                    }
+                    listener().fileDone(file.getPath());
+                    if (docsDone == 0)
+                        logger.warn("No docs found in " + file.getPath() + "; wrong format?");
+                    return;
+                }
+            }
             try (DocIndexer docIndexer = inputFormat.createDocIndexer(IndexerImpl.this, file)) {
                 if (docIndexer == null) {
                     throw new PluginException(
@@ -155,6 +174,15 @@ class IndexerImpl implements DocWriter, Indexer {
     /** Index using multiple threads or just one? */
     private int numberOfThreadsToUse = 1;
 
+    /** Split input files at least this large (in bytes) and index the parts in parallel (0 = never split) */
+    private long splitFilesLargerThan = 0;
+
+    /** When splitting files, make sure documents are added to the index in file order? */
+    private boolean preserveDocumentOrder = false;
+
+    /** Indexes large files in parallel (created when needed) */
+    private SplitFileIndexer splitFileIndexer;
+
     // TODO this is a workaround for a bug where indexMetadata is always written, even when an indexing task was
     //   rollbacked on an empty index. Result of this is that the index can never be opened again (the forwardindex
     //   is missing files that the indexMetadata.yaml says must exist?) so record rollbacks and then don't write
@@ -351,6 +379,8 @@ class IndexerImpl implements DocWriter, Indexer {
             indexWriter.metadata().addToTokenCount(listener().getTokensProcessed());
             indexWriter.metadata().save();
         }
+        if (splitFileIndexer != null)
+            splitFileIndexer.close();
         indexWriter.close();
 
         // Signal that we're completely done now
@@ -574,6 +604,22 @@ class IndexerImpl implements DocWriter, Indexer {
         }
     }
 
+    @Override
+    public void setSplitFilesLargerThan(long minFileSizeBytes) {
+        this.splitFilesLargerThan = minFileSizeBytes;
+    }
+
+    @Override
+    public void setPreserveDocumentOrder(boolean preserveDocumentOrder) {
+        this.preserveDocumentOrder = preserveDocumentOrder;
+    }
+
+    private synchronized SplitFileIndexer splitFileIndexer() {
+        if (splitFileIndexer == null)
+            splitFileIndexer = new SplitFileIndexer(this, numberOfThreadsToUse, preserveDocumentOrder);
+        return splitFileIndexer;
+    }
+
     @Override
     public IndexMetadataWriter metadata() {
         return indexWriter.metadata();
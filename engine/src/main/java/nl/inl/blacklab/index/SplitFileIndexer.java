@@ -0,0 +1,292 @@
+package nl.inl.blacklab.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.PluginException;
+import nl.inl.blacklab.index.annotated.AnnotatedFieldWriter;
+import nl.inl.blacklab.indexers.config.InputFileSplitter;
+import nl.inl.blacklab.search.indexmetadata.IndexMetadataWriter;
+import nl.inl.util.FileReference;
+import nl.inl.util.TextContent;
+
+/**
+ * Indexes a large input file using multiple threads.
+ * <p>
+ * The file is split into chunks containing complete documents (see {@link InputFileSplitter}),
+ * and each chunk is indexed by its own DocIndexer in a worker thread.
+ * <p>
+ * Optionally, documents are added to the index in the order they appear in the file. Parsing
+ * still happens in parallel, but documents from a chunk are held until all previous chunks have
+ * been written.
+ * <p>
+ * Several files may be split at the same time (the indexer calls {@link #index(FileReference, InputFormat, InputFileSplitter)}
+ * from each of its threads), but the number of chunks in memory is limited across all of them.
+ */
+class SplitFileIndexer implements AutoCloseable {
+
+    /** Smallest chunk we'll create (smaller chunks mean more overhead) */
+    private static final long MIN_CHUNK_SIZE = 1_000_000;
+
+    /** Largest chunk we'll create (larger chunks mean more memory use) */
+    private static final long MAX_CHUNK_SIZE = 16_000_000;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger(1);
+
+    /** Where our documents go */
+    private final DocWriter docWriter;
+
+    /** Number of worker threads */
+    private final int numberOfThreads;
+
+    /** Add documents in file order? */
+    private final boolean preserveDocumentOrder;
+
+    /** Indexes the chunks */
+    private final ExecutorService executor;
+
+    /**
+     * Limits the number of chunks in memory (read but not yet written), for all files we're splitting.
+     *
+     * This can't deadlock when preserving document order: a file's chunks are read in order, so the
+     * first unwritten chunk of each file has already been read and will finish and be written.
+     */
+    private final Semaphore chunksInMemory;
+
+    SplitFileIndexer(DocWriter docWriter, int numberOfThreads, boolean preserveDocumentOrder) {
+        this.docWriter = docWriter;
+        this.numberOfThreads = numberOfThreads;
+        this.preserveDocumentOrder = preserveDocumentOrder;
+        executor = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+            Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+            worker.setDaemon(true); // don't prevent JVM exiting
+            worker.setName("BLIndexChunk-" + threadCounter.getAndIncrement());
+            return worker;
+        });
+        chunksInMemory = new Semaphore(numberOfThreads + 1);
+    }
+
+    /**
+     * Get a splitter for this file, if we should split it.
+     *
+     * @param file file to index
+     * @param inputFormat the file's format
+     * @param minFileSize only split files at least this large (in bytes)
+     * @return the splitter, or null if we should index the file as a whole
+     */
+    InputFileSplitter splitterFor(FileReference file, InputFormat inputFormat, long minFileSize) {
+        File f = file.getFile();
+        if (minFileSize <= 0 || f == null || f.length() < minFileSize || !(inputFormat instanceof InputFormatWithConfig))
+            return null;
+        // Make sure each thread gets a few chunks, but don't make them too small or too large
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, f.length() / (numberOfThreads * 4L)));
+        return InputFileSplitter.forFormat(((InputFormatWithConfig) inputFormat).getConfig(), chunkSize);
+    }
+
+    /**
+     * Split the file and index the chunks in parallel.
+     *
+     * Blocks until all chunks have been indexed. May be called from several threads at
+     * once; the chunks of all files share the worker threads and the limit on chunks in memory.
+     *
+     * @param file file to index
+     * @param inputFormat the file's format
+     * @param splitter splits the file
+     * @return number of documents indexed
+     */
+    int index(FileReference file, InputFormat inputFormat, InputFileSplitter splitter) throws Exception {
+        ChunkSequencer sequencer = preserveDocumentOrder ? new ChunkSequencer() : null;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger chunksRunning = new AtomicInteger();
+        AtomicLong docsDone = new AtomicLong();
+        Object finished = new Object();
+
+        try {
+            splitter.split(file.getFile(), (chunkIndex, contents) -> {
+                chunksInMemory.acquire();
+                if (error.get() != null) {
+                    chunksInMemory.release(); // other files may still need it
+                    throw BlackLabRuntimeException.wrap(error.get());
+                }
+                if (!docWriter.continueIndexing()) {
+                    // We've been told to stop (e.g. max. number of docs reached); skip this chunk
+                    chunkWritten(chunkIndex, sequencer);
+                    return;
+                }
+                chunksRunning.incrementAndGet();
+                executor.execute(() -> {
+                    try {
+                        DocWriter writer = sequencer == null ? docWriter : sequencer.writerForChunk(chunkIndex);
+                        FileReference chunk = FileReference.fromBytes(file.getPath(), contents, file.getAssociatedFile());
+                        try (DocIndexer docIndexer = inputFormat.createDocIndexer(writer, chunk)) {
+                            if (docIndexer == null)
+                                throw new PluginException("Could not instantiate DocIndexer: " + inputFormat.getIdentifier());
+                            if (file.getAssociatedFile() != null)
+                                docIndexer.setDocumentDirectory(file.getAssociatedFile().getParentFile()); // for XInclude resolution
+                            docIndexer.index();
+                            docsDone.addAndGet(docIndexer.numberOfDocsDone());
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        try {
+                            chunkWritten(chunkIndex, sequencer);
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        }
+                        synchronized (finished) {
+                            chunksRunning.decrementAndGet();
+                            finished.notifyAll();
+                        }
+                    }
+                });
+            });
+        } finally {
+            // Wait for all chunks to be indexed
+            synchronized (finished) {
+                while (chunksRunning.get() > 0)
+                    finished.wait();
+            }
+        }
+        if (error.get() != null)
+            throw BlackLabRuntimeException.wrap(error.get());
+        return (int) docsDone.get();
+    }
+
+    /** A chunk is done (or skipped). Write held documents if necessary, and allow reading more chunks. */
+    private void chunkWritten(int chunkIndex, ChunkSequencer sequencer) throws IOException {
+        if (sequencer == null)
+            chunksInMemory.release();
+        else
+            sequencer.finish(chunkIndex);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Makes sure documents are written in file order.
+     *
+     * Documents from the first unfinished chunk are written immediately; documents
+     * from later chunks are held until it's their chunk's turn.
+     */
+    private class ChunkSequencer {
+
+        /** The chunk whose documents may be written right away */
+        private int chunkToWrite = 0;
+
+        /** Documents from later chunks that have to wait */
+        private final Map<Integer, List<BLInputDocument>> heldDocs = new HashMap<>();
+
+        /** Later chunks that are finished, but not written yet */
+        private final Set<Integer> finishedChunks = new HashSet<>();
+
+        synchronized void add(int chunkIndex, BLInputDocument document) throws IOException {
+            if (chunkIndex == chunkToWrite)
+                docWriter.add(document);
+            else
+                heldDocs.computeIfAbsent(chunkIndex, k -> new ArrayList<>()).add(document);
+        }
+
+        synchronized void finish(int chunkIndex) throws IOException {
+            finishedChunks.add(chunkIndex);
+            while (finishedChunks.remove(chunkToWrite)) {
+                // This chunk is completely written; the next chunk may write its documents now
+                chunksInMemory.release();
+                chunkToWrite++;
+                List<BLInputDocument> docs = heldDocs.remove(chunkToWrite);
+                if (docs != null) {
+                    for (BLInputDocument doc: docs)
+                        docWriter.add(doc);
+                }
+            }
+        }
+
+        DocWriter writerForChunk(int chunkIndex) {
+            return new DocWriter() {
+                @Override
+                public void add(BLInputDocument document) throws IOException {
+                    ChunkSequencer.this.add(chunkIndex, document);
+                }
+
+                @Override
+                public IndexMetadataWriter metadata() {
+                    return docWriter.metadata();
+                }
+
+                @Override
+                public BLIndexObjectFactory indexObjectFactory() {
+                    return docWriter.indexObjectFactory();
+                }
+
+                @Override
+                public boolean continueIndexing() {
+                    return docWriter.continueIndexing();
+                }
+
+                @Override
+                public int docsToDoLeft() {
+                    return docWriter.docsToDoLeft();
+                }
+
+                @Override
+                public File linkedFile(String inputFile) {
+                    return docWriter.linkedFile(inputFile);
+                }
+
+                @Override
+                public BLFieldType metadataFieldType(boolean tokenized) {
+                    return docWriter.metadataFieldType(tokenized);
+                }
+
+                @Override
+                public IndexListener listener() {
+                    return docWriter.listener();
+                }
+
+                @Override
+                public Map<String, String> indexerParameters() {
+                    return docWriter.indexerParameters();
+                }
+
+                @Override
+                public Optional<Function<String, File>> linkedFileResolver() {
+                    return docWriter.linkedFileResolver();
+                }
+
+                @Override
+                public void addToForwardIndex(AnnotatedFieldWriter field, BLInputDocument currentDoc) {
+                    docWriter.addToForwardIndex(field, currentDoc);
+                }
+
+                @Override
+                public void storeInContentStore(BLInputDocument currentDoc, TextContent document,
+                        String contentIdFieldName, String contentStoreName) {
+                    docWriter.storeInContentStore(currentDoc, document, contentIdFieldName, contentStoreName);
+                }
+
+                @Override
+                public boolean needsPrimaryValuePayloads() {
+                    return docWriter.needsPrimaryValuePayloads();
+                }
+            };
+        }
+    }
+}
@@ -12,7 +12,6 @@ import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -149,9 +148,8 @@ public class DocIndexerSaxon extends DocIndexerXPath<NodeInfo> {
                     this.charPositions.close();
                 }
             }
-            XPath xPath = SaxonHelper.getXPathFactory().newXPath();
-            finder = new XPathFinder(xPath,
-                    config.isNamespaceAware() ? config.getNamespaces() : null);
+            // (reuse the XPaths we compiled for previous documents in this format)
+            finder = XPathFinder.forFormat(config);
         } catch (IOException | XPathException | SAXException | ParserConfigurationException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
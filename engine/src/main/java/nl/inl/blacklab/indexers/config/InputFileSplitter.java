@@ -0,0 +1,217 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+/**
+ * Splits a large input file into chunks that can be indexed independently.
+ * <p>
+ * The file is scanned once (streaming, without parsing) to find document boundaries.
+ * Each chunk contains one or more complete documents and is made into a valid
+ * input file by itself, e.g. by adding the enclosing XML elements or the
+ * tabular header line. This allows us to index one huge file using multiple threads.
+ */
+public abstract class InputFileSplitter {
+
+    /** Receives the chunks, in file order. */
+    @FunctionalInterface
+    public interface ChunkHandler {
+        /**
+         * Handle a chunk.
+         *
+         * @param chunkIndex number of the chunk within the file (0-based)
+         * @param contents chunk contents, a valid input file by itself
+         */
+        void chunk(int chunkIndex, byte[] contents) throws Exception;
+    }
+
+    /** Pattern for the last step of a document XPath, e.g. tei:TEI in //tei:TEI[@type='x'] */
+    private static final Pattern PATT_DOCUMENT_ELEMENT = Pattern.compile("/(?:[\\w.-]+:)?([\\w.-]+)\\s*(?:\\[[^\\]]*\\])?\\s*$");
+
+    /**
+     * Get a splitter for files in this format, if possible.
+     *
+     * @param config the input format
+     * @param chunkSize approximate size of each chunk in bytes
+     * @return splitter, or null if we can't split files in this format
+     */
+    public static InputFileSplitter forFormat(ConfigInputFormat config, long chunkSize) {
+        switch (config.getFileType()) {
+        case XML:
+            // We need to know the document element name and not much else: only look at the last step
+            String documentPath = config.getDocumentPath();
+            Matcher m = PATT_DOCUMENT_ELEMENT.matcher(documentPath);
+            if (documentPath.contains("|") || !m.find())
+                return null;
+            return new InputFileSplitterXml(m.group(1), chunkSize);
+        case TABULAR:
+            // Can only split if there are document tags
+            if (config.getDocumentPath().equals("/"))
+                return null;
+            boolean hasHeader = config.getFileTypeOptions()
+                    .getOrDefault(DocIndexerTabular.FT_OPT_EXPECT_COLUMN_NAMES, "").equalsIgnoreCase("true");
+            return new InputFileSplitterTabular(config.getDocumentPath(), hasHeader, chunkSize);
+        default:
+            // (CoNLL-U, CHAT and plain text files always contain one document)
+            return null;
+        }
+    }
+
+    /** Approximate size of each chunk in bytes */
+    protected final long chunkSize;
+
+    /** File we're splitting */
+    private RandomAccessFile input;
+
+    /** Start of the current chunk (file offset) */
+    private long chunkStart;
+
+    /** What to put before the current chunk's contents to make it a valid input file */
+    private byte[] chunkPrefix;
+
+    /** Number of the current chunk */
+    private int chunkIndex;
+
+    /** Stream for scanning the file */
+    private InputStream scanStream;
+
+    /** Buffer for scanning the file */
+    private final byte[] buffer = new byte[1 << 16];
+
+    /** Next position to read in buffer */
+    private int bufferPos;
+
+    /** Number of valid bytes in buffer */
+    private int bufferLength;
+
+    /** Offset of the next byte returned by {@link #read()} */
+    protected long position;
+
+    protected InputFileSplitter(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Split the file into chunks.
+     *
+     * If the file cannot be split, the handler is called once with the whole file.
+     *
+     * @param file file to split
+     * @param handler receives the chunks, in file order
+     */
+    public synchronized void split(File file, ChunkHandler handler) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                InputStream is = new FileInputStream(file)) {
+            input = raf;
+            scanStream = is;
+            bufferPos = bufferLength = 0;
+            position = 0;
+            chunkStart = 0;
+            chunkPrefix = new byte[0];
+            chunkIndex = 0;
+            scan(handler);
+            handler.chunk(chunkIndex, readChunk(raf.length(), new byte[0]));
+        } finally {
+            input = null;
+            scanStream = null;
+        }
+    }
+
+    /**
+     * Scan the file and call {@link #boundary(long, byte[], byte[], ChunkHandler)}
+     * at suitable points.
+     *
+     * The last chunk is produced by {@link #split(File, ChunkHandler)}.
+     *
+     * @param handler where to send chunks
+     */
+    protected abstract void scan(ChunkHandler handler) throws Exception;
+
+    /**
+     * Read the next byte from the file.
+     *
+     * @return the byte, or -1 at the end of the file
+     */
+    protected int read() throws IOException {
+        if (bufferPos == bufferLength) {
+            bufferLength = scanStream.read(buffer);
+            bufferPos = 0;
+            if (bufferLength <= 0) {
+                bufferLength = 0;
+                return -1;
+            }
+        }
+        position++;
+        return buffer[bufferPos++] & 0xFF;
+    }
+
+    /**
+     * Size of the file we're splitting.
+     *
+     * @return file size in bytes
+     */
+    protected long fileLength() throws IOException {
+        return input.length();
+    }
+
+    /**
+     * Read a range of bytes from the file.
+     *
+     * @param start start offset
+     * @param end end offset
+     * @return the bytes
+     */
+    protected byte[] readRange(long start, long end) throws IOException {
+        byte[] result = new byte[checkedLength(end - start)];
+        input.seek(start);
+        input.readFully(result);
+        return result;
+    }
+
+    /**
+     * Is the current chunk large enough that we should split at this position?
+     *
+     * @param offset possible split position
+     * @return true if we should split here
+     */
+    protected boolean shouldSplitAt(long offset) {
+        return offset - chunkStart >= chunkSize;
+    }
+
+    /**
+     * End the current chunk here and start a new one.
+     *
+     * @param offset where to split (between two documents)
+     * @param suffix what to add after the current chunk to make it valid
+     * @param nextPrefix what to add before the next chunk to make it valid
+     * @param handler where to send the finished chunk
+     */
+    protected void boundary(long offset, byte[] suffix, byte[] nextPrefix, ChunkHandler handler) throws Exception {
+        handler.chunk(chunkIndex, readChunk(offset, suffix));
+        chunkIndex++;
+        chunkStart = offset;
+        chunkPrefix = nextPrefix;
+    }
+
+    private byte[] readChunk(long end, byte[] suffix) throws IOException {
+        byte[] contents = new byte[checkedLength(chunkPrefix.length + end - chunkStart + suffix.length)];
+        System.arraycopy(chunkPrefix, 0, contents, 0, chunkPrefix.length);
+        input.seek(chunkStart);
+        input.readFully(contents, chunkPrefix.length, (int) (end - chunkStart));
+        System.arraycopy(suffix, 0, contents, contents.length - suffix.length, suffix.length);
+        return contents;
+    }
+
+    private static int checkedLength(long length) {
+        if (length > Integer.MAX_VALUE - 8)
+            throw new BlackLabRuntimeException("Input file chunk too large (" + length + " bytes); are the documents this large?");
+        return (int) length;
+    }
+}
@@ -0,0 +1,78 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a tabular file before document open tags (e.g. a line containing {@code <doc id="1">}).
+ * <p>
+ * If the file has a header line with column names, it is added to each chunk.
+ */
+class InputFileSplitterTabular extends InputFileSplitter {
+
+    /** Document tag name, e.g. doc */
+    private final byte[] documentTag;
+
+    /** Does the file start with a line of column names? */
+    private final boolean hasHeader;
+
+    /** Start of the current line (we only need to look at the start to recognize document tags) */
+    private final byte[] lineStart;
+
+    InputFileSplitterTabular(String documentTag, boolean hasHeader, long chunkSize) {
+        super(chunkSize);
+        this.documentTag = documentTag.getBytes(StandardCharsets.UTF_8);
+        this.hasHeader = hasHeader;
+        lineStart = new byte[this.documentTag.length + 64];
+    }
+
+    @Override
+    protected void scan(ChunkHandler handler) throws Exception {
+        byte[] header = new byte[0];
+        boolean firstLine = true;
+        boolean docInChunk = false; // does the current chunk contain a document yet?
+        long lineStartPos = 0;
+        int lineStartLength = 0;
+        int c;
+        do {
+            c = read();
+            if (c >= 0 && c != '\n') {
+                if (lineStartLength < lineStart.length)
+                    lineStart[lineStartLength++] = (byte) c;
+                continue;
+            }
+            // End of line (or file)
+            if (firstLine && hasHeader) {
+                header = readRange(0, position);
+            } else if (isDocumentStart(lineStartLength)) {
+                if (docInChunk && shouldSplitAt(lineStartPos))
+                    boundary(lineStartPos, new byte[0], header, handler);
+                docInChunk = true;
+            }
+            firstLine = false;
+            lineStartPos = position;
+            lineStartLength = 0;
+        } while (c >= 0);
+    }
+
+    /** Does the current line contain a document open tag? */
+    private boolean isDocumentStart(int length) {
+        int i = skipWhitespace(0, length);
+        if (i >= length || lineStart[i] != '<')
+            return false;
+        i = skipWhitespace(i + 1, length);
+        if (length - i <= documentTag.length)
+            return false;
+        for (int j = 0; j < documentTag.length; j++) {
+            if (lineStart[i + j] != documentTag[j])
+                return false;
+        }
+        byte next = lineStart[i + documentTag.length];
+        return next == '>' || next == '/' || Character.isWhitespace(next);
+    }
+
+    private int skipWhitespace(int i, int length) {
+        while (i < length && Character.isWhitespace(lineStart[i]))
+            i++;
+        return i;
+    }
+}
@@ -0,0 +1,204 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits an XML file between document elements.
+ * <p>
+ * Each chunk gets the prolog (XML declaration, doctype, etc.) and the start tags of the
+ * elements enclosing the documents (including any namespace declarations), and the
+ * matching end tags, so it is a well-formed XML file with the same structure.
+ * <p>
+ * The scan is byte-based, so this only works for ASCII-compatible encodings (e.g. UTF-8,
+ * ISO-8859-x). UTF-16 files are not split.
+ */
+class InputFileSplitterXml extends InputFileSplitter {
+
+    /** An element we're inside of */
+    private static class OpenElement {
+        /** Qualified element name (for the end tag) */
+        final byte[] qName;
+
+        /** The complete start tag, or null if inside a document (not needed) */
+        final byte[] startTag;
+
+        /** Is this a document element? */
+        final boolean isDocument;
+
+        OpenElement(byte[] qName, byte[] startTag, boolean isDocument) {
+            this.qName = qName;
+            this.startTag = startTag;
+            this.isDocument = isDocument;
+        }
+    }
+
+    /** Local name of the document element (e.g. TEI) */
+    private final String documentElement;
+
+    /** The elements we're inside of */
+    private final List<OpenElement> openElements = new ArrayList<>();
+
+    /** The start tag we're reading */
+    private final ByteArrayOutputStream tag = new ByteArrayOutputStream();
+
+    InputFileSplitterXml(String documentElement, long chunkSize) {
+        super(chunkSize);
+        this.documentElement = documentElement;
+    }
+
+    @Override
+    protected void scan(ChunkHandler handler) throws Exception {
+        // UTF-16 (with byte order mark or starting with <?xml)? Don't try to split.
+        byte[] start = readRange(0, Math.min(2, fileLength()));
+        if (start.length == 2 && (start[0] == 0 || start[1] == 0 ||
+                (start[0] & 0xFF) == 0xFE && (start[1] & 0xFF) == 0xFF ||
+                (start[0] & 0xFF) == 0xFF && (start[1] & 0xFF) == 0xFE))
+            return;
+
+        openElements.clear();
+        byte[] prolog = null;      // everything before the root element
+        int docDepth = 0;          // how many document elements are we inside of?
+        boolean docInChunk = false; // does the current chunk contain a document yet?
+        int c = read();
+        while (c >= 0) {
+            if (c != '<') {
+                c = read();
+                continue;
+            }
+            long tagStart = position - 1;
+            c = read();
+            if (c == '!') {
+                c = read();
+                if (c == '-')
+                    skipPast("-->");      // comment
+                else if (c == '[')
+                    skipPast("]]>");      // CDATA section
+                else
+                    skipDeclaration(c);   // e.g. DOCTYPE
+            } else if (c == '?') {
+                skipPast("?>");           // processing instruction
+            } else if (c == '/') {
+                skipPast(">");            // end tag
+                if (!openElements.isEmpty()) {
+                    OpenElement el = openElements.remove(openElements.size() - 1);
+                    if (el.isDocument)
+                        docDepth--;
+                }
+            } else {
+                // Start tag. Read it completely (attribute values may contain >)
+                tag.reset();
+                tag.write('<');
+                int quote = 0, prev = 0;
+                while (c >= 0) {
+                    tag.write(c);
+                    if (quote != 0) {
+                        if (c == quote)
+                            quote = 0;
+                    } else if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else if (c == '>') {
+                        break;
+                    }
+                    prev = c;
+                    c = read();
+                }
+                byte[] startTag = tag.toByteArray();
+                byte[] qName = elementName(startTag);
+                boolean isDocument = localName(qName).equals(documentElement);
+                if (prolog == null)
+                    prolog = readRange(0, tagStart);
+
+                // Split here? Only between documents, and only if the document element isn't the root.
+                if (isDocument && docDepth == 0 && docInChunk && !openElements.isEmpty() && shouldSplitAt(tagStart))
+                    boundary(tagStart, endTags(), startTags(prolog), handler);
+
+                if (prev != '/') {
+                    openElements.add(new OpenElement(qName, docDepth == 0 && !isDocument ? startTag : null, isDocument));
+                    if (isDocument)
+                        docDepth++;
+                }
+                if (isDocument)
+                    docInChunk = true;
+            }
+            c = read();
+        }
+    }
+
+    /** Start tags of the elements we're in (with the prolog), to add before the next chunk. */
+    private byte[] startTags(byte[] prolog) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(prolog, 0, prolog.length);
+        for (OpenElement el: openElements) {
+            result.write(el.startTag, 0, el.startTag.length);
+        }
+        return result.toByteArray();
+    }
+
+    /** End tags for the elements we're in, to add after the current chunk. */
+    private byte[] endTags() {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = openElements.size() - 1; i >= 0; i--) {
+            byte[] qName = openElements.get(i).qName;
+            result.write('<');
+            result.write('/');
+            result.write(qName, 0, qName.length);
+            result.write('>');
+        }
+        return result.toByteArray();
+    }
+
+    /** Get the (qualified) element name from a start tag. */
+    private static byte[] elementName(byte[] startTag) {
+        int end = 1;
+        while (end < startTag.length && startTag[end] != '>' && startTag[end] != '/' && !Character.isWhitespace(startTag[end]))
+            end++;
+        return Arrays.copyOfRange(startTag, 1, end);
+    }
+
+    /** Get the local name (without namespace prefix). */
+    private static String localName(byte[] qName) {
+        String name = new String(qName, StandardCharsets.UTF_8);
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    /** Skip until after the given (ASCII) string, e.g. the end of a comment. */
+    private void skipPast(String end) throws IOException {
+        // Compare the last few bytes read to the end string
+        int target = 0, mask = 0;
+        for (int i = 0; i < end.length(); i++) {
+            target = target << 8 | end.charAt(i);
+            mask = mask << 8 | 0xFF;
+        }
+        int last = 0, c;
+        while ((c = read()) >= 0) {
+            last = (last << 8 | c) & mask;
+            if (last == target)
+                return;
+        }
+    }
+
+    /** Skip a declaration such as DOCTYPE, which may contain an internal subset in brackets. */
+    private void skipDeclaration(int c) throws IOException {
+        int brackets = 0, quote = 0;
+        while (c >= 0) {
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '>' && brackets <= 0) {
+                return;
+            }
+            c = read();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 import javax.xml.namespace.NamespaceContext;
@@ -21,10 +22,35 @@ import net.sf.saxon.s9api.XdmNode;
 import net.sf.saxon.xpath.XPathEvaluator;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InvalidConfiguration;
+import nl.inl.blacklab.indexers.config.ConfigInputFormat;
 import nl.inl.blacklab.indexers.config.DocIndexerXPath;
 
 public class XPathFinder {
 
+    /**
+     * Per thread, one finder per input format.
+     *
+     * Compiled XPaths can't safely be shared between threads, and they're tied to the thread's
+     * Saxon configuration (see {@link SaxonHelper#getXPathFactory()}), so each thread gets its own
+     * copy. This way, each XPath is compiled once per format per thread instead of once per input file.
+     * Formats that are no longer used (e.g. after reloading) can still be garbage collected.
+     */
+    private static final ThreadLocal<Map<ConfigInputFormat, XPathFinder>> finderPerFormat =
+            ThreadLocal.withInitial(WeakHashMap::new);
+
+    /**
+     * Get the finder for this input format in the current thread.
+     *
+     * The finder keeps the compiled XPaths, so they can be reused for the next document.
+     *
+     * @param config input format
+     * @return finder for the format, to be used in the current thread only
+     */
+    public static XPathFinder forFormat(ConfigInputFormat config) {
+        return finderPerFormat.get().computeIfAbsent(config, c -> new XPathFinder(
+                SaxonHelper.getXPathFactory().newXPath(), c.isNamespaceAware() ? c.getNamespaces() : null));
+    }
+
     public String currentNodeToString(NodeInfo node) {
         return node.getStringValue();
     }
@@ -65,7 +91,7 @@ public class XPathFinder {
     /**
      * Compiled XPaths for use in one thread.
      */
-    private Map<String, XPathExpression> compiledXPaths = new HashMap<>();
+    private final Map<String, XPathExpression> compiledXPaths = new HashMap<>();
 
     public XPathFinder(XPath xPath, Map<String, String> namespaces) {
         // setup namespace aware xpath that will compile xpath expressions
@@ -86,7 +86,7 @@ public class HitPropertyAfterHit extends HitPropertyContextBase {
             fetchContext((int[] starts, int[] ends, int hitIndex, Hit hit) -> {
                 starts[hitIndex] = hit.end();
                 ends[hitIndex] = hit.end() + numberOfTokens;
-            });
+            }, false);
         } else {
             // We must be searching a parallel corpus and grouping/sorting on one of the target fields.
             // Determine start and end using matchInfo instead.
@@ -95,7 +95,7 @@ public class HitPropertyAfterHit extends HitPropertyContextBase {
                 int pos = startEnd[1] == Integer.MIN_VALUE ? hit.end() : startEnd[1];
                 starts[hitIndex] = pos;
                 ends[hitIndex] = pos + numberOfTokens;
-            });
+            }, true);
         }
     }
 
@@ -85,7 +85,7 @@ public class HitPropertyBeforeHit extends HitPropertyContextBase {
             fetchContext((int[] starts, int[] ends, int hitIndex, Hit hit) -> {
                 starts[hitIndex] = Math.max(0, hit.start() - numberOfTokens);
                 ends[hitIndex] = hit.start();
-            });
+            }, false);
         } else {
             // We must be searching a parallel corpus and grouping/sorting on one of the target fields.
             // Determine start and end using matchInfo instead.
@@ -94,7 +94,7 @@ public class HitPropertyBeforeHit extends HitPropertyContextBase {
                 int pos = startEnd[0] == Integer.MIN_VALUE ? hit.start() : startEnd[0];
                 starts[hitIndex] = Math.max(0, pos - numberOfTokens);
                 ends[hitIndex] = pos;
-            });
+            }, true);
         }
     }
 
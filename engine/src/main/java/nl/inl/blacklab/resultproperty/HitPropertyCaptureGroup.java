@@ -11,7 +11,6 @@ import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.lucene.MatchInfo;
 import nl.inl.blacklab.search.lucene.RelationInfo;
-import nl.inl.blacklab.search.results.Hit;
 import nl.inl.blacklab.search.results.Hits;
 
 /**
@@ -86,8 +85,7 @@ public class HitPropertyCaptureGroup extends HitPropertyContextBase {
 
     @Override
     public void fetchContext() {
-        fetchContext((int[] starts, int[] ends, int indexInArrays, Hit hit) -> {
-            MatchInfo group = hit.matchInfo()[groupIndex];
+        fetchContext(groupIndex, (int[] starts, int[] ends, int indexInArrays, MatchInfo group) -> {
             starts[indexInArrays] = group == null ? 0 : group.spanStart(spanMode);
             ends[indexInArrays] = group == null ? 0 : group.spanEnd(spanMode);
         });
@@ -90,6 +90,18 @@ public abstract class HitPropertyContextBase extends HitProperty {
         void setStartEnd(int[] starts, int[] ends, int indexInArrays, Hit hit);
     }
 
+    /** Used by fetchContext() to get required context part boundaries for a hit, based on one of its match infos */
+    @FunctionalInterface
+    interface MatchInfoStartEndSetter {
+        void setStartEnd(int[] starts, int[] ends, int indexInArrays, MatchInfo matchInfo);
+    }
+
+    /** Internal version of StartEndSetter that also receives the hit index */
+    @FunctionalInterface
+    private interface IndexedStartEndSetter {
+        void setStartEnd(int[] starts, int[] ends, int indexInArrays, long hitIndex, Hit hit);
+    }
+
     /** Forward index we're looking at */
     protected AnnotationForwardIndex afi;
 
@@ -256,7 +268,33 @@ public abstract class HitPropertyContextBase extends HitProperty {
         afi = index.annotationForwardIndex(annotation);
     }
 
-    protected synchronized void fetchContext(StartEndSetter setStartEnd) {
+    /**
+     * Fetch the context we need for all hits.
+     *
+     * @param setStartEnd determines what part of the context to fetch for each hit
+     * @param needMatchInfo whether setStartEnd uses the hit's match info. If not, we
+     *                      don't have to create match info objects for each hit.
+     */
+    protected void fetchContext(StartEndSetter setStartEnd, boolean needMatchInfo) {
+        fetchContext((starts, ends, indexInArrays, hitIndex, hit) ->
+                setStartEnd.setStartEnd(starts, ends, indexInArrays, hit), needMatchInfo);
+    }
+
+    /**
+     * Fetch the context we need for all hits, based on one of their match infos.
+     * <p>
+     * Only the match info we need is retrieved, not all match info for each hit.
+     *
+     * @param matchInfoIndex index of the match info we need
+     * @param setStartEnd determines what part of the context to fetch for each hit
+     */
+    protected void fetchContext(int matchInfoIndex, MatchInfoStartEndSetter setStartEnd) {
+        HitsInternal ha = hits.getInternalHits();
+        fetchContext((starts, ends, indexInArrays, hitIndex, hit) ->
+                setStartEnd.setStartEnd(starts, ends, indexInArrays, ha.matchInfo(hitIndex, matchInfoIndex)), false);
+    }
+
+    private synchronized void fetchContext(IndexedStartEndSetter setStartEnd, boolean needMatchInfo) {
         HitsInternal ha = hits.getInternalHits();
         contextTermId = new ObjectBigArrayBigList<>(ha.size());
         contextSortOrder = new ObjectBigArrayBigList<>(ha.size());
@@ -269,14 +307,14 @@ public abstract class HitPropertyContextBase extends HitProperty {
                 if (curDoc != prevDoc) {
                     try { hits.threadAborter().checkAbort(); } catch (InterruptedException e) { throw new InterruptedSearch(e); }
                     // Process hits in preceding document:
-                    fetchContextForDoc(setStartEnd, prevDoc, firstHitInCurrentDoc, i);
+                    fetchContextForDoc(setStartEnd, needMatchInfo, ha, prevDoc, firstHitInCurrentDoc, i);
                     // start a new document
                     prevDoc = curDoc;
                     firstHitInCurrentDoc = i;
                 }
             }
             // Process hits in final document
-            fetchContextForDoc(setStartEnd, prevDoc, firstHitInCurrentDoc, size);
+            fetchContextForDoc(setStartEnd, needMatchInfo, ha, prevDoc, firstHitInCurrentDoc, size);
         }
     }
 
@@ -285,7 +323,8 @@ public abstract class HitPropertyContextBase extends HitProperty {
         contextTermId = contextSortOrder = null;
     }
 
-    private synchronized void fetchContextForDoc(StartEndSetter setStartEnd, int docId, long fromIndex, long toIndexExclusive) {
+    private synchronized void fetchContextForDoc(IndexedStartEndSetter setStartEnd, boolean needMatchInfo, HitsInternal ha,
+            int docId, long fromIndex, long toIndexExclusive) {
         assert fromIndex >= 0 && toIndexExclusive > 0;
         assert fromIndex < toIndexExclusive;
         if (toIndexExclusive - fromIndex > Constants.JAVA_MAX_ARRAY_SIZE)
@@ -298,8 +337,14 @@ public abstract class HitPropertyContextBase extends HitProperty {
         EphemeralHit hit = new EphemeralHit();
         long hitIndex = fromIndex;
         for (int j = 0; j < n; ++j, ++hitIndex) {
-            hits.getEphemeral(hitIndex, hit);
-            setStartEnd.setStartEnd(startsOfSnippets, endsOfSnippets, j, hit);
+            if (needMatchInfo) {
+                hits.getEphemeral(hitIndex, hit);
+            } else {
+                hit.doc = docId;
+                hit.start = ha.start(hitIndex);
+                hit.end = ha.end(hitIndex);
+            }
+            setStartEnd.setStartEnd(startsOfSnippets, endsOfSnippets, j, hitIndex, hit);
         }
 
         // Retrieve term ids
@@ -219,7 +219,8 @@ public class HitPropertyContextPart extends HitPropertyContextBase {
         int smaller = Math.min(part.first, part.last);
         int larger = Math.max(part.first, part.last);
         StartEndSetter func;
-        if (annotation.field() == hits.field()) {
+        boolean needMatchInfo = annotation.field() != hits.field();
+        if (!needMatchInfo) {
             // Regular hit; use start and end offsets from the hit itself
             func = fetchContextRegular(smaller, larger);
         } else {
@@ -227,7 +228,7 @@ public class HitPropertyContextPart extends HitPropertyContextBase {
             // Determine start and end using matchInfo instead.
             func = fetchContextParallel(smaller, larger);
         }
-        fetchContext(func);
+        fetchContext(func, needMatchInfo);
     }
 
     private StartEndSetter fetchContextRegular(int smaller, int larger) {
@@ -54,7 +54,7 @@ public class HitPropertyHitText extends HitPropertyContextBase {
             fetchContext((int[] starts, int[] ends, int hitIndex, Hit hit) -> {
                 starts[hitIndex] = hit.start();
                 ends[hitIndex] = hit.end();
-            });
+            }, false);
         } else {
             // We must be searching a parallel corpus and grouping/sorting on one of the target fields.
             // Determine start and end using matchInfo instead.
@@ -62,7 +62,7 @@ public class HitPropertyHitText extends HitPropertyContextBase {
                 int[] startEnd = getForeignHitStartEnd(hit, annotation.field().name());
                 starts[hitIndex] = startEnd[0] == Integer.MAX_VALUE ? hit.start() : startEnd[0];
                 ends[hitIndex] = startEnd[1] == Integer.MIN_VALUE ? hit.end() : startEnd[1];
-            });
+            }, true);
         }
     }
 
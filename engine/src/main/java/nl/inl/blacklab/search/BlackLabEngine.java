@@ -16,6 +16,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.IndexReader;
 
+import nl.inl.blacklab.config.BLConfigSearch;
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
 import nl.inl.blacklab.index.BLIndexObjectFactory;
 import nl.inl.blacklab.index.BLIndexObjectFactoryLucene;
@@ -75,9 +76,9 @@ public final class BlackLabEngine implements AutoCloseable {
      */
     private final Map<IndexReader, BlackLabIndex> indexReader2BlackLabIndex = new IdentityHashMap<>();
 
-    /** Thread on which we run initializations (opening forward indexes, etc.).
-     *  Single-threaded because these kinds of initializations are memory and CPU heavy. */
-    private final ExecutorService initializationExecutorService;
+    /** Runs initializations (opening forward indexes, etc.) in the background.
+     *  Only a few run in parallel because these kinds of initializations are memory and CPU heavy. */
+    private final InitializationScheduler initializationScheduler;
 
     /** Threads on which we run searches. This pool is not limited in size,
      *  but new top-level searches (i.e. not started by other searches) are queued
@@ -88,6 +89,9 @@ public final class BlackLabEngine implements AutoCloseable {
     /** How many threads may a single search use? */
     private final int maxThreadsPerSearch;
 
+    /** Optimized and rewritten queries, so we don't have to rewrite popular queries again and again */
+    private final QueryRewriteCache queryRewriteCache;
+
     /** Give each searchthread a unique number */
     private final AtomicInteger threadCounter = new AtomicInteger(1);
 
@@ -114,13 +118,9 @@ public final class BlackLabEngine implements AutoCloseable {
         synchronized (engines) {
             engines.add(this);
         }
-        initializationExecutorService = Executors.newSingleThreadExecutor(runnable -> {
-            Thread worker = Executors.defaultThreadFactory().newThread(runnable);
-            int threadNumber = threadCounter.getAndUpdate(i -> (i + 1) % 10000);
-            worker.setDaemon(true); // don't prevent JVM exiting
-            worker.setName("BLInit-" + threadNumber);
-            return worker;
-        });
+        BLConfigSearch config = BlackLab.config().getSearch();
+        initializationScheduler = new InitializationScheduler(config.getInitializationThreads(),
+                config.getInitializationMinFreeMemoryMegs() * 1_000_000L);
         this.searchExecutorService = Executors.newCachedThreadPool(runnable -> {
             Thread worker = Executors.defaultThreadFactory().newThread(runnable);
             int threadNumber = threadCounter.getAndUpdate(i -> (i + 1) % 10000);
@@ -129,6 +129,7 @@ public final class BlackLabEngine implements AutoCloseable {
         });
 
         this.maxThreadsPerSearch = maxThreadsPerSearch;
+        queryRewriteCache = new QueryRewriteCache(config.getQueryRewriteCacheSizeMegs() * 1_000_000L);
     }
 
     /**
@@ -258,7 +259,7 @@ public final class BlackLabEngine implements AutoCloseable {
             return;
         wasClosed = true;
         closeExecutorPool(searchExecutorService);
-        closeExecutorPool(initializationExecutorService);
+        closeExecutorPool(initializationScheduler);
         synchronized (indexReader2BlackLabIndex) {
 
             List<BlackLabIndex> copy = new ArrayList<>(indexReader2BlackLabIndex.values()); // avoid concurrent mod.
@@ -444,6 +445,7 @@ public final class BlackLabEngine implements AutoCloseable {
             indexReader2BlackLabEngine.remove(index.reader());
         }
         indexReader2BlackLabIndex.remove(index.reader());
+        queryRewriteCache.removeForReader(index.reader());
         if (BlackLab.isImplicitInstance(this) && indexReader2BlackLabIndex.isEmpty()) {
             // We are the implicit instance and our last searcher has been closed. Clean up.
             try {
@@ -455,7 +457,19 @@ public final class BlackLabEngine implements AutoCloseable {
     }
 
     public ExecutorService initializationExecutorService() {
-        return initializationExecutorService;
+        return initializationScheduler;
+    }
+
+    /**
+     * Get the scheduler that runs initializations in the background.
+     *
+     * Like {@link #initializationExecutorService()}, but allows prioritizing queued tasks
+     * and getting statistics.
+     *
+     * @return initialization scheduler
+     */
+    public InitializationScheduler initializationScheduler() {
+        return initializationScheduler;
     }
 
     public ExecutorService searchExecutorService() {
@@ -493,6 +507,10 @@ public final class BlackLabEngine implements AutoCloseable {
         return maxThreadsPerSearch;
     }
 
+    public QueryRewriteCache queryRewriteCache() {
+        return queryRewriteCache;
+    }
+
     public BLIndexObjectFactory indexObjectFactory() {
         return indexObjectFactory;
     }
@@ -37,8 +37,10 @@ import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsSnapshots;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.results.TokenFrequencyCubes;
 import nl.inl.blacklab.search.textpattern.TextPatternTags;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchEmpty;
@@ -526,4 +528,69 @@ public interface BlackLabIndex extends AutoCloseable {
     String name();
 
     RelationsStats getRelationsStats(AnnotatedField field, long limitValues);
+
+    /**
+     * Get the precomputed token frequency aggregates for this index.
+     *
+     * @return frequency cubes (may not contain any, or not all of them yet)
+     */
+    TokenFrequencyCubes frequencyCubes();
+
+    /**
+     * Get the document metadata loader for this index.
+     *
+     * Use this instead of {@link #luceneDoc(int)} if you only need metadata.
+     *
+     * @return document metadata loader
+     */
+    DocMetadataLoader docMetadata();
+
+    /**
+     * Get the subcorpus statistics for this index.
+     *
+     * Determines the number of documents and tokens matching a document filter query.
+     *
+     * @return subcorpus statistics
+     */
+    SubcorpusStatistics subcorpusStatistics();
+
+    /**
+     * Get the hits snapshots for this index.
+     *
+     * Used to store large sorted hit lists on disk and reuse them later.
+     *
+     * @return hits snapshots
+     */
+    HitsSnapshots hitsSnapshots();
+
+    /**
+     * Estimate how much heap memory this index uses for its in-memory data
+     * (e.g. the forward index terms lists).
+     *
+     * @return approximate size in bytes
+     */
+    long estimatedMemoryUsage();
+
+    /**
+     * Free in-memory data (e.g. the forward index terms lists) to save memory.
+     *
+     * The index stays open and the data is reloaded when it's needed again.
+     * Useful when hosting many indexes that aren't all used all the time.
+     */
+    void unloadMemory();
+
+    /**
+     * Record that this index is being used, e.g. by a search or a cached result.
+     *
+     * Used to decide which indexes are idle, e.g. to unload their in-memory data.
+     */
+    void markUsed();
+
+    /**
+     * When was this index last used?
+     *
+     * @return time in ms since the epoch
+     * @see #markUsed()
+     */
+    long lastUsed();
 }
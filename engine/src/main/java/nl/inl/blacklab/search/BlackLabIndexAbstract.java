@@ -5,7 +5,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.Collator;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,6 +32,8 @@ import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Bits;
 
 import nl.inl.blacklab.analysis.BuiltinAnalyzers;
+import nl.inl.blacklab.config.BLConfigFrequencyCube;
+import nl.inl.blacklab.config.BLConfigSearch;
 import nl.inl.blacklab.contentstore.ContentStore;
 import nl.inl.blacklab.contentstore.ContentStoresManager;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -54,8 +58,10 @@ import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsSnapshots;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.results.TokenFrequencyCubes;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheDummy;
 import nl.inl.blacklab.searches.SearchEmpty;
@@ -156,9 +162,29 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
     /** Search cache to use */
     private SearchCache cache = new SearchCacheDummy();
 
+    /** Precomputed token frequencies (loaded or built in the background) */
+    private final TokenFrequencyCubes frequencyCubes = new TokenFrequencyCubes(this);
+
+    /** Loads (and caches) document metadata */
+    private final DocMetadataLoader docMetadata = new DocMetadataLoader(this,
+            BlackLab.config().getSearch().getDocMetadataCacheSize());
+
+    /** Determines (and caches) subcorpus sizes */
+    private final SubcorpusStatistics subcorpusStatistics = new SubcorpusStatistics(this,
+            BlackLab.config().getSearch().getSubcorpusCacheSizeMegs() * 1_000_000L);
+
+    /** Stores and reads snapshots of large sorted hit lists */
+    private final HitsSnapshots hitsSnapshots = new HitsSnapshots(this,
+            BlackLab.config().getSearch().getHitsSnapshotDir(), BlackLab.config().getSearch().getHitsSnapshotMinHits(),
+            BlackLab.config().getSearch().getHitsSnapshotMaxSizeMegs() * 1_000_000L,
+            BlackLab.config().getSearch().getHitsSnapshotMaxAgeHours() * 3_600_000L);
+
     /** Was this index closed? */
     private boolean closed;
 
+    /** When was this index last used? (see {@link #markUsed()}) */
+    private volatile long lastUsed = System.currentTimeMillis();
+
     // Constructors
     //---------------------------------------------------------------
 
@@ -233,6 +259,15 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
             // we have and trust that it will do the right thing.
             finishOpeningIndex(indexDir, createNewIndex, solrMode);
             logger.debug("    (done with finishOpeningIndex)");
+
+            if (!indexMode && indexDir != null) {
+                BLConfigSearch search = BlackLab.config().getSearch();
+                List<BLConfigFrequencyCube> cubes = search.getFrequencyCubes();
+                if (!cubes.isEmpty()) {
+                    blackLab.initializationExecutorService().execute(() -> frequencyCubes.initialize(cubes,
+                            search.getFrequencyCubesDir(), search.isBuildFrequencyCubes()));
+                }
+            }
         } catch (IndexFormatTooNewException|IndexFormatTooOldException e) {
             throw new IndexVersionMismatch(e);
         } catch (IOException e) {
@@ -328,6 +363,7 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
 
     @Override
     public Hits find(QueryInfo queryInfo, BLSpanQuery query, SearchSettings settings) {
+        markUsed();
         return Hits.fromSpanQuery(queryInfo, query, settings == null ? searchSettings() : settings);
     }
 
@@ -587,6 +623,7 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
                 indexWriter.close();
             }
             contentStores.close();
+            frequencyCubes.close();
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
@@ -759,4 +796,59 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
     public RelationsStats getRelationsStats(AnnotatedField field, long limitValues) {
         return field.getRelationsStats(this, limitValues);
     }
+
+    @Override
+    public TokenFrequencyCubes frequencyCubes() {
+        return frequencyCubes;
+    }
+
+    @Override
+    public DocMetadataLoader docMetadata() {
+        return docMetadata;
+    }
+
+    @Override
+    public SubcorpusStatistics subcorpusStatistics() {
+        return subcorpusStatistics;
+    }
+
+    @Override
+    public HitsSnapshots hitsSnapshots() {
+        return hitsSnapshots;
+    }
+
+    @Override
+    public long estimatedMemoryUsage() {
+        long size = 0;
+        for (AnnotationForwardIndex afi: annotationForwardIndexes())
+            size += afi.estimatedMemoryUsage();
+        return size;
+    }
+
+    @Override
+    public void unloadMemory() {
+        for (AnnotationForwardIndex afi: annotationForwardIndexes())
+            afi.unload();
+    }
+
+    @Override
+    public void markUsed() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    @Override
+    public long lastUsed() {
+        return lastUsed;
+    }
+
+    /** Get the forward indexes that have been opened so far. */
+    private List<AnnotationForwardIndex> annotationForwardIndexes() {
+        List<AnnotationForwardIndex> result = new ArrayList<>();
+        synchronized (forwardIndices) {
+            for (ForwardIndex fi: forwardIndices.values()) {
+                fi.forEach(result::add);
+            }
+        }
+        return result;
+    }
 }
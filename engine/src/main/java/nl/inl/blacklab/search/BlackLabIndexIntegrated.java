@@ -3,6 +3,7 @@ package nl.inl.blacklab.search;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,6 +15,7 @@ import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -30,11 +32,14 @@ import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndexIntegrated;
 import nl.inl.blacklab.forwardindex.ForwardIndexSegmentReader;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
 import nl.inl.blacklab.indexers.config.ConfigInputFormat;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessorIntegrated;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.Field;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadataIntegrated;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadataWriter;
@@ -131,6 +136,18 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
         return BlackLabCodecUtil.getPostingsReader(lrc).forwardIndex();
     }
 
+    /**
+     * Get the stored inline tag boundaries for an index segment.
+     *
+     * The returned reader should only be used from one thread.
+     *
+     * @param lrc leafreader context (segment) to get the tag boundaries for.
+     * @return tag boundaries, or null if this segment has none
+     */
+    public static TagBoundariesSegmentReader tagBoundaries(LeafReaderContext lrc) {
+        return BlackLabCodecUtil.getPostingsReader(lrc).tagBoundaries();
+    }
+
     /**
      * Set this field type to be a content store field
      * @param type field type
@@ -225,6 +242,26 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
                 SpanQueryRelations.Direction.FORWARD, spanMode, captureAs, null);
     }
 
+    /**
+     * Get the stored boundaries of an inline tag in a document.
+     *
+     * @param field annotated field the tags occur in
+     * @param tagName inline tag name, e.g. "s"
+     * @param docId global document id
+     * @return tag boundaries, or null if boundaries weren't stored for this tag
+     */
+    public TagBoundaries tagBoundaries(AnnotatedField field, String tagName, int docId) {
+        Annotation relAnnot = field.annotation(AnnotatedFieldNameUtil.relationAnnotationName(getType()));
+        if (relAnnot == null)
+            return null;
+        List<LeafReaderContext> leaves = reader().leaves();
+        LeafReaderContext lrc = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        TagBoundariesSegmentReader segmentReader = tagBoundaries(lrc);
+        if (segmentReader == null)
+            return null;
+        return segmentReader.get(relAnnot.mainSensitivity().luceneField(), tagName, docId - lrc.docBase);
+    }
+
     @Override
     public IndexType getType() {
         return IndexType.INTEGRATED;
@@ -0,0 +1,173 @@
+package nl.inl.blacklab.search;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedSetDocValues;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.MetadataField;
+
+/**
+ * Loads document metadata, e.g. to describe the documents in a page of results.
+ * <p>
+ * Unlike {@link BlackLabIndex#luceneDoc(int)}, this only loads the metadata fields and token lengths,
+ * not content store or forward index ids and such. Token lengths are read from DocValues,
+ * the other fields from stored fields.
+ * <p>
+ * Loaded documents are kept in a bounded LRU cache that is shared between all searches on this index,
+ * so paging through results doesn't keep reading the same documents. If the index reader changes (e.g.
+ * because documents were added), the cache is discarded.
+ * <p>
+ * This class is thread-safe.
+ */
+public class DocMetadataLoader {
+
+    /** The fields to load and the cached documents for one index reader. */
+    private static class ReaderState {
+
+        final IndexReader reader;
+
+        /** Fields to load from the stored fields */
+        final Set<String> storedFields = new HashSet<>();
+
+        /** Token length fields, to load from DocValues (or stored fields if there are none) */
+        final Set<String> lengthFields = new HashSet<>();
+
+        /** Documents loaded so far, or null if caching is disabled */
+        final Cache<Integer, Document> cache;
+
+        ReaderState(BlackLabIndex index, IndexReader reader, long cacheSize) {
+            this.reader = reader;
+            for (MetadataField field: index.metadataFields())
+                storedFields.add(field.name());
+            for (AnnotatedField field: index.annotatedFields()) {
+                if (field.tokenLengthField() != null)
+                    lengthFields.add(field.tokenLengthField());
+            }
+            storedFields.removeAll(lengthFields);
+            cache = cacheSize > 0 ? Caffeine.newBuilder().maximumSize(cacheSize).build() : null;
+        }
+    }
+
+    /** Our index */
+    private final BlackLabIndex index;
+
+    /** Maximum number of documents to cache */
+    private final long cacheSize;
+
+    /** Fields and cache for the current index reader */
+    private ReaderState state;
+
+    public DocMetadataLoader(BlackLabIndex index, long cacheSize) {
+        this.index = index;
+        this.cacheSize = cacheSize;
+    }
+
+    private synchronized ReaderState state() {
+        IndexReader reader = index.reader();
+        if (state == null || state.reader != reader)
+            state = new ReaderState(index, reader, cacheSize);
+        return state;
+    }
+
+    /**
+     * Get a document's metadata fields and token lengths.
+     * <p>
+     * Each call returns a new Document, so callers may add or remove fields without affecting
+     * the cached copy. (Lucene's Document is final, so we can't return a read-only view.)
+     * The field objects themselves are shared and should not be changed.
+     *
+     * @param docId Lucene document id
+     * @return document containing only the metadata and token length fields
+     */
+    public Document metadata(int docId) {
+        ReaderState s = state();
+        if (s.cache == null)
+            return load(s, docId);
+        return copy(s.cache.get(docId, id -> load(s, id)));
+    }
+
+    private static Document copy(Document document) {
+        Document copy = new Document();
+        for (IndexableField field: document)
+            copy.add(field);
+        return copy;
+    }
+
+    /**
+     * Get a document's pid.
+     * <p>
+     * Uses the cache or the pid field's DocValues if possible, so we don't need to read the stored fields.
+     *
+     * @param docId Lucene document id
+     * @return the pid, or null if the index has no pid field or the document has no pid
+     */
+    public String pid(int docId) {
+        MetadataField pidField = index.metadataFields().pidField();
+        if (pidField == null)
+            return null;
+        ReaderState s = state();
+        Document document = s.cache == null ? null : s.cache.getIfPresent(docId);
+        if (document == null) {
+            String pid = pidFromDocValues(s.reader, docId, pidField.name());
+            if (pid != null)
+                return pid;
+            document = metadata(docId);
+        }
+        return document.get(pidField.name());
+    }
+
+    private static String pidFromDocValues(IndexReader reader, int docId, String pidField) {
+        try {
+            List<LeafReaderContext> leaves = reader.leaves();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+            SortedSetDocValues values = leaf.reader().getSortedSetDocValues(pidField);
+            if (values == null || !values.advanceExact(docId - leaf.docBase))
+                return null;
+            long ord = values.nextOrd();
+            if (ord == SortedSetDocValues.NO_MORE_ORDS || values.nextOrd() != SortedSetDocValues.NO_MORE_ORDS)
+                return null; // not a single value; let the stored field decide
+            return values.lookupOrd(ord).utf8ToString();
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private static Document load(ReaderState s, int docId) {
+        try {
+            Document document = new Document();
+            Set<String> fieldsToLoad = new HashSet<>(s.storedFields);
+            List<LeafReaderContext> leaves = s.reader.leaves();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+            for (String field: s.lengthFields) {
+                NumericDocValues values = leaf.reader().getNumericDocValues(field);
+                if (values != null && values.advanceExact(docId - leaf.docBase))
+                    document.add(new StoredField(field, (int) values.longValue()));
+                else
+                    fieldsToLoad.add(field); // no DocValues (older index?); try the stored field
+            }
+            DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(fieldsToLoad);
+            s.reader.document(docId, visitor);
+            for (IndexableField field: visitor.getDocument())
+                document.add(field);
+            return document;
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package nl.inl.blacklab.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Runs initialization tasks (opening forward indexes, etc.) in the background.
+ * <p>
+ * Tasks are normally run in the order they were submitted, but a task that was
+ * submitted with a key can be moved to the front of the queue using {@link #prioritize(Object)},
+ * e.g. when a search needs a forward index that hasn't been initialized yet.
+ * <p>
+ * Initializations are memory and CPU heavy, so only a few tasks run at the same time,
+ * and we only start an additional task if enough heap memory is free.
+ */
+@ThreadSafe
+public class InitializationScheduler extends AbstractExecutorService {
+
+    private static final Logger logger = LogManager.getLogger(InitializationScheduler.class);
+
+    private static final AtomicInteger threadCounter = new AtomicInteger(1);
+
+    /** A queued task */
+    private static class Task implements Comparable<Task> {
+        final Object key;
+
+        final Runnable runnable;
+
+        /** Order in which tasks were submitted */
+        final long sequence;
+
+        /** Has this task been prioritized? */
+        final boolean high;
+
+        Task(Object key, Runnable runnable, long sequence, boolean high) {
+            this.key = key;
+            this.runnable = runnable;
+            this.sequence = sequence;
+            this.high = high;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (high != o.high)
+                return high ? -1 : 1;
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /** Max. number of tasks to run at the same time */
+    private final int maxParallel;
+
+    /** Only start an additional task if at least this much heap memory is free */
+    private final long minFreeMemory;
+
+    /** Threads that run the tasks */
+    private final ExecutorService threads;
+
+    /** Tasks waiting to run, prioritized ones first */
+    @GuardedBy("this")
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+
+    /** Queued tasks that were submitted with a key, so we can prioritize them.
+     *  (concurrent so checking if there's anything to prioritize doesn't need to lock) */
+    private final Map<Object, Task> queuedByKey = new ConcurrentHashMap<>();
+
+    @GuardedBy("this")
+    private long nextSequence = 0;
+
+    @GuardedBy("this")
+    private int running = 0;
+
+    @GuardedBy("this")
+    private long completed = 0;
+
+    @GuardedBy("this")
+    private long failed = 0;
+
+    @GuardedBy("this")
+    private long prioritized = 0;
+
+    @GuardedBy("this")
+    private boolean shutdown = false;
+
+    /**
+     * Create a scheduler.
+     *
+     * @param maxParallel max. number of tasks to run at the same time
+     * @param minFreeMemory only start an additional task if at least this many bytes of heap are free
+     *                      (the first task is always started)
+     */
+    public InitializationScheduler(int maxParallel, long minFreeMemory) {
+        this.maxParallel = Math.max(1, maxParallel);
+        this.minFreeMemory = minFreeMemory;
+        threads = Executors.newFixedThreadPool(this.maxParallel, runnable -> {
+            Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+            worker.setDaemon(true); // don't prevent JVM exiting
+            worker.setName("BLInit-" + threadCounter.getAndUpdate(i -> (i + 1) % 10000));
+            return worker;
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(null, command);
+    }
+
+    /**
+     * Queue a task that may be prioritized later.
+     *
+     * @param key key to prioritize the task with, or null if not needed
+     * @param command task to run
+     */
+    public synchronized void execute(Object key, Runnable command) {
+        if (shutdown)
+            throw new RejectedExecutionException("InitializationScheduler was shut down");
+        Task task = new Task(key, command, nextSequence++, false);
+        queue.add(task);
+        if (key != null)
+            queuedByKey.put(key, task);
+        startTasks();
+    }
+
+    /**
+     * Move a queued task to the front of the queue because we need its result soon.
+     *
+     * Does nothing if there's no queued task with this key (e.g. it's already running or done).
+     * This is cheap in that case, so it may be called often.
+     *
+     * @param key key the task was submitted with
+     */
+    public void prioritize(Object key) {
+        if (!queuedByKey.containsKey(key))
+            return;
+        synchronized (this) {
+            Task task = queuedByKey.get(key);
+            if (task == null || task.high)
+                return;
+            queue.remove(task);
+            Task highTask = new Task(key, task.runnable, task.sequence, true);
+            queue.add(highTask);
+            queuedByKey.put(key, highTask);
+            prioritized++;
+        }
+    }
+
+    /** Start queued tasks as long as we're allowed to. */
+    @GuardedBy("this")
+    private void startTasks() {
+        while (running < maxParallel && !queue.isEmpty()) {
+            if (running > 0 && freeMemory() < minFreeMemory) {
+                // Not enough memory to run more tasks in parallel; we'll check again when a task finishes
+                break;
+            }
+            Task task = queue.poll();
+            if (task.key != null)
+                queuedByKey.remove(task.key, task);
+            running++;
+            threads.execute(() -> run(task));
+        }
+    }
+
+    private void run(Task task) {
+        boolean success = false;
+        try {
+            task.runnable.run();
+            success = true;
+        } catch (RuntimeException e) {
+            logger.error("Error during initialization task", e);
+        } finally {
+            synchronized (this) {
+                running--;
+                if (success)
+                    completed++;
+                else
+                    failed++;
+                if (!threads.isShutdown())
+                    startTasks();
+                shutdownThreadsIfDone();
+                notifyAll();
+            }
+        }
+    }
+
+    private static long freeMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.freeMemory() + (runtime.maxMemory() - runtime.totalMemory());
+    }
+
+    /** Have we been shut down, and are all tasks done? */
+    @GuardedBy("this")
+    private boolean isDone() {
+        return shutdown && queue.isEmpty() && running == 0;
+    }
+
+    /** If we've been shut down and all tasks are done, let the threads exit. */
+    @GuardedBy("this")
+    private void shutdownThreadsIfDone() {
+        if (isDone())
+            threads.shutdown();
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        // Queued tasks will still be run; threads are shut down once they're done
+        shutdown = true;
+        shutdownThreadsIfDone();
+        notifyAll();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> notStarted = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            while (!queue.isEmpty())
+                notStarted.add(queue.poll().runnable);
+            queuedByKey.clear();
+            notifyAll();
+        }
+        threads.shutdownNow();
+        return notStarted;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return isDone() && threads.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (!isDone()) {
+                long waitMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (waitMs <= 0)
+                    return false;
+                wait(waitMs);
+            }
+        }
+        threads.shutdown();
+        return threads.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /** @return max. number of tasks to run at the same time */
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    /** @return number of tasks waiting to run */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /** @return number of tasks running now */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /** @return number of tasks that finished successfully */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /** @return number of tasks that threw an exception */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /** @return number of tasks that were moved to the front of the queue */
+    public synchronized long getPrioritized() {
+        return prioritized;
+    }
+}
@@ -0,0 +1,177 @@
+package nl.inl.blacklab.search;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import net.jcip.annotations.ThreadSafe;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.results.QueryInfo;
+
+/**
+ * Caches optimized and rewritten queries.
+ * <p>
+ * Optimizing and rewriting a query can take a long time, e.g. if a regular expression
+ * or wildcard has to be expanded against a large terms list. Different searches often
+ * use the same query (e.g. the same pattern with a different window or sort), so we
+ * keep a number of recently rewritten queries around.
+ * <p>
+ * The key is the original query (which includes any document filter), the index reader
+ * (so queries are rewritten again after the index changes) and the forward index matching
+ * settings (which influence optimization).
+ * <p>
+ * Rewritten queries are shared between searches, so they shouldn't refer to a search's
+ * QueryInfo (which holds e.g. its timings and profiler). Before a rewritten query is cached,
+ * it is given its own QueryInfo for the same index and field; searches keep using their own.
+ * <p>
+ * The cache size is limited by the approximate memory used by the rewritten queries, as
+ * a query with an expanded wildcard can be many times larger than a simple one.
+ */
+@ThreadSafe
+public class QueryRewriteCache {
+
+    /** Optimizes and rewrites a query. */
+    @FunctionalInterface
+    public interface Rewriter {
+        BLSpanQuery rewrite(BLSpanQuery query) throws IOException;
+    }
+
+    private static class Key {
+        final BLSpanQuery query;
+
+        /** Identifies the index reader (without keeping it from being garbage collected) */
+        final Object readerKey;
+
+        /** Forward index matching settings */
+        final Object nfaSettings;
+
+        Key(BLSpanQuery query, Object readerKey, Object nfaSettings) {
+            this.query = query;
+            this.readerKey = readerKey;
+            this.nfaSettings = nfaSettings;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Key key = (Key) o;
+            return readerKey == key.readerKey && query.equals(key.query) && nfaSettings.equals(key.nfaSettings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, System.identityHashCode(readerKey), nfaSettings);
+        }
+    }
+
+    /** Rough estimate of the memory used per clause or term in a rewritten query (bytes) */
+    private static final int BYTES_PER_QUERY_NODE = 200;
+
+    /** Rewritten queries, or null if caching is disabled */
+    private final Cache<Key, BLSpanQuery> cache;
+
+    /**
+     * Create the cache.
+     *
+     * @param maxSizeBytes approximate max. memory the rewritten queries may use (0 disables caching)
+     */
+    public QueryRewriteCache(long maxSizeBytes) {
+        cache = maxSizeBytes > 0 ? Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((Key key, BLSpanQuery rewritten) -> estimatedSize(key.query) + estimatedSize(rewritten))
+                .recordStats()
+                .build() : null;
+    }
+
+    /**
+     * Estimate how much memory a query uses.
+     *
+     * @param query query
+     * @return approximate size in bytes
+     */
+    static int estimatedSize(BLSpanQuery query) {
+        int[] nodes = { 1 };
+        query.visit(new QueryVisitor() {
+            @Override
+            public void consumeTerms(Query query, Term... terms) {
+                nodes[0] += terms.length;
+            }
+
+            @Override
+            public void visitLeaf(Query query) {
+                nodes[0]++;
+            }
+
+            @Override
+            public QueryVisitor getSubVisitor(BooleanClause.Occur occur, Query parent) {
+                nodes[0]++;
+                return this;
+            }
+        });
+        return (int) Math.min(Integer.MAX_VALUE, (long) nodes[0] * BYTES_PER_QUERY_NODE);
+    }
+
+    /**
+     * Get the rewritten version of a query from the cache, or rewrite it now.
+     *
+     * @param query query to rewrite (with its QueryInfo set)
+     * @param reader index reader to rewrite the query for
+     * @param rewriter optimizes and rewrites the query if it's not in the cache
+     * @return the rewritten query (may be shared with other searches, so don't modify it)
+     */
+    public BLSpanQuery get(BLSpanQuery query, IndexReader reader, Rewriter rewriter) throws IOException {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (cache == null || cacheHelper == null)
+            return rewriter.rewrite(query);
+        Key key = new Key(query, cacheHelper.getKey(), ClauseCombinerNfa.currentSettings());
+        BLSpanQuery rewritten = cache.getIfPresent(key);
+        if (rewritten == null) {
+            // (if several searches rewrite the same query at the same time, that's fine; the results are equal)
+            rewritten = rewriter.rewrite(query);
+            QueryInfo queryInfo = rewritten.queryInfo();
+            if (queryInfo != null) {
+                // Don't keep the search's QueryInfo in the shared query
+                rewritten.setQueryInfo(QueryInfo.create(queryInfo.index(), queryInfo.field()));
+            }
+            cache.put(key, rewritten);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Get the number of cache hits and misses so far.
+     *
+     * @return statistics (empty if caching is disabled)
+     */
+    public CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.stats();
+    }
+
+    /**
+     * Remove the rewritten queries for an index reader, e.g. because the index was closed.
+     *
+     * (rewritten queries refer to their index, so we don't want to keep them around)
+     *
+     * @param reader index reader
+     */
+    public void removeForReader(IndexReader reader) {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (cache != null && cacheHelper != null) {
+            Object readerKey = cacheHelper.getKey();
+            cache.asMap().keySet().removeIf(key -> key.readerKey == readerKey);
+        }
+    }
+}
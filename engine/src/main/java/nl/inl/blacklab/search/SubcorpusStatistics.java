@@ -0,0 +1,246 @@
+package nl.inl.blacklab.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.results.CorpusSize;
+import nl.inl.util.CurrentThreadExecutorService;
+
+/**
+ * Determines the size (number of documents and tokens) of subcorpora defined by a document filter query.
+ * <p>
+ * The filter is evaluated per segment, in parallel on the search executor. For each segment, the matching
+ * documents are kept as a bitset, together with the number of matching documents and (once requested)
+ * the number of tokens in them. These are cached, keyed by the rewritten filter query and the segment's
+ * core cache key, so repeating a filter is (nearly) free, and after documents were added only the new
+ * segments have to be evaluated.
+ * <p>
+ * Because deletions only ever accumulate for a segment core, the number of deleted documents is part
+ * of the key as well; a segment with new deletions is simply re-evaluated.
+ * <p>
+ * This class is thread-safe.
+ */
+public class SubcorpusStatistics {
+
+    /** Identifies a filter evaluated on a segment with a specific set of deleted documents. */
+    private static class SegmentKey {
+
+        final Query filter;
+
+        final Object coreKey;
+
+        final int numDeletedDocs;
+
+        SegmentKey(Query filter, Object coreKey, int numDeletedDocs) {
+            this.filter = filter;
+            this.coreKey = coreKey;
+            this.numDeletedDocs = numDeletedDocs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            SegmentKey that = (SegmentKey) o;
+            return numDeletedDocs == that.numDeletedDocs && filter.equals(that.filter) && coreKey == that.coreKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filter, System.identityHashCode(coreKey), numDeletedDocs);
+        }
+    }
+
+    /** Matching (live) documents in a segment, with the number of documents and tokens. */
+    private static class SegmentStats {
+
+        /** Matching live documents */
+        final FixedBitSet docs;
+
+        /** Number of matching live documents */
+        final long numberOfDocuments;
+
+        /** Number of tokens in the matching documents per token length field (filled in when needed) */
+        final Map<String, Long> numberOfTokens = new ConcurrentHashMap<>();
+
+        SegmentStats(FixedBitSet docs) {
+            this.docs = docs;
+            this.numberOfDocuments = docs.cardinality();
+        }
+
+        long tokens(LeafReader reader, String tokenLengthField) {
+            return numberOfTokens.computeIfAbsent(tokenLengthField, f -> {
+                try {
+                    long tokens = 0;
+                    NumericDocValues tokenLengthValues = DocValues.getNumeric(reader, f);
+                    DocIdSetIterator it = new BitSetIterator(docs, numberOfDocuments);
+                    for (int docId = it.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = it.nextDoc()) {
+                        if (tokenLengthValues.advanceExact(docId)) {
+                            tokens += tokenLengthValues.longValue()
+                                    - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
+                        }
+                    }
+                    return tokens;
+                } catch (IOException e) {
+                    throw BlackLabRuntimeException.wrap(e);
+                }
+            });
+        }
+
+        /** Approximate memory use, for limiting the cache size */
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, docs.ramBytesUsed() + 100);
+        }
+    }
+
+    /** Our index */
+    private final BlackLabIndex index;
+
+    /** Evaluated filters per segment, or null if caching is disabled */
+    private final Cache<SegmentKey, SegmentStats> cache;
+
+    /**
+     * Construct the subcorpus statistics for an index.
+     *
+     * @param index our index
+     * @param cacheSizeBytes approximate maximum memory to use for caching filter results (0 disables caching)
+     */
+    public SubcorpusStatistics(BlackLabIndex index, long cacheSizeBytes) {
+        this.index = index;
+        cache = cacheSizeBytes > 0 ? Caffeine.newBuilder()
+                .maximumWeight(cacheSizeBytes)
+                .weigher((SegmentKey k, SegmentStats v) -> v.weight())
+                .build() : null;
+    }
+
+    /**
+     * Determine the size of the subcorpus matching a document filter query.
+     *
+     * @param filter document filter query
+     * @param tokenLengthField field containing the token lengths, or null to only count documents
+     * @return subcorpus size (without token count if tokenLengthField is null)
+     */
+    public CorpusSize size(Query filter, String tokenLengthField) {
+        IndexSearcher searcher = index.searcher();
+        try {
+            Query rewritten = searcher.rewrite(filter);
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+
+            // Look up cached segments; evaluate the filter for the others
+            SegmentStats[] stats = new SegmentStats[leaves.size()];
+            List<Integer> toEvaluate = new ArrayList<>();
+            for (int i = 0; i < stats.length; i++) {
+                SegmentKey key = key(rewritten, leaves.get(i));
+                stats[i] = key == null || cache == null ? null : cache.getIfPresent(key);
+                if (stats[i] == null)
+                    toEvaluate.add(i);
+            }
+            if (!toEvaluate.isEmpty()) {
+                Weight weight = searcher.createWeight(rewritten, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+                evaluate(weight, leaves, toEvaluate, stats, tokenLengthField);
+                for (int i: toEvaluate) {
+                    SegmentKey key = key(rewritten, leaves.get(i));
+                    if (key != null && cache != null)
+                        cache.put(key, stats[i]);
+                }
+            }
+
+            long numberOfDocuments = 0;
+            long numberOfTokens = tokenLengthField == null ? -1 : 0;
+            for (int i = 0; i < stats.length; i++) {
+                numberOfDocuments += stats[i].numberOfDocuments;
+                if (tokenLengthField != null)
+                    numberOfTokens += stats[i].tokens(leaves.get(i).reader(), tokenLengthField);
+            }
+            return CorpusSize.get(numberOfDocuments, numberOfTokens);
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    /**
+     * Evaluate the filter for the specified segments, in parallel if possible.
+     *
+     * Token counts are determined in the same task, so that is done in parallel as well.
+     */
+    private void evaluate(Weight weight, List<LeafReaderContext> leaves, List<Integer> toEvaluate,
+            SegmentStats[] stats, String tokenLengthField) {
+        int numThreads = Math.max(index.blackLab().maxThreadsPerSearch(), 1);
+        ExecutorService executorService = numThreads >= 2 && toEvaluate.size() > 1 ?
+                index.blackLab().searchExecutorService() : new CurrentThreadExecutorService();
+        List<Future<?>> pending = new ArrayList<>();
+        for (int i: toEvaluate) {
+            pending.add(executorService.submit(() -> {
+                LeafReaderContext leaf = leaves.get(i);
+                stats[i] = new SegmentStats(matchingDocs(weight, leaf));
+                if (tokenLengthField != null)
+                    stats[i].tokens(leaf.reader(), tokenLengthField);
+            }));
+        }
+        try {
+            for (Future<?> p: pending)
+                p.get();
+        } catch (InterruptedException e) {
+            for (Future<?> p: pending)
+                p.cancel(true);
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+    }
+
+    private static FixedBitSet matchingDocs(Weight weight, LeafReaderContext leaf) {
+        try {
+            LeafReader reader = leaf.reader();
+            FixedBitSet docs = new FixedBitSet(reader.maxDoc());
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer != null) {
+                Bits liveDocs = reader.getLiveDocs();
+                DocIdSetIterator it = scorer.iterator();
+                for (int docId = it.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = it.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(docId))
+                        docs.set(docId);
+                }
+            }
+            return docs;
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private static SegmentKey key(Query rewritten, LeafReaderContext leaf) {
+        IndexReader.CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+        if (cacheHelper == null)
+            return null; // can't safely cache this segment
+        return new SegmentKey(rewritten, cacheHelper.getKey(), leaf.reader().numDeletedDocs());
+    }
+}
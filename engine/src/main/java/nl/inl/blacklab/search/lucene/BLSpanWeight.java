@@ -16,13 +16,31 @@ import org.apache.lucene.search.spans.SpanWeight;
  */
 public abstract class BLSpanWeight extends SpanWeight {
 
+    /** Profiler to use if we're profiling this query (see {@link QueryProfiler}), or null */
+    private final QueryProfiler profiler;
+
     public BLSpanWeight(SpanQuery query, IndexSearcher searcher, Map<Term, TermStates> termStates, float boost)
             throws IOException {
         super(query, searcher, termStates,boost);
+        profiler = QueryProfiler.forSearcher(searcher);
     }
 
     @Override
     public abstract BLSpans getSpans(LeafReaderContext ctx, Postings requiredPostings) throws IOException;
+
+    /**
+     * Get spans for this weight, profiling them if we're profiling this query.
+     * <p>
+     * Weights should use this instead of {@link #getSpans(LeafReaderContext, Postings)} to get
+     * their clauses' spans, so the whole tree can be profiled.
+     *
+     * @param ctx segment to get spans for
+     * @param requiredPostings postings required
+     * @return spans, or null if there are no hits in this segment
+     */
+    public final BLSpans getSpansProfiled(LeafReaderContext ctx, Postings requiredPostings) throws IOException {
+        return profiler == null ? getSpans(ctx, requiredPostings) : profiler.getSpans(this, ctx, requiredPostings);
+    }
     
 //	@Override
 //	public boolean isCacheable(LeafReaderContext ctx) {
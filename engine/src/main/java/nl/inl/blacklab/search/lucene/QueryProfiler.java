@@ -0,0 +1,268 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.spans.SpanWeight;
+
+/**
+ * Profiles the execution of a BLSpans tree ("explain analyze").
+ * <p>
+ * While profiling, every BLSpans created by a {@link BLSpanWeight} is wrapped in a {@link SpansProfiled}
+ * that counts the calls made to it, the documents and hits it produces and the time spent in it.
+ * These statistics are kept per query node and per index segment, and can be inspected as a tree
+ * that mirrors the (rewritten) query.
+ * <p>
+ * To profile a query, create the weight using the searcher returned by {@link #searcher(IndexSearcher)},
+ * then find hits as usual. Profiling adds overhead, so it should only be enabled when requested.
+ * <p>
+ * Statistics for a segment are only updated by the thread processing that segment, so the profile
+ * may be read while the search is still running, but will only be exact after it has finished.
+ */
+public class QueryProfiler {
+
+    /** Statistics for one query node in one index segment. */
+    public static class Stats {
+
+        long nextDocCalls;
+
+        long advanceCalls;
+
+        long twoPhaseMatchCalls;
+
+        long nextStartPositionCalls;
+
+        long advanceStartPositionCalls;
+
+        long docs;
+
+        long hits;
+
+        long nanos;
+
+        void add(Stats other) {
+            nextDocCalls += other.nextDocCalls;
+            advanceCalls += other.advanceCalls;
+            twoPhaseMatchCalls += other.twoPhaseMatchCalls;
+            nextStartPositionCalls += other.nextStartPositionCalls;
+            advanceStartPositionCalls += other.advanceStartPositionCalls;
+            docs += other.docs;
+            hits += other.hits;
+            nanos += other.nanos;
+        }
+
+        public long getNextDocCalls() {
+            return nextDocCalls;
+        }
+
+        public long getAdvanceCalls() {
+            return advanceCalls;
+        }
+
+        public long getTwoPhaseMatchCalls() {
+            return twoPhaseMatchCalls;
+        }
+
+        public long getNextStartPositionCalls() {
+            return nextStartPositionCalls;
+        }
+
+        public long getAdvanceStartPositionCalls() {
+            return advanceStartPositionCalls;
+        }
+
+        /** @return number of documents this node was positioned in */
+        public long getDocs() {
+            return docs;
+        }
+
+        /** @return number of hits this node produced */
+        public long getHits() {
+            return hits;
+        }
+
+        /** @return time spent in this node, including time spent in its children */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "nextDoc=" + nextDocCalls + ", advance=" + advanceCalls + ", matches=" + twoPhaseMatchCalls +
+                    ", nextStartPosition=" + nextStartPositionCalls + ", advanceStartPosition=" +
+                    advanceStartPositionCalls + ", docs=" + docs + ", hits=" + hits + ", ms=" + nanos / 1_000_000;
+        }
+    }
+
+    /** One node in the profiled query tree. */
+    public static class Node {
+
+        /** The (rewritten) query this node represents */
+        private final String query;
+
+        /** Class name of the spans produced for this node (for the last segment) */
+        private volatile String spansClass = "";
+
+        /** Child nodes */
+        private final List<Node> children = new CopyOnWriteArrayList<>();
+
+        /** Statistics per segment, by segment ord */
+        private final Map<Integer, Stats> statsPerSegment = new ConcurrentSkipListMap<>();
+
+        Node(String query) {
+            this.query = query;
+        }
+
+        Stats statsForSegment(int ord) {
+            return statsPerSegment.computeIfAbsent(ord, __ -> new Stats());
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getSpansClass() {
+            return spansClass;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /** @return statistics per segment, by segment ord */
+        public Map<Integer, Stats> getStatsPerSegment() {
+            return statsPerSegment;
+        }
+
+        /** @return statistics for all segments combined */
+        public Stats total() {
+            Stats total = new Stats();
+            for (Stats stats: statsPerSegment.values())
+                total.add(stats);
+            return total;
+        }
+
+        /** @return time spent in this node, excluding time spent in its children */
+        public long selfNanos() {
+            long nanos = total().nanos;
+            for (Node child: children)
+                nanos -= child.total().nanos;
+            return Math.max(0, nanos);
+        }
+
+        void appendTo(StringBuilder b, int indent) {
+            Stats total = total();
+            b.append("  ".repeat(indent)).append(spansClass).append(" ").append(query).append("\n");
+            b.append("  ".repeat(indent + 2)).append(total).append(", selfMs=").append(selfNanos() / 1_000_000)
+                    .append(", segments=").append(statsPerSegment.size()).append("\n");
+            for (Node child: children)
+                child.appendTo(b, indent + 1);
+        }
+    }
+
+    /**
+     * IndexSearcher that lets the weights created with it know they should be profiled.
+     */
+    private static class ProfilingIndexSearcher extends IndexSearcher {
+
+        private final QueryProfiler profiler;
+
+        ProfilingIndexSearcher(IndexSearcher searcher, QueryProfiler profiler) {
+            super(searcher.getIndexReader());
+            setSimilarity(searcher.getSimilarity());
+            setQueryCache(searcher.getQueryCache());
+            setQueryCachingPolicy(searcher.getQueryCachingPolicy());
+            this.profiler = profiler;
+        }
+    }
+
+    /**
+     * Get the profiler for weights created with this searcher, if any.
+     *
+     * @param searcher searcher used to create the weight
+     * @return profiler, or null if we're not profiling
+     */
+    static QueryProfiler forSearcher(IndexSearcher searcher) {
+        return searcher instanceof ProfilingIndexSearcher ? ((ProfilingIndexSearcher) searcher).profiler : null;
+    }
+
+    /** Node for each weight we've seen */
+    private final Map<BLSpanWeight, Node> nodes = new IdentityHashMap<>();
+
+    /** Top-level node(s); normally just one */
+    private final List<Node> roots = new CopyOnWriteArrayList<>();
+
+    /** The nodes we're creating spans for in this thread, innermost first */
+    private final ThreadLocal<Deque<Node>> current = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Get a searcher to create the weight to profile with.
+     *
+     * @param searcher the regular searcher
+     * @return searcher that causes weights to be profiled by us
+     */
+    public IndexSearcher searcher(IndexSearcher searcher) {
+        return new ProfilingIndexSearcher(searcher, this);
+    }
+
+    /**
+     * Get (profiled) spans from the weight.
+     * <p>
+     * Called from {@link BLSpanWeight#getSpansProfiled(LeafReaderContext, SpanWeight.Postings)}.
+     *
+     * @param weight weight to get spans from
+     * @param context segment to get spans for
+     * @param requiredPostings postings required
+     * @return profiled spans, or null if there are no hits in this segment
+     */
+    BLSpans getSpans(BLSpanWeight weight, LeafReaderContext context, SpanWeight.Postings requiredPostings)
+            throws IOException {
+        Deque<Node> stack = current.get();
+        Node parent = stack.peek();
+        Node node;
+        synchronized (nodes) {
+            node = nodes.get(weight);
+            if (node == null) {
+                node = new Node(weight.getQuery().toString());
+                nodes.put(weight, node);
+                (parent == null ? roots : parent.children).add(node);
+            }
+        }
+        BLSpans spans;
+        stack.push(node);
+        try {
+            spans = weight.getSpans(context, requiredPostings);
+        } finally {
+            stack.pop();
+        }
+        if (spans == null)
+            return null;
+        node.spansClass = spans.getClass().getSimpleName();
+        return new SpansProfiled(spans, node.statsForSegment(context.ord));
+    }
+
+    /**
+     * Get the top-level node(s) of the profile.
+     *
+     * @return top-level nodes (normally just one)
+     */
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (Node root: roots)
+            root.appendTo(b, 0);
+        return b.toString();
+    }
+}
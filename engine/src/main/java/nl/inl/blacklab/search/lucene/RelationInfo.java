@@ -40,6 +40,10 @@ public class RelationInfo extends MatchInfo {
         return new RelationInfo(onlyHasTarget, sourceStart, sourceEnd, targetStart, targetEnd, relationId, fullRelationType, null, "", "");
     }
 
+    public static RelationInfo create(boolean onlyHasTarget, int sourceStart, int sourceEnd, int targetStart, int targetEnd, int relationId, String fullRelationType, String sourceField, String targetField) {
+        return new RelationInfo(onlyHasTarget, sourceStart, sourceEnd, targetStart, targetEnd, relationId, fullRelationType, null, sourceField, targetField);
+    }
+
     /** Include attributes in relation info? We wanted to do this but can't anymore
      *  because they're only available in the version indexed with attributes. We also index
      *  relations without attributes to speed up searches that don't filter on relations,
@@ -484,7 +484,7 @@ public class SpanQueryAndNot extends BLSpanQuery {
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
             List<BLSpans> spans = new ArrayList<>();
             for (BLSpanWeight w : weights) {
-                BLSpans s = w.getSpans(context, requiredPostings);
+                BLSpans s = w.getSpansProfiled(context, requiredPostings);
                 if (s == null)
                     return null; // if no hits in one of the clauses, no hits in AND query
                 spans.add(s);
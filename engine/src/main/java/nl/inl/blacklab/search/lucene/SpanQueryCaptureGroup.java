@@ -113,7 +113,7 @@ public class SpanQueryCaptureGroup extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             return new SpansCaptureGroup(spans, name, leftAdjust, rightAdjust);
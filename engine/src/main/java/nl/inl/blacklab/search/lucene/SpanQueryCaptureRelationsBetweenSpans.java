@@ -258,12 +258,12 @@ public class SpanQueryCaptureRelationsBetweenSpans extends BLSpanQueryAbstract {
 
         private SpansCaptureRelationsBetweenSpans.Target getSpans(LeafReaderContext context,
                 SpanWeight.Postings requiredPostings) throws IOException {
-            BLSpans matchRelationsSpans = matchRelations.getSpans(context, requiredPostings);
+            BLSpans matchRelationsSpans = matchRelations.getSpansProfiled(context, requiredPostings);
             if (matchRelationsSpans == null)
                 return null;
-            BLSpans captureRelationsSpans = captureRelations.getSpans(context, requiredPostings);
+            BLSpans captureRelationsSpans = captureRelations.getSpansProfiled(context, requiredPostings);
             boolean hasTargetRestrictions = target != null;
-            BLSpans targetSpans = hasTargetRestrictions ? target.getSpans(context, requiredPostings) : null;
+            BLSpans targetSpans = hasTargetRestrictions ? target.getSpansProfiled(context, requiredPostings) : null;
             return new SpansCaptureRelationsBetweenSpans.Target(matchRelationsSpans, targetSpans, hasTargetRestrictions,
                     captureRelationsSpans, captureAs, captureTargetAs, targetField, optionalMatch);
         }
@@ -390,7 +390,7 @@ public class SpanQueryCaptureRelationsBetweenSpans extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = sourceWeight.getSpans(context, requiredPostings);
+            BLSpans spans = sourceWeight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             List<SpansCaptureRelationsBetweenSpans.Target> targetSpans =
@@ -141,10 +141,10 @@ public class SpanQueryCaptureRelationsWithinSpan extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
-            BLSpans relations = relationsWeight.getSpans(context, requiredPostings);
+            BLSpans relations = relationsWeight.getSpansProfiled(context, requiredPostings);
             if (relations == null) {
                 // This can happen if these relations don't occur in this segment of the index
                 return spans;
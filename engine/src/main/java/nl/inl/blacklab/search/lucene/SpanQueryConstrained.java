@@ -89,7 +89,7 @@ public class SpanQueryConstrained extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansProd = prodWeight.getSpans(context, requiredPostings);
+            BLSpans spansProd = prodWeight.getSpansProfiled(context, requiredPostings);
             if (spansProd == null)
                 return null;
             return new SpansConstrained(spansProd, constraint,
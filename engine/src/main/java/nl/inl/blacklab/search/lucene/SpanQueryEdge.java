@@ -121,7 +121,7 @@ public class SpanQueryEdge extends BLSpanQueryAbstract {
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
 
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             return new SpansEdge(spans, trailingEdge);
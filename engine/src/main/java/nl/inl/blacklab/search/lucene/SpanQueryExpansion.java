@@ -187,7 +187,7 @@ public class SpanQueryExpansion extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansSource = weight.getSpans(context, requiredPostings);
+            BLSpans spansSource = weight.getSpansProfiled(context, requiredPostings);
             if (spansSource == null)
                 return null;
             return new SpansExpansionRaw(context.reader(), clauses.get(0).getField(), spansSource, direction, min, max);
@@ -176,7 +176,7 @@ public class SpanQueryFiSeq extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans anchorSpans = anchorWeight.getSpans(context, requiredPostings);
+            BLSpans anchorSpans = anchorWeight.getSpansProfiled(context, requiredPostings);
             if (anchorSpans == null)
                 return null;
             ForwardIndexAccessorLeafReader fiLeafReader = fiAccessor.getForwardIndexAccessorLeafReader(context);
@@ -97,7 +97,7 @@ public class SpanQueryFilterByHitLength extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansProd = prodWeight.getSpans(context, requiredPostings);
+            BLSpans spansProd = prodWeight.getSpansProfiled(context, requiredPostings);
             if (spansProd == null)
                 return null;
             return new SpansFilterByHitLength(spansProd, min, max);
@@ -158,7 +158,7 @@ public class SpanQueryFilterNGrams extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansSource = weight.getSpans(context, requiredPostings);
+            BLSpans spansSource = weight.getSpansProfiled(context, requiredPostings);
             if (spansSource == null)
                 return null;
             BLSpans filtered = new SpansFilterNGramsRaw(context.reader(), clauses.get(0).getField(),
@@ -38,6 +38,14 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
         this.guarantees = source.guarantees();
     }
 
+    public BLSpanQuery getClause() {
+        return clauses.get(0);
+    }
+
+    public Query getFilter() {
+        return filter;
+    }
+
     @Override
     public BLSpanQuery rewrite(IndexReader reader) throws IOException {
         List<BLSpanQuery> rewritten = rewriteClauses(reader);
@@ -105,7 +113,7 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans result = weight.getSpans(context, requiredPostings);
+            BLSpans result = weight.getSpansProfiled(context, requiredPostings);
             if (result == null)
                 return null;
             Scorer scorer = filterWeight.scorer(context);
@@ -101,7 +101,7 @@ public class SpanQueryNot extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight == null ? null : weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight == null ? null : weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return new SpansNGrams(context.reader(), baseFieldName, 1, 1);
             return new SpansNot(context.reader(), baseFieldName, spans);
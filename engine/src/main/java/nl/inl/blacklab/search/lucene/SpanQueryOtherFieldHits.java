@@ -89,7 +89,7 @@ public class SpanQueryOtherFieldHits extends BLSpanQuery {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             return new SpansOtherFieldHits(spans, targetField, clause.getField());
@@ -93,10 +93,10 @@ public class SpanQueryOverlapping extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansProd = left.getSpans(context, requiredPostings);
+            BLSpans spansProd = left.getSpansProfiled(context, requiredPostings);
             if (spansProd == null)
                 return null;
-            BLSpans spansFilter = right.getSpans(context, requiredPostings);
+            BLSpans spansFilter = right.getSpansProfiled(context, requiredPostings);
             if (spansFilter == null)
                 return null;
             return new SpansOverlapping(spansProd, spansFilter, operation);
@@ -12,6 +12,9 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreMode;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexIntegrated;
 
 /**
  * Filters hits from a producer query based on the hit positions of a filter
@@ -143,17 +146,43 @@ public class SpanQueryPositionFilter extends BLSpanQueryAbstract {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spansProd = prodWeight.getSpans(context, requiredPostings);
+            BLSpans spansProd = prodWeight.getSpansProfiled(context, requiredPostings);
             if (spansProd == null)
                 return null;
-            BLSpans spansFilter = filterWeight.getSpans(context, requiredPostings);
+            BLSpans spansFilter = filterWeight.getSpansProfiled(context, requiredPostings);
             if (spansFilter == null) {
                 // No filter hits. If it's a positive filter, that means no producer hits can match.
                 // If it's a negative filter, all producer hits match.
                 return invert ? spansProd : null;
             }
+            SpansInBuckets filterBoundaries = tagBoundariesFilter(context, spansFilter);
+            if (filterBoundaries != null) {
+                return new SpansPositionFilter(spansProd, filterBoundaries, false, operation, invert, adjustLeading,
+                        adjustTrailing);
+            }
             return new SpansPositionFilter(spansProd, spansFilter, operation, invert, adjustLeading, adjustTrailing);
         }
+
+        /**
+         * If our filter finds all occurrences of a single inline tag, and this segment stores the boundaries for
+         * that tag, use those instead of gathering and sorting all the tag spans in each document.
+         *
+         * @param context segment
+         * @param spansFilter the filter spans
+         * @return filter spans in buckets using the stored tag boundaries, or null if not possible
+         */
+        private SpansInBuckets tagBoundariesFilter(LeafReaderContext context, BLSpans spansFilter) {
+            if (!(clauses.get(1) instanceof SpanQueryRelations))
+                return null;
+            SpanQueryRelations tagQuery = (SpanQueryRelations) clauses.get(1);
+            String tagName = tagQuery.getPlainTagName();
+            if (tagName == null || queryInfo == null || queryInfo.index().getType() != BlackLabIndex.IndexType.INTEGRATED)
+                return null;
+            TagBoundariesSegmentReader tagBoundaries = BlackLabIndexIntegrated.tagBoundaries(context);
+            if (tagBoundaries == null || !tagBoundaries.has(tagQuery.getRealField(), tagName))
+                return null;
+            return new SpansInBucketsTagBoundaries(spansFilter, tagBoundaries, tagQuery.getRealField(), tagName);
+        }
     }
 
     /** The different positional operations */
@@ -109,7 +109,7 @@ public class SpanQueryRelationSpanAdjust extends BLSpanQuery {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             spans = new SpansRelationSpanAdjust(spans, mode, clause.getField());
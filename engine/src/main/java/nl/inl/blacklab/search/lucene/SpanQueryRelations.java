@@ -252,7 +252,7 @@ public class SpanQueryRelations extends BLSpanQuery implements TagQuery {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans spans = weight.getSpans(context, requiredPostings);
+            BLSpans spans = weight.getSpansProfiled(context, requiredPostings);
             if (spans == null)
                 return null;
             FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(relationFieldName);
@@ -336,6 +336,22 @@ public class SpanQueryRelations extends BLSpanQuery implements TagQuery {
         return RelationUtil.typeFromFullType(relationType);
     }
 
+    /**
+     * If this query finds all occurrences of a single inline tag (e.g. &lt;s/&gt;), return the tag name.
+     * <p>
+     * Such queries may use the tag boundaries stored in the index to speed up e.g. <code>within</code>.
+     *
+     * @return tag name, or null if this query doesn't simply find all occurrences of a single tag
+     */
+    public String getPlainTagName() {
+        if (!isTagQuery() || !attributes.isEmpty() || spanMode != RelationInfo.SpanMode.FULL_SPAN || targetField != null)
+            return null;
+        if (direction != Direction.FORWARD && direction != Direction.BOTH_DIRECTIONS)
+            return null;
+        String tagName = getElementName();
+        return tagName.matches("[\\p{L}\\p{N}_\\-]+") ? tagName : null; // must be a name, not a regex
+    }
+
     @Override
     public long reverseMatchingCost(IndexReader reader) {
         return clause.reverseMatchingCost(reader);
@@ -641,7 +641,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
             List<BLSpans> parts = new ArrayList<>();
             for (BLSpanWeight weight : weights) {
-                BLSpans part = weight.getSpans(context, requiredPostings);
+                BLSpans part = weight.getSpansProfiled(context, requiredPostings);
                 if (part == null)
                     return null;
                 parts.add(part);
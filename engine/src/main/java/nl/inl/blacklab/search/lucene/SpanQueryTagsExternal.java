@@ -128,7 +128,7 @@ public class SpanQueryTagsExternal extends BLSpanQuery implements TagQuery {
 
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
-            BLSpans startTags = weight.getSpans(context, requiredPostings);
+            BLSpans startTags = weight.getSpansProfiled(context, requiredPostings);
             if (startTags == null)
                 return null;
             FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo(startTagFieldName);
@@ -1,14 +1,14 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.spans.Spans;
 
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongList;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
 
 /**
  * Wrap a Spans to retrieve sequences of certain matches (in "buckets"), so we
@@ -32,19 +32,26 @@ abstract class SpansInBucketsAbstract extends SpansInBuckets {
     
     protected final BLSpans source;
 
-    /** Starts and ends of hits in our bucket */
-    protected final LongList startsEnds = new LongArrayList(LIST_INITIAL_CAPACITY);
+    /** Starts and ends of hits in our bucket, packed as (start << 32) | end.
+     *  Reused between buckets; only the first bucketSize elements are valid. */
+    private long[] startsEnds = new long[LIST_INITIAL_CAPACITY];
+
+    /** Number of hits in our bucket */
+    private int bucketSize = 0;
 
     /**
      * For each hit we fetched, store the match info (e.g. captured groups, relations),
      * so we don't lose this information.
+     *
+     * The arrays are reused between buckets (cleared before use), so we don't allocate
+     * a new array for each hit.
      */
-    protected ObjectArrayList<MatchInfo[]> matchInfoPerHit = null;
+    private MatchInfo[][] matchInfoPerHit = null;
 
     /**
      * For each hit we fetched, store the active relation info, if any.
      */
-    protected ObjectArrayList<RelationInfo> activeRelationPerHit = null;
+    private RelationInfo[] activeRelationPerHit = null;
 
     private HitQueryContext hitQueryContext;
 
@@ -78,38 +85,52 @@ abstract class SpansInBucketsAbstract extends SpansInBuckets {
         assert positionedAtHitIfPositionedInDoc();
         assert source.startPosition() >= 0 && source.startPosition() != Spans.NO_MORE_POSITIONS;
         assert source.endPosition() >= 0 && source.endPosition() != Spans.NO_MORE_POSITIONS;
-        long span = ((long)source.startPosition() << 32) | source.endPosition();
-        startsEnds.add(span);
+        int index = bucketSize;
+        startsEnds = LongArrays.grow(startsEnds, index + 1);
+        startsEnds[index] = ((long)source.startPosition() << 32) | source.endPosition();
         if (doMatchInfo) {
             // Store match information such as captured groups and active relation (if any)
-            MatchInfo[] matchInfo = new MatchInfo[hitQueryContext.numberOfMatchInfos()];
+            matchInfoPerHit = ObjectArrays.grow(matchInfoPerHit, index + 1);
+            activeRelationPerHit = ObjectArrays.grow(activeRelationPerHit, index + 1);
+            int numberOfMatchInfos = hitQueryContext.numberOfMatchInfos();
+            MatchInfo[] matchInfo = matchInfoPerHit[index];
+            if (matchInfo == null || matchInfo.length != numberOfMatchInfos) {
+                matchInfo = new MatchInfo[numberOfMatchInfos];
+                matchInfoPerHit[index] = matchInfo;
+            } else {
+                Arrays.fill(matchInfo, null);
+            }
             source.getMatchInfo(matchInfo);
-            if (matchInfoPerHit == null)
-                matchInfoPerHit = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
-            matchInfoPerHit.add(matchInfo);
-            if (activeRelationPerHit == null)
-                activeRelationPerHit = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
             RelationInfo relationInfo = source.getRelationInfo();
-            activeRelationPerHit.add(relationInfo == null ? null : relationInfo.copy());
+            activeRelationPerHit[index] = relationInfo == null ? null : relationInfo.copy();
         }
+        bucketSize++;
         assert positionedAtHitIfPositionedInDoc();
     }
 
+    /**
+     * Get the packed start and end of a hit in the bucket.
+     *
+     * @param indexInBucket index of the hit
+     * @return (start << 32) | end
+     */
+    protected long startEnd(int indexInBucket) {
+        return startsEnds[indexInBucket];
+    }
+
     @Override
     public int bucketSize() {
-        return startsEnds.size();
+        return bucketSize;
     }
 
     @Override
     public int startPosition(int indexInBucket) {
-        //return bucketSlow.get(indexInBucket).start();
-        return (int)(startsEnds.getLong(indexInBucket) >> 32);
+        return (int)(startsEnds[indexInBucket] >> 32);
     }
 
     @Override
     public int endPosition(int indexInBucket) {
-        //return bucketSlow.get(indexInBucket).end();
-        return (int) startsEnds.getLong(indexInBucket);
+        return (int) startsEnds[indexInBucket];
     }
 
     public SpansInBucketsAbstract(BLSpans source) {
@@ -211,15 +232,15 @@ abstract class SpansInBucketsAbstract extends SpansInBuckets {
 
     private int gatherHitsInternal() throws IOException {
         assert positionedAtHitIfPositionedInDoc();
-        startsEnds.clear();
         if (doMatchInfo) {
-            matchInfoPerHit.clear();
-            activeRelationPerHit.clear();
+            // Don't keep relation info from the previous bucket alive
+            Arrays.fill(activeRelationPerHit, 0, bucketSize, null);
         }
+        bucketSize = 0;
         doMatchInfo = clauseCapturesMatchInfo && hitQueryContext != null && hitQueryContext.numberOfMatchInfos() > 0;
         if (doMatchInfo && matchInfoPerHit == null) {
-            matchInfoPerHit = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
-            activeRelationPerHit = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
+            matchInfoPerHit = new MatchInfo[LIST_INITIAL_CAPACITY][];
+            activeRelationPerHit = new RelationInfo[LIST_INITIAL_CAPACITY];
         }
         assert(source.startPosition() >= 0 && source.startPosition() != Spans.NO_MORE_POSITIONS);
         gatherHits();
@@ -249,7 +270,7 @@ abstract class SpansInBucketsAbstract extends SpansInBuckets {
     public void getMatchInfo(int indexInBucket, MatchInfo[] matchInfo) {
         if (!doMatchInfo)
             return;
-        MatchInfo[] previouslyCapturedMatchInfo = matchInfoPerHit.get(indexInBucket);
+        MatchInfo[] previouslyCapturedMatchInfo = matchInfoPerHit[indexInBucket];
         if (previouslyCapturedMatchInfo != null) {
             for (int i = 0; i < matchInfo.length; i++) {
                 if (previouslyCapturedMatchInfo.length > i &&  previouslyCapturedMatchInfo[i] != null)
@@ -267,7 +288,7 @@ abstract class SpansInBucketsAbstract extends SpansInBuckets {
     public RelationInfo getRelationInfo(int indexInBucket) {
         if (!doMatchInfo)
             return null;
-        return activeRelationPerHit.get(indexInBucket);
+        return activeRelationPerHit[indexInBucket];
     }
 
     @Override
@@ -2,43 +2,25 @@ package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrays;
-import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 
 /**
  * Wrap a Spans to retrieve hits per document, so we can process all matches in
  * a document efficiently.
  *
- * Hits are sorted by the given comparator.
+ * Hits are sorted by start point or by end point. We sort the packed start/end
+ * values using an (indirect) radix sort, reusing our buffers between buckets.
  */
 class SpansInBucketsPerDocumentSorted extends SpansInBucketsPerDocument {
 
-    private static int compareEnds(long a, long b) {
-        int ea = (int)a;
-        int eb = (int)b;
-        if (ea == eb) {
-            // Identical end points; start point is tiebreaker
-            return (int)(a >> 32) - (int)(b >> 32);
-        }
-        return ea - eb;
-    }
-
     private final boolean sortByStartPoint;
 
-    private final IntArrayList sortIndexes = new IntArrayList(LIST_INITIAL_CAPACITY);
+    /** Indexes of the hits in the bucket, in sorted order */
+    private int[] sortIndexes = new int[LIST_INITIAL_CAPACITY];
 
-    private final IntComparator cmpStartPoint = (i1, i2) -> {
-        long a = startsEnds.getLong(i1);
-        long b = startsEnds.getLong(i2);
-        return Long.compare(a, b);
-    };
-
-    private final IntComparator cmpEndPoint = (i1, i2) -> {
-        long a = startsEnds.getLong(i1);
-        long b = startsEnds.getLong(i2);
-        return compareEnds(a, b);
-    };
+    /** Sort key for each hit in the bucket: (start << 32) | end or (end << 32) | start */
+    private long[] sortKeys = new long[LIST_INITIAL_CAPACITY];
 
     private final SpanGuaranteesAdapter guarantees;
 
@@ -62,36 +44,43 @@ class SpansInBucketsPerDocumentSorted extends SpansInBucketsPerDocument {
     protected void gatherHits() throws IOException {
         super.gatherHits();
 
-        // Sort by start- or endpoint
-        initSortIndexes();
-        IntArrays.quickSort(sortIndexes.elements(), 0, sortIndexes.size(), sortByStartPoint ? cmpStartPoint : cmpEndPoint);
-    }
+        // Determine sort keys (positions are never negative, so packed values sort correctly)
+        int n = super.bucketSize();
+        sortIndexes = IntArrays.ensureCapacity(sortIndexes, n);
+        sortKeys = LongArrays.ensureCapacity(sortKeys, n);
+        boolean alreadySorted = true;
+        for (int i = 0; i < n; i++) {
+            long startEnd = startEnd(i);
+            long key = sortByStartPoint ? startEnd : (startEnd << 32) | (startEnd >>> 32);
+            sortKeys[i] = key;
+            sortIndexes[i] = i;
+            if (i > 0 && key < sortKeys[i - 1])
+                alreadySorted = false;
+        }
 
-    private void initSortIndexes() {
-        sortIndexes.clear();
-        sortIndexes.ensureCapacity(startsEnds.size());
-        for (int i = 0; i < startsEnds.size(); i++)
-            sortIndexes.add(i);
+        // Sort by start- or endpoint (if necessary)
+        if (!alreadySorted)
+            LongArrays.radixSortIndirect(sortIndexes, sortKeys, 0, n, false);
     }
 
     @Override
     public int startPosition(int indexInBucket) {
-        return super.startPosition(sortIndexes.getInt(indexInBucket));
+        return super.startPosition(sortIndexes[indexInBucket]);
     }
 
     @Override
     public int endPosition(int indexInBucket) {
-        return super.endPosition(sortIndexes.getInt(indexInBucket));
+        return super.endPosition(sortIndexes[indexInBucket]);
     }
 
     @Override
     public void getMatchInfo(int indexInBucket, MatchInfo[] matchInfo) {
-        super.getMatchInfo(sortIndexes.getInt(indexInBucket), matchInfo);
+        super.getMatchInfo(sortIndexes[indexInBucket], matchInfo);
     }
 
     @Override
     public RelationInfo getRelationInfo(int indexInBucket) {
-        return super.getRelationInfo(sortIndexes.getInt(indexInBucket));
+        return super.getRelationInfo(sortIndexes[indexInBucket]);
     }
 
     @Override
@@ -1,12 +1,13 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 
 import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.spans.Spans;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrays;
 
 /**
  * Gather buckets where all hits have the same start and end position.
@@ -30,13 +31,15 @@ class SpansInBucketsSameStartEnd extends SpansInBuckets {
     /**
      * For each hit we fetched, store the match info (e.g. captured groups, relations),
      * so we don't lose this information.
+     *
+     * The arrays are reused between buckets (cleared before use).
      */
-    private ObjectArrayList<MatchInfo[]> matchInfos = null;
+    private MatchInfo[][] matchInfos = null;
 
     /**
      * For each hit we fetched, store the active relation info, if any.
      */
-    protected ObjectArrayList<RelationInfo> activeRelationPerHit = null;
+    private RelationInfo[] activeRelationPerHit = null;
 
     private HitQueryContext hitQueryContext;
 
@@ -106,13 +109,13 @@ class SpansInBucketsSameStartEnd extends SpansInBuckets {
      */
     protected int gatherHitsWithSameStartEnd() throws IOException {
         if (doMatchInfo) {
-            matchInfos.clear();
-            activeRelationPerHit.clear();
+            // Don't keep relation info from the previous bucket alive
+            Arrays.fill(activeRelationPerHit, 0, currentBucketSize, null);
         }
         doMatchInfo = clauseCapturesMatchInfo && hitQueryContext != null && hitQueryContext.numberOfMatchInfos() > 0;
         if (doMatchInfo && matchInfos == null) {
-            matchInfos = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
-            activeRelationPerHit = new ObjectArrayList<>(LIST_INITIAL_CAPACITY);
+            matchInfos = new MatchInfo[LIST_INITIAL_CAPACITY][];
+            activeRelationPerHit = new RelationInfo[LIST_INITIAL_CAPACITY];
         }
         currentStartPosition = source.startPosition();
         currentEndPosition = source.endPosition();
@@ -121,12 +124,20 @@ class SpansInBucketsSameStartEnd extends SpansInBuckets {
         while (sourceStart != Spans.NO_MORE_POSITIONS && sourceStart == currentStartPosition &&
                 source.endPosition() == currentEndPosition) {
             if (doMatchInfo) {
-                int n = hitQueryContext == null ? 0 : hitQueryContext.numberOfMatchInfos();
-                MatchInfo[] matchInfo = new MatchInfo[n];
+                int index = currentBucketSize;
+                matchInfos = ObjectArrays.grow(matchInfos, index + 1);
+                activeRelationPerHit = ObjectArrays.grow(activeRelationPerHit, index + 1);
+                int n = hitQueryContext.numberOfMatchInfos();
+                MatchInfo[] matchInfo = matchInfos[index];
+                if (matchInfo == null || matchInfo.length != n) {
+                    matchInfo = new MatchInfo[n];
+                    matchInfos[index] = matchInfo;
+                } else {
+                    Arrays.fill(matchInfo, null);
+                }
                 source.getMatchInfo(matchInfo);
-                matchInfos.add(matchInfo);
                 RelationInfo relationInfo = source.getRelationInfo();
-                activeRelationPerHit.add(relationInfo == null ? null  : relationInfo.copy());
+                activeRelationPerHit[index] = relationInfo == null ? null  : relationInfo.copy();
             }
             currentBucketSize++;
             sourceStart = source.nextStartPosition();
@@ -176,7 +187,7 @@ class SpansInBucketsSameStartEnd extends SpansInBuckets {
     public void getMatchInfo(int indexInBucket, MatchInfo[] matchInfo) {
         if (!doMatchInfo)
             return;
-        MatchInfo[] thisMatchInfo = matchInfos.get(indexInBucket);
+        MatchInfo[] thisMatchInfo = matchInfos[indexInBucket];
         if (thisMatchInfo != null) {
             for (int i = 0; i < matchInfo.length; i++) {
                 if (thisMatchInfo[i] != null) // don't overwrite other clause's captures!
@@ -192,7 +203,7 @@ class SpansInBucketsSameStartEnd extends SpansInBuckets {
 
     @Override
     public RelationInfo getRelationInfo(int indexInBucket) {
-        return doMatchInfo ? activeRelationPerHit.get(indexInBucket) : null;
+        return doMatchInfo ? activeRelationPerHit[indexInBucket] : null;
     }
 
     @Override
@@ -0,0 +1,221 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.spans.Spans;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
+import nl.inl.blacklab.forwardindex.TagBoundariesSegmentReader;
+
+/**
+ * Gets all occurrences of an inline tag in a document as a single bucket,
+ * using the tag boundaries stored in the index.
+ *
+ * This gives the same buckets as {@link SpansInBucketsPerDocument} on the tag spans,
+ * but we don't need to iterate over and decode all the tag spans to determine them.
+ * Document iteration is delegated to the tag spans. Only if match info (e.g. the captured
+ * tag) is requested do we iterate over the tag spans in the current document.
+ *
+ * Tags are sorted by start position, then by end position.
+ */
+class SpansInBucketsTagBoundaries extends SpansInBuckets {
+
+    /** The tag spans (used for document iteration and match info) */
+    private final BLSpans tags;
+
+    /** Where to read the tag boundaries */
+    private final TagBoundariesSegmentReader tagBoundariesReader;
+
+    /** Relations field the tags were indexed in */
+    private final String luceneField;
+
+    /** Name of the inline tag */
+    private final String tagName;
+
+    /** Document our current bucket is from, or -1 if we haven't fetched a bucket in this document yet */
+    private int bucketDocId = -1;
+
+    /** Boundaries of the tags in the current document */
+    private TagBoundaries boundaries = TagBoundaries.EMPTY;
+
+    private HitQueryContext hitQueryContext;
+
+    /** Match info for each tag in the current bucket, or null if not determined yet */
+    private MatchInfo[][] matchInfoPerTag;
+
+    /** Relation info for each tag in the current bucket, or null if not determined yet */
+    private RelationInfo[] relationInfoPerTag;
+
+    /**
+     * Construct SpansInBucketsTagBoundaries.
+     *
+     * @param tags the tag spans
+     * @param tagBoundariesReader where to read the tag boundaries
+     * @param luceneField relations field the tags were indexed in
+     * @param tagName name of the inline tag
+     */
+    public SpansInBucketsTagBoundaries(BLSpans tags, TagBoundariesSegmentReader tagBoundariesReader,
+            String luceneField, String tagName) {
+        this.tags = tags;
+        this.tagBoundariesReader = tagBoundariesReader;
+        this.luceneField = luceneField;
+        this.tagName = tagName;
+    }
+
+    @Override
+    public int docID() {
+        return tags.docID();
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+        return tags.nextDoc();
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+        return tags.advance(target);
+    }
+
+    @Override
+    public int nextBucket() throws IOException {
+        int docId = tags.docID();
+        if (docId < 0)
+            return -1; // not nexted yet, no bucket
+        if (docId == NO_MORE_DOCS || docId == bucketDocId)
+            return NO_MORE_BUCKETS; // (only one bucket per document)
+        bucketDocId = docId;
+        boundaries = tagBoundariesReader.get(luceneField, tagName, docId);
+        matchInfoPerTag = null;
+        relationInfoPerTag = null;
+        return docId;
+    }
+
+    @Override
+    public int advanceBucket(int targetPos) throws IOException {
+        return nextBucket();
+    }
+
+    @Override
+    public int bucketSize() {
+        return boundaries.size();
+    }
+
+    @Override
+    public int startPosition(int index) {
+        return boundaries.start(index);
+    }
+
+    @Override
+    public int endPosition(int index) {
+        return boundaries.end(index);
+    }
+
+    /**
+     * Find the first tag in the current bucket that encloses the specified span.
+     *
+     * @param start start of the span
+     * @param end end of the span
+     * @return index of the enclosing tag in the bucket, or -1 if there is none
+     */
+    public int findEnclosing(int start, int end) {
+        return boundaries.findEnclosing(start, end);
+    }
+
+    @Override
+    public void setHitQueryContext(HitQueryContext context) {
+        this.hitQueryContext = context;
+        tags.setHitQueryContext(context);
+    }
+
+    private boolean doMatchInfo() {
+        return hitQueryContext != null && hitQueryContext.numberOfMatchInfos() > 0 && tags.hasMatchInfo();
+    }
+
+    /**
+     * Iterate over the tag spans in the current document to collect their match info.
+     */
+    private void collectMatchInfo() {
+        if (matchInfoPerTag != null)
+            return;
+        int n = boundaries.size();
+        matchInfoPerTag = new MatchInfo[n][];
+        relationInfoPerTag = new RelationInfo[n];
+        try {
+            while (tags.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                // Find the tag in our bucket (with the same start position and end position, and not seen yet)
+                int start = tags.startPosition(), end = tags.endPosition();
+                for (int i = boundaries.lastStartingAtOrBefore(start); i >= 0 && boundaries.start(i) == start; i--) {
+                    if (boundaries.end(i) == end && matchInfoPerTag[i] == null) {
+                        matchInfoPerTag[i] = new MatchInfo[hitQueryContext.numberOfMatchInfos()];
+                        tags.getMatchInfo(matchInfoPerTag[i]);
+                        RelationInfo relationInfo = tags.getRelationInfo();
+                        relationInfoPerTag[i] = relationInfo == null ? null : relationInfo.copy();
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @Override
+    public void getMatchInfo(int indexInBucket, MatchInfo[] matchInfo) {
+        if (!doMatchInfo())
+            return;
+        collectMatchInfo();
+        MatchInfo[] tagMatchInfo = matchInfoPerTag[indexInBucket];
+        if (tagMatchInfo != null) {
+            for (int i = 0; i < matchInfo.length; i++) {
+                if (tagMatchInfo.length > i && tagMatchInfo[i] != null)
+                    matchInfo[i] = tagMatchInfo[i];
+            }
+        }
+    }
+
+    @Override
+    public boolean hasMatchInfo() {
+        return tags.hasMatchInfo();
+    }
+
+    @Override
+    public RelationInfo getRelationInfo(int indexInBucket) {
+        if (!doMatchInfo())
+            return null;
+        collectMatchInfo();
+        return relationInfoPerTag[indexInBucket];
+    }
+
+    @Override
+    public SpanGuarantees guarantees() {
+        return tags.guarantees();
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+        return tags.asTwoPhaseIterator();
+    }
+
+    @Override
+    public long cost() {
+        return tags.cost();
+    }
+
+    @Override
+    public float positionsCost() {
+        return tags.positionsCost();
+    }
+
+    @Override
+    public int width() {
+        return tags.width();
+    }
+
+    @Override
+    public String toString() {
+        return "TAGBOUNDARIES(" + tags + ")";
+    }
+}
@@ -19,7 +19,10 @@ class SpansPositionFilter extends BLSpans {
     private final BLSpans producer;
 
     /** The spans we use to filter the producer spans */
-    private final SpansInBucketsPerDocument filter;
+    private final SpansInBuckets filter;
+
+    /** Our filter if it uses stored tag boundaries (allows faster WITHIN check), otherwise null */
+    private final SpansInBucketsTagBoundaries filterBoundaries;
 
     /** What start pos is the producer at? */
     private int producerStart = -1;
@@ -81,12 +84,33 @@ class SpansPositionFilter extends BLSpans {
      */
     public SpansPositionFilter(BLSpans producer, BLSpans filter, Operation op, boolean invert,
             int leftAdjust, int rightAdjust) {
+        this(producer, SpansInBucketsPerDocument.sorted(filter), filter.guarantees().hitsAllSameLength(), op,
+                invert, leftAdjust, rightAdjust);
+    }
+
+    /**
+     * Find hits from producer, filtered by the filter according to the specified op
+     *
+     * @param producer the hits we may be interested in
+     * @param filter the hits used to filter the producer hits, one bucket per document, sorted by start position
+     * @param filterFixedLength are the filter hits guaranteed to have the same length?
+     * @param op filter operation to use
+     * @param invert if true, produce hits that DON'T match the filter instead
+     * @param leftAdjust how to adjust the left edge of the producer hits while
+     *            matching
+     * @param rightAdjust how to adjust the right edge of the producer hits while
+     *            matching
+     */
+    public SpansPositionFilter(BLSpans producer, SpansInBuckets filter, boolean filterFixedLength, Operation op,
+            boolean invert, int leftAdjust, int rightAdjust) {
         super(SpanQueryPositionFilter.createGuarantees(producer.guarantees()));
         this.producer = BLSpans.ensureSorted(producer);
         this.op = op;
         this.invert = invert;
-        this.filter = SpansInBucketsPerDocument.sorted(filter);
-        this.filterFixedLength = filter.guarantees().hitsAllSameLength();
+        this.filter = filter;
+        this.filterBoundaries = filter instanceof SpansInBucketsTagBoundaries ?
+                (SpansInBucketsTagBoundaries) filter : null;
+        this.filterFixedLength = filterFixedLength;
         this.leftAdjust = leftAdjust;
         this.rightAdjust = rightAdjust;
         if (invert) {
@@ -395,6 +419,22 @@ class SpansPositionFilter extends BLSpans {
                 break;
             case WITHIN:
                 // Looking for producer hits contained by a filter hit
+                if (filterBoundaries != null) {
+                    // We can find the enclosing tag directly from the stored tag boundaries
+                    int i = filterBoundaries.findEnclosing(producerStart + leftAdjust,
+                            producer.endPosition() + rightAdjust);
+                    if (i >= 0) {
+                        if (invert) {
+                            // This producer hit is no good; on to the next.
+                            invertedMatch = false;
+                            break;
+                        }
+                        // Yes, this producer hit is contained within this filter hit
+                        filterIndex = i; // remember for captured groups
+                        return producerStart;
+                    }
+                    break;
+                }
                 while (min <= max) {
                     int i = (min + max) / 2;
                     if (filter.startPosition(i) > producerStart + leftAdjust) {
@@ -0,0 +1,215 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.spans.SpanCollector;
+
+/**
+ * Wraps a BLSpans and counts and times the calls made to it.
+ * <p>
+ * Used by {@link QueryProfiler} to find out which part of a query does the most work.
+ * Note that the times include the time spent in child spans; {@link QueryProfiler.Node#selfNanos()}
+ * subtracts those.
+ * <p>
+ * As the wrapped spans are no longer visible to the parent, optimizations that depend on the concrete
+ * type of a child spans are skipped while profiling.
+ */
+class SpansProfiled extends BLSpans {
+
+    /** The spans we're profiling */
+    private final BLSpans in;
+
+    /** Where to record our statistics (for this node and segment) */
+    private final QueryProfiler.Stats stats;
+
+    SpansProfiled(BLSpans in, QueryProfiler.Stats stats) {
+        super(in.guarantees());
+        this.in = in;
+        this.stats = stats;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+        long start = System.nanoTime();
+        int doc = in.nextDoc();
+        stats.nanos += System.nanoTime() - start;
+        stats.nextDocCalls++;
+        if (doc != NO_MORE_DOCS)
+            stats.docs++;
+        return doc;
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+        long start = System.nanoTime();
+        int doc = in.advance(target);
+        stats.nanos += System.nanoTime() - start;
+        stats.advanceCalls++;
+        if (doc != NO_MORE_DOCS)
+            stats.docs++;
+        return doc;
+    }
+
+    @Override
+    public int nextStartPosition() throws IOException {
+        long start = System.nanoTime();
+        int pos = in.nextStartPosition();
+        stats.nanos += System.nanoTime() - start;
+        stats.nextStartPositionCalls++;
+        if (pos != NO_MORE_POSITIONS)
+            stats.hits++;
+        return pos;
+    }
+
+    @Override
+    public int advanceStartPosition(int target) throws IOException {
+        long start = System.nanoTime();
+        int pos = in.advanceStartPosition(target);
+        stats.nanos += System.nanoTime() - start;
+        stats.advanceStartPositionCalls++;
+        if (pos != NO_MORE_POSITIONS)
+            stats.hits++;
+        return pos;
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+        TwoPhaseIterator inner = in.asTwoPhaseIterator();
+        if (inner == null)
+            return null;
+        return new TwoPhaseIterator(new SpansProfiledApproximation(inner)) {
+            @Override
+            public boolean matches() throws IOException {
+                long start = System.nanoTime();
+                boolean matches = inner.matches();
+                stats.nanos += System.nanoTime() - start;
+                stats.twoPhaseMatchCalls++;
+                return matches;
+            }
+
+            @Override
+            public float matchCost() {
+                return inner.matchCost();
+            }
+
+            @Override
+            public String toString() {
+                return "SpansProfiled@asTwoPhaseIterator(inner=" + inner + ", in=" + in + ")";
+            }
+        };
+    }
+
+    /** Counts and times the approximation of a two-phase iterator, like the spans themselves. */
+    private class SpansProfiledApproximation extends DocIdSetIterator {
+
+        private final DocIdSetIterator approximation;
+
+        SpansProfiledApproximation(TwoPhaseIterator inner) {
+            this.approximation = inner.approximation();
+        }
+
+        @Override
+        public int docID() {
+            return approximation.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            long start = System.nanoTime();
+            int doc = approximation.nextDoc();
+            stats.nanos += System.nanoTime() - start;
+            stats.nextDocCalls++;
+            if (doc != NO_MORE_DOCS)
+                stats.docs++;
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            long start = System.nanoTime();
+            int doc = approximation.advance(target);
+            stats.nanos += System.nanoTime() - start;
+            stats.advanceCalls++;
+            if (doc != NO_MORE_DOCS)
+                stats.docs++;
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return approximation.cost();
+        }
+    }
+
+    @Override
+    public int docID() {
+        return in.docID();
+    }
+
+    @Override
+    public int startPosition() {
+        return in.startPosition();
+    }
+
+    @Override
+    public int endPosition() {
+        return in.endPosition();
+    }
+
+    @Override
+    public int width() {
+        return in.width();
+    }
+
+    @Override
+    public void collect(SpanCollector collector) throws IOException {
+        in.collect(collector);
+    }
+
+    @Override
+    public float positionsCost() {
+        return in.positionsCost();
+    }
+
+    @Override
+    public long cost() {
+        return in.cost();
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        in.setHitQueryContext(context);
+    }
+
+    @Override
+    public void getMatchInfo(MatchInfo[] matchInfo) {
+        in.getMatchInfo(matchInfo);
+    }
+
+    @Override
+    public boolean hasMatchInfo() {
+        return in.hasMatchInfo();
+    }
+
+    @Override
+    public RelationInfo getRelationInfo() {
+        return in.getRelationInfo();
+    }
+
+    @Override
+    public String getOverriddenField() {
+        return in.getOverriddenField();
+    }
+
+    @Override
+    public SpanGuarantees guarantees() {
+        return in.guarantees();
+    }
+
+    @Override
+    public String toString() {
+        return "PROFILED(" + in + ")";
+    }
+}
@@ -0,0 +1,321 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.spans.SpanCollector;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * Matches any of a (large) number of terms in the same annotation.
+ * <p>
+ * Used instead of the regular OR for e.g. regular expressions that expand to
+ * many terms. The regular OR keeps a Spans per term in two priority queues (one
+ * by document, one by position), which gets slow with thousands of terms.
+ * <p>
+ * Instead, we read the postings of rare terms up front into one sorted array,
+ * and keep only the more frequent terms in a priority queue by document. When
+ * we get to a document, we decode all positions of the terms occurring there
+ * into a buffer and sort it, instead of merging them through a priority queue.
+ * <p>
+ * Like the regular OR, a position that matches more than one term (which can
+ * happen if multiple values were indexed at the same position) produces a hit
+ * for each term. Hits are always a single token long.
+ */
+public class SpansTermDisjunction extends BLSpans {
+
+    /** Default value for maxRareTermFreq. */
+    public static final int DEFAULT_MAX_RARE_TERM_FREQ = 64;
+
+    /** Terms that occur at most this many times are read up front. */
+    private static int maxRareTermFreq = DEFAULT_MAX_RARE_TERM_FREQ;
+
+    /** Max. number of positions to read up front (per segment). */
+    private static final int MAX_RARE_POSITIONS = 1 << 20;
+
+    /** Postings of frequent terms, by document */
+    private static class DocQueue extends PriorityQueue<PostingsEnum> {
+        DocQueue(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean lessThan(PostingsEnum a, PostingsEnum b) {
+            return a.docID() < b.docID();
+        }
+    }
+
+    /** Postings of frequent terms that aren't in the current document (yet) */
+    private final DocQueue docQueue;
+
+    /** Postings of frequent terms in the current document */
+    private final PostingsEnum[] inCurrentDoc;
+
+    /** Number of valid entries in inCurrentDoc */
+    private int inCurrentDocCount = 0;
+
+    /** Occurrences of rare terms, as (doc << 32 | position), sorted */
+    private final long[] rare;
+
+    /** Number of valid entries in rare */
+    private final int rareCount;
+
+    /** First entry in rare for the current (or next) document */
+    private int rareIndex = 0;
+
+    /** Estimated number of documents containing any of our terms */
+    private final long cost;
+
+    /** Average number of positions per document */
+    private final float positionsCost;
+
+    /** Current document */
+    private int currentDoc = -1;
+
+    /** Positions in the current document, sorted (only valid if positionsRead) */
+    private int[] positions = new int[16];
+
+    /** Number of valid entries in positions */
+    private int positionsCount = 0;
+
+    /** Have we read the positions for the current document yet? */
+    private boolean positionsRead = false;
+
+    /** Index of the current hit in positions */
+    private int positionIndex = -1;
+
+    /**
+     * Set the maximum frequency of terms to read up front.
+     *
+     * Mostly useful for testing; 0 means all terms are kept in the queue.
+     *
+     * @param maxRareTermFreq terms that occur at most this many times are read up front
+     */
+    public static void setMaxRareTermFreq(int maxRareTermFreq) {
+        SpansTermDisjunction.maxRareTermFreq = maxRareTermFreq;
+    }
+
+    /**
+     * Create spans for a set of terms in a segment.
+     *
+     * @param context segment to find the terms in
+     * @param termStates terms to find (all in the same Lucene field), with their states
+     * @param guarantees guarantees for our hits
+     * @return the spans, or null if none of the terms occur in this segment
+     */
+    public static SpansTermDisjunction create(LeafReaderContext context, Map<Term, TermStates> termStates,
+            SpanGuarantees guarantees) throws IOException {
+        if (termStates.isEmpty())
+            return null;
+        String luceneField = termStates.keySet().iterator().next().field();
+        Terms terms = context.reader().terms(luceneField);
+        if (terms == null)
+            return null;
+        if (!terms.hasPositions())
+            throw new IllegalStateException("field \"" + luceneField + "\" was indexed without position data");
+        TermsEnum termsEnum = terms.iterator();
+
+        List<PostingsEnum> frequent = new ArrayList<>();
+        long[] rare = new long[0];
+        int rareCount = 0;
+        long cost = 0;
+        long totalFreq = 0;
+        int maxRareTermFreq = SpansTermDisjunction.maxRareTermFreq;
+        for (Map.Entry<Term, TermStates> entry: termStates.entrySet()) {
+            TermState state = entry.getValue().get(context);
+            if (state == null)
+                continue; // term doesn't occur in this segment
+            termsEnum.seekExact(entry.getKey().bytes(), state);
+            long termFreq = termsEnum.totalTermFreq();
+            cost += termsEnum.docFreq();
+            totalFreq += termFreq;
+            PostingsEnum postings = termsEnum.postings(null, PostingsEnum.POSITIONS);
+            if (termFreq <= maxRareTermFreq && rareCount + termFreq <= MAX_RARE_POSITIONS) {
+                // Read all occurrences now, so we don't need to keep this term in the queue
+                rare = ArrayUtil.grow(rare, rareCount + (int) termFreq);
+                while (postings.nextDoc() != NO_MORE_DOCS) {
+                    long doc = (long) postings.docID() << 32;
+                    for (int i = postings.freq(); i > 0; i--)
+                        rare[rareCount++] = doc | postings.nextPosition();
+                }
+            } else {
+                frequent.add(postings);
+            }
+        }
+        if (frequent.isEmpty() && rareCount == 0)
+            return null;
+        Arrays.sort(rare, 0, rareCount);
+        float positionsCost = cost == 0 ? 1 : (float) totalFreq / cost;
+        return new SpansTermDisjunction(frequent, rare, rareCount, cost, positionsCost, guarantees);
+    }
+
+    private SpansTermDisjunction(List<PostingsEnum> frequent, long[] rare, int rareCount, long cost,
+            float positionsCost, SpanGuarantees guarantees) throws IOException {
+        super(guarantees);
+        docQueue = new DocQueue(Math.max(1, frequent.size()));
+        inCurrentDoc = new PostingsEnum[frequent.size()];
+        for (PostingsEnum postings: frequent) {
+            if (postings.nextDoc() != NO_MORE_DOCS)
+                docQueue.add(postings);
+        }
+        this.rare = rare;
+        this.rareCount = rareCount;
+        this.cost = cost;
+        this.positionsCost = positionsCost;
+    }
+
+    private static int docOf(long occurrence) {
+        return (int) (occurrence >>> 32);
+    }
+
+    @Override
+    public int docID() {
+        return currentDoc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+        assert currentDoc != NO_MORE_DOCS;
+        return advance(currentDoc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+        assert target > currentDoc;
+        if (currentDoc == NO_MORE_DOCS)
+            return NO_MORE_DOCS;
+
+        // Move the frequent terms in the current document along and put them back in the queue
+        boolean next = target == currentDoc + 1;
+        for (int i = 0; i < inCurrentDocCount; i++) {
+            PostingsEnum postings = inCurrentDoc[i];
+            if ((next ? postings.nextDoc() : postings.advance(target)) != NO_MORE_DOCS)
+                docQueue.add(postings);
+            inCurrentDoc[i] = null;
+        }
+        inCurrentDocCount = 0;
+        while (docQueue.size() > 0 && docQueue.top().docID() < target) {
+            if (docQueue.top().advance(target) == NO_MORE_DOCS)
+                docQueue.pop();
+            else
+                docQueue.updateTop();
+        }
+        while (rareIndex < rareCount && docOf(rare[rareIndex]) < target)
+            rareIndex++;
+
+        // The current document is the first one any of our terms occurs in
+        int nextFrequent = docQueue.size() > 0 ? docQueue.top().docID() : NO_MORE_DOCS;
+        int nextRare = rareIndex < rareCount ? docOf(rare[rareIndex]) : NO_MORE_DOCS;
+        currentDoc = Math.min(nextFrequent, nextRare);
+        while (docQueue.size() > 0 && docQueue.top().docID() == currentDoc)
+            inCurrentDoc[inCurrentDocCount++] = docQueue.pop();
+        positionsRead = false;
+        positionIndex = -1;
+        return currentDoc;
+    }
+
+    /** Read and sort all positions in the current document. */
+    private void readPositions() throws IOException {
+        positionsCount = 0;
+        for (int i = 0; i < inCurrentDocCount; i++) {
+            PostingsEnum postings = inCurrentDoc[i];
+            int freq = postings.freq();
+            positions = ArrayUtil.grow(positions, positionsCount + freq);
+            for (int j = 0; j < freq; j++)
+                positions[positionsCount++] = postings.nextPosition();
+        }
+        for (int i = rareIndex; i < rareCount && docOf(rare[i]) == currentDoc; i++) {
+            positions = ArrayUtil.grow(positions, positionsCount + 1);
+            positions[positionsCount++] = (int) rare[i];
+        }
+        Arrays.sort(positions, 0, positionsCount);
+        positionsRead = true;
+    }
+
+    @Override
+    public int nextStartPosition() throws IOException {
+        assert currentDoc >= 0 && currentDoc != NO_MORE_DOCS;
+        if (!positionsRead)
+            readPositions();
+        if (positionIndex < positionsCount)
+            positionIndex++;
+        return startPosition();
+    }
+
+    @Override
+    public int startPosition() {
+        if (!positionsRead || positionIndex < 0)
+            return -1; // .nextStartPosition() not called yet by client
+        return positionIndex < positionsCount ? positions[positionIndex] : NO_MORE_POSITIONS;
+    }
+
+    @Override
+    public int endPosition() {
+        if (!positionsRead || positionIndex < 0)
+            return -1; // .nextStartPosition() not called yet by client
+        return positionIndex < positionsCount ? positions[positionIndex] + 1 : NO_MORE_POSITIONS;
+    }
+
+    @Override
+    public int width() {
+        return 0;
+    }
+
+    @Override
+    public void collect(SpanCollector collector) {
+        // Nothing to collect: we only read positions, and our terms have no payloads BlackLab needs
+    }
+
+    @Override
+    public float positionsCost() {
+        return positionsCost;
+    }
+
+    @Override
+    public long cost() {
+        return cost;
+    }
+
+    @Override
+    public TwoPhaseIterator asTwoPhaseIterator() {
+        // Every document we find contains a hit, so there's no cheaper approximation.
+        return null;
+    }
+
+    @Override
+    protected void passHitQueryContextToClauses(HitQueryContext context) {
+        // no clauses, nothing to do
+    }
+
+    @Override
+    public void getMatchInfo(MatchInfo[] matchInfo) {
+        // no clauses, no groups
+    }
+
+    @Override
+    public boolean hasMatchInfo() {
+        return false;
+    }
+
+    @Override
+    public RelationInfo getRelationInfo() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "TERMOR(" + (docQueue.size() + inCurrentDocCount) + " frequent, " + rareCount + " rare)";
+    }
+}
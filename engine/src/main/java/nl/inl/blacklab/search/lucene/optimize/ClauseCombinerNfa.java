@@ -1,5 +1,7 @@
 package nl.inl.blacklab.search.lucene.optimize;
 
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.IndexReader;
@@ -123,6 +125,17 @@ public class ClauseCombinerNfa extends ClauseCombiner {
         return enableForwardIndexmatching && nfaThreshold > NO_NFA_MATCHING;
     }
 
+    /**
+     * Get the current settings, which influence how queries are optimized.
+     *
+     * Used to make sure cached optimized queries are only reused with the same settings.
+     *
+     * @return the settings (compare using equals())
+     */
+    public static Object currentSettings() {
+        return List.of(enableForwardIndexmatching, nfaThreshold, onlyUseNfaForManyUniqueTerms);
+    }
+
     /**
      * Determines the best direction for NFA and calculates a measure for how desirable NFA matching in this direction is.
      *
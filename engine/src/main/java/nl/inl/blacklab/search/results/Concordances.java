@@ -10,6 +10,7 @@ import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
 import nl.inl.blacklab.search.Concordance;
 import nl.inl.blacklab.search.ConcordanceType;
 import nl.inl.blacklab.search.DocUtil;
@@ -88,13 +89,15 @@ public class Concordances {
 
         // Determine the first and last word of the concordance, as well as the
         // first and last word of the actual hit inside the concordance.
+        AnnotatedField field = queryInfo.field();
+        TagBoundaries tagBoundaries = contextSize.tagBoundaries(hits.index(), field, docId);
         int startEndArrayIndex = 0;
         for (Iterator<EphemeralHit> it = hits.ephemeralIterator(); it.hasNext(); ) {
             EphemeralHit hit = it.next();
             int hitStart = hit.start();
             int hitEnd = hit.end() - 1; // last word (inclusive)
 
-            contextSize.getSnippetStartEnd(hit, hits.matchInfoDefs(), true, startsOfWords, startEndArrayIndex, endsOfWords, startEndArrayIndex + 1);
+            contextSize.getSnippetStartEnd(hit, hits.matchInfoDefs(), tagBoundaries, true, startsOfWords, startEndArrayIndex, endsOfWords, startEndArrayIndex + 1);
             startsOfWords[startEndArrayIndex + 1] = hitStart;
             endsOfWords[startEndArrayIndex] = hitEnd;
 
@@ -103,7 +106,6 @@ public class Concordances {
 
         // Get the relevant character offsets (overwrites the startsOfWords and endsOfWords
         // arrays)
-        AnnotatedField field = queryInfo.field();
         DocUtil.characterOffsets(hits.index(), docId, field, startsOfWords, endsOfWords, true);
 
         // Make all the concordances
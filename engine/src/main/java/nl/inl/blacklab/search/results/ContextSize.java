@@ -5,6 +5,10 @@ import java.util.Objects;
 import java.util.Optional;
 
 import nl.inl.blacklab.Constants;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexIntegrated;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.RelationUtil;
 import nl.inl.blacklab.search.lucene.MatchInfo;
 import nl.inl.blacklab.search.lucene.RelationInfo;
@@ -161,6 +165,27 @@ public class ContextSize {
      */
     public void getSnippetStartEnd(Hit hit, List<MatchInfo.Def> matchInfoDefs, boolean lastWordInclusive,
             int[] startArr, int startIndex, int[] endArr, int endIndex) {
+        getSnippetStartEnd(hit, matchInfoDefs, null, lastWordInclusive, startArr, startIndex, endArr, endIndex);
+    }
+
+    /**
+     * Get the start and end position of the snippet for the specified hit.
+     *
+     * Like {@link #getSnippetStartEnd(Hit, List, boolean, int[], int, int[], int)}, but if the
+     * inline tag wasn't captured by the query, the stored tag boundaries (if any) are used
+     * to find the tag enclosing the hit.
+     *
+     * @param hit hit to get snippet boundaries for
+     * @param matchInfoDefs names of match info groups
+     * @param tagBoundaries stored boundaries of our inline tag in the hit's document, or null if not available
+     * @param lastWordInclusive should snippet end point to the last word of the snippet, or to the first word after it?
+     * @param startArr array to write start position to
+     * @param startIndex index in startArr to write start position to
+     * @param endArr array to write end position to
+     * @param endIndex index in endArr to write end position to
+     */
+    public void getSnippetStartEnd(Hit hit, List<MatchInfo.Def> matchInfoDefs, TagBoundaries tagBoundaries,
+            boolean lastWordInclusive, int[] startArr, int startIndex, int[] endArr, int endIndex) {
         assert HitsInternal.debugCheckReasonableHit(hit);
         int start, end;
         if (!isInlineTag()) {
@@ -170,8 +195,15 @@ public class ContextSize {
         } else {
             // Use a match info group to determine snippet
             MatchInfo tag = findTag(hit, inlineTagName(), matchInfoDefs);
-            start = tag == null ? hit.start() : tag.getSpanStart();
-            end = tag == null ? hit.start() : tag.getSpanEnd();
+            if (tag != null) {
+                start = tag.getSpanStart();
+                end = tag.getSpanEnd();
+            } else {
+                // Not captured; find the enclosing tag using the stored boundaries, if we have them
+                int i = tagBoundaries == null ? -1 : tagBoundaries.findEnclosing(hit.start(), hit.end());
+                start = i < 0 ? hit.start() : tagBoundaries.start(i);
+                end = i < 0 ? hit.start() : tagBoundaries.end(i);
+            }
         }
         start = Math.max(0, start - before());
         end = (int)Math.min(end + after, (long)start + maxSnippetLength); // make sure snippet doesn't get longer than allowed
@@ -210,6 +242,20 @@ public class ContextSize {
         return null;
     }
 
+    /**
+     * Get the stored boundaries of our inline tag in a document, if available.
+     *
+     * @param index index the document is in
+     * @param field annotated field to get the tag boundaries for
+     * @param docId global document id
+     * @return tag boundaries, or null if we're not using an inline tag or its boundaries weren't stored
+     */
+    public TagBoundaries tagBoundaries(BlackLabIndex index, AnnotatedField field, int docId) {
+        if (!isInlineTag() || !(index instanceof BlackLabIndexIntegrated))
+            return null;
+        return ((BlackLabIndexIntegrated) index).tagBoundaries(field, inlineTagName(), docId);
+    }
+
     public int before() {
         return before;
     }
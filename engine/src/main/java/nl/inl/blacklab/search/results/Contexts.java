@@ -18,6 +18,7 @@ import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.TagBoundaries;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.Kwic;
@@ -72,7 +73,7 @@ public class Contexts {
         assert !forwardIndexes.isEmpty();
 
         // Get the contexts (arrays of term ids) and make the KWICs by looking up the terms
-        int[][] contexts = getContextWordsSingleDocument(hits.getInternalHits(), 0, hits.size(),
+        int[][] contexts = getContextWordsSingleDocument(hits.index(), hits.getInternalHits(), 0, hits.size(),
                 contextSize, forwardIndexes, hits.matchInfoDefs());
         int numberOfAnnotations = forwardIndexes.size();
         List<Annotation> annotations = forwardIndexes.stream()
@@ -107,13 +108,14 @@ public class Contexts {
     /**
      * Get context words from the forward index.
      *
+     * @param index the index
      * @param hits the hits
      * @param start first hit to get context words for
      * @param end first hit NOT to get context for (hit after the last to get context for)
      * @param contextSize how many words of context we want
      * @param contextSources forward indices to get context from
      */
-    private static int[][] getContextWordsSingleDocument(HitsInternal hits, long start, long end,
+    private static int[][] getContextWordsSingleDocument(BlackLabIndex index, HitsInternal hits, long start, long end,
             ContextSize contextSize, List<AnnotationForwardIndex> contextSources, List<MatchInfo.Def> matchInfoDefs) {
         if (end - start > Constants.JAVA_MAX_ARRAY_SIZE)
             throw new BlackLabRuntimeException("Cannot handle more than " + Constants.JAVA_MAX_ARRAY_SIZE + " hits in a single doc");
@@ -123,11 +125,14 @@ public class Contexts {
         int[] startsOfSnippets = new int[n];
         int[] endsOfSnippets = new int[n];
 
+        TagBoundaries tagBoundaries = contextSize.tagBoundaries(index, contextSources.get(0).annotation().field(),
+                hits.doc(start));
         EphemeralHit hit = new EphemeralHit();
         for (long i = start; i < end; ++i) {
             hits.getEphemeral(i, hit);
             int j = (int)(i - start);
-            contextSize.getSnippetStartEnd(hit, matchInfoDefs, false, startsOfSnippets, j, endsOfSnippets, j);
+            contextSize.getSnippetStartEnd(hit, matchInfoDefs, tagBoundaries, false, startsOfSnippets, j,
+                    endsOfSnippets, j);
         }
 
         int fiNumber = 0;
@@ -219,7 +224,7 @@ public class Contexts {
                 if (curDoc != prevDoc) {
                     try { hits.threadAborter().checkAbort(); } catch (InterruptedException e) { throw new InterruptedSearch(e); }
                     // Process hits in preceding document:
-                    int[][] docContextArray = getContextWordsSingleDocument(ha, firstHitInCurrentDoc, i, contextSize, fis, matchInfoDefs);
+                    int[][] docContextArray = getContextWordsSingleDocument(hits.index(), ha, firstHitInCurrentDoc, i, contextSize, fis, matchInfoDefs);
                     Collections.addAll(contexts, docContextArray);
                     // start a new document
                     prevDoc = curDoc;
@@ -227,7 +232,7 @@ public class Contexts {
                 }
             }
             // Process hits in final document
-            int[][] docContextArray = getContextWordsSingleDocument(ha, firstHitInCurrentDoc, hits.size(), contextSize, fis, matchInfoDefs);
+            int[][] docContextArray = getContextWordsSingleDocument(hits.index(), ha, firstHitInCurrentDoc, hits.size(), contextSize, fis, matchInfoDefs);
             Collections.addAll(contexts, docContextArray);
         }
         return contexts;
@@ -10,17 +10,10 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
-import org.apache.lucene.index.DocValues;
-import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.NumericDocValues;
-import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
-import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
-import org.apache.lucene.search.Weight;
-import org.apache.lucene.util.Bits;
 
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -32,7 +25,6 @@ import nl.inl.blacklab.resultproperty.HitPropertyDoc;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.PropertyValueDoc;
 import nl.inl.blacklab.resultproperty.PropertyValueInt;
-import nl.inl.blacklab.search.BlackLabIndexAbstract;
 import nl.inl.blacklab.search.lucene.MatchInfo;
 
 /**
@@ -524,46 +516,12 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
             long numberOfTokens;
             long numberOfDocuments;
             if (query != null) {
-
-                // Rewrite query (we store the original query, not the rewritten one)
-                try {
-                    query = query.rewrite(index().reader());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-                // Fast approach: use the DocValues for the token length field
-//                logger.debug("## DocResults.tokensInMatchingDocs: fast path");
-                try {
-                    numberOfTokens = countTokens ? 0 : -1;
-                    numberOfDocuments = 0;
-                    Weight weight = queryInfo().index().searcher().createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
-                    String tokenLengthField = queryInfo().field().tokenLengthField();
-                    for (LeafReaderContext r: queryInfo().index().reader().leaves()) {
-                        LeafReader reader = r.reader();
-                        Bits liveDocs = reader.getLiveDocs();
-                        Scorer scorer = weight.scorer(r);
-                        if (scorer != null) {
-                            DocIdSetIterator it = scorer.iterator();
-                            NumericDocValues tokenLengthValues = countTokens ? DocValues.getNumeric(reader, tokenLengthField) : null;
-                            while (true) {
-                                int docId = it.nextDoc();
-                                if (docId == DocIdSetIterator.NO_MORE_DOCS)
-                                    break;
-                                if (liveDocs == null || liveDocs.get(docId)) {
-                                    numberOfDocuments++;
-                                    if (countTokens) {
-                                        tokenLengthValues.advanceExact(docId);
-                                        numberOfTokens += tokenLengthValues.longValue()
-                                                - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException("Error determining token count", e);
-                }
+                // Fast approach: evaluate the filter per segment (cached) and use the DocValues
+                // for the token length field
+                String tokenLengthField = countTokens ? queryInfo().field().tokenLengthField() : null;
+                CorpusSize size = queryInfo().index().subcorpusStatistics().size(query, tokenLengthField);
+                numberOfDocuments = size.getDocuments();
+                numberOfTokens = size.getTokens();
             } else {
                 // Slow approach: get the stored field value from each Document
                 // (note that DocPropertyAnnotatedFieldLength already excludes the dummy closing token)
@@ -15,8 +15,12 @@ public class EphemeralHit implements Hit {
     public int end = -1;
     public MatchInfo[] matchInfo = null;
 
+    /** Array we may reuse for match info, so we don't allocate one for every hit (see MatchInfoStore) */
+    MatchInfo[] matchInfoBuffer = null;
+
     Hit toHit() {
-        return new HitImpl(doc, start, end, matchInfo);
+        // Copy match info, because our array may be reused for the next hit
+        return new HitImpl(doc, start, end, matchInfo == null ? null : matchInfo.clone());
     }
 
     @Override
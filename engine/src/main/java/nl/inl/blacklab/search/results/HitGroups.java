@@ -297,7 +297,7 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
 
     @Override
     public boolean doneProcessingAndCounting() {
-        return true;
+        return hitsStats.done(); // (false for partial results, see HitGroupsIncremental)
     }
 
     @Override
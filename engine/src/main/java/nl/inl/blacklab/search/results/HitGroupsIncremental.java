@@ -0,0 +1,184 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.ThreadSafe;
+import nl.inl.blacklab.Constants;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.PropertyValue;
+
+/**
+ * Groups hits while they are still being retrieved.
+ * <p>
+ * Hits are read and grouped in chunks by {@link #run()}. In the meantime, other threads
+ * may call {@link #snapshot()} to get the largest groups found so far, so e.g. the webservice
+ * can show approximate grouping results while a large grouping operation is still running.
+ * <p>
+ * The final result is the same as that of {@link HitGroups#fromHits(Hits, HitProperty, long)}.
+ */
+@ThreadSafe
+public class HitGroupsIncremental {
+
+    /** How many hits to read and group at a time */
+    private static final int CHUNK_SIZE = 10_000;
+
+    /** Maximum number of groups in a snapshot (we keep the largest ones) */
+    public static final int SNAPSHOT_MAX_GROUPS = 10_000;
+
+    /** A group we're still adding hits to */
+    private static class GroupInProgress {
+        HitsInternalMutable storedHits;
+
+        /** Can storedHits grow beyond {@link Constants#JAVA_MAX_ARRAY_SIZE}? */
+        boolean storedHitsHuge;
+
+        long size = 0;
+
+        GroupInProgress(long maxResultsToStore) {
+            // Start with a regular list; we only switch to a huge one if the group actually outgrows it
+            long maxCapacity = maxResultsToStore < 0 ? Constants.JAVA_MAX_ARRAY_SIZE : maxResultsToStore;
+            storedHits = HitsInternal.create(-1, maxCapacity, false);
+            storedHitsHuge = maxCapacity > Constants.JAVA_MAX_ARRAY_SIZE;
+        }
+
+        void add(EphemeralHit hit) {
+            if (!storedHitsHuge && storedHits.size() >= Constants.JAVA_MAX_ARRAY_SIZE) {
+                HitsInternalMutable huge = HitsInternal.create(-1, true, false);
+                huge.addAll(storedHits);
+                storedHits = huge;
+                storedHitsHuge = true;
+            }
+            storedHits.add(hit);
+        }
+    }
+
+    /** Hits to group */
+    private final Hits hits;
+
+    /** What to group by */
+    private final HitProperty criteria;
+
+    /** How many hits to store per group at most (or -1 for no limit) */
+    private final long maxResultsToStorePerGroup;
+
+    /** The groups so far, in the order we found them (guarded by this) */
+    private final Map<PropertyValue, GroupInProgress> groups = new LinkedHashMap<>();
+
+    /** How many hits we've grouped so far (guarded by this; only written by the grouping thread) */
+    private long hitsGrouped = 0;
+
+    /** How many documents the grouped hits were in so far (guarded by this) */
+    private long docsGrouped = 0;
+
+    /** Document of the last hit we've grouped (only used by the grouping thread) */
+    private int prevDoc = -1;
+
+    /**
+     * Prepare to group hits.
+     *
+     * @param hits the hits to group (may still be in the process of being retrieved)
+     * @param criteria the criteria to group on
+     * @param maxResultsToStorePerGroup how many results to store per group at most
+     */
+    public HitGroupsIncremental(Hits hits, HitProperty criteria, long maxResultsToStorePerGroup) {
+        if (criteria == null)
+            throw new IllegalArgumentException("Must have criteria to group on");
+        this.hits = hits;
+        this.criteria = criteria;
+        this.maxResultsToStorePerGroup = maxResultsToStorePerGroup;
+    }
+
+    /**
+     * Group all the hits.
+     *
+     * Blocks until all hits have been retrieved and grouped.
+     *
+     * @return the groups
+     */
+    public HitGroups run() {
+        EphemeralHit hit = new EphemeralHit();
+        while (true) {
+            try {
+                hits.threadAborter().checkAbort();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+            Hits chunk = hits.window(hitsGrouped, CHUNK_SIZE);
+            int n = (int) chunk.size();
+            if (n == 0)
+                break;
+
+            // Determine the group identities first, which may take a while (e.g. if we need context),
+            // so we don't have to hold the lock during that time.
+            HitProperty prop = criteria.copyWith(chunk);
+            PropertyValue[] identities = new PropertyValue[n];
+            for (int i = 0; i < n; i++)
+                identities[i] = prop.get(i);
+            prop.disposeContext();
+
+            synchronized (this) {
+                for (int i = 0; i < n; i++) {
+                    GroupInProgress group = groups.get(identities[i]);
+                    if (group == null) {
+                        if (groups.size() >= HitGroups.MAX_NUMBER_OF_GROUPS)
+                            throw new BlackLabRuntimeException("Cannot handle more than " + HitGroups.MAX_NUMBER_OF_GROUPS + " groups");
+                        group = new GroupInProgress(maxResultsToStorePerGroup);
+                        groups.put(identities[i], group);
+                    }
+                    chunk.getEphemeral(i, hit);
+                    if (maxResultsToStorePerGroup < 0 || group.storedHits.size() < maxResultsToStorePerGroup)
+                        group.add(hit);
+                    group.size++;
+                    if (hit.doc != prevDoc) {
+                        docsGrouped++;
+                        prevDoc = hit.doc;
+                    }
+                }
+                hitsGrouped += n;
+            }
+            if (n < CHUNK_SIZE)
+                break;
+        }
+
+        synchronized (this) {
+            List<HitGroup> results = new ArrayList<>(groups.size());
+            for (Map.Entry<PropertyValue, GroupInProgress> e: groups.entrySet()) {
+                GroupInProgress group = e.getValue();
+                results.add(HitGroup.fromList(hits.queryInfo(), e.getKey(), group.storedHits, hits.matchInfoDefs(),
+                        group.size));
+            }
+            return HitGroups.fromList(hits.queryInfo(), results, criteria, null, null, hits.hitsStats(),
+                    hits.docsStats());
+        }
+    }
+
+    /**
+     * Get the largest groups found so far.
+     *
+     * The groups don't include any stored hits. The hits and docs stats reflect the
+     * number of hits grouped so far and are not done, so callers can report progress.
+     *
+     * @return partial groups (at most {@link #SNAPSHOT_MAX_GROUPS})
+     */
+    public synchronized HitGroups snapshot() {
+        List<Map.Entry<PropertyValue, GroupInProgress>> entries = new ArrayList<>(groups.entrySet());
+        if (entries.size() > SNAPSHOT_MAX_GROUPS) {
+            entries.sort(Comparator.comparingLong((Map.Entry<PropertyValue, GroupInProgress> e) -> e.getValue().size).reversed());
+            entries = entries.subList(0, SNAPSHOT_MAX_GROUPS);
+        }
+        List<HitGroup> results = new ArrayList<>(entries.size());
+        for (Map.Entry<PropertyValue, GroupInProgress> e: entries)
+            results.add(HitGroup.empty(hits.queryInfo(), e.getKey(), e.getValue().size));
+        ResultsStats hitsStats = new ResultsStatsStatic(hitsGrouped,
+                Math.max(hitsGrouped, hits.hitsStats().countedSoFar()), hits.hitsStats().maxStats(), false);
+        ResultsStats docsStats = new ResultsStatsStatic(docsGrouped,
+                Math.max(docsGrouped, hits.docsStats().countedSoFar()), hits.docsStats().maxStats(), false);
+        return HitGroups.fromList(hits.queryInfo(), results, criteria, null, null, hitsStats, docsStats);
+    }
+}
@@ -27,6 +27,7 @@ import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.resultproperty.DocProperty;
 import nl.inl.blacklab.resultproperty.DocPropertyAnnotatedFieldLength;
+import nl.inl.blacklab.resultproperty.DocPropertyStoredField;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.HitPropertyHitText;
 import nl.inl.blacklab.resultproperty.PropertyValue;
@@ -46,6 +47,9 @@ import nl.inl.util.BlockTimer;
  *
  * Allows us to e.g. find lemma frequencies, or lemma frequencies per year.
  * This implementation is faster than finding all hits, then grouping those.
+ *
+ * If a matching {@link TokenFrequencyCube} has been configured and is ready, we use
+ * its precomputed counts instead of reading the forward index of every document.
  */
 public class HitGroupsTokenFrequencies {
 
@@ -172,6 +176,35 @@ public class HitGroupsTokenFrequencies {
         }
     }
 
+    /**
+     * Find a frequency cube that can answer this request, if any.
+     *
+     * That is the case if we group on a single annotation of the field we're searching,
+     * plus zero or more metadata fields, and a cube for exactly that combination is ready.
+     *
+     * @param index our index
+     * @param queryInfo query info
+     * @param hitProperties annotations to group on
+     * @param docProperties document properties to group on
+     * @return frequency cube to use, or null if there's none
+     */
+    private static TokenFrequencyCube findCube(BlackLabIndex index, QueryInfo queryInfo, List<AnnotInfo> hitProperties,
+            List<DocProperty> docProperties) {
+        if (hitProperties.size() != 1)
+            return null;
+        AnnotInfo annotInfo = hitProperties.get(0);
+        Annotation annotation = annotInfo.getAnnotationForwardIndex().annotation();
+        if (!annotation.field().name().equals(queryInfo.field().name()))
+            return null;
+        List<String> metadataFields = new ArrayList<>();
+        for (DocProperty prop: docProperties) {
+            if (!(prop instanceof DocPropertyStoredField))
+                return null;
+            metadataFields.add(((DocPropertyStoredField) prop).getField());
+        }
+        return index.frequencyCubes().find(annotation, annotInfo.getMatchSensitivity(), metadataFields);
+    }
+
     /**
      * Get the token frequencies for the given query and hit property.
      *
@@ -270,7 +303,40 @@ public class HitGroupsTokenFrequencies {
                 }
 
                 // Start actually calculating the requests frequencies.
-                if (hitProperties.isEmpty()) {
+                TokenFrequencyCube cube = findCube(index, queryInfo, hitProperties, docProperties);
+                if (cube != null) {
+                    // We have precomputed counts for this grouping; we don't need to touch the forward index.
+                    // (NOTE: this path doesn't respect maxHitsToCount, as it's cheap regardless of the number of hits)
+                    numberOfDocsProcessed = docIds.size();
+                    try (BlockTimer ignored = c.child("Grouping using frequency cube")) {
+                        final Map<Integer, PropertyValue[]> metadataValuesPerTuple = new HashMap<>();
+                        TokenFrequencyCube.GroupVisitor visitor = (tuple, termId, sortPosition, hits, docs) -> {
+                            // Determine metadata values from a document with this tuple's values
+                            final PropertyValue[] metadataValuesForGroup = metadataValuesPerTuple.computeIfAbsent(tuple, t -> {
+                                if (docProperties.isEmpty())
+                                    return null;
+                                final DocResult docResult = DocResult.fromDoc(queryInfo,
+                                        new PropertyValueDoc(index, cube.representativeDoc(t)), 0, 0);
+                                final PropertyValue[] values = new PropertyValue[docProperties.size()];
+                                for (int i = 0; i < docProperties.size(); ++i)
+                                    values[i] = docProperties.get(i).get(docResult);
+                                return values;
+                            });
+                            final GroupIdHash groupId = new GroupIdHash(new int[] { termId }, new int[] { sortPosition },
+                                    metadataValuesForGroup, Arrays.hashCode(metadataValuesForGroup));
+                            globalOccurrences.merge(groupId, new OccurrenceCounts(hits, docs), (a, b) -> {
+                                a.hits += b.hits;
+                                a.docs += b.docs;
+                                return a;
+                            });
+                            numberOfHitsProcessed.addAndGet(hits);
+                        };
+                        if (filterQuery == null)
+                            cube.forEachGroup(visitor);
+                        else
+                            cube.forEachGroup(docIds, visitor);
+                    }
+                } else if (hitProperties.isEmpty()) {
                     // Matched all tokens but not grouping by a specific annotation, only metadata
                     // This requires a different approach because we never retrieve the individual tokens if there's no annotation
                     // e.g. match '*' group by document year --
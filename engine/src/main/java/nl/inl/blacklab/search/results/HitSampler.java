@@ -0,0 +1,218 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import nl.inl.blacklab.search.lucene.MatchInfo;
+
+/**
+ * Samples hits while they are being produced by a {@link SpansReader}.
+ * <p>
+ * Each segment gets its own sampler, with a random generator seeded from the sample seed and
+ * the segment ordinal. That way, the sample doesn't depend on how segments are divided between
+ * threads or in what order they are processed.
+ * <p>
+ * For a fixed number of hits, we use reservoir sampling: each hit gets a random key, and each sampler
+ * keeps the hits with the lowest keys. The hits with the lowest keys over all segments form a uniform
+ * sample (see {@link #merge(List, long, HitsInternalMutable)}).
+ * <p>
+ * If there's a maximum number of hits to consider, each segment gets a share of it proportional to its
+ * size, and considers only its first hits (in document order) up to that share. Like the random keys,
+ * this doesn't depend on thread scheduling, so the same seed always produces the same sample.
+ * <p>
+ * Not thread-safe; only used by the SpansReader for its segment.
+ */
+class HitSampler {
+
+    /** Used to derive a seed for each segment */
+    private static final long SEGMENT_SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    /** A hit in our reservoir */
+    private static final class SampledHit {
+        final double key;
+
+        final int doc;
+
+        final int start;
+
+        final int end;
+
+        final MatchInfo[] matchInfo;
+
+        SampledHit(double key, int doc, int start, int end, MatchInfo[] matchInfo) {
+            this.key = key;
+            this.doc = doc;
+            this.start = start;
+            this.end = end;
+            this.matchInfo = matchInfo;
+        }
+    }
+
+    /** How to sample */
+    private final SampleParameters.Mode mode;
+
+    /** Probability of keeping a hit or document (if sampling a percentage) */
+    private final double fraction;
+
+    /** Number of hits to keep (if sampling a fixed number), or -1 if sampling a percentage */
+    private final long reservoirSize;
+
+    /** Our random generator */
+    private final Random random;
+
+    /** Reservoir with the hits with the lowest keys, highest key first */
+    private final PriorityQueue<SampledHit> reservoir;
+
+    /** Number of hits seen by this sampler */
+    private long hitsSeen = 0;
+
+    /** Maximum number of hits to see in this segment (after which we stop sampling) */
+    private final long maxHitsToSee;
+
+    /**
+     * Determine a segment's share of the maximum number of hits to consider.
+     *
+     * @param maxHitsToSee maximum number of hits to consider for the whole sample (negative or Long.MAX_VALUE for no limit)
+     * @param segmentMaxDoc maxDoc of the segment
+     * @param totalMaxDoc maxDoc of the whole index
+     * @return maximum number of hits to consider in this segment (rounded up, so the segments together may see slightly more)
+     */
+    static long maxHitsToSeeInSegment(long maxHitsToSee, int segmentMaxDoc, int totalMaxDoc) {
+        if (maxHitsToSee < 0 || maxHitsToSee == Long.MAX_VALUE || totalMaxDoc == 0)
+            return Long.MAX_VALUE;
+        return (long) Math.ceil((double) maxHitsToSee * segmentMaxDoc / totalMaxDoc);
+    }
+
+    /**
+     * Create a sampler for a segment, if the sample parameters call for streaming sampling.
+     *
+     * @param parameters sample parameters
+     * @param segmentOrdinal ordinal of the segment we're sampling from
+     * @param maxHitsToSee maximum number of hits to consider in this segment (see {@link #maxHitsToSeeInSegment(long, int, int)})
+     * @return sampler, or null if the sample must be taken after retrieving all hits
+     */
+    static HitSampler create(SampleParameters parameters, int segmentOrdinal, long maxHitsToSee) {
+        if (parameters == null || parameters.mode() == SampleParameters.Mode.ALL_HITS)
+            return null;
+        return new HitSampler(parameters, segmentOrdinal, maxHitsToSee);
+    }
+
+    private HitSampler(SampleParameters parameters, int segmentOrdinal, long maxHitsToSee) {
+        this.mode = parameters.mode();
+        this.fraction = parameters.isPercentage() ? parameters.percentageOfHits() : 1.0;
+        this.reservoirSize = parameters.isPercentage() ? -1 : parameters.numberOfHitsSet();
+        this.random = new Random(parameters.seed() + SEGMENT_SEED_INCREMENT * (segmentOrdinal + 1));
+        this.reservoir = isReservoir() ?
+                new PriorityQueue<>(Comparator.comparingDouble((SampledHit h) -> h.key).reversed()) : null;
+        this.maxHitsToSee = maxHitsToSee;
+    }
+
+    /**
+     * Are we keeping a fixed number of hits in a reservoir?
+     *
+     * If so, hits should be offered using {@link #countHit()}, {@link #nextKey()} and
+     * {@link #add(double, int, int, int, MatchInfo[])} instead of being stored.
+     *
+     * @return true if we're keeping a reservoir
+     */
+    boolean isReservoir() {
+        return reservoirSize >= 0;
+    }
+
+    /**
+     * Should we look at this candidate document at all?
+     *
+     * Called for each document the spans might match, before checking if it actually does.
+     *
+     * @return true if we should look at the document's hits
+     */
+    boolean acceptDoc() {
+        return mode != SampleParameters.Mode.DOCUMENTS || random.nextDouble() < fraction;
+    }
+
+    /**
+     * Should we keep this hit?
+     *
+     * Only used if we're not keeping a reservoir.
+     *
+     * @return true if the hit should be kept
+     */
+    boolean acceptHit() {
+        return mode != SampleParameters.Mode.STREAMING || random.nextDouble() < fraction;
+    }
+
+    /**
+     * Count a hit we're offered for the reservoir.
+     *
+     * Hits are offered in document order, so if we stop at the maximum, we've always
+     * considered the same hits.
+     *
+     * @return false if we've reached the maximum number of hits to consider in this segment
+     */
+    boolean countHit() {
+        if (hitsSeen >= maxHitsToSee)
+            return false;
+        hitsSeen++;
+        return true;
+    }
+
+    /**
+     * Draw a key for the next hit.
+     *
+     * @return the key, or -1 if the hit won't make it into the reservoir
+     */
+    double nextKey() {
+        double key = random.nextDouble();
+        if (reservoirSize == 0)
+            return -1;
+        return reservoir.size() < reservoirSize || key < reservoir.peek().key ? key : -1;
+    }
+
+    /**
+     * Add a hit to the reservoir, evicting the hit with the highest key if it's full.
+     *
+     * @param key key returned by {@link #nextKey()}
+     * @param doc document id
+     * @param start hit start
+     * @param end hit end
+     * @param matchInfo match info (may be null)
+     */
+    void add(double key, int doc, int start, int end, MatchInfo[] matchInfo) {
+        reservoir.add(new SampledHit(key, doc, start, end, matchInfo));
+        if (reservoir.size() > reservoirSize)
+            reservoir.poll();
+    }
+
+    /**
+     * Combine the reservoirs of several samplers into the final sample.
+     *
+     * @param samplers samplers for all segments
+     * @param sampleSize number of hits to sample
+     * @param results where to add the sampled hits (in document order)
+     * @return number of documents in the sample
+     */
+    static long merge(List<HitSampler> samplers, long sampleSize, HitsInternalMutable results) {
+        List<SampledHit> hits = new ArrayList<>();
+        for (HitSampler sampler: samplers) {
+            if (sampler.reservoir != null)
+                hits.addAll(sampler.reservoir);
+        }
+        hits.sort(Comparator.comparingDouble(h -> h.key));
+        List<SampledHit> sample = hits.subList(0, (int) Math.min(sampleSize, hits.size()));
+        sample.sort(Comparator.comparingInt((SampledHit h) -> h.doc).thenComparingInt(h -> h.start)
+                .thenComparingInt(h -> h.end));
+        long docs = 0;
+        int prevDoc = -1;
+        for (SampledHit hit: sample) {
+            results.add(hit.doc, hit.start, hit.end, hit.matchInfo);
+            if (hit.doc != prevDoc) {
+                docs++;
+                prevDoc = hit.doc;
+            }
+        }
+        return docs;
+    }
+}
@@ -36,6 +36,23 @@ public interface Hits extends Results<Hit, HitProperty> {
         return new HitsFromQuery(queryInfo, query, searchSettings);
     }
 
+    /**
+     * Construct a sample of hits from a SpanQuery, sampling while the hits are being retrieved.
+     *
+     * Unlike {@link #sample(SampleParameters)}, this doesn't need to keep all hits in memory.
+     * If the sample mode is {@link SampleParameters.Mode#ALL_HITS}, all hits are kept (no sampling).
+     *
+     * @param queryInfo        information about the original query
+     * @param query            the query to execute to get the hits
+     * @param searchSettings   settings such as max. hits to process/count
+     * @param sampleParameters how to sample the hits
+     * @return sampled hits
+     */
+    static Hits fromSpanQuery(QueryInfo queryInfo, BLSpanQuery query, SearchSettings searchSettings,
+            SampleParameters sampleParameters) {
+        return new HitsFromQuery(queryInfo, query, searchSettings, sampleParameters);
+    }
+
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      * <p>
@@ -213,19 +213,16 @@ public abstract class HitsAbstract extends ResultsAbstract<Hit, HitProperty> imp
     public Hits sample(SampleParameters sampleParameters) {
 
         // Determine total number of hits (fetching all of them)
+        // (we may sample from more than JAVA_MAX_ARRAY_SIZE hits, because we draw long indexes for huge
+        //  result sets, but the sample itself must fit in a regular set of chosen indexes)
         long totalNumberOfHits = size();
-        if (totalNumberOfHits > Constants.JAVA_MAX_ARRAY_SIZE) {
-            // TODO: we might want to enable this, because the whole point of sampling is to make sense
-            //       of huge result sets without having to look at every hit.
-            //       Ideally, old seeds would keep working as well (although that may not be practical,
-            //       and not likely to be a huge issue)
-            throw new BlackLabRuntimeException("Cannot sample from more than " + Constants.JAVA_MAX_ARRAY_SIZE + " hits");
-        }
 
         // We can later provide an optimized version that uses a HitsSampleCopy or some such
         // (this class could save memory by only storing the hits we're interested in)
         Set<Long> chosenHitIndices = new TreeSet<>(); // we need indexes sorted (see below)
         long numberOfHitsToSelect = sampleParameters.numberOfHits(totalNumberOfHits);
+        if (Math.min(numberOfHitsToSelect, totalNumberOfHits) > Constants.JAVA_MAX_ARRAY_SIZE)
+            throw new BlackLabRuntimeException("Cannot sample more than " + Constants.JAVA_MAX_ARRAY_SIZE + " hits");
         if (numberOfHitsToSelect >= size()) {
             numberOfHitsToSelect = size(); // default to all hits in this case
             for (long i = 0; i < numberOfHitsToSelect; ++i) {
@@ -234,11 +231,14 @@ public abstract class HitsAbstract extends ResultsAbstract<Hit, HitProperty> imp
         } else {
             // Choose the hits
             Random random = new Random(sampleParameters.seed());
-            for (int i = 0; i < numberOfHitsToSelect; i++) {
+            for (long i = 0; i < numberOfHitsToSelect; i++) {
                 // Choose a hit we haven't chosen yet
                 long hitIndex;
                 do {
-                    hitIndex = random.nextInt((int)Math.min(Constants.JAVA_MAX_ARRAY_SIZE, size()));
+                    // (use nextInt() when possible so existing seeds produce the same sample)
+                    hitIndex = totalNumberOfHits <= Constants.JAVA_MAX_ARRAY_SIZE ?
+                            random.nextInt((int) totalNumberOfHits) :
+                            Math.floorMod(random.nextLong(), totalNumberOfHits);
                 } while (chosenHitIndices.contains(hitIndex));
                 chosenHitIndices.add(hitIndex);
             }
@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreMode;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -23,8 +24,10 @@ import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpanWeight;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
+import nl.inl.blacklab.search.lucene.QueryProfiler;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
 import nl.inl.util.CurrentThreadExecutorService;
+import nl.inl.util.YieldRequest;
 
 public class HitsFromQuery extends HitsMutable {
 
@@ -50,7 +53,26 @@ public class HitsFromQuery extends HitsMutable {
     protected final List<SpansReader> spansReaders = new ArrayList<>();
     protected boolean allSourceSpansFullyRead = false;
 
+    /** If not null, we sample hits while retrieving them instead of keeping all of them */
+    protected final SampleParameters sampleParameters;
+    /** Samplers for our SpansReaders (if sampling) */
+    private final List<HitSampler> samplers = new ArrayList<>();
+
     protected HitsFromQuery(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) {
+        this(queryInfo, sourceQuery, searchSettings, null);
+    }
+
+    /**
+     * Find hits for a query, optionally sampling them while they're being retrieved.
+     *
+     * @param queryInfo query info
+     * @param sourceQuery query to execute
+     * @param searchSettings settings such as max. hits to process/count
+     * @param sampleParameters how to sample hits while retrieving them, or null to keep all hits.
+     *                         If its mode is {@link SampleParameters.Mode#ALL_HITS}, all hits are kept as well.
+     */
+    protected HitsFromQuery(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings,
+            SampleParameters sampleParameters) {
         // NOTE: we explicitly construct HitsInternal so they're writeable
         super(queryInfo.optOverrideField(sourceQuery), HitsInternal.create(-1, true, true), null);
         hitQueryContext = new HitQueryContext(null, sourceQuery.getField()); // each spans will get a copy
@@ -70,6 +92,8 @@ public class HitsFromQuery extends HitsMutable {
             configuredMaxHitsToProcess = configuredMaxHitsToCount;
         this.maxHitsToProcess = configuredMaxHitsToProcess;
         this.maxHitsToCount = configuredMaxHitsToCount;
+        this.sampleParameters = sampleParameters == null || sampleParameters.mode() == SampleParameters.Mode.ALL_HITS ?
+                null : sampleParameters;
 
         try {
             // Override FI match threshold? (debug use only!)
@@ -85,13 +109,16 @@ public class HitsFromQuery extends HitsMutable {
                 if (traceOptimization)
                     logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
 
-                optimizedQuery = sourceQuery.optimize(reader);
-                if (traceOptimization)
-                    logger.debug("Query after optimize(): " + optimizedQuery);
+                optimizedQuery = index.blackLab().queryRewriteCache().get(sourceQuery, reader, query -> {
+                    BLSpanQuery optimized = query.optimize(reader);
+                    if (traceOptimization)
+                        logger.debug("Query after optimize(): " + optimized);
 
-                optimizedQuery = optimizedQuery.rewrite(reader);
-                if (traceOptimization)
-                    logger.debug("Query after rewrite(): " + optimizedQuery);
+                    BLSpanQuery rewritten = optimized.rewrite(reader);
+                    if (traceOptimization)
+                        logger.debug("Query after rewrite(): " + rewritten);
+                    return rewritten;
+                });
 
                 // Restore previous FI match threshold
                 if (searchSettings.fiMatchFactor() != -1) {
@@ -101,7 +128,14 @@ public class HitsFromQuery extends HitsMutable {
             timings.record("rewrite");
 
             // This call can take a long time
-            BLSpanWeight weight = optimizedQuery.createWeight(index.searcher(), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+            IndexSearcher searcher = index.searcher();
+            if (searchSettings.profile()) {
+                // Wrap all spans so we can see how much work each part of the query does
+                QueryProfiler profiler = new QueryProfiler();
+                searcher = profiler.searcher(searcher);
+                queryInfo().setProfiler(profiler);
+            }
+            BLSpanWeight weight = optimizedQuery.createWeight(searcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
             timings.record("createWeight");
 
             // We must always initialize one spansReader upfront, so global state for Capture Groups and context are created.
@@ -109,6 +143,11 @@ public class HitsFromQuery extends HitsMutable {
             // Yes, this is a smell. If/when refactoring this, don't forget to update the comments in SpansReader accordingly.
             boolean hasInitialized = false;
             for (LeafReaderContext leafReaderContext : reader.leaves()) {
+                HitSampler sampler = HitSampler.create(this.sampleParameters, leafReaderContext.ord,
+                        HitSampler.maxHitsToSeeInSegment(this.maxHitsToCount, leafReaderContext.reader().maxDoc(),
+                                reader.maxDoc()));
+                if (sampler != null)
+                    samplers.add(sampler);
                 SpansReader spansReader = new SpansReader(
                     weight,
                     leafReaderContext,
@@ -119,7 +158,8 @@ public class HitsFromQuery extends HitsMutable {
                     this.globalHitsProcessed,
                     this.globalHitsCounted,
                     this.requestedHitsToProcess,
-                    this.requestedHitsToCount
+                    this.requestedHitsToCount,
+                    sampler
                 );
                 spansReaders.add(spansReader);
 
@@ -153,6 +193,10 @@ public class HitsFromQuery extends HitsMutable {
 
     @Override
     protected void ensureResultsRead(long number) {
+        if (isReservoirSampling()) {
+            // We can't know which hits are in the sample until we've seen all of them
+            number = -1;
+        }
         final long clampedNumber = number < 0 ? maxHitsToCount : Math.min(number, maxHitsToCount);
 
         if (allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber)) {
@@ -166,75 +210,124 @@ public class HitsFromQuery extends HitsMutable {
         this.requestedHitsToProcess.getAndUpdate(c -> Math.max(Math.min(clampedNumber, maxHitsToProcess), c)); // update process
         this.requestedHitsToCount.getAndUpdate(c -> Math.max(clampedNumber, c)); // update count
 
-        boolean hasLock = false;
-        List<Future<?>> pendingResults = null;
-        try {
-            while (!ensureHitsReadLock.tryLock(HIT_POLLING_TIME_MS, TimeUnit.MILLISECONDS)) {
-                /*
-                * Another thread is already working on hits, we don't want to straight up block until it's done,
-                * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction.
-                * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                */
-                if (allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber)) {
-                    return;
+        // If our search is asked to yield to more urgent searches, the SpansReaders will stop early
+        final YieldRequest yieldRequest = YieldRequest.forCurrentThread();
+        while (true) {
+            boolean hasLock = false;
+            boolean stoppedToYield = false;
+            List<Future<?>> pendingResults = null;
+            try {
+                while (!ensureHitsReadLock.tryLock(HIT_POLLING_TIME_MS, TimeUnit.MILLISECONDS)) {
+                    /*
+                    * Another thread is already working on hits, we don't want to straight up block until it's done,
+                    * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction.
+                    * So instead poll our own state, then if we're still missing results after that just count them ourselves
+                    */
+                    if (allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber)) {
+                        return;
+                    }
                 }
-            }
-            hasLock = true;
+                hasLock = true;
             
-            // This is the blocking portion, start worker threads, then wait for them to finish.
-            final int numThreads = Math.max(queryInfo().index().blackLab().maxThreadsPerSearch(), 1);
-            final ExecutorService executorService = numThreads >= 2
-                    ? queryInfo().index().blackLab().searchExecutorService()
-                    : new CurrentThreadExecutorService();
-
-            final AtomicLong i = new AtomicLong();
-            pendingResults = spansReaders
-                .stream()
-                .collect(Collectors.groupingBy(sr -> i.getAndIncrement() % numThreads)) // subdivide the list, one sublist per thread to use (one list in case of single thread).
-                .values()
-                .stream()
-                .map(list -> executorService.submit(() -> list.forEach(SpansReader::run))) // now submit one task per sublist
-                .collect(Collectors.toList()); // gather the futures
-
-            // Wait for workers to complete.
-            // This will throw InterrupedException if this (HitsFromQueryParallel) thread is interruped while waiting.
-            // NOTE: the worker will not automatically abort, so we should also interrupt our workers should that happen.
-            // The workers themselves won't ever throw InterruptedException, it would be wrapped in ExecutionException.
-            // (Besides, we're the only thread that can call interrupt() on our worker anyway, and we don't ever do that.
-            //  Technically, it could happen if the Executor were to shut down, but it would still result in an ExecutionException anyway.)
-            for (Future<?> p : pendingResults) 
-                p.get();
-        } catch (InterruptedException e) {
-            // We were interrupted while waiting for workers to finish.
-            // If we were the thread that created the workers, cancel them. (this isn't always the case, we may have been interrupted during self-polling phase)
-            // For the TermsReaders that aren't done yet, the next time this function is called we'll just create new Runnables/Futures of them.
-            if (pendingResults != null) {
+                // This is the blocking portion, start worker threads, then wait for them to finish.
+                final int numThreads = Math.max(queryInfo().index().blackLab().maxThreadsPerSearch(), 1);
+                final ExecutorService executorService = numThreads >= 2
+                        ? queryInfo().index().blackLab().searchExecutorService()
+                        : new CurrentThreadExecutorService();
+
+                for (SpansReader spansReader: spansReaders)
+                    spansReader.yieldRequest = yieldRequest;
+                final AtomicLong i = new AtomicLong();
+                pendingResults = spansReaders
+                    .stream()
+                    .collect(Collectors.groupingBy(sr -> i.getAndIncrement() % numThreads)) // subdivide the list, one sublist per thread to use (one list in case of single thread).
+                    .values()
+                    .stream()
+                    .map(list -> executorService.submit(() -> list.forEach(SpansReader::run))) // now submit one task per sublist
+                    .collect(Collectors.toList()); // gather the futures
+
+                // Wait for workers to complete.
+                // This will throw InterrupedException if this (HitsFromQueryParallel) thread is interruped while waiting.
+                // NOTE: the worker will not automatically abort, so we should also interrupt our workers should that happen.
+                // The workers themselves won't ever throw InterruptedException, it would be wrapped in ExecutionException.
+                // (Besides, we're the only thread that can call interrupt() on our worker anyway, and we don't ever do that.
+                //  Technically, it could happen if the Executor were to shut down, but it would still result in an ExecutionException anyway.)
                 for (Future<?> p : pendingResults) 
-                    p.cancel(true);
+                    p.get();
+
+                stoppedToYield = spansReaders.stream().anyMatch(spansReader -> spansReader.stoppedToYield);
+                if (isReservoirSampling() && !stoppedToYield)
+                    mergeReservoirs();
+            } catch (InterruptedException e) {
+                // We were interrupted while waiting for workers to finish.
+                // If we were the thread that created the workers, cancel them. (this isn't always the case, we may have been interrupted during self-polling phase)
+                // For the TermsReaders that aren't done yet, the next time this function is called we'll just create new Runnables/Futures of them.
+                if (pendingResults != null) {
+                    for (Future<?> p : pendingResults) 
+                        p.cancel(true);
+                }
+                throw new InterruptedSearch(e);
+            } catch (ExecutionException e) { 
+                // ExecutionException always wraps another exception, 
+                // but that may just be a RuntimeException wrapping some kind of checked exception (ioexception, interruptedexception, etc.)
+                // we're only interested in the actual deepest cause.
+                Throwable cause = e;
+                while (cause.getCause() != null) cause = cause.getCause(); 
+                throw new BlackLabRuntimeException(cause);
+            } catch (Exception e) {
+                // something unforseen happened in our thread
+                // Should generally never happen unless there's a bug or something catastrophic happened.
+                throw new BlackLabRuntimeException(e);
+            } finally {
+                // Don't do this unless we're the thread that's actually using the SpansReaders.
+                if (hasLock) {
+                    // Remove all SpansReaders that have finished.
+                    spansReaders.removeIf(spansReader -> spansReader.isDone);
+                    this.allSourceSpansFullyRead = spansReaders.isEmpty();
+                    ensureHitsReadLock.unlock();
+                }
             }
-            throw new InterruptedSearch(e);
-        } catch (ExecutionException e) { 
-            // ExecutionException always wraps another exception, 
-            // but that may just be a RuntimeException wrapping some kind of checked exception (ioexception, interruptedexception, etc.)
-            // we're only interested in the actual deepest cause.
-            Throwable cause = e;
-            while (cause.getCause() != null) cause = cause.getCause(); 
-            throw new BlackLabRuntimeException(cause);
-        } catch (Exception e) {
-            // something unforseen happened in our thread
-            // Should generally never happen unless there's a bug or something catastrophic happened.
-            throw new BlackLabRuntimeException(e);
-        } finally {
-            // Don't do this unless we're the thread that's actually using the SpansReaders.
-            if (hasLock) {
-                // Remove all SpansReaders that have finished.
-                spansReaders.removeIf(spansReader -> spansReader.isDone);
-                this.allSourceSpansFullyRead = spansReaders.isEmpty();
-                ensureHitsReadLock.unlock();
+
+            if (!stoppedToYield)
+                return;
+            // Pause here, where we don't hold ensureHitsReadLock, so other searches can still get hits from
+            // us while we're paused. Then continue where the SpansReaders left off.
+            try {
+                yieldRequest.pauseWhileRequested();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
             }
+            if (allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber))
+                return;
         }
     }
 
+    private boolean isReservoirSampling() {
+        return sampleParameters != null && !sampleParameters.isPercentage();
+    }
+
+    /**
+     * Combine the reservoirs of our SpansReaders into the final sample.
+     *
+     * Called when all SpansReaders are done (or we've reached the max. number of hits to count).
+     */
+    private void mergeReservoirs() {
+        long docs = HitSampler.merge(samplers, sampleParameters.numberOfHitsSet(), hitsInternalMutable);
+        long hits = hitsInternalMutable.size();
+        globalHitsProcessed.set(hits);
+        globalHitsCounted.set(hits);
+        globalDocsProcessed.set(docs);
+        globalDocsCounted.set(docs);
+        // Readers that stopped because we reached the max. to count won't be resumed
+        spansReaders.forEach(spansReader -> spansReader.isDone = true);
+        samplers.clear();
+    }
+
+    @Override
+    public SampleParameters sampleParameters() {
+        return sampleParameters;
+    }
+
     @Override
     public MaxStats maxStats() {
         return new MaxStats(this.globalHitsCounted.get() >= this.maxHitsToProcess, this.globalHitsCounted.get() >= this.maxHitsToCount);
@@ -6,6 +6,7 @@ import org.apache.lucene.search.spans.Spans;
 
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import nl.inl.blacklab.Constants;
+import nl.inl.blacklab.config.BLConfigSearch;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.search.BlackLab;
@@ -39,6 +40,13 @@ public interface HitsInternal extends Iterable<EphemeralHit> {
 
     static HitsInternalMutable create(long initialCapacity, long maxCapacity, boolean mustLock) {
         if (maxCapacity > Constants.JAVA_MAX_ARRAY_SIZE && BlackLab.config().getSearch().isEnableHugeResultSets()) {
+            long offHeapThreshold = BlackLab.config().getSearch().getOffHeapHitsThreshold();
+            if (offHeapThreshold >= 0) {
+                // Store hits beyond the threshold off-heap
+                if (mustLock)
+                    return new HitsInternalPackedLock(initialCapacity, offHeapThreshold);
+                return new HitsInternalPackedNoLock(initialCapacity, offHeapThreshold);
+            }
             if (mustLock)
                 return new HitsInternalLock(initialCapacity);
             return new HitsInternalNoLock(initialCapacity);
@@ -50,6 +58,16 @@ public interface HitsInternal extends Iterable<EphemeralHit> {
         return new HitsInternalNoLock32((int)initialCapacity);
     }
 
+    /**
+     * How much memory is used outside the Java heap to store hits?
+     *
+     * @return off-heap memory used by huge result sets (bytes)
+     * @see BLConfigSearch#getOffHeapHitsThreshold()
+     */
+    static long offHeapMemoryUsed() {
+        return HitsInternalPackedNoLock.offHeapMemoryUsed();
+    }
+
     /**
      * Perform an operation with read lock.
      * <p>
@@ -127,6 +145,20 @@ public interface HitsInternal extends Iterable<EphemeralHit> {
      */
     MatchInfo[] matchInfo(long index);
 
+    /**
+     * Get a single match info (e.g. a captured group) for a match.
+     * <p>
+     * Implementations may avoid creating the entire MatchInfo[] for the match.
+     *
+     * @param index hit index
+     * @param matchInfoIndex index of the match info to get
+     * @return the match info, or null if not available
+     */
+    default MatchInfo matchInfo(long index, int matchInfoIndex) {
+        MatchInfo[] matchInfo = matchInfo(index);
+        return matchInfo == null ? null : matchInfo[matchInfoIndex];
+    }
+
     long size();
 
     /**
@@ -44,7 +44,8 @@ class HitsInternalLock extends HitsInternalNoLock {
             docs.add(hit.doc);
             starts.add(hit.start);
             ends.add(hit.end);
-            matchInfos.add(hit.matchInfo);
+            if (hit.matchInfo != null)
+                matchInfos.add(hit.matchInfo);
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -61,7 +62,8 @@ class HitsInternalLock extends HitsInternalNoLock {
             docs.add(hit.doc());
             starts.add(hit.start());
             ends.add(hit.end());
-            matchInfos.add(hit.matchInfo());
+            if (hit.matchInfo() != null)
+                matchInfos.add(hit.matchInfo());
         } finally {
             this.lock.writeLock().unlock();
         }
@@ -145,7 +147,7 @@ class HitsInternalLock extends HitsInternalNoLock {
             h.doc = docs.getInt(index);
             h.start = starts.getInt(index);
             h.end = ends.getInt(index);
-            h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get((int) index);
+            h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index, h);
             assert HitsInternal.debugCheckReasonableHit(h);
         } finally {
             lock.readLock().unlock();
@@ -182,6 +184,16 @@ class HitsInternalLock extends HitsInternalNoLock {
         }
     }
 
+    @Override
+    public MatchInfo matchInfo(long index, int matchInfoIndex) {
+        lock.readLock().lock();
+        try {
+            return super.matchInfo(index, matchInfoIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public long size() {
         lock.readLock().lock();
         try {
@@ -160,7 +160,7 @@ class HitsInternalLock32 extends HitsInternalNoLock32 {
             h.doc = docs.getInt((int)index);
             h.start = starts.getInt((int)index);
             h.end = ends.getInt((int)index);
-            h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get((int) index);
+            h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index, h);
             assert HitsInternal.debugCheckReasonableHit(h);
         } finally {
             lock.readLock().unlock();
@@ -211,6 +211,16 @@ class HitsInternalLock32 extends HitsInternalNoLock32 {
         }
     }
 
+    @Override
+    public MatchInfo matchInfo(long index, int matchInfoIndex) {
+        lock.readLock().lock();
+        try {
+            return super.matchInfo(index, matchInfoIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public long size() {
         lock.readLock().lock();
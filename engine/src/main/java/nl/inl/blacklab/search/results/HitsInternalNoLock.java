@@ -7,8 +7,6 @@ import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
 import it.unimi.dsi.fastutil.ints.IntBigList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.longs.LongBigArrays;
-import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
-import it.unimi.dsi.fastutil.objects.ObjectBigList;
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.search.lucene.MatchInfo;
@@ -50,7 +48,7 @@ class HitsInternalNoLock implements HitsInternalMutable {
             hit.start = HitsInternalNoLock.this.starts.getInt(pos);
             hit.end = HitsInternalNoLock.this.ends.getInt(pos);
             hit.matchInfo = HitsInternalNoLock.this.matchInfos.isEmpty() ? null :
-                    HitsInternalNoLock.this.matchInfos.get(pos);
+                    HitsInternalNoLock.this.matchInfos.get(pos, hit);
             ++this.pos;
             return hit;
         }
@@ -59,7 +57,7 @@ class HitsInternalNoLock implements HitsInternalMutable {
     protected final IntBigList docs;
     protected final IntBigList starts;
     protected final IntBigList ends;
-    protected final ObjectBigList<MatchInfo[]> matchInfos;
+    protected final MatchInfoStore matchInfos = new MatchInfoStore();
 
     HitsInternalNoLock(long initialCapacity) {
         if (initialCapacity < 0) {
@@ -67,12 +65,10 @@ class HitsInternalNoLock implements HitsInternalMutable {
             docs = new IntBigArrayBigList();
             starts = new IntBigArrayBigList();
             ends = new IntBigArrayBigList();
-            matchInfos = new ObjectBigArrayBigList<>();
         } else {
             docs = new IntBigArrayBigList(initialCapacity);
             starts = new IntBigArrayBigList(initialCapacity);
             ends = new IntBigArrayBigList(initialCapacity);
-            matchInfos = new ObjectBigArrayBigList<>(initialCapacity);
         }
     }
 
@@ -167,7 +163,7 @@ class HitsInternalNoLock implements HitsInternalMutable {
         h.doc = docs.getInt(index);
         h.start = starts.getInt(index);
         h.end = ends.getInt(index);
-        h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index);
+        h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index, h);
         assert HitsInternal.debugCheckReasonableHit(h);
     }
 
@@ -186,6 +182,11 @@ class HitsInternalNoLock implements HitsInternalMutable {
     @Override
     public MatchInfo[] matchInfo(long index) { return this.matchInfos.isEmpty() ? null : this.matchInfos.get(index); }
 
+    @Override
+    public MatchInfo matchInfo(long index, int matchInfoIndex) {
+        return this.matchInfos.isEmpty() ? null : this.matchInfos.get(index, matchInfoIndex);
+    }
+
     public long size() {
         return docs.size64();
     }
@@ -236,8 +237,9 @@ class HitsInternalNoLock implements HitsInternalMutable {
                         r.add(docs.getInt(l), starts.getInt(l), ends.getInt(l), null);
                     }
                 } else {
+                    EphemeralHit buffer = new EphemeralHit();
                     for (long l: segment) {
-                        r.add(docs.getInt(l), starts.getInt(l), ends.getInt(l), matchInfos.get(l));
+                        r.add(docs.getInt(l), starts.getInt(l), ends.getInt(l), matchInfos.get(l, buffer));
                     }
                 }
             }
@@ -255,8 +257,9 @@ class HitsInternalNoLock implements HitsInternalMutable {
                     r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), null);
                 }
             } else {
+                EphemeralHit buffer = new EphemeralHit();
                 for (int index: indices) {
-                    r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), matchInfos.get(index));
+                    r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), matchInfos.get(index, buffer));
                 }
             }
         }
@@ -6,7 +6,6 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntList;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.resultproperty.HitProperty;
@@ -47,7 +46,7 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
             hit.start = HitsInternalNoLock32.this.starts.getInt(pos);
             hit.end = HitsInternalNoLock32.this.ends.getInt(pos);
             hit.matchInfo = HitsInternalNoLock32.this.matchInfos.isEmpty() ? null :
-                    HitsInternalNoLock32.this.matchInfos.get(pos);
+                    HitsInternalNoLock32.this.matchInfos.get(pos, hit);
             ++pos;
             return hit;
         }
@@ -67,7 +66,7 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
     protected final IntList docs;
     protected final IntList starts;
     protected final IntList ends;
-    protected final ObjectList<MatchInfo[]> matchInfos;
+    protected final MatchInfoStore matchInfos = new MatchInfoStore();
 
     HitsInternalNoLock32() {
         this(-1);
@@ -79,12 +78,10 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
             this.docs = new IntArrayList();
             this.starts = new IntArrayList();
             this.ends = new IntArrayList();
-            this.matchInfos = new ObjectArrayList<>();
         } else {
             this.docs = new IntArrayList(initialCapacity);
             this.starts = new IntArrayList(initialCapacity);
             this.ends = new IntArrayList(initialCapacity);
-            this.matchInfos = new ObjectArrayList<>(initialCapacity);
         }
     }
 
@@ -97,7 +94,8 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
         this.docs = docs;
         this.starts = starts;
         this.ends = ends;
-        this.matchInfos = matchInfos == null ? new ObjectArrayList<>() : matchInfos;
+        if (matchInfos != null)
+            matchInfos.forEach(this.matchInfos::add);
         assert HitsInternal.debugCheckAllReasonable(this);
     }
 
@@ -197,7 +195,7 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
         h.doc = docs.getInt((int)index);
         h.start = starts.getInt((int)index);
         h.end = ends.getInt((int)index);
-        h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get((int) index);
+        h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index, h);
         assert HitsInternal.debugCheckReasonableHit(h);
     }
 
@@ -221,6 +219,11 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
         return matchInfos.isEmpty() ? null : matchInfos.get((int) index);
     }
 
+    @Override
+    public MatchInfo matchInfo(long index, int matchInfoIndex) {
+        return matchInfos.isEmpty() ? null : matchInfos.get((int) index, matchInfoIndex);
+    }
+
     @Override
     public long size() {
         return docs.size();
@@ -250,8 +253,9 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
                 r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), null);
             }
         } else {
+            EphemeralHit buffer = new EphemeralHit();
             for (int index: indices) {
-                r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), matchInfos.get(index));
+                r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index), matchInfos.get(index, buffer));
             }
         }
         return r;
@@ -0,0 +1,180 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.search.lucene.MatchInfo;
+
+/**
+ * A HitsInternal implementation that locks, can handle huge result sets,
+ * and stores most of them off-heap.
+ *
+ * @see HitsInternalPackedNoLock
+ */
+class HitsInternalPackedLock extends HitsInternalPackedNoLock {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    HitsInternalPackedLock(long initialCapacity, long heapThreshold) {
+        super(initialCapacity, heapThreshold);
+    }
+
+    @Override
+    public void add(int doc, int start, int end, MatchInfo[] matchInfo) {
+        lock.writeLock().lock();
+        try {
+            super.add(doc, start, end, matchInfo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(EphemeralHit hit) {
+        add(hit.doc, hit.start, hit.end, hit.matchInfo);
+    }
+
+    @Override
+    public void add(Hit hit) {
+        add(hit.doc(), hit.start(), hit.end(), hit.matchInfo());
+    }
+
+    public void addAll(HitsInternalPackedLock hits) {
+        this.lock.writeLock().lock();
+        try {
+            hits.lock.readLock().lock();
+            try {
+                super.addAll((HitsInternal) hits);
+            } finally {
+                hits.lock.readLock().unlock();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addAll(HitsInternal hits) {
+        lock.writeLock().lock();
+        try {
+            super.addAll(hits);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clear the arrays.
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            super.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void withReadLock(Consumer<HitsInternal> cons) {
+        lock.readLock().lock();
+        try {
+            super.withReadLock(cons);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Hit get(long index) {
+        lock.readLock().lock();
+        try {
+            return super.get(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void getEphemeral(long index, EphemeralHit h) {
+        lock.readLock().lock();
+        try {
+            super.getEphemeral(index, h);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int doc(long index) {
+        lock.readLock().lock();
+        try {
+            return super.doc(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int start(long index) {
+        lock.readLock().lock();
+        try {
+            return super.start(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int end(long index) {
+        lock.readLock().lock();
+        try {
+            return super.end(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MatchInfo[] matchInfo(long index) {
+        lock.readLock().lock();
+        try {
+            return super.matchInfo(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MatchInfo matchInfo(long index, int matchInfoIndex) {
+        lock.readLock().lock();
+        try {
+            return super.matchInfo(index, matchInfoIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return super.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public HitsInternal sort(HitProperty p) {
+        lock.readLock().lock();
+        try {
+            return super.sort(p);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
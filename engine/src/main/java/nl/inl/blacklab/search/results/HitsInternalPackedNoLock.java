@@ -0,0 +1,400 @@
+package nl.inl.blacklab.search.results;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.search.lucene.MatchInfo;
+
+/**
+ * A HitsInternal implementation that does no locking, can handle huge result sets,
+ * and stores most of them off-heap.
+ * <p>
+ * The first hits (up to a threshold) are stored on-heap, exactly like {@link HitsInternalNoLock}
+ * does. Hits beyond the threshold are collected in blocks of {@link #BLOCK_SIZE} hits; when a block
+ * is full, it is bit-packed into a direct (off-heap) buffer. Doc ids are stored relative to the
+ * smallest doc id in the block, and end positions relative to the start position, so each hit
+ * usually takes only a few bytes, and the garbage collector never has to look at them.
+ * <p>
+ * Match info (if any) is kept in a separate on-heap column for all hits.
+ * <p>
+ * This means small result sets behave exactly as before, while huge result sets use far less
+ * heap. Random access into the packed part is a little slower than into the on-heap part.
+ */
+class HitsInternalPackedNoLock extends HitsInternalNoLock {
+
+    /** log2 of the number of hits per packed block */
+    private static final int BLOCK_SHIFT = 14;
+
+    /** Number of hits per packed block */
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /** Mask to get the index of a hit within its block */
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** Releases our off-heap accounting when a packed block is garbage collected */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** Total size of the off-heap buffers of all live packed blocks (bytes) */
+    private static final AtomicLong offHeapBytes = new AtomicLong();
+
+    /**
+     * How much off-heap memory is used by packed hits?
+     *
+     * Direct buffers don't count towards the Java heap, so code that keeps an eye on
+     * free memory (e.g. BlackLab Server's cache) should take this into account as well.
+     *
+     * @return off-heap memory used by all packed blocks that haven't been garbage collected (bytes)
+     */
+    static long offHeapMemoryUsed() {
+        return offHeapBytes.get();
+    }
+
+    /**
+     * A block of hits, bit-packed into an off-heap buffer.
+     * <p>
+     * Each hit is stored as (doc - minDoc, start, end - start), using the minimum
+     * number of bits needed for each of these values in this block.
+     */
+    private static class PackedBlock {
+
+        /** Packed hit values (direct buffer, i.e. off-heap) */
+        private final ByteBuffer data;
+
+        /** Smallest doc id in the block */
+        private final int minDoc;
+
+        private final int docBits;
+
+        private final int startBits;
+
+        private final int lengthBits;
+
+        /** Bits per hit (sum of the above) */
+        private final int hitBits;
+
+        PackedBlock(int[] docs, int[] starts, int[] ends, int n) {
+            int min = Integer.MAX_VALUE, max = 0, maxStart = 0, maxLength = 0;
+            for (int i = 0; i < n; i++) {
+                min = Math.min(min, docs[i]);
+                max = Math.max(max, docs[i]);
+                maxStart = Math.max(maxStart, starts[i]);
+                maxLength = Math.max(maxLength, ends[i] - starts[i]);
+            }
+            minDoc = min;
+            docBits = bitsNeeded(max - min);
+            startBits = bitsNeeded(maxStart);
+            lengthBits = bitsNeeded(maxLength);
+            hitBits = docBits + startBits + lengthBits;
+
+            long[] words = new long[(int) (((long) hitBits * n + 63) >>> 6)];
+            long bitOffset = 0;
+            for (int i = 0; i < n; i++) {
+                bitOffset = writeBits(words, bitOffset, docs[i] - minDoc, docBits);
+                bitOffset = writeBits(words, bitOffset, starts[i], startBits);
+                bitOffset = writeBits(words, bitOffset, ends[i] - starts[i], lengthBits);
+            }
+            int dataBytes = Math.max(words.length, 1) * Long.BYTES;
+            data = ByteBuffer.allocateDirect(dataBytes);
+            data.asLongBuffer().put(words);
+            offHeapBytes.addAndGet(dataBytes);
+            // NOTE: the cleanup action must not refer to this block, or it would never become unreachable
+            CLEANER.register(this, () -> offHeapBytes.addAndGet(-dataBytes));
+        }
+
+        int doc(int i) {
+            return minDoc + (int) readBits(data, (long) i * hitBits, docBits);
+        }
+
+        int start(int i) {
+            return (int) readBits(data, (long) i * hitBits + docBits, startBits);
+        }
+
+        int end(int i) {
+            long offset = (long) i * hitBits + docBits;
+            int start = (int) readBits(data, offset, startBits);
+            return start + (int) readBits(data, offset + startBits, lengthBits);
+        }
+
+        void get(int i, EphemeralHit h) {
+            long offset = (long) i * hitBits;
+            h.doc = minDoc + (int) readBits(data, offset, docBits);
+            h.start = (int) readBits(data, offset + docBits, startBits);
+            h.end = h.start + (int) readBits(data, offset + docBits + startBits, lengthBits);
+        }
+
+        private static long writeBits(long[] words, long bitOffset, int value, int numBits) {
+            if (numBits > 0) {
+                int wordIndex = (int) (bitOffset >>> 6);
+                int shift = (int) (bitOffset & 63);
+                words[wordIndex] |= ((long) value) << shift;
+                if (shift + numBits > 64)
+                    words[wordIndex + 1] |= ((long) value) >>> (64 - shift);
+            }
+            return bitOffset + numBits;
+        }
+    }
+
+    /**
+     * How many bits do we need to store values up to maxValue?
+     *
+     * @param maxValue highest (non-negative) value to store
+     * @return number of bits needed
+     */
+    static int bitsNeeded(int maxValue) {
+        return 32 - Integer.numberOfLeadingZeros(maxValue);
+    }
+
+    /**
+     * Read a bit-packed value.
+     *
+     * Values are stored starting at the least significant bit of each long, and may
+     * continue into the next long.
+     *
+     * @param data packed longs
+     * @param bitOffset bit offset of the value
+     * @param numBits number of bits in the value
+     * @return the value
+     */
+    static long readBits(ByteBuffer data, long bitOffset, int numBits) {
+        if (numBits == 0)
+            return 0;
+        int wordIndex = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        long value = data.getLong(wordIndex * Long.BYTES) >>> shift;
+        if (shift + numBits > 64)
+            value |= data.getLong((wordIndex + 1) * Long.BYTES) << (64 - shift);
+        return value & ((1L << numBits) - 1);
+    }
+
+    /**
+     * Class to iterate over hits.
+     */
+    private class HitIterator implements Iterator {
+        private long pos = 0;
+
+        private final EphemeralHit hit = new EphemeralHit();
+
+        @Override
+        public boolean hasNext() {
+            return HitsInternalPackedNoLock.this.size() > pos;
+        }
+
+        @Override
+        public EphemeralHit next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            HitsInternalPackedNoLock.this.getEphemeral(pos, hit);
+            ++pos;
+            return hit;
+        }
+    }
+
+    /** How many hits to store on-heap before we start packing them off-heap */
+    private final long heapThreshold;
+
+    /** Full blocks of hits, packed off-heap */
+    private final ObjectArrayList<PackedBlock> blocks = new ObjectArrayList<>();
+
+    /** Hits in the current block, not packed yet */
+    private int[] blockDocs, blockStarts, blockEnds;
+
+    /** Number of hits in the current block */
+    private int blockSize = 0;
+
+    HitsInternalPackedNoLock(long initialCapacity, long heapThreshold) {
+        super(initialCapacity < 0 ? -1 : Math.min(initialCapacity, heapThreshold));
+        this.heapThreshold = heapThreshold;
+    }
+
+    private boolean onHeap() {
+        return docs.size64() < heapThreshold;
+    }
+
+    private void addPacked(int doc, int start, int end, MatchInfo[] matchInfo) {
+        if (blockDocs == null) {
+            blockDocs = new int[BLOCK_SIZE];
+            blockStarts = new int[BLOCK_SIZE];
+            blockEnds = new int[BLOCK_SIZE];
+        }
+        blockDocs[blockSize] = doc;
+        blockStarts[blockSize] = start;
+        blockEnds[blockSize] = end;
+        blockSize++;
+        if (matchInfo != null)
+            matchInfos.add(matchInfo);
+        if (blockSize == BLOCK_SIZE) {
+            // Block is full; pack it and move it off-heap
+            blocks.add(new PackedBlock(blockDocs, blockStarts, blockEnds, blockSize));
+            blockSize = 0;
+        }
+    }
+
+    @Override
+    public void add(int doc, int start, int end, MatchInfo[] matchInfo) {
+        if (onHeap()) {
+            super.add(doc, start, end, matchInfo);
+        } else {
+            assert HitsInternal.debugCheckReasonableHit(doc, start, end);
+            addPacked(doc, start, end, matchInfo);
+        }
+    }
+
+    @Override
+    public void add(EphemeralHit hit) {
+        add(hit.doc, hit.start, hit.end, hit.matchInfo);
+    }
+
+    @Override
+    public void add(Hit hit) {
+        add(hit.doc(), hit.start(), hit.end(), hit.matchInfo());
+    }
+
+    @Override
+    public void addAll(HitsInternalNoLock hits) {
+        addAll((HitsInternal) hits);
+    }
+
+    @Override
+    public void addAll(HitsInternal hits) {
+        hits.withReadLock(hr -> {
+            for (EphemeralHit h: hits) {
+                add(h.doc, h.start, h.end, h.matchInfo);
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        blocks.clear();
+        blockDocs = blockStarts = blockEnds = null;
+        blockSize = 0;
+    }
+
+    @Override
+    public Hit get(long index) {
+        EphemeralHit h = new EphemeralHit();
+        getEphemeral(index, h);
+        return h.toHit();
+    }
+
+    @Override
+    public void getEphemeral(long index, EphemeralHit h) {
+        long heapSize = docs.size64();
+        if (index < heapSize) {
+            super.getEphemeral(index, h);
+            return;
+        }
+        long packedIndex = index - heapSize;
+        int block = (int) (packedIndex >>> BLOCK_SHIFT);
+        int i = (int) (packedIndex & BLOCK_MASK);
+        if (block < blocks.size()) {
+            blocks.get(block).get(i, h);
+        } else {
+            h.doc = blockDocs[i];
+            h.start = blockStarts[i];
+            h.end = blockEnds[i];
+        }
+        h.matchInfo = matchInfos.isEmpty() ? null : matchInfos.get(index, h);
+        assert HitsInternal.debugCheckReasonableHit(h);
+    }
+
+    @Override
+    public int doc(long index) {
+        long heapSize = docs.size64();
+        if (index < heapSize)
+            return docs.getInt(index);
+        long packedIndex = index - heapSize;
+        int block = (int) (packedIndex >>> BLOCK_SHIFT);
+        int i = (int) (packedIndex & BLOCK_MASK);
+        return block < blocks.size() ? blocks.get(block).doc(i) : blockDocs[i];
+    }
+
+    @Override
+    public int start(long index) {
+        long heapSize = docs.size64();
+        if (index < heapSize)
+            return starts.getInt(index);
+        long packedIndex = index - heapSize;
+        int block = (int) (packedIndex >>> BLOCK_SHIFT);
+        int i = (int) (packedIndex & BLOCK_MASK);
+        return block < blocks.size() ? blocks.get(block).start(i) : blockStarts[i];
+    }
+
+    @Override
+    public int end(long index) {
+        long heapSize = docs.size64();
+        if (index < heapSize)
+            return ends.getInt(index);
+        long packedIndex = index - heapSize;
+        int block = (int) (packedIndex >>> BLOCK_SHIFT);
+        int i = (int) (packedIndex & BLOCK_MASK);
+        return block < blocks.size() ? blocks.get(block).end(i) : blockEnds[i];
+    }
+
+    @Override
+    public long size() {
+        return docs.size64() + ((long) blocks.size() << BLOCK_SHIFT) + blockSize;
+    }
+
+    @Override
+    public IntIterator docsIterator() {
+        return new IntIterator() {
+            private long pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                return pos < size();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return doc(pos++);
+            }
+        };
+    }
+
+    @Override
+    public Iterator iterator() {
+        return new HitIterator();
+    }
+
+    @Override
+    public HitsInternal sort(HitProperty p) {
+        long size = size();
+        if (size <= heapThreshold)
+            return super.sort(p); // everything is on-heap
+
+        // Fill an indices BigArray with 0 ... size
+        long[][] indices = LongBigArrays.newBigArray(size);
+        long n = 0;
+        for (final long[] segment: indices) {
+            for (int displacement = 0; displacement < segment.length; displacement++) {
+                segment[displacement] = n;
+                n++;
+            }
+        }
+
+        // Sort the indices using the given HitProperty
+        LongBigArrays.quickSort(indices, p);
+
+        // Now use the sorted indices to fill a new HitsInternal with the actual hits
+        HitsInternalMutable r = HitsInternal.create(size, true, false);
+        EphemeralHit h = new EphemeralHit();
+        for (final long[] segment: indices) {
+            for (long l: segment) {
+                getEphemeral(l, h);
+                r.add(h);
+            }
+        }
+        return r;
+    }
+}
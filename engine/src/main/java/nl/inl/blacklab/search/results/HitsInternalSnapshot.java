@@ -0,0 +1,152 @@
+package nl.inl.blacklab.search.results;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.search.lucene.MatchInfo;
+
+/**
+ * An immutable list of hits read from a (memory-mapped) snapshot file.
+ * <p>
+ * Hits are bit-packed as (doc - minDoc, start, end - start), using the same number of bits
+ * for each hit, so we can access any hit directly. See {@link HitsSnapshots}.
+ * <p>
+ * Never has match info. Because the list is immutable, no locking is needed.
+ */
+class HitsInternalSnapshot implements HitsInternal {
+
+    /**
+     * Class to iterate over hits.
+     */
+    private class HitIterator implements Iterator {
+        private long pos = 0;
+
+        private final EphemeralHit hit = new EphemeralHit();
+
+        @Override
+        public boolean hasNext() {
+            return pos < size;
+        }
+
+        @Override
+        public EphemeralHit next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            getEphemeral(pos, hit);
+            ++pos;
+            return hit;
+        }
+    }
+
+    /** Packed hit values */
+    private final ByteBuffer data;
+
+    /** Number of hits */
+    private final long size;
+
+    /** Smallest doc id */
+    private final int minDoc;
+
+    private final int docBits;
+
+    private final int startBits;
+
+    private final int lengthBits;
+
+    /** Bits per hit (sum of the above) */
+    private final int hitBits;
+
+    HitsInternalSnapshot(ByteBuffer data, long size, int minDoc, int docBits, int startBits, int lengthBits) {
+        this.data = data;
+        this.size = size;
+        this.minDoc = minDoc;
+        this.docBits = docBits;
+        this.startBits = startBits;
+        this.lengthBits = lengthBits;
+        hitBits = docBits + startBits + lengthBits;
+    }
+
+    @Override
+    public void withReadLock(Consumer<HitsInternal> cons) {
+        cons.accept(this); // immutable, no locking needed
+    }
+
+    @Override
+    public Hit get(long index) {
+        EphemeralHit h = new EphemeralHit();
+        getEphemeral(index, h);
+        return h.toHit();
+    }
+
+    @Override
+    public void getEphemeral(long index, EphemeralHit h) {
+        long offset = index * hitBits;
+        h.doc = minDoc + (int) HitsInternalPackedNoLock.readBits(data, offset, docBits);
+        h.start = (int) HitsInternalPackedNoLock.readBits(data, offset + docBits, startBits);
+        h.end = h.start + (int) HitsInternalPackedNoLock.readBits(data, offset + docBits + startBits, lengthBits);
+        h.matchInfo = null;
+        assert HitsInternal.debugCheckReasonableHit(h);
+    }
+
+    @Override
+    public int doc(long index) {
+        return minDoc + (int) HitsInternalPackedNoLock.readBits(data, index * hitBits, docBits);
+    }
+
+    @Override
+    public int start(long index) {
+        return (int) HitsInternalPackedNoLock.readBits(data, index * hitBits + docBits, startBits);
+    }
+
+    @Override
+    public int end(long index) {
+        long offset = index * hitBits + docBits;
+        int start = (int) HitsInternalPackedNoLock.readBits(data, offset, startBits);
+        return start + (int) HitsInternalPackedNoLock.readBits(data, offset + startBits, lengthBits);
+    }
+
+    @Override
+    public MatchInfo[] matchInfo(long index) {
+        return null;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public IntIterator docsIterator() {
+        return new IntIterator() {
+            private long pos = 0;
+
+            @Override
+            public boolean hasNext() {
+                return pos < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return doc(pos++);
+            }
+        };
+    }
+
+    @Override
+    public Iterator iterator() {
+        return new HitIterator();
+    }
+
+    @Override
+    public HitsInternal sort(HitProperty p) {
+        // Rare (snapshots are already sorted); just copy the hits to a regular list and sort that
+        HitsInternalMutable hits = HitsInternal.create(size, true, false);
+        hits.addAll(this);
+        return hits.sort(p);
+    }
+}
@@ -0,0 +1,347 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.searches.SearchHits;
+
+/**
+ * Writes finished (sorted) hit lists to snapshot files and reads them back.
+ * <p>
+ * A snapshot is a compact, immutable file containing the bit-packed doc, start and end
+ * of each hit, in result order. It is keyed by the search (see {@link SearchHits#resultsKey()})
+ * and the index version, so after the search was evicted from the cache, after a restart, or on
+ * another server sharing the snapshot directory, any window of the results can be served
+ * directly from the memory-mapped file instead of executing the search again.
+ * <p>
+ * Snapshots are written on a background thread, to a temporary file first, then moved into
+ * place, so readers never see a partial file. After writing, snapshots that haven't been used
+ * for a while (e.g. those for older index versions) are removed, as are the least recently used
+ * ones if the directory grows too large.
+ * <p>
+ * Hit lists with match info (e.g. captures) are not snapshotted, as match info is not stored.
+ * <p>
+ * This class is thread-safe.
+ */
+public class HitsSnapshots {
+
+    private static final Logger logger = LogManager.getLogger(HitsSnapshots.class);
+
+    /** Identifies snapshot files */
+    private static final int MAGIC = 0x424C4853; // "BLHS"
+
+    /** Snapshot file format version */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Snapshot file extension */
+    private static final String EXT_SNAPSHOT = ".hits";
+
+    /** Temporary file extension */
+    private static final String EXT_TEMP = ".tmp";
+
+    /** Max. number of snapshots waiting to be written (more are skipped, so we don't keep many hit lists alive) */
+    private static final int MAX_QUEUED_WRITES = 4;
+
+    /** Writes snapshots in the background (one at a time, for all indexes; thread stops when idle) */
+    private static final ThreadPoolExecutor writer = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_WRITES), runnable -> {
+                Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+                worker.setName("BLHitsSnapshotWriter");
+                worker.setDaemon(true); // don't prevent JVM exiting
+                return worker;
+            }, (runnable, executor) -> logger.debug("Too many hits snapshots waiting to be written, skipping one"));
+
+    /** Our index */
+    private final BlackLabIndex index;
+
+    /** Where to store snapshots, or null if disabled */
+    private final File dir;
+
+    /** Minimum number of hits for a hit list to be snapshotted */
+    private final long minHits;
+
+    /** Max. total size of the snapshot directory (bytes) */
+    private final long maxSizeBytes;
+
+    /** Snapshots that weren't used for this long are removed (ms) */
+    private final long maxAgeMs;
+
+    public HitsSnapshots(BlackLabIndex index, String dir, long minHits, long maxSizeBytes, long maxAgeMs) {
+        this.index = index;
+        this.dir = StringUtils.isEmpty(dir) ? null : new File(dir);
+        this.minHits = minHits;
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Are snapshots enabled?
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Determine the key identifying the results of this search.
+     *
+     * @param search search
+     * @return key, or null if we can't determine the index version or the search doesn't support it
+     */
+    private String key(SearchHits search) {
+        IndexReader reader = index.reader();
+        if (!(reader instanceof DirectoryReader))
+            return null;
+        String resultsKey = search.resultsKey();
+        if (resultsKey == null)
+            return null;
+        long indexVersion = ((DirectoryReader) reader).getVersion();
+        return index.name() + "\n" + indexVersion + "\n" + resultsKey;
+    }
+
+    private File file(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b: digest)
+                name.append(String.format("%02x", b));
+            return new File(dir, name + EXT_SNAPSHOT);
+        } catch (NoSuchAlgorithmException e) {
+            throw new BlackLabRuntimeException(e);
+        }
+    }
+
+    /**
+     * Read the results of a search from its snapshot, if there is one.
+     *
+     * @param search search to get the results for
+     * @return hits, or null if there's no (valid) snapshot
+     */
+    public Hits load(SearchHits search) {
+        if (!isEnabled())
+            return null;
+        String key = key(search);
+        if (key == null)
+            return null;
+        File file = file(key);
+        if (!file.exists())
+            return null;
+        // Record that this snapshot was used, so it isn't cleaned up
+        if (!file.setLastModified(System.currentTimeMillis()))
+            logger.debug("Could not update last modified time of hits snapshot {}", file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // (mapping remains valid after the channel is closed)
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+            byte[] keyBytes = new byte[buffer.getInt()];
+            buffer.get(keyBytes);
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8)))
+                return null; // (hash collision)
+            long size = buffer.getLong();
+            long hitsCounted = buffer.getLong();
+            long docsRetrieved = buffer.getLong();
+            long docsCounted = buffer.getLong();
+            boolean ascendingLuceneDocIds = buffer.get() != 0;
+            int minDoc = buffer.getInt();
+            int docBits = buffer.get();
+            int startBits = buffer.get();
+            int lengthBits = buffer.get();
+            HitsInternal hits = new HitsInternalSnapshot(buffer.slice(), size, minDoc, docBits, startBits, lengthBits);
+            logger.debug("Read hits snapshot {} ({} hits)", file, size);
+            return Hits.list(search.queryInfo(), hits, null, null, hitsCounted, docsRetrieved, docsCounted,
+                    null, ascendingLuceneDocIds);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read hits snapshot " + file + ", ignoring", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot of the results of a search in the background, if they qualify.
+     *
+     * Afterwards, old snapshots are removed (see {@link #removeOldSnapshots()}).
+     * If too many snapshots are already waiting to be written, this one is skipped.
+     *
+     * @param search search the results are for
+     * @param hits results (must be complete, e.g. sorted)
+     */
+    public void saveInBackground(SearchHits search, Hits hits) {
+        if (!isEnabled() || hits.size() < minHits || hits.hasMatchInfo())
+            return;
+        writer.execute(() -> {
+            save(search, hits);
+            removeOldSnapshots();
+        });
+    }
+
+    /**
+     * Write a snapshot of the results of a search, if they qualify.
+     *
+     * Results qualify if they are large enough and have no match info.
+     * If writing the snapshot fails, a warning is logged.
+     *
+     * @param search search the results are for
+     * @param hits results (must be complete, e.g. sorted)
+     */
+    public void save(SearchHits search, Hits hits) {
+        if (!isEnabled() || hits.size() < minHits || hits.hasMatchInfo())
+            return;
+        String key = key(search);
+        if (key == null)
+            return;
+        File file = file(key);
+        if (file.exists())
+            return; // (another server wrote it already)
+
+        // Determine the number of bits we need for each value
+        HitsInternal hitsInternal = hits.getInternalHits();
+        int minDoc = Integer.MAX_VALUE, maxDoc = 0, maxStart = 0, maxLength = 0;
+        for (EphemeralHit h: hitsInternal) {
+            minDoc = Math.min(minDoc, h.doc);
+            maxDoc = Math.max(maxDoc, h.doc);
+            maxStart = Math.max(maxStart, h.start);
+            maxLength = Math.max(maxLength, h.end - h.start);
+        }
+        int docBits = HitsInternalPackedNoLock.bitsNeeded(maxDoc - minDoc);
+        int startBits = HitsInternalPackedNoLock.bitsNeeded(maxStart);
+        int lengthBits = HitsInternalPackedNoLock.bitsNeeded(maxLength);
+        long dataBytes = ((hits.size() * (docBits + startBits + lengthBits) + 63) >>> 6) * Long.BYTES;
+        if (dataBytes > Integer.MAX_VALUE - 1000) {
+            // Too large to map as a single buffer
+            logger.debug("Not writing hits snapshot for {}: too large", search);
+            return;
+        }
+
+        Path tempFile = null;
+        try {
+            if (!dir.exists() && !dir.mkdirs())
+                throw new IOException("Could not create directory " + dir);
+            tempFile = Files.createTempFile(dir.toPath(), "snapshot", EXT_TEMP);
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeLong(hits.size());
+                out.writeLong(hits.hitsStats().countedTotal());
+                out.writeLong(hits.docsStats().processedTotal());
+                out.writeLong(hits.docsStats().countedTotal());
+                out.writeByte(hits.hasAscendingLuceneDocIds() ? 1 : 0);
+                out.writeInt(minDoc);
+                out.writeByte(docBits);
+                out.writeByte(startBits);
+                out.writeByte(lengthBits);
+
+                // Write the bit-packed hits
+                long word = 0;
+                int bitsInWord = 0;
+                int[] bits = { docBits, startBits, lengthBits };
+                long[] values = new long[bits.length];
+                for (EphemeralHit h: hitsInternal) {
+                    values[0] = h.doc - minDoc;
+                    values[1] = h.start;
+                    values[2] = h.end - h.start;
+                    for (int i = 0; i < values.length; i++) {
+                        if (bits[i] == 0)
+                            continue;
+                        word |= values[i] << bitsInWord;
+                        bitsInWord += bits[i];
+                        if (bitsInWord >= 64) {
+                            out.writeLong(word);
+                            bitsInWord -= 64;
+                            // (remaining high bits of the value, if any, go into the next word)
+                            word = bitsInWord == 0 ? 0 : values[i] >>> (bits[i] - bitsInWord);
+                        }
+                    }
+                }
+                if (bitsInWord > 0)
+                    out.writeLong(word);
+            }
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.debug("Wrote hits snapshot {} ({} hits) for {}", file, hits.size(), search);
+        } catch (IOException e) {
+            logger.warn("Could not write hits snapshot for " + search, e);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e1) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove snapshots that weren't used for a while, and the least recently used ones
+     * if the directory is too large.
+     *
+     * Temporary files are only removed if they are old, as another server may still be writing them.
+     * If a file can't be deleted, it is skipped.
+     */
+    public void removeOldSnapshots() {
+        if (!isEnabled())
+            return;
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXT_SNAPSHOT) || name.endsWith(EXT_TEMP));
+        if (files == null)
+            return;
+        long now = System.currentTimeMillis();
+        long totalSize = 0;
+        // Most recently used first
+        // (determine last modified times first, as load() may update them while we sort)
+        Map<File, Long> lastModified = new HashMap<>();
+        for (File file: files)
+            lastModified.put(file, file.lastModified());
+        Arrays.sort(files, Comparator.comparingLong((File f) -> lastModified.get(f)).reversed());
+        for (File file: files) {
+            boolean isSnapshot = file.getName().endsWith(EXT_SNAPSHOT);
+            long size = isSnapshot ? file.length() : 0;
+            totalSize += size;
+            boolean tooOld = now - lastModified.get(file) > maxAgeMs;
+            if (tooOld || totalSize > maxSizeBytes && isSnapshot) {
+                if (file.delete()) {
+                    logger.debug("Removed hits snapshot {}", file);
+                    totalSize -= size;
+                } else {
+                    logger.debug("Could not remove hits snapshot {}", file);
+                }
+            }
+        }
+    }
+}
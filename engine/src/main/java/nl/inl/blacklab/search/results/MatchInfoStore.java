@@ -0,0 +1,312 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.Objects;
+
+import it.unimi.dsi.fastutil.bytes.ByteBigArrayBigList;
+import it.unimi.dsi.fastutil.bytes.ByteBigList;
+import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
+import it.unimi.dsi.fastutil.ints.IntBigList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import nl.inl.blacklab.search.lucene.MatchInfo;
+import nl.inl.blacklab.search.lucene.RelationInfo;
+import nl.inl.blacklab.search.lucene.SpanInfo;
+
+/**
+ * Stores the match info (captured groups, relations) for a list of hits in columnar form.
+ * <p>
+ * Instead of keeping a MatchInfo[] with several small objects for every hit, we keep
+ * int columns per match info index: start and end for captured groups, and additionally
+ * target start/end, relation id and relation type ordinal for relations. MatchInfo objects
+ * are only created when requested, e.g. for the hits in a window or to sort on a captured group.
+ * <p>
+ * Match info that doesn't fit this scheme (lists of relations, relations with attributes,
+ * match info for an unexpected field) is stored as-is.
+ * <p>
+ * This class does no locking; that's up to the HitsInternal implementation using it.
+ */
+class MatchInfoStore {
+
+    /** No match info at this index for this hit */
+    private static final byte KIND_NULL = 0;
+
+    /** Captured group */
+    private static final byte KIND_SPAN = 1;
+
+    /** Relation with a source and target */
+    private static final byte KIND_RELATION = 2;
+
+    /** Root relation (only has a target) */
+    private static final byte KIND_ROOT_RELATION = 3;
+
+    /** Stored as-is in the objects map */
+    private static final byte KIND_OBJECT = 4;
+
+    /** Match info for one index in the MatchInfo[] of all hits */
+    private static class Column {
+        /** Kind of match info for each hit */
+        private final ByteBigList kinds = new ByteBigArrayBigList();
+
+        /** Span start, or relation source start */
+        private final IntBigList starts = new IntBigArrayBigList();
+
+        /** Span end, or relation source end */
+        private final IntBigList ends = new IntBigArrayBigList();
+
+        /** Relation target start (only allocated if we see a relation) */
+        private IntBigList targetStarts;
+
+        /** Relation target end (only allocated if we see a relation) */
+        private IntBigList targetEnds;
+
+        /** Relation id (only allocated if we see a relation) */
+        private IntBigList relationIds;
+
+        /** Relation type ordinal (only allocated if we see a relation) */
+        private IntBigList relationTypes;
+
+        /** Match info that could not be stored in the columns above */
+        private final Long2ObjectMap<MatchInfo> objects = new Long2ObjectOpenHashMap<>();
+
+        /** Field for the match info in this column (determined by the first one stored) */
+        private String field;
+
+        /** Target field for relations in this column (determined by the first one stored) */
+        private String targetField;
+
+        private void pad(long row) {
+            if (kinds.size64() < row) {
+                kinds.size(row);
+                starts.size(row);
+                ends.size(row);
+            }
+        }
+
+        private void padRelation(long row) {
+            if (targetStarts == null) {
+                targetStarts = new IntBigArrayBigList();
+                targetEnds = new IntBigArrayBigList();
+                relationIds = new IntBigArrayBigList();
+                relationTypes = new IntBigArrayBigList();
+            }
+            if (targetStarts.size64() < row) {
+                targetStarts.size(row);
+                targetEnds.size(row);
+                relationIds.size(row);
+                relationTypes.size(row);
+            }
+        }
+    }
+
+    /** Number of hits (rows) stored */
+    private long size = 0;
+
+    /** Length of the MatchInfo[] for each hit (determined by the first one stored), or -1 if not known yet */
+    private int width = -1;
+
+    /** Our columns (one per match info index) */
+    private Column[] columns;
+
+    /** Rows that were null or had an unexpected length; stored as-is */
+    private final Long2ObjectMap<MatchInfo[]> irregularRows = new Long2ObjectOpenHashMap<>();
+
+    /** Relation types we've seen */
+    private final ObjectList<String> relationTypes = new ObjectArrayList<>();
+
+    /** Ordinal for each relation type we've seen */
+    private final Object2IntMap<String> relationTypeOrdinals = new Object2IntOpenHashMap<>();
+
+    MatchInfoStore() {
+        relationTypeOrdinals.defaultReturnValue(-1);
+    }
+
+    /**
+     * Add match info for the next hit.
+     *
+     * @param matchInfo match info to add (may be null)
+     */
+    public void add(MatchInfo[] matchInfo) {
+        long row = size;
+        size++;
+        if (matchInfo == null || (width >= 0 && matchInfo.length != width)) {
+            // Copy, because the caller may reuse the array (see get(long, EphemeralHit))
+            irregularRows.put(row, matchInfo == null ? null : matchInfo.clone());
+            return;
+        }
+        if (width < 0) {
+            width = matchInfo.length;
+            columns = new Column[width];
+            for (int i = 0; i < width; i++)
+                columns[i] = new Column();
+        }
+        for (int i = 0; i < width; i++)
+            addToColumn(columns[i], row, matchInfo[i]);
+    }
+
+    private void addToColumn(Column column, long row, MatchInfo mi) {
+        column.pad(row);
+        if (mi == null) {
+            column.kinds.add(KIND_NULL);
+            column.starts.add(0);
+            column.ends.add(0);
+            return;
+        }
+        if (column.field == null)
+            column.field = mi.getField();
+        boolean sameField = column.field.equals(mi.getField());
+        if (mi instanceof SpanInfo && sameField) {
+            column.kinds.add(KIND_SPAN);
+            column.starts.add(mi.getSpanStart());
+            column.ends.add(mi.getSpanEnd());
+            return;
+        }
+        if (mi instanceof RelationInfo && sameField) {
+            RelationInfo rel = (RelationInfo) mi;
+            if (column.targetField == null)
+                column.targetField = rel.getTargetField();
+            if (rel.getAttributes().isEmpty() && Objects.equals(column.targetField, rel.getTargetField())) {
+                column.kinds.add(rel.isRoot() ? KIND_ROOT_RELATION : KIND_RELATION);
+                column.starts.add(rel.getSourceStart());
+                column.ends.add(rel.getSourceEnd());
+                column.padRelation(row);
+                column.targetStarts.add(rel.getTargetStart());
+                column.targetEnds.add(rel.getTargetEnd());
+                column.relationIds.add(rel.getRelationId());
+                column.relationTypes.add(relationTypeOrdinal(rel.getFullRelationType()));
+                return;
+            }
+        }
+        // Can't store this in columnar form; store as-is
+        column.kinds.add(KIND_OBJECT);
+        column.starts.add(0);
+        column.ends.add(0);
+        column.objects.put(row, mi);
+    }
+
+    private int relationTypeOrdinal(String fullRelationType) {
+        if (fullRelationType == null)
+            return -1;
+        int ordinal = relationTypeOrdinals.getInt(fullRelationType);
+        if (ordinal < 0) {
+            ordinal = relationTypes.size();
+            relationTypes.add(fullRelationType);
+            relationTypeOrdinals.put(fullRelationType, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Add match info for all hits in another store.
+     *
+     * @param other store to add from
+     */
+    public void addAll(MatchInfoStore other) {
+        EphemeralHit buffer = new EphemeralHit();
+        for (long i = 0; i < other.size; i++)
+            add(other.get(i, buffer));
+    }
+
+    /**
+     * Get the match info for a hit.
+     * <p>
+     * This creates new MatchInfo objects every time it is called.
+     *
+     * @param row hit index
+     * @return match info (may be null)
+     */
+    public MatchInfo[] get(long row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for size " + size);
+        if (!irregularRows.isEmpty() && irregularRows.containsKey(row))
+            return irregularRows.get(row);
+        return fill(row, new MatchInfo[width]);
+    }
+
+    /**
+     * Get the match info for a hit, reusing the hit's buffer.
+     * <p>
+     * Avoids allocating an array for every hit when iterating over many hits. The
+     * array returned is only valid until the next call with the same hit; the hit
+     * itself is not changed apart from its buffer.
+     *
+     * @param row hit index
+     * @param hit ephemeral hit whose buffer to (re)use
+     * @return match info (may be null)
+     */
+    public MatchInfo[] get(long row, EphemeralHit hit) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for size " + size);
+        if (!irregularRows.isEmpty() && irregularRows.containsKey(row))
+            return irregularRows.get(row);
+        if (hit.matchInfoBuffer == null || hit.matchInfoBuffer.length != width)
+            hit.matchInfoBuffer = new MatchInfo[width];
+        return fill(row, hit.matchInfoBuffer);
+    }
+
+    private MatchInfo[] fill(long row, MatchInfo[] result) {
+        for (int i = 0; i < width; i++)
+            result[i] = get(columns[i], row);
+        return result;
+    }
+
+    /**
+     * Get one match info for a hit.
+     * <p>
+     * Cheaper than {@link #get(long)} if we only need one, e.g. to sort on a captured group.
+     *
+     * @param row hit index
+     * @param index match info index
+     * @return match info (may be null)
+     */
+    public MatchInfo get(long row, int index) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for size " + size);
+        if (!irregularRows.isEmpty() && irregularRows.containsKey(row)) {
+            MatchInfo[] matchInfo = irregularRows.get(row);
+            return matchInfo == null || index >= matchInfo.length ? null : matchInfo[index];
+        }
+        return get(columns[index], row);
+    }
+
+    private MatchInfo get(Column column, long row) {
+        if (row >= column.kinds.size64())
+            return null;
+        byte kind = column.kinds.getByte(row);
+        switch (kind) {
+        case KIND_NULL:
+            return null;
+        case KIND_SPAN:
+            return SpanInfo.create(column.starts.getInt(row), column.ends.getInt(row), column.field);
+        case KIND_RELATION:
+        case KIND_ROOT_RELATION:
+            int typeOrdinal = column.relationTypes.getInt(row);
+            return RelationInfo.create(kind == KIND_ROOT_RELATION, column.starts.getInt(row),
+                    column.ends.getInt(row), column.targetStarts.getInt(row), column.targetEnds.getInt(row),
+                    column.relationIds.getInt(row), typeOrdinal < 0 ? null : relationTypes.get(typeOrdinal),
+                    column.field, column.targetField);
+        case KIND_OBJECT:
+            return column.objects.get(row);
+        default:
+            throw new IllegalStateException("Unknown match info kind: " + kind);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long size64() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        width = -1;
+        columns = null;
+        irregularRows.clear();
+    }
+}
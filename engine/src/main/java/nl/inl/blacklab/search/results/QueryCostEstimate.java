@@ -0,0 +1,114 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+
+/**
+ * A (very rough) estimate of how expensive a query will be, made before running it.
+ * <p>
+ * The query is optimized and rewritten first (through the rewrite cache, so this work is
+ * not repeated when the query is run). The number of hits is estimated from the term
+ * statistics using {@link BLSpanQuery#reverseMatchingCost(IndexReader)}. If the query has a
+ * document filter, that estimate is multiplied by the fraction of documents matching the
+ * filter. Counting the documents matching a filter can take a while, so we remember this
+ * fraction for recently used filters.
+ */
+public class QueryCostEstimate {
+
+    /** How many filters to remember the fraction of matching documents for (per index reader) */
+    private static final int MAX_CACHED_FILTERS = 1000;
+
+    /** Fraction of documents matching recent filters, per index reader
+     *  (weak keys, so the fractions are discarded together with the reader) */
+    private static final Cache<Object, Cache<Query, Double>> filterSelectivities =
+            Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * Estimate the cost of a query.
+     *
+     * @param index our index
+     * @param query the query as built (with its QueryInfo set), possibly filtered
+     * @return the estimate
+     */
+    public static QueryCostEstimate estimate(BlackLabIndex index, BLSpanQuery query) throws IOException {
+        IndexReader reader = index.reader();
+        BLSpanQuery rewritten = index.blackLab().queryRewriteCache()
+                .get(query, reader, q -> q.optimize(reader).rewrite(reader));
+        double filterSelectivity = 1.0;
+        BLSpanQuery pattern = rewritten;
+        if (rewritten instanceof SpanQueryFiltered) {
+            pattern = ((SpanQueryFiltered) rewritten).getClause();
+            filterSelectivity = filterSelectivity(index, ((SpanQueryFiltered) rewritten).getFilter());
+        }
+        long patternHits = pattern.reverseMatchingCost(reader);
+        return new QueryCostEstimate((long) Math.ceil(patternHits * filterSelectivity), filterSelectivity,
+                pattern.forwardMatchingCost());
+    }
+
+    /**
+     * Determine the fraction of documents matching a filter.
+     *
+     * @param index our index
+     * @param filter document filter
+     * @return fraction of documents matching the filter
+     */
+    private static double filterSelectivity(BlackLabIndex index, Query filter) throws IOException {
+        IndexReader reader = index.reader();
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        Cache<Query, Double> cache = cacheHelper == null ? null : filterSelectivities.get(cacheHelper.getKey(),
+                k -> Caffeine.newBuilder().maximumSize(MAX_CACHED_FILTERS).build());
+        Double filterSelectivity = cache == null ? null : cache.getIfPresent(filter);
+        if (filterSelectivity == null) {
+            int numDocs = reader.numDocs();
+            filterSelectivity = numDocs == 0 ? 0 : (double) index.searcher().count(filter) / numDocs;
+            if (cache != null)
+                cache.put(filter, filterSelectivity);
+        }
+        return filterSelectivity;
+    }
+
+    /** Estimated number of hits */
+    private final long hits;
+
+    /** Fraction of documents matching the filter (1 if there is no filter) */
+    private final double filterSelectivity;
+
+    /** Indication of the NFA complexity, for matching (part of) the query using the forward index */
+    private final int forwardMatchingCost;
+
+    QueryCostEstimate(long hits, double filterSelectivity, int forwardMatchingCost) {
+        this.hits = hits;
+        this.filterSelectivity = filterSelectivity;
+        this.forwardMatchingCost = forwardMatchingCost;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public double filterSelectivity() {
+        return filterSelectivity;
+    }
+
+    public int forwardMatchingCost() {
+        return forwardMatchingCost;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCostEstimate{" +
+                "hits=" + hits +
+                ", filterSelectivity=" + filterSelectivity +
+                ", forwardMatchingCost=" + forwardMatchingCost +
+                '}';
+    }
+}
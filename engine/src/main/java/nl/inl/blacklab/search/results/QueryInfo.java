@@ -3,6 +3,7 @@ package nl.inl.blacklab.search.results;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.QueryProfiler;
 
 /**
  * Information about the original query.
@@ -32,6 +33,9 @@ public final class QueryInfo {
     /** How long executing certain parts of the operation took. */
     private final QueryTimings timings = new QueryTimings();
 
+    /** Profile of the query execution, if profiling was requested (see SearchSettings.profile()), or null */
+    private volatile QueryProfiler profiler;
+
     private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache) {
         super();
         this.index = index;
@@ -65,6 +69,22 @@ public final class QueryInfo {
         return timings;
     }
 
+    /**
+     * Get the query profile.
+     *
+     * Only available if profiling was requested using {@link SearchSettings#withProfile(boolean)}.
+     * Describes how much work each part of the query did.
+     *
+     * @return the query profiler, or null if we didn't profile this query
+     */
+    public QueryProfiler profiler() {
+        return profiler;
+    }
+
+    void setProfiler(QueryProfiler profiler) {
+        this.profiler = profiler;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -4,6 +4,9 @@ package nl.inl.blacklab.search.results;
  * Static implementation of ResultsStats, suitable for
  * when a search has ended and we want to ensure we don't
  * keep a reference to the search.
+ *
+ * Can also represent a snapshot of a search that is still running
+ * (e.g. partial grouping results), in which case done() returns false.
  */
 public class ResultsStatsStatic extends ResultsStats {
 
@@ -16,10 +19,17 @@ public class ResultsStatsStatic extends ResultsStats {
 
     private final MaxStats maxStats;
 
+    private final boolean done;
+
     public ResultsStatsStatic(long processed, long counted, MaxStats maxStats) {
+        this(processed, counted, maxStats, true);
+    }
+
+    public ResultsStatsStatic(long processed, long counted, MaxStats maxStats, boolean done) {
         this.processed = processed;
         this.counted = counted;
         this.maxStats = maxStats;
+        this.done = done;
     }
 
     @Override
@@ -49,7 +59,7 @@ public class ResultsStatsStatic extends ResultsStats {
 
     @Override
     public boolean done() {
-        return true;
+        return done;
     }
 
     @Override
@@ -62,9 +72,14 @@ public class ResultsStatsStatic extends ResultsStats {
         return maxStats;
     }
 
+    @Override
+    public ResultsStats save() {
+        return this; // already static
+    }
+
     @Override
     public String toString() {
-        return "ResultsStatsStatic [processed=" + processed + ", counted=" + counted + ", maxStats=" + maxStats + "]";
+        return "ResultsStatsStatic [processed=" + processed + ", counted=" + counted + ", maxStats=" + maxStats + ", done=" + done + "]";
     }
 
 }
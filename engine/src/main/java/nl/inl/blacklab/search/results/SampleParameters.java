@@ -7,7 +7,45 @@ import java.util.Random;
  * Parameters that determine how much to sample and whether to use a fixed seed.
  */
 public class SampleParameters {
-    
+
+    /** How to take the sample. */
+    public enum Mode {
+        /** Retrieve all hits, then choose the requested number of them (the default). */
+        ALL_HITS,
+
+        /**
+         * Sample while hits are being retrieved, without storing the others.
+         *
+         * For a percentage, each hit is kept with that probability, so the sample size is approximate.
+         * For a fixed number, each segment keeps a reservoir of hits; these are combined at the end.
+         */
+        STREAMING,
+
+        /**
+         * Choose documents first and keep all hits in the chosen documents.
+         *
+         * Documents that aren't chosen are skipped without checking whether they actually match,
+         * so this is the fastest mode. Only supported for percentages.
+         */
+        DOCUMENTS;
+
+        public static Mode fromName(String name) {
+            switch (name.toLowerCase()) {
+            case "":
+            case "hits":
+            case "all_hits":
+                return ALL_HITS;
+            case "stream":
+            case "streaming":
+                return STREAMING;
+            case "docs":
+            case "documents":
+                return DOCUMENTS;
+            }
+            throw new IllegalArgumentException("Unknown sample mode: " + name);
+        }
+    }
+
     private static final Random random = new Random(); 
     
     public static SampleParameters percentage(double percentageOfHits, long seedValueSet) {
@@ -27,6 +65,8 @@ public class SampleParameters {
     }
     
     final boolean isPercentage;
+
+    private final Mode mode;
     
     private final double percentageOfHits;
     
@@ -37,15 +77,35 @@ public class SampleParameters {
     private final long seedValueSet;
     
     SampleParameters(boolean isPercentage, double percentageOfHits, long numberOfHitsSet, boolean isFixedSeed, long seedValueSet) {
+        this(isPercentage, percentageOfHits, numberOfHitsSet, isFixedSeed,
+                isFixedSeed ? seedValueSet : random.nextLong(), Mode.ALL_HITS);
+    }
+
+    private SampleParameters(boolean isPercentage, double percentageOfHits, long numberOfHitsSet, boolean isFixedSeed, long seedValueSet, Mode mode) {
         this.isPercentage = isPercentage;
+        this.mode = mode;
         this.percentageOfHits = percentageOfHits;
         this.numberOfHitsSet = numberOfHitsSet;
         this.isFixedSeed = isFixedSeed;
-        this.seedValueSet = isFixedSeed ? seedValueSet : random.nextLong();
+        this.seedValueSet = seedValueSet;
         if (isPercentage && percentageOfHits < 0 || percentageOfHits > 1)
             throw new IllegalArgumentException("Sample percentage must be in the range 0-1");
         if (!isPercentage && numberOfHitsSet < 0)
             throw new IllegalArgumentException("Negative sample number specified");
+        if (mode == Mode.DOCUMENTS && !isPercentage)
+            throw new IllegalArgumentException("Sampling documents is only supported for a percentage");
+    }
+
+    /**
+     * Get a copy of these parameters with a different sample mode.
+     *
+     * The seed stays the same.
+     *
+     * @param mode how to take the sample
+     * @return new parameters
+     */
+    public SampleParameters withMode(Mode mode) {
+        return new SampleParameters(isPercentage, percentageOfHits, numberOfHitsSet, isFixedSeed, seedValueSet, mode);
     }
     
     // "Simple" interface
@@ -129,16 +189,26 @@ public class SampleParameters {
     public boolean isFixedSeed() {
         return isFixedSeed;
     }
+
+    /**
+     * How should the sample be taken?
+     *
+     * @return sample mode
+     */
+    public Mode mode() {
+        return mode;
+    }
     
     @Override
     public String toString() {
         return "sample=" + (isPercentage ? String.format("%.1f%%", percentageOfHits) : Long.toString(numberOfHitsSet)) +
-                ", seed=" + seedValueSet + (isFixedSeed ? " (FIXED SEED)" : " (RANDOM SEED)");
+                ", seed=" + seedValueSet + (isFixedSeed ? " (FIXED SEED)" : " (RANDOM SEED)") +
+                (mode == Mode.ALL_HITS ? "" : ", mode=" + mode);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(isPercentage, percentageOfHits, numberOfHitsSet, isFixedSeed, seedValueSet);
+        return Objects.hash(isPercentage, percentageOfHits, numberOfHitsSet, isFixedSeed, seedValueSet, mode);
     }
 
     @Override
@@ -160,6 +230,8 @@ public class SampleParameters {
             return false;
         if (seedValueSet != other.seedValueSet)
             return false;
+        if (mode != other.mode)
+            return false;
         return true;
     }
     
@@ -6,15 +6,15 @@ import java.util.Objects;
 public final class SearchSettings {
     
     public static SearchSettings get(long maxHitsToProcess, long maxHitsToCount, long fiMatchFactor) {
-        return new SearchSettings(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, fiMatchFactor, false);
     }
 
     public static SearchSettings get(long maxHitsToProcess, long maxHitsToCount) {
-        return new SearchSettings(maxHitsToProcess, maxHitsToCount, -1);
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, -1, false);
     }
 
     public static SearchSettings defaults() {
-        return new SearchSettings(DEFAULT_MAX_PROCESS, DEFAULT_MAX_COUNT, -1);
+        return new SearchSettings(DEFAULT_MAX_PROCESS, DEFAULT_MAX_COUNT, -1, false);
     }
     
     /** How many hits to process by default */
@@ -39,27 +39,35 @@ public final class SearchSettings {
     /** Override FI match NFA factor, or -1 for default */
     private final long fiMatchFactor;
 
+    /** Profile the query while finding hits? (see QueryProfiler) */
+    private final boolean profile;
+
     /**
      * Get settings
      * @param maxHitsToProcess how many hits to process at most
      * @param maxHitsToCount how many hits to count at most
      */
-    private SearchSettings(long maxHitsToProcess, long maxHitsToCount, long fiMatchFactor) {
+    private SearchSettings(long maxHitsToProcess, long maxHitsToCount, long fiMatchFactor, boolean profile) {
         this.maxHitsToProcess = maxHitsToProcess;
         this.maxHitsToCount = maxHitsToCount;
         this.fiMatchFactor = fiMatchFactor;
+        this.profile = profile;
     }
     
     public SearchSettings withMaxHitsToProcess(long n) {
-        return get(n, maxHitsToCount, fiMatchFactor);
+        return new SearchSettings(n, maxHitsToCount, fiMatchFactor, profile);
     }
 
     public SearchSettings withMaxHitsToCount(long n) {
-        return get(maxHitsToProcess, n, fiMatchFactor);
+        return new SearchSettings(maxHitsToProcess, n, fiMatchFactor, profile);
     }
 
     public SearchSettings withFiMatchFactor(long n) {
-        return get(maxHitsToProcess, maxHitsToCount, n);
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, n, profile);
+    }
+
+    public SearchSettings withProfile(boolean profile) {
+        return new SearchSettings(maxHitsToProcess, maxHitsToCount, fiMatchFactor, profile);
     }
 
     /** @return the maximum number of hits to retrieve. */
@@ -76,9 +84,14 @@ public final class SearchSettings {
         return fiMatchFactor;
     }
 
+    /** @return whether to profile the query while finding hits. */
+    public boolean profile() {
+        return profile;
+    }
+
     @Override
     public String toString() {
-        return "SearchSettings(" + maxHitsToProcess + ", " + maxHitsToCount + ", " + fiMatchFactor + ")";
+        return "SearchSettings(" + maxHitsToProcess + ", " + maxHitsToCount + ", " + fiMatchFactor + ", " + profile + ")";
     }
 
     @Override
@@ -86,11 +99,11 @@ public final class SearchSettings {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SearchSettings that = (SearchSettings) o;
-        return maxHitsToProcess == that.maxHitsToProcess && maxHitsToCount == that.maxHitsToCount && fiMatchFactor == that.fiMatchFactor;
+        return maxHitsToProcess == that.maxHitsToProcess && maxHitsToCount == that.maxHitsToCount && fiMatchFactor == that.fiMatchFactor && profile == that.profile;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
+        return Objects.hash(maxHitsToProcess, maxHitsToCount, fiMatchFactor, profile);
     }
 }
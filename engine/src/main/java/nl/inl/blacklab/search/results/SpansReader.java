@@ -18,6 +18,7 @@ import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
 import nl.inl.blacklab.search.lucene.MatchInfo;
 import nl.inl.util.ThreadAborter;
+import nl.inl.util.YieldRequest;
 
 /** 
  * Helper class for use with {@link HitsFromQuery} <br><br>
@@ -64,10 +65,16 @@ class SpansReader implements Runnable {
     final AtomicLong globalHitsToCount;
     /** Master list of hits, shared between SpansReaders, should always be locked before writing! */
     private final HitsInternalMutable globalResults;
+    /** If not null, samples hits as we go instead of keeping all of them */
+    private final HitSampler sampler;
 
     // Internal state
     boolean isDone;
     private final ThreadAborter threadAborter = ThreadAborter.create();
+    /** If set, we stop early while the search is asked to yield (set by HitsFromQuery before each run) */
+    YieldRequest yieldRequest;
+    /** Did the last run stop early because the search was asked to yield? */
+    boolean stoppedToYield;
     private boolean isInitialized;
     /* only valid after initialize() */
     private int docBase; 
@@ -123,6 +130,7 @@ class SpansReader implements Runnable {
      * @param globalHitsCounted     global hits counter (includes ones that weren't retrieved because of max. settings)
      * @param globalHitsToProcess   how many more hits to retrieve
      * @param globalHitsToCount     how many more hits to count
+     * @param sampler               sampler to use, or null to keep all hits
      */
     SpansReader(
         BLSpanWeight weight,
@@ -135,7 +143,8 @@ class SpansReader implements Runnable {
         AtomicLong globalHitsProcessed,
         AtomicLong globalHitsCounted,
         AtomicLong globalHitsToProcess,
-        AtomicLong globalHitsToCount
+        AtomicLong globalHitsToCount,
+        HitSampler sampler
     ) {
         this.spans = null; // inverted for uninitialized version
         this.weight = weight;
@@ -152,11 +161,33 @@ class SpansReader implements Runnable {
         this.globalHitsCounted = globalHitsCounted;
         this.globalHitsToCount = globalHitsToCount;
         this.globalHitsToProcess = globalHitsToProcess;
+        this.sampler = sampler;
 
         this.isInitialized = false;
         this.isDone = false;
     }
 
+    /**
+     * Construct an uninitialized SpansReader that keeps all hits (no sampling).
+     *
+     * See {@link #SpansReader(BLSpanWeight, LeafReaderContext, HitQueryContext, HitsInternalMutable, AtomicLong, AtomicLong, AtomicLong, AtomicLong, AtomicLong, AtomicLong, HitSampler)}.
+     */
+    SpansReader(
+        BLSpanWeight weight,
+        LeafReaderContext leafReaderContext,
+        HitQueryContext sourceHitQueryContext,
+        HitsInternalMutable globalResults,
+        AtomicLong globalDocsProcessed,
+        AtomicLong globalDocsCounted,
+        AtomicLong globalHitsProcessed,
+        AtomicLong globalHitsCounted,
+        AtomicLong globalHitsToProcess,
+        AtomicLong globalHitsToCount
+    ) {
+        this(weight, leafReaderContext, sourceHitQueryContext, globalResults, globalDocsProcessed, globalDocsCounted,
+                globalHitsProcessed, globalHitsCounted, globalHitsToProcess, globalHitsToCount, null);
+    }
+
     /**
      * Check if hit is the same as the last hit.
      *
@@ -175,7 +206,7 @@ class SpansReader implements Runnable {
         try {
             this.isInitialized = true;
             this.docBase = this.leafReaderContext.docBase;
-            BLSpans spansForWeight = this.weight.getSpans(this.leafReaderContext,
+            BLSpans spansForWeight = this.weight.getSpansProfiled(this.leafReaderContext,
                     Postings.OFFSETS); // do we need to synchronize this call between SpansReaders?
             if (spansForWeight == null) { // This is normal, sometimes a section of the index does not contain hits.
                 this.isDone = true;
@@ -226,6 +257,10 @@ class SpansReader implements Runnable {
                 // We're done.
                 return false;
             }
+            if (sampler != null && !sampler.acceptDoc()) {
+                // Not in our document sample; skip it without checking if it actually matches
+                continue;
+            }
             boolean actualMatch = twoPhaseIt == null || twoPhaseIt.matches();
             if (actualMatch && (liveDocs == null || liveDocs.get(doc1))) {
                 // Document matches. Put us at the first match.
@@ -246,6 +281,7 @@ class SpansReader implements Runnable {
      */
     @Override
     public synchronized void run() {
+        stoppedToYield = false;
         if (!isInitialized)
             this.initialize();
 
@@ -277,11 +313,32 @@ class SpansReader implements Runnable {
                 final int doc = spans.docID() + docBase;
                 int start = spans.startPosition();
                 int end = spans.endPosition();
-                MatchInfo[] matchInfo = null;
-                if (numMatchInfos > 0) {
-                    matchInfo = new MatchInfo[numMatchInfos];
-                    hitQueryContext.getMatchInfo(matchInfo);
+                if (sampler != null) {
+                    boolean skipHit;
+                    if (sampler.isReservoir()) {
+                        // Sampling a fixed number of hits: offer the hit to our reservoir instead of storing it.
+                        // (HitsFromQuery combines the reservoirs of all SpansReaders when they're done)
+                        if (!sampler.countHit())
+                            return;
+                        double key = sampler.nextKey();
+                        if (key >= 0)
+                            sampler.add(key, doc, start, end, getMatchInfo(numMatchInfos));
+                        skipHit = true;
+                    } else {
+                        // Sampling a percentage: if this hit is not in the sample, act as if it doesn't exist
+                        skipHit = !sampler.acceptHit();
+                    }
+                    if (skipHit) {
+                        hasPrefetchedHit = advanceSpansToNextHit(liveDocs);
+                        threadAborter.checkAbort();
+                        if (shouldYield(doc)) {
+                            stoppedToYield = true;
+                            return;
+                        }
+                        continue;
+                    }
                 }
+                MatchInfo[] matchInfo = getMatchInfo(numMatchInfos);
 
                 // Check that this is a unique hit, not the exact same as the previous one.
                 boolean isSameAsLast = isSameAsLast(results, doc, start, end, matchInfo);
@@ -337,6 +394,10 @@ class SpansReader implements Runnable {
 
                 // Do this at the end so interruptions don't happen halfway through a loop and lead to invalid states
                 threadAborter.checkAbort();
+                if (shouldYield(doc)) {
+                    stoppedToYield = true;
+                    return;
+                }
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -363,6 +424,27 @@ class SpansReader implements Runnable {
         this.leafReaderContext = null;
     }
 
+    /**
+     * Should we stop because our search was asked to yield?
+     *
+     * We only stop between documents, so a document's hits are added to the global results together.
+     * HitsFromQuery will pause (without holding any locks) and run us again to continue.
+     *
+     * @param doc document of the hit we just processed
+     * @return true if we should stop now
+     */
+    private boolean shouldYield(int doc) {
+        return yieldRequest != null && yieldRequest.isRequested() && hasPrefetchedHit && spans.docID() + docBase != doc;
+    }
+
+    private MatchInfo[] getMatchInfo(int numMatchInfos) {
+        if (numMatchInfos == 0)
+            return null;
+        MatchInfo[] matchInfo = new MatchInfo[numMatchInfos];
+        hitQueryContext.getMatchInfo(matchInfo);
+        return matchInfo;
+    }
+
     void addToGlobalResults(HitsInternal hits) {
         globalResults.addAll(hits);
     }
@@ -0,0 +1,263 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queries.spans.BLSpanOrQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.util.Bits;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanMultiTermQueryWrapper;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.BLSpanTermQuery;
+import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+
+/**
+ * Counts the hits for simple queries from the index statistics and postings, without iterating over spans.
+ * <p>
+ * Supported queries are a single term (any sensitivity), an OR of terms (e.g. an expanded wildcard) and
+ * either of those filtered by a document query. If there are no deleted documents and no filter, a single
+ * term's count is just its total term frequency. Otherwise we go through the postings, using the
+ * per-document frequency; positions are only read for documents where more than one term of an OR occurs,
+ * as hits at the same position should only be counted once.
+ * <p>
+ * The maximum number of hits to process and count are honoured the same way as when finding the hits:
+ * documents are visited in index order and counting stops when the maximum has been reached.
+ */
+public class TermHitCounter {
+
+    /**
+     * Check if the query is a candidate for counting from the postings.
+     * <p>
+     * This checks the query as it was built, before it was rewritten, so we don't rewrite queries
+     * that can't be counted this way. Even if this returns true, the rewritten query may not be suitable.
+     *
+     * @param query query as built
+     * @return true if the rewritten query might be countable
+     */
+    public static boolean isCandidate(BLSpanQuery query) {
+        if (query instanceof SpanQueryFiltered)
+            return isCandidate(((SpanQueryFiltered) query).getClause());
+        if (query instanceof BLSpanTermQuery || query instanceof BLSpanMultiTermQueryWrapper)
+            return true;
+        if (query instanceof BLSpanOrQuery) {
+            for (SpanQuery clause: ((BLSpanOrQuery) query).getClauses()) {
+                if (!(clause instanceof BLSpanQuery) || !isCandidate((BLSpanQuery) clause))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get a counter for a query, if it can be counted from the postings.
+     *
+     * @param index our index
+     * @param query the rewritten query
+     * @return the counter, or null if this query can't be counted from the postings
+     */
+    public static TermHitCounter forQuery(BlackLabIndex index, BLSpanQuery query) {
+        Query filter = null;
+        if (query instanceof SpanQueryFiltered) {
+            filter = ((SpanQueryFiltered) query).getFilter();
+            query = ((SpanQueryFiltered) query).getClause();
+        }
+        List<Term> terms = new ArrayList<>();
+        if (query instanceof BLSpanTermQuery) {
+            terms.add(((BLSpanTermQuery) query).getTerm());
+        } else if (query instanceof BLSpanOrQuery) {
+            for (SpanQuery clause: ((BLSpanOrQuery) query).getClauses()) {
+                if (!(clause instanceof BLSpanTermQuery))
+                    return null;
+                Term term = ((BLSpanTermQuery) clause).getTerm();
+                if (!terms.contains(term))
+                    terms.add(term);
+            }
+        } else {
+            return null;
+        }
+        return new TermHitCounter(index, terms, filter);
+    }
+
+    private final BlackLabIndex index;
+
+    /** Terms to count (one, or several for an OR) */
+    private final List<Term> terms;
+
+    /** Document filter, or null if none */
+    private final Query filter;
+
+    /** Maximum number of hits to process / to count */
+    private long maxHitsToProcess, maxHitsToCount;
+
+    /** Hits and documents processed and counted */
+    private long hitsProcessed, hitsCounted, docsProcessed, docsCounted;
+
+    private TermHitCounter(BlackLabIndex index, List<Term> terms, Query filter) {
+        this.index = index;
+        this.terms = terms;
+        this.filter = filter;
+    }
+
+    /**
+     * Count the hits and documents.
+     *
+     * @param searchSettings maximum number of hits to process and count
+     * @return true if counted, false if the index doesn't store the frequencies we need
+     */
+    public boolean count(SearchSettings searchSettings) throws IOException {
+        // Same limits as HitsFromQuery: count >= process >= 0
+        maxHitsToCount = searchSettings.maxHitsToCount() < 0 ? Long.MAX_VALUE : searchSettings.maxHitsToCount();
+        maxHitsToProcess = searchSettings.maxHitsToProcess() < 0 ? maxHitsToCount :
+                Math.min(searchSettings.maxHitsToProcess(), maxHitsToCount);
+        IndexReader reader = index.reader();
+        Weight filterWeight = null;
+        if (filter != null) {
+            IndexSearcher searcher = index.searcher();
+            filterWeight = searcher.createWeight(searcher.rewrite(filter), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+        }
+        for (LeafReaderContext leaf: reader.leaves()) {
+            if (hitsCounted >= maxHitsToCount)
+                break;
+            DocIdSetIterator filterDocs = null;
+            if (filterWeight != null) {
+                Scorer scorer = filterWeight.scorer(leaf);
+                if (scorer == null)
+                    continue; // no documents match the filter in this segment
+                filterDocs = scorer.iterator();
+            }
+            List<PostingsEnum> postings = new ArrayList<>();
+            long totalTermFreq = 0;
+            int docFreq = 0;
+            for (Term term: terms) {
+                FieldInfo fieldInfo = leaf.reader().getFieldInfos().fieldInfo(term.field());
+                if (fieldInfo != null && fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) < 0)
+                    return false; // no freqs/positions; can't count this way
+                Terms leafTerms = leaf.reader().terms(term.field());
+                if (leafTerms == null)
+                    continue;
+                TermsEnum termsEnum = leafTerms.iterator();
+                if (!termsEnum.seekExact(term.bytes()))
+                    continue;
+                totalTermFreq += termsEnum.totalTermFreq();
+                docFreq += termsEnum.docFreq();
+                int flags = terms.size() > 1 ? PostingsEnum.POSITIONS : PostingsEnum.FREQS;
+                postings.add(termsEnum.postings(null, flags));
+            }
+            if (postings.isEmpty())
+                continue;
+            if (postings.size() == 1 && filterDocs == null && leaf.reader().getLiveDocs() == null
+                    && hitsCounted + totalTermFreq <= maxHitsToProcess) {
+                // Single term, no deletions or filter, all within limits: use the statistics
+                hitsProcessed += totalTermFreq;
+                hitsCounted += totalTermFreq;
+                docsProcessed += docFreq;
+                docsCounted += docFreq;
+                continue;
+            }
+            countPostings(leaf.reader().getLiveDocs(), postings, filterDocs);
+        }
+        return true;
+    }
+
+    private void countPostings(Bits liveDocs, List<PostingsEnum> postings, DocIdSetIterator filterDocs)
+            throws IOException {
+        for (PostingsEnum p: postings)
+            p.nextDoc();
+        IntSet positions = postings.size() > 1 ? new IntOpenHashSet() : null;
+        while (true) {
+            // Find the next document containing any of our terms
+            int doc = DocIdSetIterator.NO_MORE_DOCS;
+            for (PostingsEnum p: postings)
+                doc = Math.min(doc, p.docID());
+            if (doc == DocIdSetIterator.NO_MORE_DOCS)
+                break;
+            boolean include = liveDocs == null || liveDocs.get(doc);
+            if (include && filterDocs != null) {
+                if (filterDocs.docID() < doc)
+                    filterDocs.advance(doc);
+                include = filterDocs.docID() == doc;
+            }
+            long hitsInDoc = 0;
+            if (include) {
+                PostingsEnum single = null;
+                int termsInDoc = 0;
+                for (PostingsEnum p: postings) {
+                    if (p.docID() == doc) {
+                        single = p;
+                        termsInDoc++;
+                    }
+                }
+                if (termsInDoc == 1) {
+                    hitsInDoc = single.freq();
+                } else {
+                    // Several terms in this document; count each position once
+                    positions.clear();
+                    for (PostingsEnum p: postings) {
+                        if (p.docID() == doc) {
+                            for (int i = 0; i < p.freq(); i++)
+                                positions.add(p.nextPosition());
+                        }
+                    }
+                    hitsInDoc = positions.size();
+                }
+            }
+            for (PostingsEnum p: postings) {
+                if (p.docID() == doc)
+                    p.nextDoc();
+            }
+            if (hitsInDoc == 0)
+                continue;
+            if (hitsProcessed < maxHitsToProcess) {
+                docsProcessed++;
+                hitsProcessed = Math.min(maxHitsToProcess, hitsProcessed + hitsInDoc);
+            }
+            docsCounted++;
+            hitsCounted = Math.min(maxHitsToCount, hitsCounted + hitsInDoc);
+            if (hitsCounted >= maxHitsToCount)
+                break; // we won't count any further
+        }
+    }
+
+    /**
+     * Get the hits statistics, after counting.
+     *
+     * @return number of hits processed and counted
+     */
+    public ResultsStats hitsStats() {
+        return new ResultsStatsStatic(hitsProcessed, hitsCounted, maxStats());
+    }
+
+    /**
+     * Get the document statistics, after counting.
+     *
+     * @return number of documents processed and counted
+     */
+    public ResultsStats docsStats() {
+        return new ResultsStatsStatic(docsProcessed, docsCounted, maxStats());
+    }
+
+    private MaxStats maxStats() {
+        // (same as HitsFromQuery)
+        return new MaxStats(hitsCounted >= maxHitsToProcess, hitsCounted >= maxHitsToCount);
+    }
+}
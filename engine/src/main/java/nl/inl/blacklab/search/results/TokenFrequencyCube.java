@@ -0,0 +1,534 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.resultproperty.DocPropertyStoredField;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexAbstract;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Precomputed token frequencies for one annotation, grouped by a set of metadata fields.
+ * <p>
+ * Each document is assigned an ordinal for its combination of values for the metadata fields
+ * (a "tuple"). For each document, we store how often each term (sort position) occurs in it;
+ * for each tuple, we keep the totals in memory. Without a document filter, grouped frequencies
+ * are read directly from the totals. With a filter, we add up the per-document counts of the
+ * matching documents, or subtract those of the non-matching documents from the totals if that
+ * is less work.
+ * <p>
+ * The data is stored in a file (see the frequencyCubesDir setting), which is reused as long as
+ * the index hasn't changed.
+ */
+public class TokenFrequencyCube implements Closeable {
+
+    private static final String CODEC_NAME = "BlackLabFrequencyCube";
+
+    private static final int VERSION_START = 1;
+
+    private static final int VERSION_CURRENT = VERSION_START;
+
+    /** Receives grouped frequencies from the cube. */
+    public interface GroupVisitor {
+        /**
+         * Called for each group.
+         *
+         * @param tuple ordinal of the group's metadata values (see {@link #representativeDoc(int)})
+         * @param termId a term id with the group's sort position
+         * @param sortPosition sort position of the group's term
+         * @param hits number of tokens in the group
+         * @param docs number of documents containing the group
+         */
+        void group(int tuple, int termId, int sortPosition, long hits, int docs);
+    }
+
+    /** Annotation we count terms for */
+    private final Annotation annotation;
+
+    /** Sensitivity we group terms with */
+    private final MatchSensitivity sensitivity;
+
+    /** Metadata fields we group on */
+    private final List<String> metadataFields;
+
+    /** Our data file */
+    private final IndexInput input;
+
+    /** Tuple ordinal for each document, or -1 if the document has no tokens */
+    private final int[] docTuple;
+
+    /** File pointer to the term counts for each document */
+    private final long[] docOffset;
+
+    /** Number of documents that have tokens */
+    private final int numberOfDocsWithTokens;
+
+    /** A document with this tuple's metadata values, for each tuple */
+    private final int[] representativeDoc;
+
+    /** Sort positions occurring in each tuple (ascending) */
+    private final int[][] tupleSortPositions;
+
+    /** Number of tokens for each tuple and sort position */
+    private final long[][] tupleHits;
+
+    /** Number of documents for each tuple and sort position */
+    private final int[][] tupleDocs;
+
+    /** A term id for each sort position */
+    private final int[] sortPositionToTermId;
+
+    private TokenFrequencyCube(Annotation annotation, MatchSensitivity sensitivity, List<String> metadataFields,
+            IndexInput input, int[] docTuple, long[] docOffset, int[] representativeDoc, int[][] tupleSortPositions,
+            long[][] tupleHits, int[][] tupleDocs, int[] sortPositionToTermId) {
+        this.annotation = annotation;
+        this.sensitivity = sensitivity;
+        this.metadataFields = metadataFields;
+        this.input = input;
+        this.docTuple = docTuple;
+        this.docOffset = docOffset;
+        this.numberOfDocsWithTokens = (int) Arrays.stream(docTuple).filter(t -> t >= 0).count();
+        this.representativeDoc = representativeDoc;
+        this.tupleSortPositions = tupleSortPositions;
+        this.tupleHits = tupleHits;
+        this.tupleDocs = tupleDocs;
+        this.sortPositionToTermId = sortPositionToTermId;
+    }
+
+    /**
+     * Open a cube, optionally building it first if there is no up-to-date data file.
+     *
+     * @param index index to count terms in
+     * @param dir directory to store the data file in
+     * @param indexVersion version of the index, to detect whether the data file is up-to-date
+     * @param annotation annotation to count terms for
+     * @param sensitivity sensitivity to group terms with
+     * @param metadataFields metadata fields to group on
+     * @param build if there's no up-to-date data file, build it? (reads the forward index of every document)
+     * @return the cube, or null if there's no up-to-date data file and build is false
+     * @throws IOException on error
+     */
+    public static TokenFrequencyCube open(BlackLabIndex index, Directory dir, long indexVersion, Annotation annotation,
+            MatchSensitivity sensitivity, List<String> metadataFields, boolean build) throws IOException {
+        String signature = annotation.field().name() + "/" + annotation.name() + "/" +
+                sensitivity.luceneFieldSuffix() + "/" + String.join(",", metadataFields);
+        String fileName = "freqcube-" + signature.replaceAll("[^\\w]+", "-") + ".dat";
+        if (Arrays.asList(dir.listAll()).contains(fileName)) {
+            try {
+                TokenFrequencyCube cube = load(index, dir, fileName, signature, indexVersion, annotation,
+                        sensitivity, metadataFields);
+                if (cube != null)
+                    return cube;
+            } catch (IOException e) {
+                // Corrupt or from an older version; just rebuild it
+            }
+        }
+        if (!build)
+            return null;
+        build(index, dir, fileName, signature, indexVersion, annotation, sensitivity, metadataFields);
+        TokenFrequencyCube cube = load(index, dir, fileName, signature, indexVersion, annotation, sensitivity,
+                metadataFields);
+        if (cube == null)
+            throw new IOException("Could not load frequency cube we just built: " + fileName);
+        return cube;
+    }
+
+    /**
+     * Count term occurrences in all documents and write the data file.
+     *
+     * File layout: header, signature, index version, maxDoc; the (delta-coded) term counts for each document;
+     * the totals for each tuple; tuple ordinal and file pointer for each document; pointers to the previous
+     * two sections; footer.
+     */
+    private static void build(BlackLabIndex index, Directory dir, String fileName, String signature,
+            long indexVersion, Annotation annotation, MatchSensitivity sensitivity, List<String> metadataFields)
+            throws IOException {
+        IndexReader reader = index.reader();
+        int maxDoc = reader.maxDoc();
+        AnnotationForwardIndex afi = index.annotationForwardIndex(annotation);
+        Terms terms = afi.terms();
+        List<DocPropertyStoredField> metadataProps = metadataFields.stream()
+                .map(name -> new DocPropertyStoredField(index, name))
+                .collect(Collectors.toList());
+        String lengthTokensFieldName = AnnotatedFieldNameUtil.lengthTokensField(annotation.field().name());
+        Set<String> fieldsToLoad = new HashSet<>();
+        fieldsToLoad.add(lengthTokensFieldName);
+
+        // Find all documents (excluding the index metadata document, if any)
+        FixedBitSet docs = new FixedBitSet(Math.max(1, maxDoc));
+        index.searcher().search(index.getAllRealDocsQuery(), new SimpleCollector() {
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                docBase = context.docBase;
+                super.doSetNextReader(context);
+            }
+
+            @Override
+            public void collect(int docId) {
+                docs.set(docId + docBase);
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+
+        int[] docTuple = new int[maxDoc];
+        Arrays.fill(docTuple, -1);
+        long[] docOffset = new long[maxDoc];
+        Map<List<List<String>>, Integer> tupleIds = new HashMap<>();
+        IntArrayList representativeDocs = new IntArrayList();
+        List<Int2LongOpenHashMap> tupleHits = new ArrayList<>();
+        List<Int2IntOpenHashMap> tupleDocs = new ArrayList<>();
+        String tempFileName = null;
+        boolean success = false;
+        try {
+            try (IndexOutput out = dir.createTempOutput(fileName, "tmp", IOContext.DEFAULT)) {
+                tempFileName = out.getName();
+                CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+                out.writeString(signature);
+                out.writeLong(indexVersion);
+                out.writeVInt(maxDoc);
+
+                // Term counts for each document
+                DocIdSetIterator it = new BitSetIterator(docs, 0);
+                for (int docId = it.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = it.nextDoc()) {
+                    String length = reader.document(docId, fieldsToLoad).get(lengthTokensFieldName);
+                    if (length == null)
+                        continue;
+                    int docLength = Integer.parseInt(length) - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
+                    if (docLength <= 0)
+                        continue;
+                    int[] tokenValues = afi.getDocument(docId);
+                    int[] sortPositions = new int[docLength];
+                    for (int i = 0; i < docLength; i++)
+                        sortPositions[i] = terms.idToSortPosition(tokenValues[i], sensitivity);
+                    Arrays.sort(sortPositions);
+
+                    // Determine the tuple ordinal for this document's metadata values
+                    List<List<String>> metadataValues = new ArrayList<>(metadataProps.size());
+                    for (DocPropertyStoredField prop: metadataProps)
+                        metadataValues.add(Arrays.asList(prop.get(docId)));
+                    final int thisDocId = docId;
+                    int tuple = tupleIds.computeIfAbsent(metadataValues, k -> {
+                        representativeDocs.add(thisDocId);
+                        tupleHits.add(new Int2LongOpenHashMap());
+                        tupleDocs.add(new Int2IntOpenHashMap());
+                        return representativeDocs.size() - 1;
+                    });
+                    docTuple[docId] = tuple;
+                    docOffset[docId] = out.getFilePointer();
+
+                    // Write distinct sort positions with their counts, and add them to the tuple totals
+                    int distinct = 0;
+                    for (int i = 0; i < docLength; i++) {
+                        if (i == 0 || sortPositions[i] != sortPositions[i - 1])
+                            distinct++;
+                    }
+                    out.writeVInt(distinct);
+                    Int2LongOpenHashMap hits = tupleHits.get(tuple);
+                    Int2IntOpenHashMap docCounts = tupleDocs.get(tuple);
+                    int previous = 0;
+                    int i = 0;
+                    while (i < docLength) {
+                        int sortPosition = sortPositions[i];
+                        int count = 0;
+                        while (i < docLength && sortPositions[i] == sortPosition) {
+                            count++;
+                            i++;
+                        }
+                        out.writeVInt(sortPosition - previous);
+                        out.writeVInt(count);
+                        previous = sortPosition;
+                        hits.addTo(sortPosition, count);
+                        docCounts.addTo(sortPosition, 1);
+                    }
+                }
+
+                // Totals for each tuple
+                long tuplesPointer = out.getFilePointer();
+                out.writeVInt(representativeDocs.size());
+                for (int tuple = 0; tuple < representativeDocs.size(); tuple++) {
+                    Int2LongOpenHashMap hits = tupleHits.get(tuple);
+                    Int2IntOpenHashMap docCounts = tupleDocs.get(tuple);
+                    int[] sortPositions = hits.keySet().toIntArray();
+                    Arrays.sort(sortPositions);
+                    out.writeVInt(representativeDocs.getInt(tuple));
+                    out.writeVInt(sortPositions.length);
+                    int previous = 0;
+                    for (int sortPosition: sortPositions) {
+                        out.writeVInt(sortPosition - previous);
+                        out.writeVLong(hits.get(sortPosition));
+                        out.writeVInt(docCounts.get(sortPosition));
+                        previous = sortPosition;
+                    }
+                }
+
+                // Tuple and file pointer for each document
+                long docsPointer = out.getFilePointer();
+                for (int docId = 0; docId < maxDoc; docId++) {
+                    out.writeVInt(docTuple[docId] + 1);
+                    if (docTuple[docId] >= 0)
+                        out.writeVLong(docOffset[docId]);
+                }
+
+                out.writeLong(tuplesPointer);
+                out.writeLong(docsPointer);
+                CodecUtil.writeFooter(out);
+            }
+            dir.sync(Set.of(tempFileName));
+            if (Arrays.asList(dir.listAll()).contains(fileName))
+                dir.deleteFile(fileName);
+            dir.rename(tempFileName, fileName);
+            dir.syncMetaData();
+            success = true;
+        } finally {
+            if (!success && tempFileName != null)
+                IOUtils.deleteFilesIgnoringExceptions(dir, tempFileName);
+        }
+    }
+
+    /**
+     * Load a cube from its data file.
+     *
+     * Keeps the tuple totals and the per-document file pointers in memory; per-document term counts
+     * are read from the file when needed.
+     *
+     * @return the cube, or null if the file is not up-to-date
+     */
+    private static TokenFrequencyCube load(BlackLabIndex index, Directory dir, String fileName, String signature,
+            long indexVersion, Annotation annotation, MatchSensitivity sensitivity, List<String> metadataFields)
+            throws IOException {
+        IndexInput input = dir.openInput(fileName, IOContext.READ);
+        boolean success = false;
+        try {
+            CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+            int maxDoc = index.reader().maxDoc();
+            if (!input.readString().equals(signature) || input.readLong() != indexVersion || input.readVInt() != maxDoc)
+                return null;
+            CodecUtil.retrieveChecksum(input);
+            input.seek(input.length() - CodecUtil.footerLength() - 2L * Long.BYTES);
+            long tuplesPointer = input.readLong();
+            long docsPointer = input.readLong();
+
+            input.seek(tuplesPointer);
+            int numberOfTuples = input.readVInt();
+            int[] representativeDoc = new int[numberOfTuples];
+            int[][] tupleSortPositions = new int[numberOfTuples][];
+            long[][] tupleHits = new long[numberOfTuples][];
+            int[][] tupleDocs = new int[numberOfTuples][];
+            for (int tuple = 0; tuple < numberOfTuples; tuple++) {
+                representativeDoc[tuple] = input.readVInt();
+                int n = input.readVInt();
+                int[] sortPositions = new int[n];
+                long[] hits = new long[n];
+                int[] docs = new int[n];
+                int sortPosition = 0;
+                for (int i = 0; i < n; i++) {
+                    sortPosition += input.readVInt();
+                    sortPositions[i] = sortPosition;
+                    hits[i] = input.readVLong();
+                    docs[i] = input.readVInt();
+                }
+                tupleSortPositions[tuple] = sortPositions;
+                tupleHits[tuple] = hits;
+                tupleDocs[tuple] = docs;
+            }
+
+            input.seek(docsPointer);
+            int[] docTuple = new int[maxDoc];
+            long[] docOffset = new long[maxDoc];
+            for (int docId = 0; docId < maxDoc; docId++) {
+                docTuple[docId] = input.readVInt() - 1;
+                if (docTuple[docId] >= 0)
+                    docOffset[docId] = input.readVLong();
+            }
+
+            // We need a term id to report for each (possibly insensitive) sort position
+            Terms terms = index.annotationForwardIndex(annotation).terms();
+            int[] sortPositionToTermId = new int[terms.numberOfTerms() + 1];
+            Arrays.fill(sortPositionToTermId, -1);
+            for (int termId = 0; termId < terms.numberOfTerms(); termId++) {
+                int sortPosition = terms.idToSortPosition(termId, sensitivity);
+                if (sortPositionToTermId[sortPosition] < 0)
+                    sortPositionToTermId[sortPosition] = termId;
+            }
+
+            TokenFrequencyCube cube = new TokenFrequencyCube(annotation, sensitivity, metadataFields, input, docTuple,
+                    docOffset, representativeDoc, tupleSortPositions, tupleHits, tupleDocs, sortPositionToTermId);
+            success = true;
+            return cube;
+        } finally {
+            if (!success)
+                input.close();
+        }
+    }
+
+    /**
+     * Can this cube answer a request grouping on these properties?
+     *
+     * @param annotation annotation to group on
+     * @param sensitivity sensitivity to group with
+     * @param metadataFields metadata fields to group on (in any order)
+     * @return true if it can
+     */
+    public boolean matches(Annotation annotation, MatchSensitivity sensitivity, Collection<String> metadataFields) {
+        return this.annotation.equals(annotation) && this.sensitivity == sensitivity &&
+                metadataFields.size() == this.metadataFields.size() && metadataFields.containsAll(this.metadataFields);
+    }
+
+    public Annotation annotation() {
+        return annotation;
+    }
+
+    public MatchSensitivity sensitivity() {
+        return sensitivity;
+    }
+
+    public List<String> metadataFields() {
+        return metadataFields;
+    }
+
+    /**
+     * Get a document that has the metadata values for this tuple.
+     *
+     * Used to determine the metadata values to report for a group.
+     *
+     * @param tuple tuple ordinal
+     * @return document id
+     */
+    public int representativeDoc(int tuple) {
+        return representativeDoc[tuple];
+    }
+
+    /**
+     * Report the grouped frequencies for all documents.
+     *
+     * @param visitor receives the groups
+     */
+    public void forEachGroup(GroupVisitor visitor) {
+        for (int tuple = 0; tuple < tupleSortPositions.length; tuple++) {
+            int[] sortPositions = tupleSortPositions[tuple];
+            for (int i = 0; i < sortPositions.length; i++) {
+                visitor.group(tuple, sortPositionToTermId[sortPositions[i]], sortPositions[i], tupleHits[tuple][i],
+                        tupleDocs[tuple][i]);
+            }
+        }
+    }
+
+    /**
+     * Report the grouped frequencies for a subset of documents.
+     *
+     * @param docIds documents to count (e.g. the documents matching a filter)
+     * @param visitor receives the groups
+     * @throws IOException on error
+     */
+    public void forEachGroup(Collection<Integer> docIds, GroupVisitor visitor) throws IOException {
+        FixedBitSet inSubset = new FixedBitSet(Math.max(1, docTuple.length));
+        int docsInSubset = 0;
+        for (int docId: docIds) {
+            if (docId < docTuple.length && docTuple[docId] >= 0 && !inSubset.getAndSet(docId))
+                docsInSubset++;
+        }
+
+        // Groups are keyed by tuple and sort position
+        Long2LongOpenHashMap hits = new Long2LongOpenHashMap();
+        Long2IntOpenHashMap docs = new Long2IntOpenHashMap();
+        IndexInput in = input.clone();
+        if (docsInSubset > numberOfDocsWithTokens / 2) {
+            // Most documents are included. Start with the totals and subtract the excluded documents.
+            for (int tuple = 0; tuple < tupleSortPositions.length; tuple++) {
+                int[] sortPositions = tupleSortPositions[tuple];
+                for (int i = 0; i < sortPositions.length; i++) {
+                    long key = groupKey(tuple, sortPositions[i]);
+                    hits.put(key, tupleHits[tuple][i]);
+                    docs.put(key, tupleDocs[tuple][i]);
+                }
+            }
+            for (int docId = 0; docId < docTuple.length; docId++) {
+                if (docTuple[docId] >= 0 && !inSubset.get(docId))
+                    addDoc(in, docId, hits, docs, -1);
+            }
+        } else {
+            // Add the included documents.
+            DocIdSetIterator it = new BitSetIterator(inSubset, docsInSubset);
+            for (int docId = it.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = it.nextDoc())
+                addDoc(in, docId, hits, docs, 1);
+        }
+
+        for (Long2LongMap.Entry e: hits.long2LongEntrySet()) {
+            if (e.getLongValue() <= 0)
+                continue; // only occurred in excluded documents
+            long key = e.getLongKey();
+            int sortPosition = (int) key;
+            visitor.group((int) (key >>> 32), sortPositionToTermId[sortPosition], sortPosition, e.getLongValue(),
+                    docs.get(key));
+        }
+    }
+
+    private void addDoc(IndexInput in, int docId, Long2LongOpenHashMap hits, Long2IntOpenHashMap docs, int sign)
+            throws IOException {
+        in.seek(docOffset[docId]);
+        int tuple = docTuple[docId];
+        int n = in.readVInt();
+        int sortPosition = 0;
+        for (int i = 0; i < n; i++) {
+            sortPosition += in.readVInt();
+            int count = in.readVInt();
+            long key = groupKey(tuple, sortPosition);
+            hits.addTo(key, (long) sign * count);
+            docs.addTo(key, sign);
+        }
+    }
+
+    private static long groupKey(int tuple, int sortPosition) {
+        return ((long) tuple << 32) | (sortPosition & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenFrequencyCube(" + annotation + ", " + sensitivity + ", " + metadataFields + ")";
+    }
+}
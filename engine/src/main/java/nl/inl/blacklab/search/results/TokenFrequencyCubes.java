@@ -0,0 +1,154 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import nl.inl.blacklab.config.BLConfigFrequencyCube;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.util.BlockTimer;
+
+/**
+ * The frequency cubes available for an index.
+ * <p>
+ * Cubes are loaded in the background after the index is opened. Building a cube reads the
+ * forward index of every document, so it's only done if enabled (buildFrequencyCubes);
+ * otherwise, cubes without an up-to-date data file are not used. Until a cube is ready,
+ * requests are handled the regular way.
+ */
+public class TokenFrequencyCubes implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(TokenFrequencyCubes.class);
+
+    /** Index the cubes are for */
+    private final BlackLabIndex index;
+
+    /** Cubes that are ready to be used */
+    private final List<TokenFrequencyCube> cubes = new CopyOnWriteArrayList<>();
+
+    /** Where we store the data files */
+    private Directory directory;
+
+    /** Has the index been closed? */
+    private boolean closed = false;
+
+    public TokenFrequencyCubes(BlackLabIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Where should the data files for this index be stored?
+     *
+     * @param cubesDir configured directory for all cubes, or empty to use the index directory
+     * @return directory for this index's data files, or null if we can't store them
+     */
+    private File dataDir(String cubesDir) {
+        if (StringUtils.isEmpty(cubesDir))
+            return index.indexDirectory();
+        return new File(cubesDir, index.name());
+    }
+
+    /**
+     * Load (and optionally build) the configured cubes.
+     *
+     * May take a long time for large indexes if cubes have to be built, so should be run in the background.
+     * Cubes for annotations or metadata fields this index doesn't have are skipped.
+     *
+     * @param configs cubes to maintain
+     * @param cubesDir directory to store data files in (in a subdirectory per index), or empty for the index directory
+     * @param build build cubes that don't have an up-to-date data file?
+     */
+    public void initialize(List<BLConfigFrequencyCube> configs, String cubesDir, boolean build) {
+        File dataDir = dataDir(cubesDir);
+        if (configs.isEmpty() || dataDir == null)
+            return;
+        if (!build && !dataDir.isDirectory())
+            return; // no cubes have been built for this index
+        if (!(index.reader() instanceof DirectoryReader)) {
+            logger.debug("Cannot determine index version; not using frequency cubes for " + index.name());
+            return;
+        }
+        long indexVersion = ((DirectoryReader) index.reader()).getVersion();
+        for (BLConfigFrequencyCube config: configs) {
+            AnnotatedField field = config.getField().isEmpty() ? index.mainAnnotatedField() :
+                    index.annotatedField(config.getField());
+            Annotation annotation = field == null ? null : field.annotation(config.getAnnotation());
+            if (annotation == null || !annotation.hasForwardIndex() ||
+                    !config.getMetadata().stream().allMatch(name -> index.metadataFields().exists(name))) {
+                logger.debug("Index " + index.name() + " doesn't match " + config + "; skipping");
+                continue;
+            }
+            try {
+                MatchSensitivity sensitivity = MatchSensitivity.fromName(config.getSensitivity());
+                synchronized (this) {
+                    if (closed)
+                        return;
+                    if (directory == null) {
+                        if (!dataDir.isDirectory() && !dataDir.mkdirs())
+                            throw new IOException("Could not create directory " + dataDir);
+                        directory = FSDirectory.open(dataDir.toPath());
+                    }
+                }
+                TokenFrequencyCube cube;
+                try (BlockTimer ignored = BlockTimer.create("Opening " + config + " for " + index.name())) {
+                    cube = TokenFrequencyCube.open(index, directory, indexVersion, annotation, sensitivity,
+                            config.getMetadata(), build);
+                }
+                if (cube == null) {
+                    logger.info("No up-to-date " + config + " for " + index.name() +
+                            " and buildFrequencyCubes is off; not using it");
+                    continue;
+                }
+                synchronized (this) {
+                    if (closed) {
+                        cube.close();
+                        return;
+                    }
+                    cubes.add(cube);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not open " + config + " for " + index.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Find a cube that can answer a request grouping on these properties.
+     *
+     * @param annotation annotation to group on
+     * @param sensitivity sensitivity to group with
+     * @param metadataFields metadata fields to group on (in any order)
+     * @return matching cube, or null if there is none (yet)
+     */
+    public TokenFrequencyCube find(Annotation annotation, MatchSensitivity sensitivity,
+            Collection<String> metadataFields) {
+        for (TokenFrequencyCube cube: cubes) {
+            if (cube.matches(annotation, sensitivity, metadataFields))
+                return cube;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        for (TokenFrequencyCube cube: cubes)
+            cube.close();
+        cubes.clear();
+        if (directory != null)
+            directory.close();
+    }
+}
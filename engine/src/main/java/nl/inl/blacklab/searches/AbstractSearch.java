@@ -2,6 +2,7 @@ package nl.inl.blacklab.searches;
 
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -98,6 +99,24 @@ public abstract class AbstractSearch<R extends SearchResult> implements Search<R
      * @param <R> result type
      */
     protected static <R extends SearchResult> R executeChildSearch(ActiveSearch<?> task, Search<R> childSearch) throws InvalidQuery {
+        return executeChildSearch(task, childSearch, null);
+    }
+
+    /**
+     * Execute a child search whose results we need, passing on its partial results.
+     *
+     * Like {@link #executeChildSearch(ActiveSearch, Search)}, but while we wait, our partial results
+     * (see {@link SearchCacheEntry#partialResult()}) are derived from those of the child search.
+     *
+     * @param task parent task that needs the child search's result
+     * @param childSearch child search to execute
+     * @param partialResults derives our partial results from the child's, or null if not supported
+     * @return results from the child search
+     * @param <R> child result type
+     * @param <T> our result type
+     */
+    protected static <R extends SearchResult, T> R executeChildSearch(ActiveSearch<T> task, Search<R> childSearch,
+            Function<R, T> partialResults) throws InvalidQuery {
         // Don't time subtask now, because it could be in the cache.
         // Instead, pause our timer and ask the subtask to report its original processing time (see below).
         if (task != null)
@@ -106,12 +125,20 @@ public abstract class AbstractSearch<R extends SearchResult> implements Search<R
 
             // Get the subtask results and add its original processing time to our own
             SearchCacheEntry<R> childSearchEntry = childSearch.executeAsync(false);
+            if (task != null && partialResults != null) {
+                task.setPartialResults(() -> {
+                    R partial = childSearchEntry.partialResult();
+                    return partial == null ? null : partialResults.apply(partial);
+                });
+            }
             R result = getResult(childSearchEntry);
             if (task != null)
                 task.timer().add(childSearchEntry.timer().time());
             return result;
 
         } finally {
+            if (task != null && partialResults != null)
+                task.setPartialResults(null);
             // Resume our own timer
             if (task != null)
                 task.timer().start();
@@ -152,4 +179,22 @@ public abstract class AbstractSearch<R extends SearchResult> implements Search<R
         return operation + "(" + StringUtils.join(param, ", ") + ")";
     }
 
+    /**
+     * Build a key from an operation and its (serialized) parameters.
+     *
+     * Each part is prefixed with its length, so different parameters never produce the same key.
+     *
+     * @param operation operation
+     * @param parts serialized parameters
+     * @return key
+     */
+    protected static String resultsKey(String operation, Object... parts) {
+        StringBuilder key = new StringBuilder(operation).append("(");
+        for (Object part: parts) {
+            String str = String.valueOf(part);
+            key.append(str.length()).append(":").append(str);
+        }
+        return key.append(")").toString();
+    }
+
 }
@@ -1,5 +1,7 @@
 package nl.inl.blacklab.searches;
 
+import java.util.function.Supplier;
+
 import nl.inl.util.SearchTimer;
 
 /**
@@ -20,6 +22,16 @@ public interface ActiveSearch<T> {
      */
     default T peek() { return null; }
 
+    /**
+     * Report how to get partial results while the search is running.
+     *
+     * Used by searches that can produce approximate results before they're
+     * finished, e.g. grouping a large number of hits.
+     *
+     * @param partialResults supplies partial results, or null if no longer available
+     */
+    default void setPartialResults(Supplier<T> partialResults) { }
+
     /**
      * Timer instance for this task.
      * @return tasks's timer
@@ -34,6 +34,18 @@ public interface SearchCache {
      */
     <R extends SearchResult> SearchCacheEntry<R> getAsync(Search<R> search, boolean allowQueue);
 
+    /**
+     * Is this search in the cache, i.e. was it started or finished already?
+     *
+     * Doesn't start the search or count as a use of it.
+     *
+     * @param search search to check
+     * @return true if the search is in the cache, false if not (or if the cache can't tell)
+     */
+    default boolean contains(Search<?> search) {
+        return false;
+    }
+
     /**
      * Remove a search from the cache.
      *
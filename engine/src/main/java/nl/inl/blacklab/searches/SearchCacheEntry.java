@@ -1,6 +1,7 @@
 package nl.inl.blacklab.searches;
 
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -18,6 +19,9 @@ public abstract class SearchCacheEntry<R extends SearchResult> implements Future
     /** Keep track of how long this task and subtasks took to (originally) execute. */
     private SearchTimer searchTimer = new SearchTimer();
 
+    /** Supplies partial results while the search is running, if supported. */
+    private volatile Supplier<R> partialResults;
+
     /**
      * Get the timer keeping track of how long this search (originally) executed.
      * @return the search's task timer
@@ -95,4 +99,25 @@ public abstract class SearchCacheEntry<R extends SearchResult> implements Future
         return null;
     }
 
+    @Override
+    public void setPartialResults(Supplier<R> partialResults) {
+        this.partialResults = partialResults;
+    }
+
+    /**
+     * Get partial results while the search is still running.
+     *
+     * Only some searches support this (e.g. grouping hits). Partial results are
+     * approximate; their stats are not done. When the search finishes, use
+     * the regular result instead.
+     *
+     * @return partial results, or null if not available
+     */
+    public R partialResult() {
+        if (isCancelled())
+            throw InterruptedSearch.cancelled();
+        Supplier<R> supplier = partialResults;
+        return supplier == null ? null : supplier.get();
+    }
+
 }
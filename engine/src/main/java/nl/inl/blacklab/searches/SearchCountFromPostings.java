@@ -0,0 +1,81 @@
+package nl.inl.blacklab.searches;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultCount.CountType;
+import nl.inl.blacklab.search.results.ResultsStats;
+import nl.inl.blacklab.search.results.ResultsStatsDelegate;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.results.TermHitCounter;
+
+/**
+ * Counts hits or documents for a query, without finding the hits if possible.
+ * <p>
+ * Simple queries (a term or an OR of terms, optionally filtered) are counted from the index
+ * statistics and postings using {@link TermHitCounter}. Other queries are counted by finding all hits,
+ * like {@link SearchCountFromResults}.
+ */
+public class SearchCountFromPostings extends SearchCountFromResults<Hits> {
+
+    /** The search we're doing a count for. */
+    private final SearchHitsFromBLSpanQuery source;
+
+    /** Type of count we want (number of hits or docs). */
+    private final CountType type;
+
+    public SearchCountFromPostings(QueryInfo queryInfo, SearchHitsFromBLSpanQuery source, CountType type) {
+        super(queryInfo, source, type);
+        this.source = source;
+        this.type = type;
+    }
+
+    @Override
+    public ResultsStats executeInternal(ActiveSearch<ResultsStats> activeSearch) throws InvalidQuery {
+        ResultsStats resultCount = countFromPostings();
+        if (resultCount == null) {
+            // Not a simple query; find all hits to count them
+            return super.executeInternal(activeSearch);
+        }
+        if (activeSearch != null && activeSearch.peek() != null)
+            ((ResultsStatsDelegate) activeSearch.peek()).setRealStats(resultCount);
+        return resultCount;
+    }
+
+    /**
+     * Try to count from the postings.
+     *
+     * @return the count, or null if this query can't be counted from the postings
+     */
+    private ResultsStats countFromPostings() {
+        BLSpanQuery query = source.query();
+        if (!TermHitCounter.isCandidate(query))
+            return null;
+        try {
+            IndexReader reader = queryInfo().index().reader();
+            query.setQueryInfo(queryInfo());
+            BLSpanQuery rewritten = queryInfo().index().blackLab().queryRewriteCache()
+                    .get(query, reader, q -> q.optimize(reader).rewrite(reader));
+            TermHitCounter counter = TermHitCounter.forQuery(queryInfo().index(), rewritten);
+            SearchSettings searchSettings = source.searchSettings() == null ? queryInfo().index().searchSettings() :
+                    source.searchSettings();
+            if (counter == null || !counter.count(searchSettings))
+                return null;
+            return type == CountType.DOCS ? counter.docsStats() : counter.hitsStats();
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toString("countfrompostings", source, type);
+    }
+
+}
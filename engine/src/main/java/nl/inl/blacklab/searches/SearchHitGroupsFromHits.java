@@ -5,7 +5,9 @@ import java.util.Objects;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.HitGroupsIncremental;
 import nl.inl.blacklab.search.results.HitGroupsTokenFrequencies;
+import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
 
 /**
@@ -57,7 +59,17 @@ public class SearchHitGroupsFromHits extends SearchHitGroups {
             return HitGroupsTokenFrequencies.get(source, property);
         } else {
             // Just find all the hits and group them.
-            return HitGroups.fromHits(executeChildSearch(activeSearch, source), property, maxResultsToStorePerGroup);
+            // (group incrementally, so clients can look at the largest groups so far while we're busy)
+            Hits hits = executeChildSearch(activeSearch, source);
+            HitGroupsIncremental grouper = new HitGroupsIncremental(hits, property, maxResultsToStorePerGroup);
+            if (activeSearch == null)
+                return grouper.run();
+            activeSearch.setPartialResults(grouper::snapshot);
+            try {
+                return grouper.run();
+            } finally {
+                activeSearch.setPartialResults(null);
+            }
         }
     }
 
@@ -24,7 +24,7 @@ public class SearchHitGroupsSorted extends SearchHitGroups {
 
     @Override
     public HitGroups executeInternal(ActiveSearch<HitGroups> activeSearch) throws InvalidQuery {
-        return executeChildSearch(activeSearch, source).sort(property);
+        return executeChildSearch(activeSearch, source, groups -> groups.sort(property)).sort(property);
     }
 
     @Override
@@ -157,4 +157,17 @@ public abstract class SearchHits extends SearchForResults<Hits> {
      * @return search settings
      */
     public abstract SearchSettings searchSettings();
+
+    /**
+     * Serialize everything that determines this search's results, e.g. to identify a snapshot of them.
+     *
+     * Unlike toString(), this includes every parameter that equals() compares, in a form that doesn't
+     * change between runs, so equal searches produce equal keys and vice versa. The index version is
+     * not included.
+     *
+     * @return key, or null if this type of search doesn't support this
+     */
+    public String resultsKey() {
+        return null;
+    }
 }
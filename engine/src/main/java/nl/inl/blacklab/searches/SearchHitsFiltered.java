@@ -68,6 +68,12 @@ public class SearchHitsFiltered extends SearchHits {
         return toString("filter", source, property, value);
     }
 
+    @Override
+    public String resultsKey() {
+        String sourceKey = source.resultsKey();
+        return sourceKey == null ? null : resultsKey("filter", sourceKey, property.serialize(), value.serialize());
+    }
+
     @Override
     public boolean isAnyTokenQuery() {
         return source.isAnyTokenQuery();
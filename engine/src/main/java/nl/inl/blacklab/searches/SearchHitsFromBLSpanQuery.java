@@ -5,6 +5,7 @@ import org.apache.lucene.search.Query;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultCount;
 import nl.inl.blacklab.search.results.SearchSettings;
 
 /** A search that yields hits. */
@@ -32,6 +33,36 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
         return queryInfo().index().find(queryInfo(), spanQuery, searchSettings);
     }
 
+    /**
+     * Count hits. Simple queries are counted from the index, other queries by fetching all results.
+     *
+     * @return resulting operation
+     */
+    @Override
+    public SearchCount count() {
+        return new SearchCountFromPostings(queryInfo(), this, ResultCount.CountType.RESULTS);
+    }
+
+    /**
+     * Count hits. Simple queries are counted from the index, other queries by fetching all results.
+     *
+     * @return resulting operation
+     */
+    @Override
+    public SearchCount hitCount() {
+        return new SearchCountFromPostings(queryInfo(), this, ResultCount.CountType.HITS);
+    }
+
+    /**
+     * Count docs. Simple queries are counted from the index, other queries by fetching all results.
+     *
+     * @return resulting operation
+     */
+    @Override
+    public SearchCount docCount() {
+        return new SearchCountFromPostings(queryInfo(), this, ResultCount.CountType.DOCS);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -68,6 +99,18 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
         return toString("hits", spanQuery);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Lucene queries have no other serialization, so we use the query's toString(field), which
+     * includes the clauses and parameters that determine its hits.
+     */
+    @Override
+    public String resultsKey() {
+        return resultsKey("hits", queryInfo().index().name(), queryInfo().field().name(),
+                spanQuery.getClass().getName(), spanQuery.toString(spanQuery.getField()), searchSettings);
+    }
+
     public BLSpanQuery query() {
         return spanQuery;
     }
@@ -20,6 +20,11 @@ public class SearchHitsSampled extends SearchHits {
 
     @Override
     public Hits executeInternal(ActiveSearch<Hits> activeSearch) throws InvalidQuery {
+        if (sampleParameters.mode() != SampleParameters.Mode.ALL_HITS && source instanceof SearchHitsFromBLSpanQuery) {
+            // Sample while finding the hits, so we don't need to keep all of them in memory
+            SearchHitsFromBLSpanQuery querySource = (SearchHitsFromBLSpanQuery) source;
+            return Hits.fromSpanQuery(queryInfo(), querySource.query(), querySource.searchSettings(), sampleParameters);
+        }
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
@@ -3,6 +3,7 @@ package nl.inl.blacklab.searches;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsSnapshots;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.QueryTimings;
 import nl.inl.blacklab.search.results.SearchSettings;
@@ -21,12 +22,20 @@ public class SearchHitsSorted extends SearchHits {
 
     @Override
     public Hits executeInternal(ActiveSearch<Hits> activeSearch) throws InvalidQuery {
+        // If we (or another server) sorted these hits before, we may have a snapshot
+        HitsSnapshots snapshots = queryInfo().index().hitsSnapshots();
+        Hits hits = snapshots.load(this);
+        if (hits != null)
+            return hits;
+
         QueryTimings timings = queryInfo().timings().start();
         try {
-            return executeChildSearch(activeSearch, source).sort(property);
+            hits = executeChildSearch(activeSearch, source).sort(property);
         } finally {
             timings.record("sort");
         }
+        snapshots.saveInBackground(this, hits);
+        return hits;
     }
 
     @Override
@@ -65,6 +74,12 @@ public class SearchHitsSorted extends SearchHits {
         return toString("sort", source, property);
     }
 
+    @Override
+    public String resultsKey() {
+        String sourceKey = source.resultsKey();
+        return sourceKey == null ? null : resultsKey("sort", sourceKey, property.serialize());
+    }
+
     @Override
     public SearchSettings searchSettings() {
         return source.searchSettings();
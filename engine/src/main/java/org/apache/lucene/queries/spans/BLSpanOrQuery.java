@@ -19,7 +19,9 @@ package org.apache.lucene.queries.spans;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -61,6 +63,7 @@ import nl.inl.blacklab.search.lucene.SpanGuarantees;
 import nl.inl.blacklab.search.lucene.SpanGuaranteesAdapter;
 import nl.inl.blacklab.search.lucene.SpanQueryAnd;
 import nl.inl.blacklab.search.lucene.SpanQueryNoHits;
+import nl.inl.blacklab.search.lucene.SpansTermDisjunction;
 import nl.inl.blacklab.search.results.QueryInfo;
 
 /**
@@ -160,6 +163,12 @@ public final class BLSpanOrQuery extends BLSpanQuery {
      */
     private int fixedHitLength = -1;
 
+    /**
+     * If we have at least this many simple term clauses, we use SpansTermDisjunction
+     * instead of merging a Spans per clause.
+     */
+    private static final int MIN_CLAUSES_FOR_TERM_DISJUNCTION = 64;
+
     /** Are all our clauses simple term queries? Yes if true, not sure if false. */
     private boolean clausesAreSimpleTermsInSameAnnotation = false;
 
@@ -400,10 +409,32 @@ public final class BLSpanOrQuery extends BLSpanQuery {
     public class SpanOrWeight extends BLSpanWeight {
         final List<BLSpanWeight> subWeights;
 
+        /** If we have many simple term clauses: the terms and their states, for SpansTermDisjunction. Otherwise null. */
+        private final Map<Term, TermStates> manyTermStates;
+
         public SpanOrWeight(IndexSearcher searcher, Map<Term, TermStates> terms, List<BLSpanWeight> subWeights, float boost)
                 throws IOException {
             super(BLSpanOrQuery.this, searcher, terms, boost);
             this.subWeights = subWeights;
+            manyTermStates = clausesAreSimpleTermsInSameAnnotation && subWeights.size() >= MIN_CLAUSES_FOR_TERM_DISJUNCTION ?
+                    getManyTermStates() : null;
+        }
+
+        /**
+         * Get the term states for all our clauses, if they're all single terms.
+         *
+         * @return terms and their states, or null if not all clauses are single terms
+         */
+        private Map<Term, TermStates> getManyTermStates() {
+            Map<Term, TermStates> result = new LinkedHashMap<>();
+            for (BLSpanWeight w: subWeights) {
+                Map<Term, TermStates> clauseTermStates = new HashMap<>();
+                w.extractTermStates(clauseTermStates);
+                if (clauseTermStates.size() != 1 || result.containsKey(clauseTermStates.keySet().iterator().next()))
+                    return null; // not a single term, or a duplicate term (which should produce duplicate hits)
+                result.putAll(clauseTermStates);
+            }
+            return result;
         }
 
         @Override
@@ -445,10 +476,16 @@ public final class BLSpanOrQuery extends BLSpanQuery {
         @Override
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
 
+            if (manyTermStates != null) {
+                // Many terms (e.g. an expanded regex); merging a Spans per term would be slow.
+                // (we don't need the requested postings: nothing collects them from simple term clauses)
+                return SpansTermDisjunction.create(context, manyTermStates, BLSpanOrQuery.this.guarantees());
+            }
+
             final ArrayList<Spans> subSpans = new ArrayList<>(inner.getClauses().length);
 
-            for (SpanWeight w : subWeights) {
-                Spans spans = w.getSpans(context, requiredPostings);
+            for (BLSpanWeight w : subWeights) {
+                Spans spans = w.getSpansProfiled(context, requiredPostings);
                 if (spans != null) {
                     subSpans.add(spans);
                 }
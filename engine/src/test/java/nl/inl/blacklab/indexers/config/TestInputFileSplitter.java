@@ -0,0 +1,80 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.util.UtilsForTesting;
+
+public class TestInputFileSplitter {
+
+    private static List<String> split(InputFileSplitter splitter, String contents) throws Exception {
+        try (UtilsForTesting.TestDir dir = UtilsForTesting.createBlackLabTestDir("InputFileSplitter")) {
+            File file = new File(dir.file(), "input");
+            Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+            List<String> chunks = new ArrayList<>();
+            splitter.split(file, (chunkIndex, chunk) -> {
+                Assert.assertEquals(chunks.size(), chunkIndex);
+                chunks.add(new String(chunk, StandardCharsets.UTF_8));
+            });
+            return chunks;
+        }
+    }
+
+    @Test
+    public void testXml() throws Exception {
+        String prolog = "<?xml version=\"1.0\"?>\n<!-- <doc> in a comment -->\n";
+        String xml = prolog + "<corpus xmlns:x=\"urn:x\"><x:group n='1'>" +
+                "<x:doc id=\"a\"><p>a <![CDATA[<doc>]]></p></x:doc>" +
+                "<x:doc id=\"b\" title=\"a > b\"><x:doc/></x:doc>" +
+                "</x:group><x:group n='2'>" +
+                "<x:doc id=\"c\"/>" +
+                "</x:group></corpus>";
+        List<String> chunks = split(new InputFileSplitterXml("doc", 1), xml);
+        Assert.assertEquals(List.of(
+                prolog + "<corpus xmlns:x=\"urn:x\"><x:group n='1'>" +
+                        "<x:doc id=\"a\"><p>a <![CDATA[<doc>]]></p></x:doc>" +
+                        "</x:group></corpus>",
+                prolog + "<corpus xmlns:x=\"urn:x\"><x:group n='1'>" +
+                        "<x:doc id=\"b\" title=\"a > b\"><x:doc/></x:doc>" +
+                        "</x:group><x:group n='2'>" +
+                        "</x:group></corpus>",
+                prolog + "<corpus xmlns:x=\"urn:x\"><x:group n='2'>" +
+                        "<x:doc id=\"c\"/>" +
+                        "</x:group></corpus>"), chunks);
+
+        // Large chunk size: don't split
+        Assert.assertEquals(List.of(xml), split(new InputFileSplitterXml("doc", 1_000_000), xml));
+
+        // Document element is the root: don't split
+        String single = "<doc><doc/></doc>";
+        Assert.assertEquals(List.of(single), split(new InputFileSplitterXml("doc", 1), single));
+    }
+
+    @Test
+    public void testTabular() throws Exception {
+        String header = "word\tlemma\n";
+        String doc1 = "<doc id=\"1\">\na\ta\n</doc>\n";
+        String doc2 = "  <doc>\nb\tb\n</doc>\n";
+        String doc3 = "<doc/>\n";
+        List<String> chunks = split(new InputFileSplitterTabular("doc", true, 1), header + doc1 + doc2 + doc3);
+        Assert.assertEquals(List.of(header + doc1, header + doc2, header + doc3), chunks);
+
+        chunks = split(new InputFileSplitterTabular("doc", false, doc1.length() + 1), doc1 + doc2 + doc3);
+        Assert.assertEquals(List.of(doc1 + doc2, doc3), chunks);
+    }
+
+    @Test
+    public void testForFormat() {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.setDocumentPath("//tei:TEI[@type='text']");
+        Assert.assertTrue(InputFileSplitter.forFormat(config, 1) instanceof InputFileSplitterXml);
+        config.setDocumentPath("//a | //b");
+        Assert.assertNull(InputFileSplitter.forFormat(config, 1));
+    }
+}
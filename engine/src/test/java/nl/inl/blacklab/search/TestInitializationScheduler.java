@@ -0,0 +1,79 @@
+package nl.inl.blacklab.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestInitializationScheduler {
+
+    @Test
+    public void testPrioritize() throws InterruptedException {
+        InitializationScheduler scheduler = new InitializationScheduler(1, 0);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Keep the only thread busy while we queue the other tasks
+        scheduler.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (String key: List.of("a", "b", "c"))
+            scheduler.execute(key, () -> order.add(key));
+        scheduler.prioritize("c");
+        scheduler.prioritize("x"); // not queued; ignored
+        Assert.assertEquals(3, scheduler.getQueued());
+        Assert.assertEquals(1, scheduler.getRunning());
+
+        blocker.countDown();
+        scheduler.shutdown();
+        Assert.assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(List.of("c", "a", "b"), order);
+        Assert.assertEquals(4, scheduler.getCompleted());
+        Assert.assertEquals(1, scheduler.getPrioritized());
+    }
+
+    @Test
+    public void testParallel() throws InterruptedException {
+        InitializationScheduler scheduler = new InitializationScheduler(2, 0);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            scheduler.execute(() -> {
+                bothRunning.countDown();
+                try {
+                    bothRunning.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        Assert.assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+        scheduler.execute(() -> { throw new RuntimeException("fail"); });
+        scheduler.shutdown();
+        Assert.assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, scheduler.getCompleted());
+        Assert.assertEquals(1, scheduler.getFailed());
+    }
+
+    @Test
+    public void testShutdownStopsThreads() throws InterruptedException {
+        InitializationScheduler scheduler = new InitializationScheduler(2, 0);
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.execute(done::countDown);
+        scheduler.shutdown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // Threads should exit once the queue has drained, without calling awaitTermination()
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!scheduler.isTerminated() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assert.assertTrue(scheduler.isTerminated());
+    }
+}
@@ -0,0 +1,100 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+public class TestHitsInternalPacked {
+
+    private static final int HEAP_THRESHOLD = 1000;
+
+    private static final int NUMBER_OF_HITS = HEAP_THRESHOLD + 3 * HitsInternalPackedNoLock.BLOCK_SIZE + 123;
+
+    private static HitsInternalMutable fill(HitsInternalMutable hits, int[][] expected) {
+        Random random = new Random(42);
+        int doc = 0;
+        for (int i = 0; i < expected.length; i++) {
+            doc += random.nextInt(3);
+            int start = random.nextInt(100_000);
+            int end = start + 1 + random.nextInt(10);
+            expected[i] = new int[] { doc, start, end };
+            hits.add(doc, start, end, null);
+        }
+        return hits;
+    }
+
+    private static void check(HitsInternal hits, int[][] expected) {
+        Assert.assertEquals(expected.length, hits.size());
+        EphemeralHit h = new EphemeralHit();
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i][0], hits.doc(i));
+            Assert.assertEquals(expected[i][1], hits.start(i));
+            Assert.assertEquals(expected[i][2], hits.end(i));
+            hits.getEphemeral(i, h);
+            Assert.assertEquals(expected[i][0], h.doc);
+            Assert.assertEquals(expected[i][1], h.start);
+            Assert.assertEquals(expected[i][2], h.end);
+        }
+        int i = 0;
+        for (EphemeralHit hit: hits) {
+            Assert.assertEquals(expected[i][0], hit.doc);
+            Assert.assertEquals(expected[i][2], hit.end);
+            i++;
+        }
+        Assert.assertEquals(expected.length, i);
+        IntIterator it = hits.docsIterator();
+        for (i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i][0], it.nextInt());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testAddAndRead() {
+        int[][] expected = new int[NUMBER_OF_HITS][];
+        check(fill(new HitsInternalPackedNoLock(-1, HEAP_THRESHOLD), expected), expected);
+    }
+
+    @Test
+    public void testAddAndReadLocking() {
+        int[][] expected = new int[NUMBER_OF_HITS][];
+        check(fill(new HitsInternalPackedLock(-1, HEAP_THRESHOLD), expected), expected);
+    }
+
+    @Test
+    public void testAddAllLocking() {
+        int[][] expected = new int[NUMBER_OF_HITS][];
+        HitsInternalPackedLock source = (HitsInternalPackedLock) fill(new HitsInternalPackedLock(-1, HEAP_THRESHOLD), expected);
+        HitsInternalPackedLock hits = new HitsInternalPackedLock(-1, HEAP_THRESHOLD);
+        hits.addAll(source);
+        check(hits, expected);
+    }
+
+    @Test
+    public void testOffHeapMemoryUsed() {
+        HitsInternalMutable hits = fill(new HitsInternalPackedNoLock(-1, HEAP_THRESHOLD), new int[NUMBER_OF_HITS][]);
+        Assert.assertTrue(HitsInternal.offHeapMemoryUsed() > 0);
+        Assert.assertEquals(NUMBER_OF_HITS, hits.size());
+    }
+
+    @Test
+    public void testAddAll() {
+        int[][] expected = new int[NUMBER_OF_HITS][];
+        HitsInternalMutable source = fill(new HitsInternalNoLock(-1), expected);
+        HitsInternalMutable hits = new HitsInternalPackedNoLock(-1, HEAP_THRESHOLD);
+        hits.addAll(source);
+        check(hits, expected);
+    }
+
+    @Test
+    public void testClear() {
+        int[][] expected = new int[NUMBER_OF_HITS][];
+        HitsInternalMutable hits = fill(new HitsInternalPackedNoLock(-1, HEAP_THRESHOLD), expected);
+        hits.clear();
+        Assert.assertEquals(0, hits.size());
+        check(fill(hits, expected), expected);
+    }
+}
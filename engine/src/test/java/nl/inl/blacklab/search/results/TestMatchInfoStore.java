@@ -0,0 +1,74 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.search.lucene.MatchInfo;
+import nl.inl.blacklab.search.lucene.RelationInfo;
+import nl.inl.blacklab.search.lucene.RelationListInfo;
+import nl.inl.blacklab.search.lucene.SpanInfo;
+
+public class TestMatchInfoStore {
+
+    private static final String FIELD = "contents";
+
+    private static MatchInfo[] row(int i) {
+        RelationInfo rel = RelationInfo.create(false, i, i + 1, i + 2, i + 3, i, "dep" + (i % 3), FIELD, FIELD);
+        MatchInfo span = i % 4 == 0 ? null : SpanInfo.create(i, i + 2, FIELD);
+        return new MatchInfo[] { span, rel };
+    }
+
+    @Test
+    public void testSpansAndRelations() {
+        MatchInfoStore store = new MatchInfoStore();
+        for (int i = 0; i < 1000; i++)
+            store.add(row(i));
+        Assert.assertEquals(1000, store.size64());
+        for (int i = 0; i < 1000; i++) {
+            MatchInfo[] expected = row(i);
+            MatchInfo[] actual = store.get(i);
+            Assert.assertArrayEquals(expected, actual);
+            Assert.assertEquals(expected[1], store.get(i, 1));
+            Assert.assertEquals(FIELD, actual[1].getField());
+            Assert.assertEquals(((RelationInfo) expected[1]).getRelationId(), ((RelationInfo) actual[1]).getRelationId());
+        }
+    }
+
+    @Test
+    public void testIrregular() {
+        MatchInfoStore store = new MatchInfoStore();
+        RelationListInfo list = RelationListInfo.create(List.of(RelationInfo.create(false, 1, 2, 3, 4, 5, "dep", FIELD, FIELD)), FIELD);
+        MatchInfo otherField = SpanInfo.create(1, 2, "other");
+        store.add(new MatchInfo[] { SpanInfo.create(1, 2, FIELD), list });
+        store.add(null);
+        store.add(new MatchInfo[] { otherField, list });
+        store.add(new MatchInfo[] { null });
+        Assert.assertEquals(4, store.size64());
+        Assert.assertSame(list, store.get(0, 1));
+        Assert.assertNull(store.get(1));
+        Assert.assertSame(otherField, store.get(2, 0));
+        Assert.assertEquals(1, store.get(3).length);
+        Assert.assertNull(store.get(3, 0));
+    }
+
+    @Test
+    public void testReuseBuffer() {
+        MatchInfoStore store = new MatchInfoStore();
+        for (int i = 0; i < 10; i++)
+            store.add(row(i));
+        MatchInfo[] irregular = { null };
+        store.add(irregular);
+        irregular[0] = SpanInfo.create(1, 2, FIELD); // store must have copied the array
+        EphemeralHit hit = new EphemeralHit();
+        MatchInfo[] first = store.get(0, hit);
+        for (int i = 0; i < 10; i++) {
+            MatchInfo[] actual = store.get(i, hit);
+            Assert.assertSame(first, actual);
+            Assert.assertArrayEquals(row(i), actual);
+        }
+        Assert.assertArrayEquals(new MatchInfo[] { null }, store.get(10, hit));
+        Assert.assertSame(first, store.get(1, hit));
+    }
+}
@@ -23,9 +23,11 @@ import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabEngine;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.ContentAccessor;
+import nl.inl.blacklab.search.DocMetadataLoader;
 import nl.inl.blacklab.search.DocTask;
 import nl.inl.blacklab.search.QueryExecutionContext;
 import nl.inl.blacklab.search.QueryExplanation;
+import nl.inl.blacklab.search.SubcorpusStatistics;
 import nl.inl.blacklab.search.TermFrequencyList;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
@@ -39,8 +41,10 @@ import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsSnapshots;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.results.TokenFrequencyCubes;
 import nl.inl.blacklab.search.textpattern.TextPatternTags;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheDummy;
@@ -288,4 +292,44 @@ public class MockBlackLabIndex implements BlackLabIndex {
     public RelationsStats getRelationsStats(AnnotatedField field, long limitValues) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public TokenFrequencyCubes frequencyCubes() {
+        return new TokenFrequencyCubes(this);
+    }
+
+    @Override
+    public DocMetadataLoader docMetadata() {
+        return new DocMetadataLoader(this, 0);
+    }
+
+    @Override
+    public SubcorpusStatistics subcorpusStatistics() {
+        return new SubcorpusStatistics(this, 0);
+    }
+
+    @Override
+    public HitsSnapshots hitsSnapshots() {
+        return new HitsSnapshots(this, null, 0, 0, 0);
+    }
+
+    @Override
+    public long estimatedMemoryUsage() {
+        return 0;
+    }
+
+    @Override
+    public void unloadMemory() {
+        // nothing to unload
+    }
+
+    @Override
+    public void markUsed() {
+        // not tracked
+    }
+
+    @Override
+    public long lastUsed() {
+        return 0;
+    }
 }
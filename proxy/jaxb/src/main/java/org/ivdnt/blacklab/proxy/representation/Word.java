@@ -34,12 +34,17 @@ public class Word {
     }
 
     public int compareTo(Word word, String annotation, boolean sensitive) {
-        if (annotation.equals(MAIN_ANNOTATION_NAME))
-            return mainAnnotation.compareTo(word.mainAnnotation);
-        String a = otherAnnotations.getOrDefault(annotation, "");
-        String b = word.otherAnnotations.getOrDefault(annotation, "");
+        String a, b;
+        if (annotation.equals(MAIN_ANNOTATION_NAME)) {
+            a = mainAnnotation;
+            b = word.mainAnnotation;
+        } else {
+            a = otherAnnotations.getOrDefault(annotation, "");
+            b = word.otherAnnotations.getOrDefault(annotation, "");
+        }
+        // Use the same collation as the nodes, or merged results will be out of order
         Collator coll = sensitive ? Util.DEFAULT_COLLATOR : Util.DEFAULT_COLLATOR_INSENSITIVE;
-        return sensitive ? coll.compare(a, b) : a.compareToIgnoreCase(b);
+        return coll.compare(a, b);
     }
 
     @Override
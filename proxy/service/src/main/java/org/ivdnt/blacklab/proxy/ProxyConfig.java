@@ -2,6 +2,8 @@ package org.ivdnt.blacklab.proxy;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -44,6 +46,9 @@ public class ProxyConfig {
 
     private ProxyTarget proxyTarget;
 
+    /** Nodes that each hold part of the corpus (if empty, there's only proxyTarget) */
+    private List<ProxyTarget> nodes = Collections.emptyList();
+
     static ProxyConfig readConfig() {
         File configFile = locateConfigFile();
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
@@ -73,4 +78,19 @@ public class ProxyConfig {
     public ProxyTarget getProxyTarget() {
         return proxyTarget;
     }
+
+    public List<ProxyTarget> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Is the corpus distributed over several nodes?
+     *
+     * If so, hits and docs requests are sent to all nodes and the results are merged.
+     *
+     * @return true if we have multiple nodes
+     */
+    public boolean isDistributed() {
+        return nodes.size() > 1;
+    }
 }
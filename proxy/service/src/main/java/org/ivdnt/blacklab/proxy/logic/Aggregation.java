@@ -0,0 +1,413 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.ivdnt.blacklab.proxy.ProxyConfig;
+import org.ivdnt.blacklab.proxy.logic.hits.HitComparators;
+import org.ivdnt.blacklab.proxy.representation.Doc;
+import org.ivdnt.blacklab.proxy.representation.DocInfo;
+import org.ivdnt.blacklab.proxy.representation.DocsResults;
+import org.ivdnt.blacklab.proxy.representation.EntityWithSummary;
+import org.ivdnt.blacklab.proxy.representation.FacetValue;
+import org.ivdnt.blacklab.proxy.representation.Hit;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.HitsResults;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+import org.ivdnt.blacklab.proxy.representation.TokenFreqList;
+import org.ivdnt.blacklab.proxy.resources.ParamsUtil;
+import org.ivdnt.blacklab.proxy.resources.ProxyResponse;
+
+import it.unimi.dsi.fastutil.BigList;
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+import nl.inl.blacklab.webservice.WebserviceOperation;
+import nl.inl.blacklab.webservice.WebserviceParameter;
+
+/**
+ * Sends hits and docs requests to all nodes of a distributed corpus and merges the results.
+ *
+ * Each node returns its results sorted the way the client asked, so we can request
+ * the first (first + number) results from each node and perform a k-way merge to
+ * find the requested window. Groups are requested in full from each node and merged
+ * by identity. Counts are summed.
+ */
+public class Aggregation {
+
+    /**
+     * Perform a hits request on all nodes and merge the results.
+     *
+     * @param client     client to use
+     * @param nodes      nodes to query
+     * @param corpusName corpus to query
+     * @param parameters request parameters
+     * @param method     HTTP method
+     * @param isXml      will the response be serialized to XML?
+     * @return response
+     */
+    public static Response hits(Client client, List<ProxyConfig.ProxyTarget> nodes, String corpusName,
+            MultivaluedMap<String, String> parameters, String method, boolean isXml) {
+        Map<WebserviceParameter, String> params = ParamsUtil.get(parameters, corpusName, WebserviceOperation.HITS);
+        List<Object> results = Requests.requestAll(client, nodes, nodeParams(params), method,
+                List.of(TokenFreqList.class, HitsResults.class));
+        Object merged;
+        if (results.get(0) instanceof TokenFreqList) {
+            merged = mergeTokenFreqLists(cast(results));
+        } else {
+            merged = mergeHitsResults(cast(results), params.getOrDefault(WebserviceParameter.SORT_BY, ""),
+                    isGrouped(params), first(params), number(params));
+        }
+        return response(merged, isXml);
+    }
+
+    /**
+     * Perform a docs request on all nodes and merge the results.
+     *
+     * @param client     client to use
+     * @param nodes      nodes to query
+     * @param corpusName corpus to query
+     * @param parameters request parameters
+     * @param method     HTTP method
+     * @param isXml      will the response be serialized to XML?
+     * @return response
+     */
+    public static Response docs(Client client, List<ProxyConfig.ProxyTarget> nodes, String corpusName,
+            MultivaluedMap<String, String> parameters, String method, boolean isXml) {
+        Map<WebserviceParameter, String> params = ParamsUtil.get(parameters, corpusName, WebserviceOperation.DOCS);
+        List<Object> results = Requests.requestAll(client, nodes, nodeParams(params), method,
+                List.of(DocsResults.class));
+        DocsResults merged = mergeDocsResults(cast(results), params.getOrDefault(WebserviceParameter.SORT_BY, ""),
+                isGrouped(params), first(params), number(params));
+        return response(merged, isXml);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(List<Object> results) {
+        return (List<T>) results;
+    }
+
+    private static Response response(Object entity, boolean isXml) {
+        if (isXml && entity instanceof EntityWithSummary) {
+            // Don't try to serialize the pattern to XML, this induces headaches.
+            ((EntityWithSummary) entity).getSummary().pattern = null;
+        }
+        return ProxyResponse.success(entity);
+    }
+
+    private static boolean isGrouped(Map<WebserviceParameter, String> params) {
+        return !params.getOrDefault(WebserviceParameter.GROUP_BY, "").isEmpty() &&
+                params.getOrDefault(WebserviceParameter.VIEW_GROUP, "").isEmpty();
+    }
+
+    private static long first(Map<WebserviceParameter, String> params) {
+        return Long.parseLong(params.getOrDefault(WebserviceParameter.FIRST_RESULT,
+                WebserviceParameter.FIRST_RESULT.getDefaultValue()));
+    }
+
+    private static long number(Map<WebserviceParameter, String> params) {
+        return Long.parseLong(params.getOrDefault(WebserviceParameter.NUMBER_OF_RESULTS,
+                WebserviceParameter.NUMBER_OF_RESULTS.getDefaultValue()));
+    }
+
+    /**
+     * Determine the parameters for the request to each node.
+     *
+     * Any result in the requested window may come from any node, so we need all results
+     * up to the end of the window from each node. Groups cannot be merged unless we have
+     * all of them.
+     *
+     * @param params parameters to the client request
+     * @return parameters for the node requests
+     */
+    static Map<WebserviceParameter, String> nodeParams(Map<WebserviceParameter, String> params) {
+        Map<WebserviceParameter, String> nodeParams = new HashMap<>(params);
+        nodeParams.put(WebserviceParameter.FIRST_RESULT, "0");
+        long number = isGrouped(params) ? Requests.MAX_GROUPS_TO_GET : first(params) + number(params);
+        nodeParams.put(WebserviceParameter.NUMBER_OF_RESULTS, Long.toString(number));
+        return nodeParams;
+    }
+
+    /**
+     * Merge sorted result lists and return the requested window.
+     *
+     * Performs a k-way merge. Results that compare equal are taken from the node with the
+     * lowest index first; results from the same node keep their order. If there's no
+     * comparator, the lists are simply concatenated.
+     *
+     * @param sortedLists results per node, each sorted according to cmp
+     * @param cmp         how the results are sorted, or null if they're not
+     * @param first       first result in the window
+     * @param number      number of results in the window
+     * @param <T>         result type
+     * @return the window of merged results
+     */
+    static <T> BigList<T> merge(List<? extends BigList<T>> sortedLists, Comparator<? super T> cmp,
+            long first, long number) {
+        // Each queue entry is a cursor: (node index, position in that node's list)
+        Comparator<long[]> cursorCmp = (a, b) -> {
+            if (cmp != null) {
+                int c = cmp.compare(sortedLists.get((int) a[0]).get(a[1]), sortedLists.get((int) b[0]).get(b[1]));
+                if (c != 0)
+                    return c;
+            }
+            return Long.compare(a[0], b[0]);
+        };
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, sortedLists.size()), cursorCmp);
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (sortedLists.get(i).size64() > 0)
+                queue.add(new long[] { i, 0 });
+        }
+        BigList<T> window = new ObjectBigArrayBigList<>();
+        for (long i = 0; i < first + number && !queue.isEmpty(); i++) {
+            long[] cursor = queue.poll();
+            BigList<T> list = sortedLists.get((int) cursor[0]);
+            if (i >= first)
+                window.add(list.get(cursor[1]));
+            cursor[1]++;
+            if (cursor[1] < list.size64())
+                queue.add(cursor);
+        }
+        return window;
+    }
+
+    /**
+     * Merge groups from all nodes by identity, summing their sizes.
+     *
+     * @param groupsPerNode groups per node
+     * @param sort          how to sort the groups, or empty to keep the order we first saw them in
+     * @return merged groups
+     */
+    static List<HitOrDocGroup> mergeGroups(List<List<HitOrDocGroup>> groupsPerNode, String sort) {
+        Map<String, HitOrDocGroup> merged = new LinkedHashMap<>();
+        for (List<HitOrDocGroup> groups: groupsPerNode) {
+            if (groups == null)
+                continue;
+            for (HitOrDocGroup group: groups) {
+                HitOrDocGroup m = merged.get(group.identity);
+                if (m == null) {
+                    m = new HitOrDocGroup();
+                    m.identity = group.identity;
+                    m.identityDisplay = group.identityDisplay;
+                    m.properties = group.properties;
+                    merged.put(group.identity, m);
+                }
+                m.size += group.size;
+                m.numberOfDocs = sum(m.numberOfDocs, group.numberOfDocs);
+                m.numberOfTokens = sum(m.numberOfTokens, group.numberOfTokens);
+                m.subcorpusSize = sum(m.subcorpusSize, group.subcorpusSize);
+            }
+        }
+        List<HitOrDocGroup> result = new ArrayList<>(merged.values());
+        Comparator<HitOrDocGroup> cmp = HitGroupComparators.deserialize(sort);
+        if (cmp != null)
+            result.sort(cmp);
+        return result;
+    }
+
+    static HitsResults mergeHitsResults(List<HitsResults> results, String sort, boolean grouped, long first,
+            long number) {
+        List<SearchSummary> summaries = results.stream().map(r -> r.summary).collect(Collectors.toList());
+        if (grouped) {
+            List<HitOrDocGroup> groups = mergeGroups(results.stream().map(r -> r.hitGroups)
+                    .collect(Collectors.toList()), sort);
+            List<HitOrDocGroup> window = window(groups, first, number);
+            SearchSummary summary = mergeSummaries(summaries, first, number, window.size(), groups.size());
+            setGroupCounts(summary, groups);
+            HitsResults merged = new HitsResults(summary, window);
+            merged.facets = mergeFacets(results.stream().map(r -> r.facets).collect(Collectors.toList()));
+            return merged;
+        }
+
+        // Make sure we can compare hits by document metadata
+        List<BigList<Hit>> hitsPerNode = new ArrayList<>();
+        Map<String, DocInfo> docInfos = new HashMap<>();
+        for (HitsResults r: results) {
+            if (r.docInfos != null) {
+                for (DocInfo docInfo: r.docInfos)
+                    docInfos.putIfAbsent(docInfo.pid, docInfo);
+            }
+            BigList<Hit> hits = r.hits == null ? new ObjectBigArrayBigList<>() : r.hits;
+            for (Hit hit: hits)
+                hit.docInfo = docInfos.get(hit.docPid);
+            hitsPerNode.add(hits);
+        }
+        BigList<Hit> window = merge(hitsPerNode, HitComparators.deserialize(sort), first, number);
+
+        // Only include docInfos for the hits in the window
+        Map<String, DocInfo> windowDocInfos = new LinkedHashMap<>();
+        for (Hit hit: window) {
+            if (hit.docInfo != null)
+                windowDocInfos.putIfAbsent(hit.docPid, hit.docInfo);
+        }
+        long hitsRetrieved = summaries.stream()
+                .mapToLong(s -> s.numberOfHitsRetrieved == null ? 0 : s.numberOfHitsRetrieved).sum();
+        SearchSummary summary = mergeSummaries(summaries, first, number, window.size64(), hitsRetrieved);
+        HitsResults merged = new HitsResults(summary, window, new ArrayList<>(windowDocInfos.values()));
+        merged.facets = mergeFacets(results.stream().map(r -> r.facets).collect(Collectors.toList()));
+        return merged;
+    }
+
+    static DocsResults mergeDocsResults(List<DocsResults> results, String sort, boolean grouped, long first,
+            long number) {
+        List<SearchSummary> summaries = results.stream().map(r -> r.summary).collect(Collectors.toList());
+        DocsResults merged = new DocsResults();
+        if (grouped) {
+            List<HitOrDocGroup> groups = mergeGroups(results.stream().map(r -> r.docGroups)
+                    .collect(Collectors.toList()), sort);
+            merged.docGroups = window(groups, first, number);
+            merged.summary = mergeSummaries(summaries, first, number, merged.docGroups.size(), groups.size());
+            setGroupCounts(merged.summary, groups);
+        } else {
+            List<BigList<Doc>> docsPerNode = results.stream()
+                    .map(r -> r.docs == null ? new ObjectBigArrayBigList<Doc>() : r.docs)
+                    .collect(Collectors.toList());
+            merged.docs = merge(docsPerNode, DocComparators.deserialize(sort), first, number);
+            long docsRetrieved = summaries.stream().mapToLong(s -> s.numberOfDocsRetrieved).sum();
+            merged.summary = mergeSummaries(summaries, first, number, merged.docs.size64(), docsRetrieved);
+        }
+        merged.facets = mergeFacets(results.stream().map(r -> r.facets).collect(Collectors.toList()));
+        return merged;
+    }
+
+    static TokenFreqList mergeTokenFreqLists(List<TokenFreqList> results) {
+        Map<String, Long> freqs = new HashMap<>();
+        for (TokenFreqList r: results) {
+            if (r.tokenFrequencies != null)
+                r.tokenFrequencies.forEach((token, freq) -> freqs.merge(token, freq, Long::sum));
+        }
+        TokenFreqList merged = new TokenFreqList();
+        merged.tokenFrequencies = freqs.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        return merged;
+    }
+
+    private static <T> List<T> window(List<T> list, long first, long number) {
+        int from = (int) Math.min(first, list.size());
+        int to = (int) Math.min(first + number, list.size());
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    private static void setGroupCounts(SearchSummary summary, List<HitOrDocGroup> groups) {
+        summary.numberOfGroups = (long) groups.size();
+        summary.largestGroupSize = groups.stream().mapToLong(g -> g.size).max().orElse(0);
+    }
+
+    /**
+     * Combine the summaries from all nodes.
+     *
+     * Counts are summed; times are the maximum, because the nodes work in parallel.
+     *
+     * @param summaries        summary per node
+     * @param first            first result in the window the client requested
+     * @param number           size of the window the client requested
+     * @param actualWindowSize size of the merged window
+     * @param resultsAvailable total number of merged results (hits, docs or groups) available
+     * @return merged summary
+     */
+    static SearchSummary mergeSummaries(List<SearchSummary> summaries, long first, long number,
+            long actualWindowSize, long resultsAvailable) {
+        SearchSummary merged;
+        try {
+            merged = summaries.get(0).clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        if (merged.searchParam != null) {
+            // Report the window the client asked for, not the one we asked the nodes for
+            merged.searchParam = new LinkedHashMap<>(merged.searchParam);
+            merged.searchParam.put(WebserviceParameter.FIRST_RESULT.value(), Long.toString(first));
+            merged.searchParam.put(WebserviceParameter.NUMBER_OF_RESULTS.value(), Long.toString(number));
+        }
+        merged.subcorpusSize = null;
+        merged.numberOfHits = merged.numberOfHitsRetrieved = merged.tokensInMatchingDocuments = null;
+        merged.stoppedCountingHits = merged.stoppedRetrievingHits = null;
+        merged.countTime = null;
+        merged.numberOfDocs = merged.numberOfDocsRetrieved = 0;
+        merged.stillCounting = false;
+        for (SearchSummary s: summaries) {
+            merged.searchTime = Math.max(merged.searchTime, s.searchTime);
+            merged.countTime = max(merged.countTime, s.countTime);
+            merged.stillCounting |= s.stillCounting;
+            merged.numberOfHits = sum(merged.numberOfHits, s.numberOfHits);
+            merged.numberOfHitsRetrieved = sum(merged.numberOfHitsRetrieved, s.numberOfHitsRetrieved);
+            merged.stoppedCountingHits = or(merged.stoppedCountingHits, s.stoppedCountingHits);
+            merged.stoppedRetrievingHits = or(merged.stoppedRetrievingHits, s.stoppedRetrievingHits);
+            merged.numberOfDocs += s.numberOfDocs;
+            merged.numberOfDocsRetrieved += s.numberOfDocsRetrieved;
+            merged.tokensInMatchingDocuments = sum(merged.tokensInMatchingDocuments, s.tokensInMatchingDocuments);
+            merged.subcorpusSize = sum(merged.subcorpusSize, s.subcorpusSize);
+        }
+        merged.windowFirstResult = first;
+        merged.requestedWindowSize = number;
+        merged.actualWindowSize = actualWindowSize;
+        merged.windowHasPrevious = first > 0;
+        merged.windowHasNext = first + actualWindowSize < resultsAvailable;
+        return merged;
+    }
+
+    static Map<String, ArrayList<FacetValue>> mergeFacets(List<Map<String, ArrayList<FacetValue>>> facetsPerNode) {
+        Map<String, Map<String, FacetValue>> merged = new LinkedHashMap<>();
+        boolean any = false;
+        for (Map<String, ArrayList<FacetValue>> facets: facetsPerNode) {
+            if (facets == null)
+                continue;
+            any = true;
+            for (Map.Entry<String, ArrayList<FacetValue>> e: facets.entrySet()) {
+                Map<String, FacetValue> values = merged.computeIfAbsent(e.getKey(), k -> new LinkedHashMap<>());
+                for (FacetValue v: e.getValue()) {
+                    FacetValue m = values.computeIfAbsent(v.value, k -> {
+                        FacetValue fv = new FacetValue();
+                        fv.value = v.value;
+                        return fv;
+                    });
+                    m.size += v.size;
+                }
+            }
+        }
+        if (!any)
+            return null;
+        Map<String, ArrayList<FacetValue>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, FacetValue>> e: merged.entrySet()) {
+            ArrayList<FacetValue> values = new ArrayList<>(e.getValue().values());
+            values.sort((a, b) -> Long.compare(b.size, a.size));
+            result.put(e.getKey(), values);
+        }
+        return result;
+    }
+
+    private static Long sum(Long a, Long b) {
+        if (a == null)
+            return b;
+        return b == null ? a : a + b;
+    }
+
+    private static Long max(Long a, Long b) {
+        if (a == null)
+            return b;
+        return b == null ? a : Math.max(a, b);
+    }
+
+    private static Boolean or(Boolean a, Boolean b) {
+        if (a == null)
+            return b;
+        return b == null ? a : a || b;
+    }
+
+    private static Map<String, Long> sum(Map<String, Long> a, Map<String, Long> b) {
+        if (b == null)
+            return a;
+        Map<String, Long> result = a == null ? new LinkedHashMap<>() : new LinkedHashMap<>(a);
+        b.forEach((key, value) -> result.merge(key, value, Long::sum));
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.ivdnt.blacklab.proxy.helper.Util;
+import org.ivdnt.blacklab.proxy.representation.Doc;
+import org.ivdnt.blacklab.proxy.representation.MetadataValues;
+
+import nl.inl.blacklab.util.PropertySerializeUtil;
+
+public class DocComparators {
+
+    private static final Comparator<Doc> CMP_PID = (a, b) -> Util.DEFAULT_COLLATOR.compare(a.docPid, b.docPid);
+
+    // (most hits first, like BlackLab)
+    private static final Comparator<Doc> CMP_NUMBER_OF_HITS = (a, b) -> Long.compare(
+            b.numberOfHits == null ? 0 : b.numberOfHits, a.numberOfHits == null ? 0 : a.numberOfHits);
+
+    public static Comparator<Doc> deserialize(String docProp) {
+        if (docProp.isEmpty())
+            return null;
+        if (PropertySerializeUtil.isMultiple(docProp)) {
+            return Arrays.stream(PropertySerializeUtil.splitMultiple(docProp))
+                    .map(DocComparators::deserialize)
+                    .reduce(Comparator::thenComparing)
+                    .orElseThrow();
+        }
+
+        List<String> parts = PropertySerializeUtil.splitPartsList(docProp);
+        String type = parts.get(0).toLowerCase();
+        boolean reverse = false;
+        if (type.length() > 0 && type.charAt(0) == '-') {
+            reverse = true;
+            type = type.substring(1);
+        }
+        Comparator<Doc> cmp;
+        switch (type) {
+        case "field": cmp = docField(parts.get(1)); break;
+        case "decade": cmp = docFieldDecade(parts.get(1)); break;
+        case "numhits": cmp = CMP_NUMBER_OF_HITS; break;
+        case "identity": case "docid": cmp = CMP_PID; break;
+        default:
+            throw new UnsupportedOperationException("Doc property not supported: " + type);
+        }
+        return reverse ? cmp.reversed() : cmp;
+    }
+
+    private static String firstValue(Doc doc, String field) {
+        MetadataValues values = doc.docInfo == null ? null : doc.docInfo.metadata.get(field);
+        return values == null || values.getValue().isEmpty() ? "" : values.getValue().get(0);
+    }
+
+    /** String compare by metadata field */
+    private static Comparator<Doc> docField(String field) {
+        return (a, b) -> Util.DEFAULT_COLLATOR.compare(firstValue(a, field), firstValue(b, field));
+    }
+
+    /** Compare by decade for metadata field containing year */
+    private static Comparator<Doc> docFieldDecade(String field) {
+        return Comparator.comparingInt(d -> {
+            String year = firstValue(d, field);
+            return year.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(year) / 10;
+        });
+    }
+}
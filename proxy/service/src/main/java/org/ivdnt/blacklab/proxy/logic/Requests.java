@@ -3,6 +3,10 @@ package org.ivdnt.blacklab.proxy.logic;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.ProcessingException;
@@ -34,7 +38,14 @@ public class Requests {
 
     private static final String BL_PAR_NAME_PREFIX = "bl" + ".";
 
-    private static final int MAX_GROUPS_TO_GET = Integer.MAX_VALUE - 10;
+    static final int MAX_GROUPS_TO_GET = Integer.MAX_VALUE - 10;
+
+    /** Performs requests to several nodes in parallel */
+    private static final ExecutorService nodeRequestExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "NodeRequest");
+        t.setDaemon(true);
+        return t;
+    });
 
     /** Is the given value the default value for this parameter?
      *
@@ -61,7 +72,39 @@ public class Requests {
     }
 
     public static Object request(Client client, Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
-        ProxyConfig.ProxyTarget proxyTarget = ProxyConfig.get().getProxyTarget();
+        return request(client, ProxyConfig.get().getProxyTarget(), queryParams, method, entityTypes);
+    }
+
+    /**
+     * Perform the same request on several nodes in parallel.
+     *
+     * If any of the requests fails, the first exception is rethrown.
+     *
+     * @param client      client to use
+     * @param nodes       nodes to send the request to
+     * @param queryParams parameters to the request
+     * @param method      HTTP method
+     * @param entityTypes what types the result entity could be
+     * @return results, in the same order as the nodes
+     */
+    public static List<Object> requestAll(Client client, List<ProxyConfig.ProxyTarget> nodes,
+            Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
+        List<CompletableFuture<Object>> futures = nodes.stream()
+                .map(node -> CompletableFuture.supplyAsync(
+                        () -> request(client, node, queryParams, method, entityTypes), nodeRequestExecutor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static Object request(Client client, ProxyConfig.ProxyTarget proxyTarget,
+            Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
         String url = proxyTarget.getUrl();
         WebTarget target = client.target(url);
         boolean isSolr = proxyTarget.getProtocol().equalsIgnoreCase("solr");
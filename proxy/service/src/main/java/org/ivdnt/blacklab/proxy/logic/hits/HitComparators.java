@@ -1,5 +1,6 @@
 package org.ivdnt.blacklab.proxy.logic.hits;
 
+import java.text.Collator;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -11,18 +12,58 @@ import org.ivdnt.blacklab.proxy.representation.MetadataValues;
 
 import nl.inl.blacklab.util.PropertySerializeUtil;
 
-class HitComparators {
+public class HitComparators {
 
-    // FIXME: use correct collator
-    final static Comparator<HitMin> baseComparator = Comparator.naturalOrder();
+    /**
+     * Compare sort values using the correct collator for each sort property.
+     *
+     * Sort values are compared with the (in)sensitive collator matching the property,
+     * and in reverse if the property is reversed, so this is consistent with how the
+     * nodes sorted the hits.
+     *
+     * @param hitProp serialized sort property
+     * @return comparator for sort values
+     */
+    static Comparator<String[]> sortValueComparator(String hitProp) {
+        boolean reverseAll = false;
+        if (hitProp.startsWith("-(") && hitProp.endsWith(")")) {
+            reverseAll = true;
+            hitProp = hitProp.substring(2, hitProp.length() - 1);
+        }
+        String[] props = PropertySerializeUtil.isMultiple(hitProp) ?
+                PropertySerializeUtil.splitMultiple(hitProp) : new String[] { hitProp };
+        Collator[] collators = new Collator[props.length];
+        boolean[] reverse = new boolean[props.length];
+        for (int i = 0; i < props.length; i++) {
+            List<String> parts = PropertySerializeUtil.splitPartsList(props[i]);
+            reverse[i] = parts.get(0).startsWith("-") != reverseAll;
+            boolean sensitive = parts.size() <= 2 || parts.get(2).equals("s");
+            collators[i] = sensitive ? Util.DEFAULT_COLLATOR : Util.DEFAULT_COLLATOR_INSENSITIVE;
+        }
+        return (a, b) -> {
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                int j = Math.min(i, collators.length - 1);
+                int cmp = collators[j].compare(a[i], b[i]);
+                if (cmp != 0)
+                    return reverse[j] ? -cmp : cmp;
+            }
+            return Integer.compare(a.length, b.length);
+        };
+    }
 
     public static Comparator<HitMin> deserializeMin(String hitProp) {
+        Comparator<String[]> sortValues = sortValueComparator(hitProp);
         return (a, b) -> {
             if (a.nodeId == b.nodeId) {
                 // Hits from the same node are already in the correct order.
                 return Long.compare(a.indexOnNode, b.indexOnNode);
             }
-            return baseComparator.compare(a, b);
+            if (a.sortValues == null || b.sortValues == null)
+                return a.compareTo(b);
+            int cmp = sortValues.compare(a.sortValues, b.sortValues);
+            // Keep the merge deterministic if the values are equal
+            return cmp != 0 ? cmp : Integer.compare(a.nodeId, b.nodeId);
         };
     }
 
@@ -9,6 +9,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
+import org.ivdnt.blacklab.proxy.ProxyConfig;
+import org.ivdnt.blacklab.proxy.logic.Aggregation;
 import org.ivdnt.blacklab.proxy.logic.Requests;
 import org.ivdnt.blacklab.proxy.representation.AnnotatedField;
 import org.ivdnt.blacklab.proxy.representation.AutocompleteResponse;
@@ -40,6 +42,11 @@ public class ProxyRequest {
         WebserviceOperation op = isCsv ? WebserviceOperation.HITS_CSV : WebserviceOperation.HITS;
         List<Class<?>> resultTypes = isCsv ? List.of(JsonCsvResponse.class) : List.of(TokenFreqList.class, HitsResults.class);
         boolean isXml = !isCsv && !headers.getAcceptableMediaTypes().contains(MediaType.APPLICATION_JSON_TYPE);
+        if (ProxyConfig.get().isDistributed()) {
+            if (isCsv)
+                return csvNotSupported();
+            return Aggregation.hits(client, ProxyConfig.get().getNodes(), corpusName, parameters, method, isXml);
+        }
         return Requests.requestWithPossibleCsvResponse(client, method, corpusName, parameters, op, resultTypes, isXml);
     }
 
@@ -49,7 +56,17 @@ public class ProxyRequest {
         WebserviceOperation op = isCsv ? WebserviceOperation.DOCS_CSV : WebserviceOperation.DOCS;
         List<Class<?>> resultTypes = List.of(isCsv ? JsonCsvResponse.class : DocsResults.class);
         boolean isXml = !isCsv && !headers.getAcceptableMediaTypes().contains(MediaType.APPLICATION_JSON_TYPE);
-        return Requests.requestWithPossibleCsvResponse(client, corpusName, method, parameters, op, resultTypes, isXml);
+        if (ProxyConfig.get().isDistributed()) {
+            if (isCsv)
+                return csvNotSupported();
+            return Aggregation.docs(client, ProxyConfig.get().getNodes(), corpusName, parameters, method, isXml);
+        }
+        return Requests.requestWithPossibleCsvResponse(client, method, corpusName, parameters, op, resultTypes, isXml);
+    }
+
+    private static Response csvNotSupported() {
+        return ProxyResponse.error(Response.Status.NOT_IMPLEMENTED, "NOT_IMPLEMENTED",
+                "CSV results are not supported for a corpus distributed over multiple nodes.");
     }
 
     static Response parsePattern(Client client, String corpusName, MultivaluedMap<String, String> parameters,
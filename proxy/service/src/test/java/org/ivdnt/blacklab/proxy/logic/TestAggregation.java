@@ -0,0 +1,126 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.ivdnt.blacklab.proxy.logic.hits.HitComparators;
+import org.ivdnt.blacklab.proxy.representation.HitMin;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.BigList;
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+import nl.inl.blacklab.webservice.WebserviceParameter;
+
+public class TestAggregation {
+
+    @SafeVarargs
+    private static <T> BigList<T> list(T... values) {
+        return new ObjectBigArrayBigList<>(Arrays.asList(values).iterator());
+    }
+
+    private static HitOrDocGroup group(String identity, long size) {
+        HitOrDocGroup group = new HitOrDocGroup();
+        group.identity = group.identityDisplay = identity;
+        group.size = size;
+        group.subcorpusSize = Map.of("documents", size * 2);
+        return group;
+    }
+
+    private static SearchSummary summary(long hits, long docs, long searchTime) {
+        SearchSummary summary = new SearchSummary();
+        summary.numberOfHits = summary.numberOfHitsRetrieved = hits;
+        summary.numberOfDocs = summary.numberOfDocsRetrieved = docs;
+        summary.searchTime = searchTime;
+        return summary;
+    }
+
+    @Test
+    public void testMerge() {
+        List<BigList<Integer>> lists = List.of(list(1, 4, 7), list(2, 5, 8, 9), list(), list(3, 6));
+        Assert.assertEquals(list(1, 2, 3, 4, 5, 6, 7, 8, 9),
+                Aggregation.merge(lists, Comparator.naturalOrder(), 0, 100));
+        Assert.assertEquals(list(4, 5, 6), Aggregation.merge(lists, Comparator.naturalOrder(), 3, 3));
+        Assert.assertEquals(list(), Aggregation.merge(lists, Comparator.naturalOrder(), 20, 3));
+    }
+
+    @Test
+    public void testMergeUnsorted() {
+        // No sort: results are concatenated in node order
+        List<BigList<Integer>> lists = List.of(list(3, 1), list(2));
+        Assert.assertEquals(list(3, 1, 2), Aggregation.merge(lists, null, 0, 10));
+    }
+
+    @Test
+    public void testMergeStable() {
+        // Equal elements: lower node first, elements from the same node keep their order
+        List<BigList<String>> lists = List.of(list("a1", "b1", "b2"), list("a2", "b3"));
+        Comparator<String> firstChar = Comparator.comparing(s -> s.charAt(0));
+        Assert.assertEquals(list("a1", "a2", "b1", "b2", "b3"), Aggregation.merge(lists, firstChar, 0, 10));
+    }
+
+    @Test
+    public void testMergeHitMinCollator() {
+        // Insensitive sort: case differences are ignored when merging, ties go to lower node
+        HitMin a = new HitMin(0, 0, 0, new String[] { "Appel" });
+        HitMin b = new HitMin(1, 0, 0, new String[] { "appel" });
+        HitMin c = new HitMin(1, 1, 0, new String[] { "Banaan" });
+        HitMin d = new HitMin(0, 1, 0, new String[] { "citroen" });
+        List<BigList<HitMin>> lists = List.of(list(a, d), list(b, c));
+        Assert.assertEquals(list(a, b, c, d),
+                Aggregation.merge(lists, HitComparators.deserializeMin("hit:word:i"), 0, 10));
+        Assert.assertEquals(list(d, c, a, b),
+                Aggregation.merge(List.of(list(d, a), list(c, b)), HitComparators.deserializeMin("-hit:word:i"), 0, 10));
+    }
+
+    @Test
+    public void testMergeGroups() {
+        List<HitOrDocGroup> node1 = List.of(group("b", 5), group("a", 1));
+        List<HitOrDocGroup> node2 = List.of(group("a", 6), group("c", 2));
+        List<HitOrDocGroup> merged = Aggregation.mergeGroups(List.of(node1, node2), "size");
+        Assert.assertEquals(3, merged.size());
+        Assert.assertEquals("a", merged.get(0).identity);
+        Assert.assertEquals(7, merged.get(0).size);
+        Assert.assertEquals(14L, (long) merged.get(0).subcorpusSize.get("documents"));
+        Assert.assertEquals("b", merged.get(1).identity);
+        Assert.assertEquals("c", merged.get(2).identity);
+
+        merged = Aggregation.mergeGroups(List.of(node1, node2), "identity");
+        Assert.assertEquals("a", merged.get(0).identity);
+        Assert.assertEquals("b", merged.get(1).identity);
+        Assert.assertEquals("c", merged.get(2).identity);
+    }
+
+    @Test
+    public void testMergeSummaries() {
+        SearchSummary node1 = summary(10, 3, 100);
+        node1.searchParam = Map.of("first", "0", "number", "30", "patt", "\"a\"");
+        SearchSummary node2 = summary(25, 4, 200);
+        node2.stillCounting = true;
+        SearchSummary merged = Aggregation.mergeSummaries(List.of(node1, node2), 20, 10, 10, 35);
+        Assert.assertEquals(35L, (long) merged.numberOfHits);
+        Assert.assertEquals(35L, (long) merged.numberOfHitsRetrieved);
+        Assert.assertEquals(7, merged.numberOfDocs);
+        Assert.assertEquals(200, merged.searchTime);
+        Assert.assertTrue(merged.stillCounting);
+        Assert.assertEquals(20, merged.windowFirstResult);
+        Assert.assertEquals(10, merged.actualWindowSize);
+        Assert.assertTrue(merged.windowHasPrevious);
+        Assert.assertTrue(merged.windowHasNext);
+        Assert.assertEquals("20", merged.searchParam.get(WebserviceParameter.FIRST_RESULT.value()));
+        Assert.assertEquals("10", merged.searchParam.get(WebserviceParameter.NUMBER_OF_RESULTS.value()));
+        Assert.assertEquals("\"a\"", merged.searchParam.get("patt"));
+    }
+
+    @Test
+    public void testNodeParams() {
+        Map<WebserviceParameter, String> params = Aggregation.nodeParams(Map.of(
+                WebserviceParameter.FIRST_RESULT, "20", WebserviceParameter.NUMBER_OF_RESULTS, "10"));
+        Assert.assertEquals("0", params.get(WebserviceParameter.FIRST_RESULT));
+        Assert.assertEquals("30", params.get(WebserviceParameter.NUMBER_OF_RESULTS));
+    }
+}
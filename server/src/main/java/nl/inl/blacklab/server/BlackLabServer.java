@@ -45,6 +45,8 @@ import nl.inl.blacklab.server.lib.results.ApiVersion;
 import nl.inl.blacklab.server.lib.results.ResponseStreamer;
 import nl.inl.blacklab.server.requesthandlers.RequestHandler;
 import nl.inl.blacklab.server.requesthandlers.UserRequestBls;
+import nl.inl.blacklab.server.search.FairSearchScheduler;
+import nl.inl.blacklab.server.search.RequestClass;
 import nl.inl.blacklab.server.search.SearchManager;
 import nl.inl.blacklab.server.util.ServletUtil;
 import nl.inl.blacklab.server.util.WebserviceUtil;
@@ -245,6 +247,11 @@ public class BlackLabServer extends HttpServlet {
         // For some auth systems, we need to persist the logged-in user, e.g. by setting a cookie
         searchManager.getAuthSystem().persistUser(userRequest, requestHandler.getUser());
 
+        // Tell the search scheduler who our searches are for, and whether the user is waiting for them
+        // (CSV exports are allowed to take longer)
+        FairSearchScheduler.setRequestContext(requestHandler.getUser().uniqueId(),
+                outputType == DataFormat.CSV ? RequestClass.BATCH : RequestClass.INTERACTIVE);
+
         int cacheTime = requestHandler.isCacheAllowed() ? searchManager.config().getCache().getClientCacheTimeSec() : 0;
 
         String rootEl = requestHandler.omitBlackLabResponseRootElement() ? null : ResponseStreamer.BLACKLAB_RESPONSE_ROOT_ELEMENT;
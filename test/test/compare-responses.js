@@ -35,6 +35,7 @@ function sanitizeBlsResponse(response) {
             }
         },
         cacheStatus: 'DELETE',
+        initialization: 'DELETE', // background initialization progress varies
 
         // Corpus information page
         versionInfo: {
@@ -0,0 +1,188 @@
+package nl.inl.blacklab.performance;
+
+import java.io.File;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.DocGroupProperty;
+import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.HitGroupProperty;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.QueryRewriteCache;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.searches.SearchDocGroups;
+import nl.inl.blacklab.searches.SearchDocs;
+import nl.inl.blacklab.searches.SearchEmpty;
+import nl.inl.blacklab.searches.SearchHitGroups;
+import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.util.LuceneUtil;
+
+/**
+ * Replays requests in-process, against an index opened with the BlackLab engine.
+ * <p>
+ * Translates hits and docs requests to searches the way BlackLab Server does (pattern,
+ * filter, sort, group and window), but without BlackLab Server's results cache,
+ * search scheduling or response serialization. The corpus name in the requests is
+ * ignored; everything is replayed against our index.
+ */
+public class EngineReplayTarget implements ReplayTarget {
+
+    /** Context size for sorting/grouping on context (BlackLab Server's default) */
+    private static final ContextSize CONTEXT_SIZE = ContextSize.get(5,
+            ContextSize.maxSnippetLengthFromMaxContextSize(200));
+
+    /** Number of results per page if not specified (BlackLab Server's default) */
+    private static final long DEFAULT_PAGE_SIZE = 50;
+
+    private final BlackLabIndex index;
+
+    private final AnnotatedField field;
+
+    /** Rewrite cache statistics when we were created, so we can report our own hits and misses */
+    private final CacheStats initialRewriteCacheStats;
+
+    /**
+     * Open the index to replay against.
+     *
+     * @param indexDir index directory
+     * @throws ErrorOpeningIndex if the index could not be opened
+     */
+    public EngineReplayTarget(File indexDir) throws ErrorOpeningIndex {
+        this(BlackLab.open(indexDir));
+    }
+
+    /**
+     * Replay against an index.
+     *
+     * @param index index (will be closed when we are closed)
+     */
+    public EngineReplayTarget(BlackLabIndex index) {
+        this.index = index;
+        field = index.mainAnnotatedField();
+        initialRewriteCacheStats = rewriteCache().stats();
+    }
+
+    private QueryRewriteCache rewriteCache() {
+        return index.blackLab().queryRewriteCache();
+    }
+
+    @Override
+    public long execute(QueryLogEntry request) throws InvalidQuery, ParseException {
+        String operation = request.operation();
+        if (operation.equals("hits"))
+            executeHits(request);
+        else if (operation.equals("docs"))
+            executeDocs(request);
+        else
+            throw new UnsupportedOperationException("Operation not supported in-process: " + operation);
+        return -1;
+    }
+
+    private void executeHits(QueryLogEntry request) throws InvalidQuery, ParseException {
+        SearchHits hits = hits(request);
+        if (hits == null)
+            throw new IllegalArgumentException("No pattern given: " + request);
+        long first = request.param("first", 0), number = request.param("number", DEFAULT_PAGE_SIZE);
+        String group = request.param("group");
+        String sort = request.param("sort");
+        if (group != null) {
+            SearchHitGroups groups = hits.groupStats(hitProperty(group), Results.NO_LIMIT);
+            if (sort != null)
+                groups = groups.sort(HitGroupProperty.deserialize(sort));
+            groups.window(first, number).execute();
+        } else {
+            if (sort != null)
+                hits = hits.sort(hitProperty(sort));
+            hits.window(first, number).execute();
+        }
+    }
+
+    private void executeDocs(QueryLogEntry request) throws InvalidQuery, ParseException {
+        SearchHits hits = hits(request);
+        SearchDocs docs;
+        if (hits != null) {
+            docs = hits.docs(-1);
+        } else {
+            Query filter = filter(request);
+            docs = index.search(field).findDocuments(filter == null ? index.getAllRealDocsQuery() : filter);
+        }
+        long first = request.param("first", 0), number = request.param("number", DEFAULT_PAGE_SIZE);
+        String group = request.param("group");
+        String sort = request.param("sort");
+        if (group != null) {
+            SearchDocGroups groups = docs.group(docProperty(group), Results.NO_LIMIT);
+            if (sort != null)
+                groups = groups.sort(DocGroupProperty.deserialize(sort));
+            groups.window(first, number).execute();
+        } else {
+            if (sort != null)
+                docs = docs.sort(docProperty(sort));
+            docs.window(first, number).execute();
+        }
+    }
+
+    /**
+     * Find hits for the request's pattern and filter.
+     *
+     * @param request request
+     * @return hits search, or null if the request has no pattern
+     */
+    private SearchHits hits(QueryLogEntry request) throws InvalidQuery, ParseException {
+        String patt = request.param("patt");
+        if (patt == null)
+            return null;
+        String pattLanguage = request.param("pattlang");
+        if (pattLanguage != null && !pattLanguage.equals("corpusql"))
+            throw new UnsupportedOperationException("Pattern language not supported in-process: " + pattLanguage);
+        SearchEmpty search = index.search(field);
+        return search.find(CorpusQueryLanguageParser.parse(patt).toQuery(search.queryInfo(), filter(request)),
+                SearchSettings.defaults());
+    }
+
+    private Query filter(QueryLogEntry request) throws ParseException {
+        String filter = request.param("filter");
+        if (filter == null)
+            return null;
+        String filterLanguage = request.param("filterlang");
+        if (filterLanguage != null && !filterLanguage.equals("luceneql"))
+            throw new UnsupportedOperationException("Filter language not supported in-process: " + filterLanguage);
+        return LuceneUtil.parseLuceneQuery(index, filter, index.analyzer(), "");
+    }
+
+    private HitProperty hitProperty(String serialized) {
+        HitProperty prop = HitProperty.deserialize(index, field, serialized, CONTEXT_SIZE);
+        if (prop == null)
+            throw new IllegalArgumentException("Unknown hit property: " + serialized);
+        return prop;
+    }
+
+    private DocProperty docProperty(String serialized) {
+        DocProperty prop = DocProperty.deserialize(index, serialized);
+        if (prop == null)
+            throw new IllegalArgumentException("Unknown document property: " + serialized);
+        return prop;
+    }
+
+    @Override
+    public String cacheStatistics() {
+        CacheStats stats = rewriteCache().stats().minus(initialRewriteCacheStats);
+        return String.format("Query rewrite cache: %d hits, %d misses (hit rate %.1f%%)",
+                stats.hitCount(), stats.missCount(), stats.hitRate() * 100);
+    }
+
+    @Override
+    public void close() {
+        index.close();
+    }
+}
@@ -0,0 +1,60 @@
+package nl.inl.blacklab.performance;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Replays requests against a running BlackLab Server.
+ */
+public class HttpReplayTarget implements ReplayTarget {
+
+    /** Search time as reported in (the summary of) a JSON response */
+    private static final Pattern SEARCH_TIME = Pattern.compile("\"searchTime\"\\s*:\\s*(\\d+)");
+
+    /** How much of an error response to include in the exception message */
+    private static final int MAX_ERROR_LENGTH = 200;
+
+    private final String baseUrl;
+
+    private final HttpClient client;
+
+    /**
+     * Create the target.
+     *
+     * @param baseUrl BlackLab Server URL, e.g. http://localhost:8080/blacklab-server/
+     */
+    public HttpReplayTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @Override
+    public long execute(QueryLogEntry request) throws IOException, InterruptedException {
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(baseUrl + request.toPath()))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + ": " +
+                    StringUtils.abbreviate(response.body().replaceAll("\\s+", " "), MAX_ERROR_LENGTH));
+        }
+        Matcher matcher = SEARCH_TIME.matcher(response.body());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    @Override
+    public void close() {
+        // (HttpClient has no close method in Java 11; its threads stop when it's garbage collected)
+    }
+}
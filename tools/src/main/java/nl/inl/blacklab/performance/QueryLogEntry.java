@@ -0,0 +1,214 @@
+package nl.inl.blacklab.performance;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A BlackLab Server request from a query log, to be replayed.
+ * <p>
+ * Two log formats are supported, one request per line:
+ * <ul>
+ *     <li>request URLs, e.g. <code>mycorpus/hits?patt=%22the%22&amp;sort=wordleft</code>
+ *     (optionally preceded by the HTTP method and/or including scheme, host and
+ *     servlet path; everything before the corpus name is ignored)</li>
+ *     <li>the tab-separated query log BlackLab Server records for warming up
+ *     (corpus, pattern language, pattern, filter language, filter); these are replayed
+ *     as hits requests</li>
+ * </ul>
+ * Empty lines and lines starting with # are skipped.
+ */
+public class QueryLogEntry {
+
+    /** Operations we recognize in request paths (the path segment before this is the corpus name) */
+    private static final Set<String> OPERATIONS = Set.of("hits", "docs", "hits-csv", "docs-csv",
+            "termfreq", "autocomplete", "fields", "status", "sharing");
+
+    /** Parameters that make a request more expensive and distinguish request types */
+    private static final List<String> TYPE_PARAMETERS = List.of("filter", "sort", "group");
+
+    /** HTTP methods that may precede the URL */
+    private static final Set<String> METHODS = Set.of("GET", "POST");
+
+    /** Number of fields in the warmup query log format */
+    private static final int WARMUP_LOG_FIELDS = 5;
+
+    /**
+     * Parse a line from a query log.
+     *
+     * @param line the line
+     * @return the request, or null if this line should be skipped
+     */
+    public static QueryLogEntry parse(String line) {
+        line = line.trim();
+        if (line.isEmpty() || line.charAt(0) == '#')
+            return null;
+        if (line.indexOf('\t') >= 0)
+            return parseWarmupLogLine(line);
+        return parseUrl(line);
+    }
+
+    private static QueryLogEntry parseWarmupLogLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != WARMUP_LOG_FIELDS)
+            throw new IllegalArgumentException("Expected " + WARMUP_LOG_FIELDS + " tab-separated fields: " + line);
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("pattlang", fields[1]);
+        params.put("patt", fields[2]);
+        if (!fields[4].isEmpty()) {
+            if (!fields[3].isEmpty())
+                params.put("filterlang", fields[3]);
+            params.put("filter", fields[4]);
+        }
+        return new QueryLogEntry(fields[0], "hits", params);
+    }
+
+    private static QueryLogEntry parseUrl(String line) {
+        String[] parts = line.split("\\s+");
+        String url = parts.length > 1 && METHODS.contains(parts[0].toUpperCase()) ? parts[1] : parts[0];
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd >= 0) {
+            // Skip scheme and host
+            int pathStart = url.indexOf('/', schemeEnd + 3);
+            url = pathStart < 0 ? "" : url.substring(pathStart);
+        }
+        String path = StringUtils.substringBefore(url, "?");
+        String query = url.indexOf('?') >= 0 ? StringUtils.substringAfter(url, "?") : "";
+
+        // Find the corpus name and operation
+        List<String> segments = new ArrayList<>();
+        for (String segment: path.split("/")) {
+            if (!segment.isEmpty())
+                segments.add(decode(segment));
+        }
+        if (segments.isEmpty())
+            throw new IllegalArgumentException("No corpus in request: " + line);
+        int corpusIndex = segments.size() - 1; // corpus info request if we don't find an operation
+        for (int i = 1; i < segments.size(); i++) {
+            if (OPERATIONS.contains(segments.get(i))) {
+                corpusIndex = i - 1;
+                break;
+            }
+        }
+        String operation = String.join("/", segments.subList(corpusIndex + 1, segments.size()));
+
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String param: query.split("&")) {
+            if (!param.isEmpty()) {
+                String[] nameValue = param.split("=", 2);
+                params.put(decode(nameValue[0]), nameValue.length > 1 ? decode(nameValue[1]) : "");
+            }
+        }
+        return new QueryLogEntry(segments.get(corpusIndex), operation, params);
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /** Corpus to search */
+    private final String corpus;
+
+    /** Operation, e.g. "hits" or "docs" (empty for corpus info); may include more path segments, e.g. a document pid */
+    private final String operation;
+
+    /** Request parameters */
+    private final Map<String, String> params;
+
+    public QueryLogEntry(String corpus, String operation, Map<String, String> params) {
+        this.corpus = corpus;
+        this.operation = operation;
+        this.params = Collections.unmodifiableMap(params);
+    }
+
+    public String corpus() {
+        return corpus;
+    }
+
+    public String operation() {
+        return operation;
+    }
+
+    public Map<String, String> params() {
+        return params;
+    }
+
+    /**
+     * Get a request parameter.
+     *
+     * @param name parameter name
+     * @return value, or null if not present (or empty)
+     */
+    public String param(String name) {
+        return StringUtils.defaultIfEmpty(params.get(name), null);
+    }
+
+    /**
+     * Get a numeric request parameter.
+     *
+     * @param name parameter name
+     * @param defaultValue value to use if not present
+     * @return value
+     */
+    public long param(String name, long defaultValue) {
+        String value = param(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * What type of request is this?
+     *
+     * The type is the operation plus the expensive parameters used, e.g. "hits" or "hits+filter+group",
+     * so we can report statistics per type. Any path segments after the first (e.g. a document pid) are
+     * replaced with *.
+     *
+     * @return request type
+     */
+    public String requestType() {
+        String[] segments = operation.split("/");
+        StringBuilder type = new StringBuilder(segments[0].isEmpty() ? "corpus" : segments[0]);
+        if (segments.length > 1)
+            type.append("/*");
+        for (String param: TYPE_PARAMETERS) {
+            if (param(param) != null)
+                type.append("+").append(param);
+        }
+        return type.toString();
+    }
+
+    /**
+     * Get the request path relative to the server's base URL.
+     *
+     * @return path and query string, e.g. "mycorpus/hits?patt=..." (or "mycorpus/?..." for corpus info)
+     */
+    public String toPath() {
+        StringBuilder path = new StringBuilder(encode(corpus)).append("/");
+        if (!operation.isEmpty())
+            path.append(Arrays.stream(operation.split("/")).map(QueryLogEntry::encode).collect(Collectors.joining("/")));
+        String separator = "?";
+        for (Map.Entry<String, String> param: params.entrySet()) {
+            path.append(separator).append(encode(param.getKey())).append("=").append(encode(param.getValue()));
+            separator = "&";
+        }
+        return path.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toPath();
+    }
+}
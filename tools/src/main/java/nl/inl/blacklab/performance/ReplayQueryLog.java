@@ -0,0 +1,321 @@
+package nl.inl.blacklab.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.util.FileUtil;
+
+/**
+ * Replays a log of BlackLab Server requests and reports how the server performed.
+ * <p>
+ * Requests (patterns, filters, sort, group and window parameters; see {@link QueryLogEntry}
+ * for the log formats) are replayed against a running BlackLab Server or in-process against
+ * an index, by a configurable number of concurrent clients. For each type of request (e.g.
+ * grouped hits), latency percentiles, throughput, the fraction of requests that were
+ * (probably) served from the cache and garbage collection time are reported.
+ * <p>
+ * To test without a corpus or query log of your own, a synthetic corpus and query log can
+ * be generated (see {@link SyntheticCorpus} and {@link SyntheticQueryLog}).
+ */
+public class ReplayQueryLog {
+
+    /** Latency percentiles to report */
+    private static final double[] PERCENTILES = { 50, 90, 99, 100 };
+
+    /** Maximum number of errors to log in detail */
+    private static final int MAX_ERRORS_TO_LOG = 10;
+
+    /** Synthetic corpus: document length, vocabulary size and seed */
+    private static final int SYNTHETIC_DOC_LENGTH = 2000, SYNTHETIC_VOCABULARY_SIZE = 50_000, SYNTHETIC_SEED = 1;
+
+    public static void main(String[] args) throws ErrorOpeningIndex, IOException, InterruptedException {
+        int concurrency = 1;
+        int repeat = 1;
+        int warmup = 0;
+        File generateDir = null;
+        int syntheticDocs = 500;
+        int syntheticRequests = 2000;
+        List<String> fileArgs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i].trim();
+                if (arg.startsWith("--")) {
+                    String name = arg.substring(2);
+                    if (i + 1 == args.length) {
+                        System.err.println("--" + name + " option needs argument");
+                        usage();
+                        return;
+                    }
+                    String value = args[++i];
+                    switch (name) {
+                    case "concurrency":
+                        concurrency = Integer.parseInt(value);
+                        break;
+                    case "repeat":
+                        repeat = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "generate":
+                        generateDir = new File(value);
+                        break;
+                    case "docs":
+                        syntheticDocs = Integer.parseInt(value);
+                        break;
+                    case "requests":
+                        syntheticRequests = Integer.parseInt(value);
+                        break;
+                    default:
+                        System.err.println("Illegal option: " + arg);
+                        usage();
+                        return;
+                    }
+                } else {
+                    fileArgs.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Options need an integer argument (except --generate)");
+            usage();
+            return;
+        }
+        if (fileArgs.size() > 2 || (generateDir == null && fileArgs.size() < 2) || concurrency < 1 || repeat < 1) {
+            usage();
+            return;
+        }
+
+        // Determine target and query log, generating them if requested
+        ReplayTarget target = null;
+        File logFile;
+        if (generateDir != null) {
+            if (!generateDir.exists() && !generateDir.mkdirs()) {
+                System.err.println("Could not create directory: " + generateDir);
+                return;
+            }
+            File indexDir = new File(generateDir, "index");
+            System.err.print("Opening synthetic corpus (generating it if necessary)... ");
+            SyntheticCorpus corpus = new SyntheticCorpus(syntheticDocs, SYNTHETIC_DOC_LENGTH,
+                    SYNTHETIC_VOCABULARY_SIZE, SYNTHETIC_SEED);
+            if (fileArgs.isEmpty())
+                target = new EngineReplayTarget(corpus.open(indexDir));
+            else
+                corpus.open(indexDir).close(); // just make sure it exists
+            System.err.println("done: " + indexDir);
+            logFile = new File(generateDir, "queries.txt");
+            if (fileArgs.size() < 2 && !logFile.exists()) {
+                new SyntheticQueryLog(syntheticDocs, SYNTHETIC_VOCABULARY_SIZE, SYNTHETIC_SEED)
+                        .write(logFile, syntheticRequests);
+                System.err.println("Generated query log: " + logFile);
+            }
+        } else {
+            logFile = null;
+        }
+        if (fileArgs.size() == 2)
+            logFile = new File(fileArgs.get(1));
+        if (!logFile.exists()) {
+            System.err.println("Query log not found: " + logFile);
+            usage();
+            return;
+        }
+        if (target == null) {
+            String targetArg = fileArgs.get(0);
+            if (targetArg.startsWith("http://") || targetArg.startsWith("https://")) {
+                target = new HttpReplayTarget(targetArg);
+            } else {
+                File indexDir = new File(targetArg);
+                if (!indexDir.isDirectory()) {
+                    System.err.println("Index directory not found: " + targetArg);
+                    usage();
+                    return;
+                }
+                target = new EngineReplayTarget(indexDir);
+            }
+        }
+
+        List<QueryLogEntry> log = new ArrayList<>();
+        for (String line: FileUtil.readLines(logFile)) {
+            try {
+                QueryLogEntry request = QueryLogEntry.parse(line);
+                if (request != null)
+                    log.add(request);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping invalid line: " + e.getMessage());
+            }
+        }
+
+        try (ReplayTarget t = target) {
+            new ReplayQueryLog(t, concurrency).run(log, repeat, warmup);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("\nUsage: " + ReplayQueryLog.class.getSimpleName() + " [options] <target> <querylog>\n"
+                + "       " + ReplayQueryLog.class.getSimpleName() + " [options] --generate <dir> [<target> [<querylog>]]\n"
+                + "\n"
+                + "<target> is either the URL of a running BlackLab Server (e.g. http://localhost:8080/blacklab-server/)\n"
+                + "or an index directory to replay against in-process (hits and docs requests only).\n"
+                + "<querylog> contains BlackLab Server request URLs (e.g. mycorpus/hits?patt=...&sort=...), one per line,\n"
+                + "or is a query log recorded by BlackLab Server for warming up (tab-separated).\n"
+                + "\n"
+                + "Options:\n"
+                + "--concurrency <n>  number of concurrent clients (default 1)\n"
+                + "--repeat <n>       number of times to replay the log (default 1)\n"
+                + "--warmup <n>       first replay this many requests from the log without measuring (default 0)\n"
+                + "--generate <dir>   generate a synthetic corpus (<dir>/index) and query log (<dir>/queries.txt)\n"
+                + "                   if they don't exist yet, and replay against them unless specified otherwise\n"
+                + "                   (requests in the generated log are for corpus '" + SyntheticQueryLog.CORPUS_NAME + "')\n"
+                + "--docs <n>         number of documents in the synthetic corpus (default 500)\n"
+                + "--requests <n>     number of requests in the synthetic query log (default 2000)\n");
+    }
+
+    private final ReplayTarget target;
+
+    private final int concurrency;
+
+    /** Statistics per request type */
+    private final Map<String, ReplayStatistics> statistics = new ConcurrentHashMap<>();
+
+    /** Number of errors so far */
+    private final AtomicInteger errors = new AtomicInteger();
+
+    ReplayQueryLog(ReplayTarget target, int concurrency) {
+        this.target = target;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Replay the log and report the results.
+     *
+     * @param log requests to replay
+     * @param repeat number of times to replay the log
+     * @param warmup number of requests to replay first without measuring
+     */
+    void run(List<QueryLogEntry> log, int repeat, int warmup) throws InterruptedException {
+        if (warmup > 0) {
+            System.err.println("Warming up (" + Math.min(warmup, log.size()) + " requests)...");
+            replay(log.subList(0, Math.min(warmup, log.size())), false);
+        }
+        List<QueryLogEntry> requests = new ArrayList<>();
+        for (int i = 0; i < repeat; i++)
+            requests.addAll(log);
+        System.err.println("Replaying " + requests.size() + " requests with " + concurrency + " concurrent client(s)...");
+        Map<String, long[]> gcBefore = gcStats();
+        long start = System.nanoTime();
+        replay(requests, true);
+        double elapsedSec = (System.nanoTime() - start) / 1_000_000_000.0;
+        report(elapsedSec, gcBefore, gcStats());
+    }
+
+    /**
+     * Replay requests using our number of concurrent clients.
+     *
+     * @param requests requests to replay (in order)
+     * @param measure record statistics?
+     */
+    private void replay(List<QueryLogEntry> requests, boolean measure) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread client = new Thread(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests.size()) {
+                    replay(requests.get(index), measure);
+                }
+            }, "ReplayClient-" + i);
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client: clients)
+            client.join();
+    }
+
+    private void replay(QueryLogEntry request, boolean measure) {
+        ReplayStatistics stats = statistics.computeIfAbsent(request.requestType(), k -> new ReplayStatistics());
+        long gcTimeBefore = totalGcTimeMs();
+        long start = System.nanoTime();
+        try {
+            long searchTime = target.execute(request);
+            long latency = System.nanoTime() - start;
+            if (measure)
+                stats.add(latency, searchTime, totalGcTimeMs() - gcTimeBefore);
+        } catch (Exception e) {
+            if (measure)
+                stats.addError();
+            if (errors.incrementAndGet() <= MAX_ERRORS_TO_LOG) {
+                System.err.println("Error replaying " + request + ": " + e);
+                if (errors.get() == MAX_ERRORS_TO_LOG)
+                    System.err.println("(not logging any more errors)");
+            }
+        }
+    }
+
+    private void report(double elapsedSec, Map<String, long[]> gcBefore, Map<String, long[]> gcAfter) {
+        String format = "%-28s %7s %6s %8s %7s %8s %8s %8s %8s %8s%n";
+        System.out.printf(format, "Request type", "Count", "Errors", "Req/s", "Cached",
+                "p50 ms", "p90 ms", "p99 ms", "Max ms", "GC ms");
+        ReplayStatistics total = new ReplayStatistics();
+        Map<String, ReplayStatistics> sorted = new TreeMap<>(statistics);
+        for (Map.Entry<String, ReplayStatistics> e: sorted.entrySet()) {
+            if (e.getValue().count() > 0) { // (may only have been used during warmup)
+                reportLine(format, e.getKey(), e.getValue(), elapsedSec);
+                total.addAll(e.getValue());
+            }
+        }
+        reportLine(format, "TOTAL", total, elapsedSec);
+        System.out.println();
+
+        System.out.printf("Elapsed: %.1f s%n", elapsedSec);
+        for (Map.Entry<String, long[]> e: gcAfter.entrySet()) {
+            long[] before = gcBefore.getOrDefault(e.getKey(), new long[2]);
+            System.out.printf("GC %s: %d collections, %d ms%n", e.getKey(), e.getValue()[0] - before[0],
+                    e.getValue()[1] - before[1]);
+        }
+        if (target instanceof HttpReplayTarget) {
+            System.out.println("(GC statistics are for this process, not the server. Cached: requests that took " +
+                    "less time than their reported searchTime.)");
+        }
+        String cacheStatistics = target.cacheStatistics();
+        if (cacheStatistics != null)
+            System.out.println(cacheStatistics);
+    }
+
+    private static void reportLine(String format, String type, ReplayStatistics stats, double elapsedSec) {
+        double[] latencies = stats.latencyPercentilesMs(PERCENTILES);
+        double cacheHitRate = stats.cacheHitRate();
+        System.out.printf(format, type, stats.count(), stats.errors(),
+                String.format("%.1f", stats.count() / elapsedSec),
+                Double.isNaN(cacheHitRate) ? "-" : String.format("%.0f%%", cacheHitRate * 100),
+                formatMs(latencies[0]), formatMs(latencies[1]), formatMs(latencies[2]), formatMs(latencies[3]),
+                stats.gcTimeMs());
+    }
+
+    private static String formatMs(double ms) {
+        return Double.isNaN(ms) ? "-" : String.format("%.1f", ms);
+    }
+
+    /** @return collection count and time (ms) per garbage collector */
+    private static Map<String, long[]> gcStats() {
+        Map<String, long[]> stats = new TreeMap<>();
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+            stats.put(gc.getName(), new long[] { gc.getCollectionCount(), gc.getCollectionTime() });
+        return stats;
+    }
+
+    /** @return total garbage collection time so far (ms) */
+    private static long totalGcTimeMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime()); // (-1 if not supported)
+        return total;
+    }
+}
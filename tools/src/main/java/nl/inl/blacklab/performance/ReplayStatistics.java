@@ -0,0 +1,118 @@
+package nl.inl.blacklab.performance;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Latencies and other statistics for one type of request during a replay.
+ * <p>
+ * Thread-safe.
+ */
+public class ReplayStatistics {
+
+    /** Latencies of successful requests (ns) */
+    private final LongArrayList latencies = new LongArrayList();
+
+    /** Number of failed requests */
+    private long errors = 0;
+
+    /** Number of requests for which the target reported a search time */
+    private long searchTimeKnown = 0;
+
+    /** Number of requests that were probably served from the target's cache (see {@link #add(long, long, long)}) */
+    private long cached = 0;
+
+    /** Garbage collection time in this process while requests were running (ms) */
+    private long gcTimeMs = 0;
+
+    /**
+     * Record a successful request.
+     *
+     * A request was probably served from the cache if it took less time than the search time
+     * reported by the target, which is how long the search originally took. Of course we can only
+     * detect this for searches that take longer than the overhead of a request.
+     *
+     * @param latencyNs how long the request took (ns)
+     * @param searchTimeMs search time reported by the target (ms), or -1 if unknown
+     * @param gcTimeMs garbage collection time in this process while the request was running (ms)
+     */
+    public synchronized void add(long latencyNs, long searchTimeMs, long gcTimeMs) {
+        latencies.add(latencyNs);
+        this.gcTimeMs += gcTimeMs;
+        if (searchTimeMs >= 0) {
+            searchTimeKnown++;
+            if (latencyNs < searchTimeMs * 1_000_000)
+                cached++;
+        }
+    }
+
+    /** Record a failed request. */
+    public synchronized void addError() {
+        errors++;
+    }
+
+    /**
+     * Add another request type's statistics to ours (e.g. to calculate totals).
+     *
+     * @param other statistics to add
+     */
+    public synchronized void addAll(ReplayStatistics other) {
+        synchronized (other) {
+            latencies.addAll(other.latencies);
+            errors += other.errors;
+            searchTimeKnown += other.searchTimeKnown;
+            cached += other.cached;
+            gcTimeMs += other.gcTimeMs;
+        }
+    }
+
+    public synchronized long count() {
+        return latencies.size() + errors;
+    }
+
+    public synchronized long errors() {
+        return errors;
+    }
+
+    /**
+     * Garbage collection time while requests were running.
+     *
+     * If requests run concurrently, a collection is counted for each request it paused.
+     *
+     * @return GC time (ms)
+     */
+    public synchronized long gcTimeMs() {
+        return gcTimeMs;
+    }
+
+    /**
+     * Fraction of successful requests that were probably served from the cache.
+     *
+     * @return fraction, or NaN if the target didn't report search times
+     */
+    public synchronized double cacheHitRate() {
+        return searchTimeKnown == 0 ? Double.NaN : (double) cached / searchTimeKnown;
+    }
+
+    /**
+     * Get latency percentiles of successful requests.
+     *
+     * @param percentiles percentiles to calculate, e.g. 50, 90, 99
+     * @return latencies in ms (nearest rank), or NaN if there were no successful requests
+     */
+    public synchronized double[] latencyPercentilesMs(double... percentiles) {
+        long[] sorted = latencies.toLongArray();
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (sorted.length == 0) {
+                result[i] = Double.NaN;
+            } else {
+                int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+                result[i] = sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1_000_000.0;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package nl.inl.blacklab.performance;
+
+import java.io.Closeable;
+
+/**
+ * Something we can replay query log requests against.
+ *
+ * Implementations must be thread-safe, as requests are replayed concurrently.
+ */
+public interface ReplayTarget extends Closeable {
+
+    /**
+     * Execute a request and wait for the response.
+     *
+     * @param request request to execute
+     * @return search time reported by the target in ms (e.g. BlackLab Server's searchTime),
+     *   or -1 if not known. Used to detect cached results.
+     * @throws Exception if the request failed
+     */
+    long execute(QueryLogEntry request) throws Exception;
+
+    /**
+     * Describe any caching statistics the target keeps, e.g. for the report.
+     *
+     * @return description, or null if there are none
+     */
+    default String cacheStatistics() {
+        return null;
+    }
+}
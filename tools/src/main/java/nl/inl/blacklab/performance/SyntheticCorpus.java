@@ -0,0 +1,226 @@
+package nl.inl.blacklab.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.index.IndexListener;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndex.IndexType;
+import nl.inl.blacklab.search.BlackLabIndexWriter;
+
+/**
+ * Generates a synthetic corpus and indexes it (integrated index format).
+ * <p>
+ * Words are drawn from a Zipfian vocabulary, so there are a few very frequent terms and
+ * a long tail of rare ones. Documents are long and contain many inline tags: every
+ * document is divided into sentences (&lt;s/&gt;), and many short spans are marked as
+ * named entities (&lt;entity/&gt;). Lemma and part of speech are derived from the word.
+ * <p>
+ * Generation is deterministic for the same parameters, so the index is reused if it
+ * already exists in the index directory (e.g. from a previous benchmark fork or replay run).
+ * <p>
+ * Documents use the "testformat" input format included with BlackLab.
+ */
+public class SyntheticCorpus {
+
+    /** Input format of our documents (included with BlackLab) */
+    private static final String FORMAT_NAME = "testformat";
+
+    /** Created in the index directory after indexing has finished */
+    private static final String COMPLETE_MARKER_FILE = "synthetic-corpus-complete";
+
+    /** System property to override where the index is created */
+    private static final String PROP_INDEX_DIR = "blacklab.benchmark.indexDir";
+
+    /** Syllables to build word forms from */
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "te", "vo", "di", "pa",
+        "be", "go", "hu", "ji", "fa", "ze", "wo", "ri", "ma", "to"
+    };
+
+    /** Parts of speech (not uniformly distributed, see {@link #partOfSpeech(int)}) */
+    private static final String[] PARTS_OF_SPEECH = { "art", "nou", "vrb", "adj", "pre", "pro", "adv", "con" };
+
+    /** Minimum and maximum sentence length */
+    private static final int MIN_SENTENCE_LENGTH = 5, MAX_SENTENCE_LENGTH = 25;
+
+    /** Probability of a named entity starting at a token */
+    private static final double ENTITY_PROBABILITY = 0.15;
+
+    /** Maximum length of a named entity */
+    private static final int MAX_ENTITY_LENGTH = 4;
+
+    /** Zipf exponent for the vocabulary */
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    /**
+     * Get the word form for a vocabulary rank.
+     *
+     * Word forms are built from syllables, so regular expressions on prefixes match
+     * different numbers of terms, like in a real vocabulary.
+     *
+     * @param rank vocabulary rank (0 is most frequent)
+     * @return word form
+     */
+    public static String wordForm(int rank) {
+        StringBuilder word = new StringBuilder();
+        int n = rank;
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+
+    /** Lemma for a word: groups of 3 word forms share a lemma */
+    private static String lemma(int rank) {
+        return wordForm(rank - rank % 3);
+    }
+
+    /** Part of speech for a word: articles and prepositions are mostly frequent words */
+    private static String partOfSpeech(int rank) {
+        if (rank < 8)
+            return rank < 4 ? "art" : "pre";
+        return PARTS_OF_SPEECH[1 + rank % (PARTS_OF_SPEECH.length - 1)];
+    }
+
+    private final int numberOfDocs;
+
+    private final int docLength;
+
+    private final int vocabularySize;
+
+    private final long seed;
+
+    /**
+     * Define a synthetic corpus.
+     *
+     * @param numberOfDocs number of documents
+     * @param docLength document length in tokens
+     * @param vocabularySize number of different word forms
+     * @param seed seed for the random generator
+     */
+    public SyntheticCorpus(int numberOfDocs, int docLength, int vocabularySize, long seed) {
+        this.numberOfDocs = numberOfDocs;
+        this.docLength = docLength;
+        this.vocabularySize = vocabularySize;
+        this.seed = seed;
+    }
+
+    /**
+     * Generate a document.
+     *
+     * @param docNumber document number
+     * @return document XML
+     */
+    public String document(int docNumber) {
+        Random random = new Random(seed * 31 + docNumber);
+        ZipfDistribution vocabulary = new ZipfDistribution(vocabularySize, ZIPF_EXPONENT, random);
+        StringBuilder doc = new StringBuilder();
+        doc.append("<doc pid='").append(docNumber).append("' title='Document ").append(docNumber).append("'>");
+        int tokens = 0;
+        while (tokens < docLength) {
+            int sentenceLength = Math.min(docLength - tokens,
+                    MIN_SENTENCE_LENGTH + random.nextInt(MAX_SENTENCE_LENGTH - MIN_SENTENCE_LENGTH + 1));
+            doc.append("<s>");
+            int entityEnd = -1;
+            for (int i = 0; i < sentenceLength; i++) {
+                if (entityEnd < 0 && random.nextDouble() < ENTITY_PROBABILITY) {
+                    entityEnd = Math.min(sentenceLength, i + 1 + random.nextInt(MAX_ENTITY_LENGTH));
+                    doc.append("<entity>");
+                }
+                int rank = vocabulary.next();
+                String word = wordForm(rank);
+                if (i == 0)
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                doc.append("<w l='").append(lemma(rank)).append("' p='").append(partOfSpeech(rank)).append("'>")
+                        .append(word).append("</w>");
+                if (i + 1 == entityEnd) {
+                    doc.append("</entity>");
+                    entityEnd = -1;
+                }
+                doc.append(i + 1 < sentenceLength ? " " : ". ");
+            }
+            doc.append("</s>");
+            tokens += sentenceLength;
+        }
+        doc.append("</doc>");
+        return doc.toString();
+    }
+
+    /**
+     * Where to create the index.
+     *
+     * Defaults to a directory in the system's temp dir, named after our parameters.
+     *
+     * @return the index directory
+     */
+    public File indexDir() {
+        String name = String.format("blacklab-benchmark-%d-%d-%d-%d", numberOfDocs, docLength, vocabularySize, seed);
+        String dir = System.getProperty(PROP_INDEX_DIR);
+        return dir == null ? new File(System.getProperty("java.io.tmpdir"), name) : new File(dir, name);
+    }
+
+    /**
+     * Open the index, creating it first if necessary.
+     *
+     * @return the index
+     */
+    public BlackLabIndex open() {
+        return open(indexDir());
+    }
+
+    /**
+     * Open the index in a specific directory, creating it first if necessary.
+     *
+     * @param indexDir the index directory
+     * @return the index
+     */
+    public BlackLabIndex open(File indexDir) {
+        File marker = new File(indexDir, COMPLETE_MARKER_FILE);
+        try {
+            if (!marker.exists()) {
+                create(indexDir);
+                if (!marker.createNewFile())
+                    throw new IOException("Could not create " + marker);
+            }
+            return BlackLab.open(indexDir);
+        } catch (ErrorOpeningIndex | DocumentFormatNotFound | IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private void create(File indexDir) throws ErrorOpeningIndex, DocumentFormatNotFound {
+        if (!indexDir.exists() && !indexDir.mkdirs())
+            throw new BlackLabRuntimeException("Could not create " + indexDir);
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(indexDir, true, FORMAT_NAME, null,
+                IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        indexer.setListener(new IndexListener() {
+            @Override
+            public boolean errorOccurred(Throwable e, String path, File f) {
+                // (FileProcessor doesn't like it if we throw here; stop and report afterwards)
+                error.compareAndSet(null, e);
+                return false; // don't continue
+            }
+        });
+        try {
+            for (int i = 0; i < numberOfDocs && error.get() == null; i++) {
+                indexer.index("doc" + i + ".xml", document(i).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            indexer.close();
+        }
+        if (error.get() != null)
+            throw new BlackLabRuntimeException("Error indexing synthetic corpus", error.get());
+    }
+}
@@ -0,0 +1,151 @@
+package nl.inl.blacklab.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a query log for a {@link SyntheticCorpus}.
+ * <p>
+ * A pool of different requests is generated first: hits and docs requests for single
+ * frequent or rare words, lemmas, prefixes, part of speech sequences (with and without
+ * gaps), named entities and sentences, some of them filtered on document, sorted, grouped
+ * or for a later page of results. Requests are then drawn from this pool with a Zipfian
+ * distribution, so popular requests are repeated (like in a real log, where caching helps)
+ * and there is a long tail of requests that occur only once.
+ * <p>
+ * Generation is deterministic for the same parameters.
+ */
+public class SyntheticQueryLog {
+
+    /** Corpus name to use in the requests */
+    public static final String CORPUS_NAME = "synthetic";
+
+    /** Number of different requests per request in the log */
+    private static final double DISTINCT_REQUEST_FRACTION = 0.3;
+
+    /** Probabilities of the different variations of a request */
+    private static final double DOCS_PROBABILITY = 0.2, FILTER_PROBABILITY = 0.3, SORT_PROBABILITY = 0.2,
+            GROUP_PROBABILITY = 0.2, LATER_PAGE_PROBABILITY = 0.2;
+
+    /** Parts of speech to search for (see SyntheticCorpus) */
+    private static final String[] PARTS_OF_SPEECH = { "art", "nou", "vrb", "adj", "pre", "adv" };
+
+    /** Properties to sort hits by */
+    private static final String[] HIT_SORTS = { "hit:word:i", "left:word:i", "right:lemma" };
+
+    /** Properties to group hits by */
+    private static final String[] HIT_GROUPS = { "hit:word:i", "hit:pos", "left:pos" };
+
+    /** Properties to sort groups by */
+    private static final String[] GROUP_SORTS = { "size", "identity" };
+
+    private final int numberOfDocs;
+
+    private final int vocabularySize;
+
+    private final long seed;
+
+    /**
+     * Define a query log.
+     *
+     * @param numberOfDocs number of documents in the corpus
+     * @param vocabularySize number of different word forms in the corpus
+     * @param seed seed for the random generator
+     */
+    public SyntheticQueryLog(int numberOfDocs, int vocabularySize, long seed) {
+        this.numberOfDocs = numberOfDocs;
+        this.vocabularySize = vocabularySize;
+        this.seed = seed;
+    }
+
+    /**
+     * Generate the requests.
+     *
+     * @param numberOfRequests number of requests to generate
+     * @return the requests
+     */
+    public List<QueryLogEntry> generate(int numberOfRequests) {
+        Random random = new Random(seed);
+        List<QueryLogEntry> pool = new ArrayList<>();
+        int poolSize = Math.max(1, (int) (numberOfRequests * DISTINCT_REQUEST_FRACTION));
+        for (int i = 0; i < poolSize; i++)
+            pool.add(request(random));
+        ZipfDistribution popularity = new ZipfDistribution(poolSize, 1.0, random);
+        List<QueryLogEntry> requests = new ArrayList<>();
+        for (int i = 0; i < numberOfRequests; i++)
+            requests.add(pool.get(popularity.next()));
+        return requests;
+    }
+
+    /**
+     * Generate the requests and write them to a file, one request URL per line.
+     *
+     * @param file file to write
+     * @param numberOfRequests number of requests to generate
+     */
+    public void write(File file, int numberOfRequests) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            out.println("# Synthetic query log (" + numberOfRequests + " requests, seed " + seed + ")");
+            for (QueryLogEntry request: generate(numberOfRequests))
+                out.println(request.toPath());
+        }
+    }
+
+    private QueryLogEntry request(Random random) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("patt", pattern(random));
+        if (random.nextDouble() < FILTER_PROBABILITY) {
+            // pids are document numbers, so this selects about one in ten documents
+            params.put("filter", "pid:" + (1 + random.nextInt(Math.min(9, Math.max(1, numberOfDocs - 1)))) + "*");
+        }
+        String operation = random.nextDouble() < DOCS_PROBABILITY ? "docs" : "hits";
+        if (operation.equals("hits") && random.nextDouble() < GROUP_PROBABILITY) {
+            params.put("group", pick(HIT_GROUPS, random));
+            params.put("sort", pick(GROUP_SORTS, random));
+        } else if (random.nextDouble() < SORT_PROBABILITY) {
+            params.put("sort", operation.equals("hits") ? pick(HIT_SORTS, random) : "numhits");
+        }
+        if (random.nextDouble() < LATER_PAGE_PROBABILITY)
+            params.put("first", Integer.toString(50 * (1 + random.nextInt(5))));
+        params.put("number", "50");
+        return new QueryLogEntry(CORPUS_NAME, operation, params);
+    }
+
+    private String pattern(Random random) {
+        switch (random.nextInt(8)) {
+        case 0:
+            return "'" + SyntheticCorpus.wordForm(random.nextInt(Math.min(20, vocabularySize))) + "'";
+        case 1:
+            return "'" + SyntheticCorpus.wordForm(rareRank(random)) + "'";
+        case 2:
+            return "[lemma='" + SyntheticCorpus.wordForm(rareRank(random) / 3 * 3) + "']";
+        case 3:
+            // Prefix of a frequent word: matches many terms
+            String word = SyntheticCorpus.wordForm(random.nextInt(Math.min(400, vocabularySize)));
+            return "'" + word.substring(0, Math.min(word.length(), 4)) + ".*'";
+        case 4:
+            return "[pos='" + pick(PARTS_OF_SPEECH, random) + "'] [pos='" + pick(PARTS_OF_SPEECH, random) + "']";
+        case 5:
+            return "[pos='adj'] []{1," + (1 + random.nextInt(3)) + "} [pos='nou']";
+        case 6:
+            return "<entity/> containing '" + SyntheticCorpus.wordForm(random.nextInt(Math.min(100, vocabularySize))) + "'";
+        default:
+            return "'" + SyntheticCorpus.wordForm(random.nextInt(Math.min(50, vocabularySize))) + "' within <s/>";
+        }
+    }
+
+    private int rareRank(Random random) {
+        return vocabularySize / 10 + random.nextInt(vocabularySize - vocabularySize / 10);
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
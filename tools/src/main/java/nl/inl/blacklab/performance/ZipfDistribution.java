@@ -0,0 +1,46 @@
+package nl.inl.blacklab.performance;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws random ranks with a Zipfian distribution.
+ * <p>
+ * Rank r (0-based) is drawn with a probability proportional to 1 / (r + 1)^exponent,
+ * like word frequencies in natural language.
+ */
+public class ZipfDistribution {
+
+    /** Cumulative (unnormalized) probabilities per rank */
+    private final double[] cumulative;
+
+    private final Random random;
+
+    /**
+     * Create the distribution.
+     *
+     * @param numberOfRanks number of different values to draw
+     * @param exponent Zipf exponent (about 1 for natural language)
+     * @param random source of randomness
+     */
+    public ZipfDistribution(int numberOfRanks, double exponent, Random random) {
+        cumulative = new double[numberOfRanks];
+        double total = 0;
+        for (int i = 0; i < numberOfRanks; i++) {
+            total += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        this.random = random;
+    }
+
+    /**
+     * Draw a rank.
+     *
+     * @return rank between 0 (most frequent) and numberOfRanks (exclusive)
+     */
+    public int next() {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        int i = Arrays.binarySearch(cumulative, value);
+        return Math.min(i >= 0 ? i : -i - 1, cumulative.length - 1);
+    }
+}
@@ -289,6 +289,7 @@ class Output {
         line("  sensitive {on|off|case|diac}       # Set case-/diacritics-sensitivity");
         line("  filter <luceneQuery>               # Set document filter, e.g. title:\"Smith\"");
         line("  doctitle {on|off}                  # Show document titles between hits?");
+        line("  profile {on|off}                   # Show how much work each part of the query did?");
         line("  struct                             # Show index structure");
         line("  help                               # This message");
         line("  sw(itch)                           # Switch languages");
@@ -49,6 +49,7 @@ import nl.inl.blacklab.search.indexmetadata.AnnotatedFields;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.QueryProfiler;
 import nl.inl.blacklab.search.results.Concordances;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
@@ -115,6 +116,9 @@ public class QueryToolImpl {
     /** Show total number of hits (takes extra time for large sets) */
     private boolean determineTotalNumberOfHits = true;
 
+    /** Profile queries, i.e. show how much work each part of the query did? */
+    private boolean profile = false;
+
     /** The filter query, if any. */
     private Query filterQuery = null;
 
@@ -545,6 +549,10 @@ public class QueryToolImpl {
             determineTotalNumberOfHits = parseBoolean(arguments);
             output.line("Determine total number of hits: " + (determineTotalNumberOfHits ? "ON" : "OFF"));
             break;
+        case "profile":
+            profile = parseBoolean(arguments);
+            output.line("Profile queries: " + (profile ? "ON" : "OFF"));
+            break;
         case "field":
             if (arguments.isEmpty()) {
                 contentsField = index.mainAnnotatedField();
@@ -660,7 +668,7 @@ public class QueryToolImpl {
                 throw new RuntimeException(e);
             }
             AnnotatedField field = index.annotatedField(spanQuery.getField()); // query may override field, e.g. rfield(...)
-            SearchHits search = index.search(field).find(spanQuery);
+            SearchHits search = index.search(field).find(spanQuery, index.searchSettings().withProfile(profile));
             timings = search.queryInfo().timings();
 
             if (alwaysSortBy != null) {
@@ -680,6 +688,9 @@ public class QueryToolImpl {
                 statInfo = Long.toString(hits.size());
             else
                 statInfo = "?";
+            QueryProfiler profiler = hits.queryInfo().profiler();
+            if (profiler != null)
+                output.line("Query profile:\n" + profiler);
             commandWasQuery = true;
         } catch (InvalidQuery e) {
             // Parse error
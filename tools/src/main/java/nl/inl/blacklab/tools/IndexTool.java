@@ -66,6 +66,8 @@ public class IndexTool {
         boolean addingFiles = true;
         String deleteQuery = null;
         int numberOfThreadsToUse = BlackLab.config().getIndexing().getNumberOfThreads();
+        int splitFilesLargerThanMegs = BlackLab.config().getIndexing().getSplitFilesLargerThanMegs();
+        boolean preserveDocumentOrder = BlackLab.config().getIndexing().isPreserveDocumentOrder();
         List<File> linkedFileDirs = new ArrayList<>();
         IndexType indexType = null; // null means "use default"
         boolean createEmptyIndex = false;
@@ -121,6 +123,24 @@ public class IndexTool {
                 case "nothreads":
                     numberOfThreadsToUse = 1;
                     break;
+                case "split-files":
+                    if (i + 1 == args.length) {
+                        System.err.println("--split-files option needs argument");
+                        usage();
+                        return;
+                    }
+                    try {
+                        splitFilesLargerThanMegs = Integer.parseInt(args[i + 1]);
+                        i++;
+                    } catch (NumberFormatException e) {
+                        System.err.println("--split-files option needs integer argument");
+                        usage();
+                        return;
+                    }
+                    break;
+                case "preserve-order":
+                    preserveDocumentOrder = true;
+                    break;
                 case "format-dir":
                     if (i + 1 == args.length) {
                         System.err.println("--format-dir option needs argument");
@@ -332,6 +352,8 @@ public class IndexTool {
         }
 
         indexer.setNumberOfThreadsToUse(numberOfThreadsToUse);
+        indexer.setSplitFilesLargerThan(splitFilesLargerThanMegs * 1_000_000L);
+        indexer.setPreserveDocumentOrder(preserveDocumentOrder);
         if (forceCreateNew)
             indexer.indexWriter().metadata().setDocumentFormat(formatIdentifier);
         indexer.setIndexerParam(indexerParam);
@@ -435,6 +457,8 @@ public class IndexTool {
                         + "  --format-dir <d>               Look in directory <d> for formats (i.e. .blf.yaml files)\n"
                         + "  --nothreads                    Disable multithreaded indexing (enabled by default)\n"
                         + "  --threads <n>                  Number of threads to use\n"
+                        + "  --split-files <m>              Split input files of <m> MB or more and index the parts in parallel\n"
+                        + "  --preserve-order               When splitting files, add documents to the index in file order\n"
                         + "  --index-type <t>               Set the index type, integrated (new, default) or external (legacy)\n"
                         + "  --create-empty                 Create an empty index (ignore inputdir param)\n"
                         + "\n"
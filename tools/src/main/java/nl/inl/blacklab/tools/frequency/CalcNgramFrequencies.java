@@ -0,0 +1,189 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexAbstract;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Calculates n-gram frequencies using packed primitive keys.
+ *
+ * Like {@link CalcTokenFrequencies}, but:
+ * - groups on n consecutive tokens instead of a single token
+ * - encodes each group key into a fixed number of longs (see {@link NgramKeyCodec})
+ *   and replaces the metadata values with an integer id
+ * - counts in a primitive open addressing table per worker thread
+ *   (see {@link PrimitiveGroupTable}) instead of one shared ConcurrentHashMap
+ * - each worker writes its table to a sorted run file when it gets too large;
+ *   all runs are merged at the end (see {@link NgramRunMerger})
+ *
+ * This takes far less memory per group, which makes it feasible to produce n-gram
+ * frequency lists for large corpora.
+ */
+class CalcNgramFrequencies {
+
+    /** Annotations we're grouping on */
+    private final List<AnnotInfo> annotations;
+
+    /** Annotated field we're grouping on */
+    private final String fieldName;
+
+    /** Metadata fields we're grouping on */
+    private final List<String> metadataFields;
+
+    /** Encodes our group keys */
+    private final NgramKeyCodec codec;
+
+    /** Id for each combination of metadata values we've seen */
+    private final Map<List<String>, Integer> metadataValueIds = new ConcurrentHashMap<>();
+
+    /** Metadata values for each id */
+    private final List<String[]> metadataValues = new ArrayList<>();
+
+    CalcNgramFrequencies(BlackLabIndex index, List<Annotation> annotations, List<String> metadataFields, int ngramSize) {
+        this.annotations = annotations.stream()
+                .map(ann -> new AnnotInfo(index.annotationForwardIndex(ann), MatchSensitivity.INSENSITIVE))
+                .collect(Collectors.toList());
+        this.fieldName = annotations.get(0).field().name();
+        this.metadataFields = metadataFields;
+        this.codec = new NgramKeyCodec(this.annotations, ngramSize);
+    }
+
+    public NgramKeyCodec getCodec() {
+        return codec;
+    }
+
+    public List<AnnotInfo> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Get the metadata values for an id.
+     *
+     * @param metadataId id
+     * @return metadata values, or null if we're not grouping on metadata
+     */
+    public synchronized String[] getMetadataValues(int metadataId) {
+        return metadataFields.isEmpty() ? null : metadataValues.get(metadataId);
+    }
+
+    private int getMetadataId(String[] values) {
+        if (values == null)
+            return 0;
+        return metadataValueIds.computeIfAbsent(Arrays.asList(values), k -> {
+            synchronized (this) {
+                metadataValues.add(values);
+                return metadataValues.size() - 1;
+            }
+        });
+    }
+
+    /**
+     * Count the n-grams in the given documents, writing sorted runs to disk.
+     *
+     * The documents are divided between worker threads; each worker counts into its own table
+     * and writes it to a run file whenever it exceeds its share of groupsPerChunk.
+     *
+     * @param index          index
+     * @param docIds         documents to process
+     * @param groupsPerChunk max. number of groups to keep in memory (for all workers combined)
+     * @param tmpDir         where to write the run files
+     * @param runName        prefix for the run file names
+     * @param compress       whether to compress the run files
+     * @return the run files written
+     */
+    public List<File> countAndWriteRuns(BlackLabIndex index, List<Integer> docIds, int groupsPerChunk, File tmpDir,
+            String runName, boolean compress) {
+        final String lengthTokensFieldName = AnnotatedFieldNameUtil.lengthTokensField(fieldName);
+        final Set<String> fieldsToLoad = new HashSet<>();
+        fieldsToLoad.add(lengthTokensFieldName);
+        fieldsToLoad.addAll(metadataFields);
+        final IndexReader reader = index.reader();
+
+        final int numberOfWorkers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), docIds.size()));
+        final int groupsPerWorker = Math.max(1, groupsPerChunk / numberOfWorkers);
+        final List<File> runFiles = new ArrayList<>();
+        IntStream.range(0, numberOfWorkers).parallel().forEach(worker -> {
+            PrimitiveGroupTable table = new PrimitiveGroupTable(codec.getWordsPerKey());
+            long[] key = new long[codec.getWordsPerKey()];
+            int runNumber = 0;
+            // Each worker processes a contiguous range of documents
+            int from = (int) ((long) docIds.size() * worker / numberOfWorkers);
+            int to = (int) ((long) docIds.size() * (worker + 1) / numberOfWorkers);
+            for (int docId: docIds.subList(from, to)) {
+                try {
+                    Document doc = reader.document(docId, fieldsToLoad);
+                    int docLength = Integer.parseInt(doc.get(lengthTokensFieldName))
+                            - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
+
+                    // Get sort positions for all tokens in the document, for each annotation
+                    int[][] sortValuesPerAnnotation = new int[annotations.size()][];
+                    for (int i = 0; i < annotations.size(); i++) {
+                        AnnotInfo annot = annotations.get(i);
+                        AnnotationForwardIndex afi = annot.getAnnotationForwardIndex();
+                        int[] tokenValues = afi.getDocument(docId);
+                        int[] sortValues = new int[tokenValues.length];
+                        for (int tokenIndex = 0; tokenIndex < tokenValues.length; ++tokenIndex) {
+                            sortValues[tokenIndex] = annot.getTerms().idToSortPosition(tokenValues[tokenIndex],
+                                    annot.getMatchSensitivity());
+                        }
+                        sortValuesPerAnnotation[i] = sortValues;
+                    }
+
+                    // Get metadata id for this document
+                    String[] metadataValuesForDoc = null;
+                    if (!metadataFields.isEmpty()) {
+                        metadataValuesForDoc = new String[metadataFields.size()];
+                        for (int i = 0; i < metadataFields.size(); ++i)
+                            metadataValuesForDoc[i] = doc.get(metadataFields.get(i));
+                    }
+                    int metadataId = getMetadataId(metadataValuesForDoc);
+
+                    // Count all n-grams in the document
+                    int lastStart = docLength - codec.getNgramSize();
+                    for (int tokenIndex = 0; tokenIndex <= lastStart; tokenIndex++) {
+                        Arrays.fill(key, 0L);
+                        codec.encode(sortValuesPerAnnotation, tokenIndex, key);
+                        table.add(key, metadataId);
+                    }
+                } catch (IOException e) {
+                    throw BlackLabRuntimeException.wrap(e);
+                }
+
+                if (table.size() > groupsPerWorker)
+                    writeRun(table, tmpDir, runName, worker, ++runNumber, compress, runFiles);
+            }
+            if (table.size() > 0)
+                writeRun(table, tmpDir, runName, worker, ++runNumber, compress, runFiles);
+        });
+        return runFiles;
+    }
+
+    private static void writeRun(PrimitiveGroupTable table, File tmpDir, String runName, int worker, int runNumber,
+            boolean compress, List<File> runFiles) {
+        File runFile = new File(tmpDir, runName + "-" + worker + "-" + runNumber + ".run");
+        System.out.println("  Writing " + runFile + " (" + table.size() + " entries)");
+        table.writeSortedRun(runFile, compress);
+        synchronized (runFiles) {
+            runFiles.add(runFile);
+        }
+    }
+}
@@ -186,6 +186,8 @@ class Config {
                 if (!index.metadataFields().exists(m))
                     throw new IllegalArgumentException("Metadata field not found: " + m);
             }
+            if (l.getNgramSize() < 1)
+                throw new IllegalArgumentException("Invalid ngramSize for " + name + ": " + l.getNgramSize());
         }
     }
 
@@ -26,6 +26,11 @@ class ConfigFreqList {
      */
     private List<String> metadataFields = Collections.emptyList();
 
+    /**
+     * Number of consecutive tokens to group on (1 for single tokens, 2 for bigrams, etc.)
+     */
+    private int ngramSize = 1;
+
     public String getReportName() {
         return name.isEmpty() ? generateName() : name;
     }
@@ -34,6 +39,8 @@ class ConfigFreqList {
         List<String> parts = new ArrayList<>();
         parts.addAll(annotations);
         parts.addAll(metadataFields);
+        if (ngramSize > 1)
+            parts.add(ngramSize + "grams");
         return StringUtils.join(parts, "-");
     }
 
@@ -60,18 +67,29 @@ class ConfigFreqList {
         this.metadataFields = metadataFields;
     }
 
+    public int getNgramSize() {
+        return ngramSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setNgramSize(int ngramSize) {
+        this.ngramSize = ngramSize;
+    }
+
     @Override
     public String toString() {
         return "ConfigFreqList{" +
                 "name='" + name + '\'' +
                 ", annotations=" + annotations +
                 ", metadataFields=" + metadataFields +
+                ", ngramSize=" + ngramSize +
                 '}';
     }
 
     public String show() {
         return "- " + getReportName() + "\n" +
                 "  annotations: " + annotations + "\n" +
-                "  metadataFields: " + metadataFields;
+                "  metadataFields: " + metadataFields + "\n" +
+                "  ngramSize: " + ngramSize;
     }
 }
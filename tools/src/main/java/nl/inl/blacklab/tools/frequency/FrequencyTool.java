@@ -164,6 +164,12 @@ public class FrequencyTool {
             return;
         }
 
+        if (freqList.getNgramSize() > 1) {
+            // Use packed primitive keys to keep memory usage manageable
+            makeNgramFrequencyList(index, annotatedField, freqList, outputDir, outputType, config);
+            return;
+        }
+
         // Use specifically optimized CalcTokenFrequencies
         List<String> annotationNames = freqList.getAnnotations();
         Terms[] terms = annotationNames.stream()
@@ -262,6 +268,53 @@ public class FrequencyTool {
             System.err.println("Could not delete: " + tmpDir);
     }
 
+    private static void makeNgramFrequencyList(BlackLabIndex index, AnnotatedField annotatedField,
+            ConfigFreqList freqList, File outputDir, FreqListOutput.Type outputType, Config config) {
+        String reportName = freqList.getReportName();
+        List<Annotation> annotations = freqList.getAnnotations().stream()
+                .map(annotatedField::annotation)
+                .collect(Collectors.toList());
+        CalcNgramFrequencies calc = new CalcNgramFrequencies(index, annotations, freqList.getMetadataFields(),
+                freqList.getNgramSize());
+        final List<Integer> docIds = new ArrayList<>();
+        index.forEachDocument((__, id) -> docIds.add(id));
+
+        // Create tmp dir for the run files
+        File tmpDir = new File(outputDir, "tmp");
+        if (!tmpDir.exists() && !tmpDir.mkdir())
+            throw new RuntimeException("Could not create tmp dir: " + tmpDir);
+
+        // Count n-grams, writing sorted runs to disk as we go
+        List<File> runFiles = new ArrayList<>();
+        for (int rep = 0; rep < config.getRepetitions(); rep++) { // FOR DEBUGGING
+            runFiles.addAll(calc.countAndWriteRuns(index, docIds, config.getGroupsPerChunk(), tmpDir,
+                    reportName + rep, config.isCompressTempFiles()));
+        }
+
+        // Merge the runs to produce the output file(s)
+        NgramRunMerger merger = new NgramRunMerger(calc);
+        if (outputType == FreqListOutput.Type.UNMERGED_TSV_GZ) {
+            // Write separate TSV file per run; don't merge
+            for (File runFile: runFiles) {
+                File tsvFile = new File(tmpDir, runFile.getName().replaceAll("\\.run$", ".tsv.gz"));
+                merger.merge(List.of(runFile), tsvFile, true, config.isCompressTempFiles());
+            }
+        } else {
+            File outputFile = new File(outputDir, reportName + ".tsv" +
+                    (outputType == FreqListOutput.Type.TSV_GZIP ? ".gz" : ""));
+            merger.merge(runFiles, outputFile, outputType == FreqListOutput.Type.TSV_GZIP,
+                    config.isCompressTempFiles());
+        }
+
+        // Remove run files
+        for (File runFile: runFiles) {
+            if (!runFile.delete())
+                System.err.println("Could not delete: " + runFile);
+        }
+        if (outputType != FreqListOutput.Type.UNMERGED_TSV_GZ && !tmpDir.delete())
+            System.err.println("Could not delete: " + tmpDir);
+    }
+
     private static void writeChunkFile(File chunkFile, Map<GroupIdHash, OccurrenceCounts> occurrences, boolean compress) {
         try (FileOutputStream fileOutputStream = new FileOutputStream(chunkFile)) {
              OutputStream outputStream = compress ? new GZIPOutputStream(fileOutputStream) : fileOutputStream;
@@ -0,0 +1,102 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.util.List;
+
+/**
+ * Packs the annotation values of an n-gram into a fixed number of longs.
+ *
+ * Each annotation value (a sort position) gets just enough bits to store the
+ * highest possible value for that annotation. For e.g. a word bigram in a corpus
+ * with a few million distinct words, the whole key fits into a single long.
+ *
+ * Values are packed big-endian: the first token's first annotation gets the most significant
+ * bits of the first long. That way, comparing keys as unsigned longs orders them by the
+ * first token (its sort position for the first annotation, then the next annotation), then
+ * the second token, etc. So the merged output is sorted by n-gram in collation order.
+ */
+final class NgramKeyCodec {
+
+    /** Number of tokens per n-gram */
+    private final int ngramSize;
+
+    /** Number of bits used for each annotation */
+    private final int[] bitsPerAnnotation;
+
+    /** Number of longs per key */
+    private final int wordsPerKey;
+
+    NgramKeyCodec(List<AnnotInfo> annotations, int ngramSize) {
+        this.ngramSize = ngramSize;
+        bitsPerAnnotation = new int[annotations.size()];
+        int bitsPerToken = 0;
+        for (int i = 0; i < bitsPerAnnotation.length; i++) {
+            int maxValue = annotations.get(i).getTerms().numberOfTerms();
+            bitsPerAnnotation[i] = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+            bitsPerToken += bitsPerAnnotation[i];
+        }
+        wordsPerKey = (bitsPerToken * ngramSize + 63) / 64;
+    }
+
+    public int getNgramSize() {
+        return ngramSize;
+    }
+
+    public int getNumberOfAnnotations() {
+        return bitsPerAnnotation.length;
+    }
+
+    public int getWordsPerKey() {
+        return wordsPerKey;
+    }
+
+    /**
+     * Encode the n-gram starting at a token position.
+     *
+     * @param sortValuesPerAnnotation sort positions for each token in the document, per annotation
+     * @param tokenIndex              first token of the n-gram
+     * @param key                     (out) where to store the key (must be zeroed)
+     */
+    public void encode(int[][] sortValuesPerAnnotation, int tokenIndex, long[] key) {
+        int bitOffset = 0;
+        for (int position = 0; position < ngramSize; position++) {
+            for (int annot = 0; annot < bitsPerAnnotation.length; annot++) {
+                int value = sortValuesPerAnnotation[annot][tokenIndex + position];
+                int numBits = bitsPerAnnotation[annot];
+                int word = bitOffset >>> 6;
+                int overflow = (bitOffset & 63) + numBits - 64; // bits that go into the next word
+                if (overflow <= 0) {
+                    key[word] |= ((long) value) << -overflow;
+                } else {
+                    key[word] |= ((long) value) >>> overflow;
+                    key[word + 1] |= ((long) value) << (64 - overflow);
+                }
+                bitOffset += numBits;
+            }
+        }
+    }
+
+    /**
+     * Decode the sort positions from a key.
+     *
+     * @param key    key to decode
+     * @param offset offset of the key in the array
+     * @param result (out) sort position for each token (first dimension) and annotation (second dimension)
+     */
+    public void decode(long[] key, int offset, int[][] result) {
+        int bitOffset = 0;
+        for (int position = 0; position < ngramSize; position++) {
+            for (int annot = 0; annot < bitsPerAnnotation.length; annot++) {
+                int numBits = bitsPerAnnotation[annot];
+                int word = offset + (bitOffset >>> 6);
+                int overflow = (bitOffset & 63) + numBits - 64; // bits that are in the next word
+                long value;
+                if (overflow <= 0)
+                    value = key[word] >>> -overflow;
+                else
+                    value = (key[word] << overflow) | (key[word + 1] >>> (64 - overflow));
+                result[position][annot] = (int) (value & ((1L << numBits) - 1));
+                bitOffset += numBits;
+            }
+        }
+    }
+}
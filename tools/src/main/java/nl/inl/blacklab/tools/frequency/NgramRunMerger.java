@@ -0,0 +1,190 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.csv.CSVPrinter;
+
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+
+/**
+ * Merges the sorted run files written by {@link PrimitiveGroupTable} and writes the result as TSV.
+ *
+ * Performs a k-way merge using a priority queue, so it takes very little memory,
+ * even if the final output file is huge.
+ */
+class NgramRunMerger {
+
+    /** Reads entries from a run file */
+    private static class RunReader implements Comparable<RunReader> {
+
+        private final DataInputStream in;
+
+        private final int wordsPerKey;
+
+        private int entriesLeft;
+
+        final long[] key;
+
+        int metadataId;
+
+        int hits;
+
+        RunReader(File file, int wordsPerKey, boolean compressed) throws IOException {
+            InputStream is = new FileInputStream(file);
+            if (compressed)
+                is = new GZIPInputStream(is);
+            in = new DataInputStream(new BufferedInputStream(is));
+            this.wordsPerKey = wordsPerKey;
+            key = new long[wordsPerKey];
+            entriesLeft = in.readInt();
+        }
+
+        /**
+         * Read the next entry.
+         *
+         * @return false if there are no more entries
+         */
+        boolean next() throws IOException {
+            if (entriesLeft == 0)
+                return false;
+            entriesLeft--;
+            for (int i = 0; i < wordsPerKey; i++)
+                key[i] = in.readLong();
+            metadataId = in.readInt();
+            hits = in.readInt();
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            return PrimitiveGroupTable.compare(key, 0, metadataId, o.key, 0, o.metadataId, wordsPerKey);
+        }
+    }
+
+    private final CalcNgramFrequencies calc;
+
+    /** For each annotation: a term id for each (insensitive) sort position */
+    private final int[][] sortPositionToTermId;
+
+    NgramRunMerger(CalcNgramFrequencies calc) {
+        this.calc = calc;
+        List<AnnotInfo> annotations = calc.getAnnotations();
+        sortPositionToTermId = new int[annotations.size()][];
+        for (int i = 0; i < annotations.size(); i++) {
+            AnnotInfo annot = annotations.get(i);
+            Terms terms = annot.getTerms();
+            int[] termIds = new int[terms.numberOfTerms() + 1];
+            Arrays.fill(termIds, -1);
+            for (int termId = 0; termId < terms.numberOfTerms(); termId++) {
+                int sortPosition = terms.idToSortPosition(termId, annot.getMatchSensitivity());
+                if (termIds[sortPosition] < 0)
+                    termIds[sortPosition] = termId;
+            }
+            sortPositionToTermId[i] = termIds;
+        }
+    }
+
+    /**
+     * Merge the run files and write the result.
+     *
+     * @param runFiles        run files to merge
+     * @param outputFile      TSV file to write
+     * @param gzip            whether to gzip the output
+     * @param runsCompressed  whether the run files are compressed
+     */
+    public void merge(List<File> runFiles, File outputFile, boolean gzip, boolean runsCompressed) {
+        System.out.println("  Merging " + runFiles.size() + " run files to produce " + outputFile);
+        NgramKeyCodec codec = calc.getCodec();
+        int wordsPerKey = codec.getWordsPerKey();
+        List<RunReader> readers = new ArrayList<>();
+        try (OutputStream outputStream = new FileOutputStream(outputFile)) {
+            OutputStream stream = gzip ? new GZIPOutputStream(outputStream) : outputStream;
+            try (Writer w = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+                    CSVPrinter csv = new CSVPrinter(w, FreqListOutputTsv.TAB_SEPARATED_FORMAT)) {
+                PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runFiles.size()));
+                for (File runFile: runFiles) {
+                    RunReader reader = new RunReader(runFile, wordsPerKey, runsCompressed);
+                    readers.add(reader);
+                    if (reader.next())
+                        queue.add(reader);
+                }
+
+                long[] currentKey = new long[wordsPerKey];
+                int[][] sortPositions = new int[codec.getNgramSize()][codec.getNumberOfAnnotations()];
+                while (!queue.isEmpty()) {
+                    // Take the lowest entry and merge all entries with the same key
+                    RunReader lowest = queue.poll();
+                    System.arraycopy(lowest.key, 0, currentKey, 0, wordsPerKey);
+                    int metadataId = lowest.metadataId;
+                    long hits = 0;
+                    RunReader reader = lowest;
+                    while (true) {
+                        hits += reader.hits;
+                        if (reader.next())
+                            queue.add(reader);
+                        RunReader head = queue.peek();
+                        if (head == null || PrimitiveGroupTable.compare(head.key, 0, head.metadataId, currentKey, 0,
+                                metadataId, wordsPerKey) != 0)
+                            break;
+                        reader = queue.poll();
+                    }
+
+                    // Write the merged group
+                    codec.decode(currentKey, 0, sortPositions);
+                    writeRecord(csv, sortPositions, calc.getMetadataValues(metadataId), hits);
+                }
+            } finally {
+                for (RunReader reader: readers)
+                    reader.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error merging run files to " + outputFile, e);
+        }
+    }
+
+    private void writeRecord(CSVPrinter csv, int[][] sortPositions, String[] metadataValues, long hits)
+            throws IOException {
+        List<AnnotInfo> annotations = calc.getAnnotations();
+        List<String> record = new ArrayList<>();
+        // - annotation values (tokens of the n-gram separated by spaces)
+        for (int annot = 0; annot < annotations.size(); annot++) {
+            Terms terms = annotations.get(annot).getTerms();
+            StringBuilder value = new StringBuilder();
+            for (int position = 0; position < sortPositions.length; position++) {
+                if (position > 0)
+                    value.append(' ');
+                int termId = sortPositionToTermId[annot][sortPositions[position][annot]];
+                value.append(MatchSensitivity.INSENSITIVE.desensitize(terms.get(termId)));
+            }
+            record.add(value.toString());
+        }
+        // - metadata values
+        if (metadataValues != null)
+            Collections.addAll(record, metadataValues);
+        // - group size (hits)
+        record.add(Long.toString(hits));
+        csv.printRecord(record);
+    }
+}
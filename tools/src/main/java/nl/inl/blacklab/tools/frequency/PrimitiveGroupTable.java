@@ -0,0 +1,180 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Counts occurrences of groups with packed (fixed-width) keys.
+ *
+ * Open addressing hash table with primitive arrays, so each group only takes a few
+ * dozen bytes instead of several objects. Not thread-safe; each worker uses its own table.
+ *
+ * When the table gets too large, it can be written to disk as a sorted run, to be merged
+ * with other runs later (see {@link NgramRunMerger}).
+ */
+final class PrimitiveGroupTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    /** Metadata id for an empty slot */
+    private static final int EMPTY = -1;
+
+    /** Number of longs per key */
+    private final int wordsPerKey;
+
+    /** Keys for each slot (wordsPerKey longs per slot) */
+    private long[] keys;
+
+    /** Metadata id for each slot, or EMPTY */
+    private int[] metadataIds;
+
+    /** Number of hits for each slot */
+    private int[] hits;
+
+    /** Number of slots used */
+    private int size;
+
+    /** When to grow the table */
+    private int maxSize;
+
+    PrimitiveGroupTable(int wordsPerKey) {
+        this.wordsPerKey = wordsPerKey;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * wordsPerKey];
+        metadataIds = new int[capacity];
+        Arrays.fill(metadataIds, EMPTY);
+        hits = new int[capacity];
+        size = 0;
+        maxSize = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Count an occurrence of a group.
+     *
+     * @param key        packed group key
+     * @param metadataId id of the metadata values for this group
+     */
+    public void add(long[] key, int metadataId) {
+        int slot = findSlot(key, 0, metadataId);
+        if (metadataIds[slot] == EMPTY) {
+            System.arraycopy(key, 0, keys, slot * wordsPerKey, wordsPerKey);
+            metadataIds[slot] = metadataId;
+            hits[slot] = 1;
+            size++;
+            if (size > maxSize)
+                grow();
+        } else {
+            hits[slot]++;
+        }
+    }
+
+    /** Find the slot for this key: either the slot containing it or the empty slot where it should go. */
+    private int findSlot(long[] key, int keyOffset, int metadataId) {
+        int mask = metadataIds.length - 1;
+        int slot = hash(key, keyOffset, metadataId) & mask;
+        while (metadataIds[slot] != EMPTY && !keyEquals(slot, key, keyOffset, metadataId))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int hash(long[] key, int keyOffset, int metadataId) {
+        long h = metadataId;
+        for (int i = 0; i < wordsPerKey; i++)
+            h = h * 31 + key[keyOffset + i];
+        return (int) HashCommon.mix(h);
+    }
+
+    private boolean keyEquals(int slot, long[] key, int keyOffset, int metadataId) {
+        if (metadataIds[slot] != metadataId)
+            return false;
+        int offset = slot * wordsPerKey;
+        for (int i = 0; i < wordsPerKey; i++) {
+            if (keys[offset + i] != key[keyOffset + i])
+                return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldMetadataIds = metadataIds, oldHits = hits;
+        allocate(oldMetadataIds.length * 2);
+        for (int oldSlot = 0; oldSlot < oldMetadataIds.length; oldSlot++) {
+            if (oldMetadataIds[oldSlot] == EMPTY)
+                continue;
+            int slot = findSlot(oldKeys, oldSlot * wordsPerKey, oldMetadataIds[oldSlot]);
+            System.arraycopy(oldKeys, oldSlot * wordsPerKey, keys, slot * wordsPerKey, wordsPerKey);
+            metadataIds[slot] = oldMetadataIds[oldSlot];
+            hits[slot] = oldHits[oldSlot];
+            size++;
+        }
+    }
+
+    /**
+     * Compare two entries.
+     *
+     * This defines the order of the sorted runs, which the merge relies on, and therefore
+     * the order of the output: by (insensitive) sort position of the first token, then the next, etc.
+     * (see {@link NgramKeyCodec}), then by metadata id.
+     */
+    static int compare(long[] a, int aOffset, int aMetadataId, long[] b, int bOffset, int bMetadataId, int wordsPerKey) {
+        for (int i = 0; i < wordsPerKey; i++) {
+            int cmp = Long.compareUnsigned(a[aOffset + i], b[bOffset + i]);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(aMetadataId, bMetadataId);
+    }
+
+    /**
+     * Write the table contents to a file, sorted by key, and clear the table.
+     *
+     * File format: number of entries, then for each entry: key longs, metadata id, hits.
+     *
+     * @param file     file to write
+     * @param compress whether to gzip the file
+     */
+    public void writeSortedRun(File file, boolean compress) {
+        int[] slots = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < metadataIds.length; slot++) {
+            if (metadataIds[slot] != EMPTY)
+                slots[n++] = slot;
+        }
+        IntArrays.quickSort(slots, (a, b) -> compare(keys, a * wordsPerKey, metadataIds[a],
+                keys, b * wordsPerKey, metadataIds[b], wordsPerKey));
+        try (OutputStream fileOutputStream = new FileOutputStream(file)) {
+            OutputStream outputStream = compress ? new GZIPOutputStream(fileOutputStream) : fileOutputStream;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream))) {
+                out.writeInt(size);
+                for (int slot: slots) {
+                    for (int i = 0; i < wordsPerKey; i++)
+                        out.writeLong(keys[slot * wordsPerKey + i]);
+                    out.writeInt(metadataIds[slot]);
+                    out.writeInt(hits[slot]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + file, e);
+        }
+        allocate(INITIAL_CAPACITY);
+    }
+}
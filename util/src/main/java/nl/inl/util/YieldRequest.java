@@ -0,0 +1,101 @@
+package nl.inl.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Asks a less urgent search to pause, so more urgent searches can run.
+ *
+ * The thread running the search registers its request using {@link #setForCurrentThread(YieldRequest)}.
+ * Code doing the work for that thread (possibly using other threads) checks {@link #isRequested()} regularly,
+ * stops at a point where it doesn't hold any locks others may need, and calls {@link #pauseWhileRequested()}
+ * from the registering thread. That way, {@link #isPaused()} tells us if the search has actually stopped working.
+ */
+public class YieldRequest {
+    private static final Logger logger = LogManager.getLogger(YieldRequest.class);
+
+    /** While paused, check how often if we may continue? (ms) */
+    private static final int POLLING_TIME_MS = 50;
+
+    /** Yield requests registered by threads running a search */
+    private static final Map<Thread, YieldRequest> registered = new ConcurrentHashMap<>();
+
+    /**
+     * Register the yield request for the search the current thread is running.
+     *
+     * @param request yield request, or null to remove it
+     */
+    public static void setForCurrentThread(YieldRequest request) {
+        if (request == null)
+            registered.remove(Thread.currentThread());
+        else
+            registered.put(Thread.currentThread(), request);
+    }
+
+    /**
+     * Get the yield request for the search the current thread is running.
+     *
+     * @return yield request, or null if the current thread's work never yields
+     */
+    public static YieldRequest forCurrentThread() {
+        return registered.get(Thread.currentThread());
+    }
+
+    /** Should the search pause? */
+    private volatile boolean requested = false;
+
+    /** Number of threads currently paused in {@link #pauseWhileRequested()} */
+    private final AtomicInteger pausedThreads = new AtomicInteger();
+
+    /**
+     * Should the search pause?
+     *
+     * @return true if it should pause at the next opportunity
+     */
+    public boolean isRequested() {
+        return requested;
+    }
+
+    /**
+     * Ask the search to pause or to continue.
+     *
+     * @param requested true if it should pause, false if it may continue
+     */
+    public void setRequested(boolean requested) {
+        this.requested = requested;
+    }
+
+    /**
+     * Has the search actually paused?
+     *
+     * @return true if it's waiting in {@link #pauseWhileRequested()}
+     */
+    public boolean isPaused() {
+        return pausedThreads.get() > 0;
+    }
+
+    /**
+     * Pause until we're no longer asked to yield.
+     *
+     * Only call this when not holding any locks other searches may need.
+     *
+     * @throws InterruptedException if the thread was interrupted while we were waiting
+     */
+    public void pauseWhileRequested() throws InterruptedException {
+        if (!requested)
+            return;
+        logger.debug("Yielding to more urgent searches");
+        pausedThreads.incrementAndGet();
+        try {
+            while (requested) {
+                Thread.sleep(POLLING_TIME_MS);
+            }
+        } finally {
+            pausedThreads.decrementAndGet();
+        }
+    }
+}
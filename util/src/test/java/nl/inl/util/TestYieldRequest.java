@@ -0,0 +1,63 @@
+package nl.inl.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestYieldRequest {
+
+    @Test
+    public void testPause() throws InterruptedException {
+        YieldRequest request = new YieldRequest();
+        request.setRequested(true);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            YieldRequest.setForCurrentThread(request);
+            try {
+                YieldRequest.forCurrentThread().pauseWhileRequested();
+                done.countDown();
+            } catch (InterruptedException e) {
+                // test will fail
+            } finally {
+                YieldRequest.setForCurrentThread(null);
+            }
+        });
+        Assert.assertFalse(request.isPaused());
+        worker.start();
+        Assert.assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(request.isPaused());
+        request.setRequested(false);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(request.isPaused());
+    }
+
+    @Test
+    public void testNotRequested() throws InterruptedException {
+        YieldRequest request = new YieldRequest();
+        request.pauseWhileRequested(); // returns immediately
+        Assert.assertFalse(request.isPaused());
+        Assert.assertNull(YieldRequest.forCurrentThread());
+    }
+
+    @Test
+    public void testInterruptWhilePaused() throws InterruptedException {
+        YieldRequest request = new YieldRequest();
+        request.setRequested(true);
+        AtomicBoolean aborted = new AtomicBoolean();
+        Thread worker = new Thread(() -> {
+            try {
+                request.pauseWhileRequested();
+            } catch (InterruptedException e) {
+                aborted.set(true);
+            }
+        });
+        worker.start();
+        worker.interrupt();
+        worker.join(10_000);
+        Assert.assertTrue(aborted.get());
+        Assert.assertFalse(request.isPaused());
+    }
+}
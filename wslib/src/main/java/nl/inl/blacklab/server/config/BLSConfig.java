@@ -54,6 +54,8 @@ public class BLSConfig {
     private BLSConfigDebug debug = new BLSConfigDebug();
     
     private BLSConfigAuth authentication = new BLSConfigAuth();
+
+    private BLSConfigWarmup warmup = new BLSConfigWarmup();
     
     // BlackLab-global configuration
 
@@ -148,6 +150,15 @@ public class BLSConfig {
         this.authentication = authentication;
     }
 
+    public BLSConfigWarmup getWarmup() {
+        return warmup;
+    }
+
+    @SuppressWarnings("unused")
+    public void setWarmup(BLSConfigWarmup warmup) {
+        this.warmup = warmup;
+    }
+
     public int getConfigVersion() {
         return configVersion;
     }
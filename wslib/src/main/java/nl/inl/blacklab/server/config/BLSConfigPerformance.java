@@ -3,6 +3,9 @@ package nl.inl.blacklab.server.config;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonSetter;
+
 public class BLSConfigPerformance {
 
     private static final Logger logger = LogManager.getLogger(BLSConfigPerformance.class);
@@ -31,6 +34,28 @@ public class BLSConfigPerformance {
     /** How many running jobs one logged-in user may have. */
     int maxRunningJobsPerUser = 10;
 
+    /** How many interactive searches to start for each batch search (count, export) if both are queued. */
+    int interactiveSearchWeight = 4;
+
+    /** Should running batch searches pause while interactive searches are waiting? */
+    boolean batchSearchesYield = false;
+
+    /** Queries estimated to produce at least this many hits are expensive. 0 means no limit. */
+    long expensiveQueryHits = 0;
+
+    /** What to do with expensive queries. */
+    ExpensiveQueryAction expensiveQueryAction = ExpensiveQueryAction.BATCH;
+
+    /** Number of hits to sample if expensiveQueryAction is sample. */
+    int expensiveQuerySampleSize = 100_000;
+
+    /** Max. memory (MB) the in-memory data of all corpora may use together before idle corpora are unloaded.
+     *  0 means no limit. */
+    int corporaMemoryBudgetMegs = 0;
+
+    /** Only unload corpora that haven't been used for this long (seconds). */
+    int corpusMinIdleTimeSec = 300;
+
     public int getMaxConcurrentSearches() {
         if (maxConcurrentSearches < 0)
             setDefaultMaxConcurrentSearches();
@@ -83,6 +108,62 @@ public class BLSConfigPerformance {
         this.maxRunningJobsPerUser = maxRunningJobsPerUser;
     }
 
+    public int getInteractiveSearchWeight() {
+        return interactiveSearchWeight;
+    }
+
+    @SuppressWarnings("unused")
+    public void setInteractiveSearchWeight(int interactiveSearchWeight) {
+        this.interactiveSearchWeight = interactiveSearchWeight;
+    }
+
+    public boolean isBatchSearchesYield() {
+        return batchSearchesYield;
+    }
+
+    @SuppressWarnings("unused")
+    public void setBatchSearchesYield(boolean batchSearchesYield) {
+        this.batchSearchesYield = batchSearchesYield;
+    }
+
+    public long getExpensiveQueryHits() {
+        return expensiveQueryHits;
+    }
+
+    @SuppressWarnings("unused")
+    public void setExpensiveQueryHits(long expensiveQueryHits) {
+        this.expensiveQueryHits = expensiveQueryHits;
+    }
+
+    @JsonGetter("expensiveQueryAction")
+    public String getExpensiveQueryActionName() {
+        return expensiveQueryAction.toString();
+    }
+
+    @JsonSetter("expensiveQueryAction")
+    @SuppressWarnings("unused")
+    public void setExpensiveQueryActionName(String value) {
+        expensiveQueryAction = ExpensiveQueryAction.fromName(value);
+    }
+
+    public ExpensiveQueryAction getExpensiveQueryAction() {
+        return expensiveQueryAction;
+    }
+
+    @SuppressWarnings("unused")
+    public void setExpensiveQueryAction(ExpensiveQueryAction expensiveQueryAction) {
+        this.expensiveQueryAction = expensiveQueryAction;
+    }
+
+    public int getExpensiveQuerySampleSize() {
+        return expensiveQuerySampleSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setExpensiveQuerySampleSize(int expensiveQuerySampleSize) {
+        this.expensiveQuerySampleSize = expensiveQuerySampleSize;
+    }
+
     @Deprecated
     public void setPausingEnabled(boolean pausingEnabled) {
         logger.warn("Ignoring deprecated configuration option: performance.pausingEnabled");
@@ -102,4 +183,22 @@ public class BLSConfigPerformance {
         this.abandonedCountAbortTimeSec = abandonedCountAbortTimeSec;
     }
 
-}
\ No newline at end of file
+    public int getCorporaMemoryBudgetMegs() {
+        return corporaMemoryBudgetMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCorporaMemoryBudgetMegs(int corporaMemoryBudgetMegs) {
+        this.corporaMemoryBudgetMegs = corporaMemoryBudgetMegs;
+    }
+
+    public int getCorpusMinIdleTimeSec() {
+        return corpusMinIdleTimeSec;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCorpusMinIdleTimeSec(int corpusMinIdleTimeSec) {
+        this.corpusMinIdleTimeSec = corpusMinIdleTimeSec;
+    }
+
+}
@@ -0,0 +1,98 @@
+package nl.inl.blacklab.server.config;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings for warming up indexes when the server starts.
+ *
+ * Opening indexes, paging in the forward index and terms files and running
+ * a few typical queries right after startup avoids the very slow responses
+ * the first users would otherwise see.
+ */
+public class BLSConfigWarmup {
+
+    /** Should we warm up indexes after the server starts? */
+    boolean enabled = false;
+
+    /** Corpora to warm up. If empty, all public corpora are warmed up. */
+    List<String> corpora = Collections.emptyList();
+
+    /** Should we read through the forward index and terms files so the OS caches them? */
+    boolean prefetchFiles = true;
+
+    /** File to record queries to and/or replay queries from (optional). */
+    String queryLog = "";
+
+    /** Should we append each hits query to the query log? */
+    boolean recordQueries = false;
+
+    /** Maximum number of (most recent, distinct) logged queries to replay. */
+    int maxQueries = 100;
+
+    /** Rotate the query log when it grows larger than this (bytes). One previous file is kept. */
+    long maxQueryLogSize = 1_000_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @SuppressWarnings("unused")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getCorpora() {
+        return corpora;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCorpora(List<String> corpora) {
+        this.corpora = corpora;
+    }
+
+    public boolean isPrefetchFiles() {
+        return prefetchFiles;
+    }
+
+    @SuppressWarnings("unused")
+    public void setPrefetchFiles(boolean prefetchFiles) {
+        this.prefetchFiles = prefetchFiles;
+    }
+
+    public String getQueryLog() {
+        return queryLog;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryLog(String queryLog) {
+        this.queryLog = queryLog;
+    }
+
+    public boolean isRecordQueries() {
+        return recordQueries;
+    }
+
+    @SuppressWarnings("unused")
+    public void setRecordQueries(boolean recordQueries) {
+        this.recordQueries = recordQueries;
+    }
+
+    public int getMaxQueries() {
+        return maxQueries;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxQueries(int maxQueries) {
+        this.maxQueries = maxQueries;
+    }
+
+    public long getMaxQueryLogSize() {
+        return maxQueryLogSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxQueryLogSize(long maxQueryLogSize) {
+        this.maxQueryLogSize = maxQueryLogSize;
+    }
+}
@@ -0,0 +1,36 @@
+package nl.inl.blacklab.server.config;
+
+/**
+ * What to do with queries that are estimated to produce at least expensiveQueryHits hits.
+ */
+public enum ExpensiveQueryAction {
+    /** Run the query as a batch search, so it doesn't hold up interactive searches. */
+    BATCH,
+
+    /** If the client didn't ask for a sample, only retrieve a random sample of expensiveQuerySampleSize hits. */
+    SAMPLE,
+
+    /** Refuse to run the query. */
+    REJECT;
+
+    /**
+     * Get the action by name.
+     *
+     * @param name name of the action, e.g. "batch" (case-insensitive)
+     * @return the action
+     * @throws IllegalArgumentException if there is no action with this name
+     */
+    public static ExpensiveQueryAction fromName(String name) {
+        for (ExpensiveQueryAction action: values()) {
+            if (action.toString().equalsIgnoreCase(name))
+                return action;
+        }
+        throw new IllegalArgumentException("Unknown expensiveQueryAction: " + name +
+                " (must be batch, sample or reject)");
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -182,9 +182,53 @@ public class Index {
     //   (this is a large job)
     public synchronized BlackLabIndex blIndex() throws InternalServerError, ServiceUnavailable {
         openForSearching();
+        index.markUsed();
         return index;
     }
 
+    /**
+     * When was this index last used for searching?
+     *
+     * This includes running searches and cache hits (see {@link BlackLabIndex#markUsed()}).
+     *
+     * @return time in ms since the epoch, or 0 if not opened for searching
+     */
+    public long getLastUsed() {
+        BlackLabIndex blIndex;
+        synchronized (this) {
+            blIndex = index;
+        }
+        return blIndex == null ? 0 : blIndex.lastUsed();
+    }
+
+    /**
+     * Estimate how much heap memory this index uses for its in-memory data.
+     *
+     * @return approximate size in bytes, or 0 if not opened for searching
+     */
+    public long estimatedMemoryUsage() {
+        BlackLabIndex blIndex;
+        synchronized (this) {
+            blIndex = index;
+        }
+        return blIndex == null ? 0 : blIndex.estimatedMemoryUsage();
+    }
+
+    /**
+     * Free this index's in-memory data if it's opened for searching.
+     *
+     * The data is reloaded when the index is used again.
+     */
+    public void unloadMemory() {
+        BlackLabIndex blIndex;
+        synchronized (this) {
+            blIndex = index;
+        }
+        // (don't hold our lock while waiting for e.g. a forward index that's being loaded)
+        if (blIndex != null)
+            blIndex.unloadMemory();
+    }
+
     /**
      * Get the IndexMetadata for this Index. This could also be gotten from the
      * internal BlackLabIndex or Indexer inside this Index, but this always gets the most
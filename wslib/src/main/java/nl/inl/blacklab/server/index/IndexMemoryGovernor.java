@@ -0,0 +1,110 @@
+package nl.inl.blacklab.server.index;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import nl.inl.blacklab.server.config.BLSConfigPerformance;
+
+/**
+ * Keeps the in-memory data of all corpora within a memory budget.
+ *
+ * When hosting many corpora, each opened corpus keeps e.g. its forward index terms
+ * lists in memory. This thread regularly adds up the (approximate) memory used by all
+ * corpora, and if the budget is exceeded, unloads this data for the least recently used
+ * corpora that have been idle for a while. The corpora stay open, and the data is
+ * reloaded when they're used again.
+ */
+public class IndexMemoryGovernor extends Thread implements UncaughtExceptionHandler {
+
+    private static final Logger logger = LogManager.getLogger(IndexMemoryGovernor.class);
+
+    private static final int CHECK_INTERVAL_MS = 10_000;
+
+    private final IndexManager indexManager;
+
+    /** Max. memory all corpora may use (bytes) */
+    private final long memoryBudget;
+
+    /** Only unload corpora that have been idle at least this long (ms) */
+    private final long minIdleTimeMs;
+
+    public IndexMemoryGovernor(IndexManager indexManager, BLSConfigPerformance config) {
+        super("IndexMemoryGovernor");
+        setUncaughtExceptionHandler(this);
+        setDaemon(true); // don't prevent JVM from exiting.
+        this.indexManager = indexManager;
+        memoryBudget = config.getCorporaMemoryBudgetMegs() * 1_000_000L;
+        minIdleTimeMs = config.getCorpusMinIdleTimeSec() * 1000L;
+    }
+
+    @Override
+    public void run() {
+        while (!interrupted()) {
+            try {
+                Thread.sleep(CHECK_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                logger.info("IndexMemoryGovernor interrupted");
+                return;
+            }
+
+            unloadIdleCorporaIfNeeded();
+        }
+    }
+
+    /** A corpus using memory, with its size and last use (so they won't change while we're sorting) */
+    private static class LoadedCorpus {
+        final Index index;
+
+        final long size;
+
+        final long lastUsed;
+
+        LoadedCorpus(Index index, long size) {
+            this.index = index;
+            this.size = size;
+            lastUsed = index.getLastUsed();
+        }
+    }
+
+    /** If we're over budget, unload the least recently used idle corpora until we aren't. */
+    void unloadIdleCorporaIfNeeded() {
+        List<Index> corpora;
+        synchronized (indexManager) {
+            corpora = new ArrayList<>(indexManager.getAllLoadedCorpora());
+        }
+        long total = 0;
+        List<LoadedCorpus> loaded = new ArrayList<>();
+        for (Index index: corpora) {
+            long size = index.estimatedMemoryUsage();
+            if (size > 0) {
+                loaded.add(new LoadedCorpus(index, size));
+                total += size;
+            }
+        }
+        if (total <= memoryBudget)
+            return;
+
+        loaded.sort(Comparator.comparingLong(c -> c.lastUsed));
+        long now = System.currentTimeMillis();
+        for (LoadedCorpus corpus: loaded) {
+            if (total <= memoryBudget || now - corpus.lastUsed < minIdleTimeMs)
+                break; // (sorted by last use, so the others aren't idle either)
+            logger.info("Corpora use ~" + total / 1_000_000 + " MB (budget " + memoryBudget / 1_000_000 +
+                    " MB); unloading idle corpus " + corpus.index.getId());
+            corpus.index.unloadMemory();
+            total -= corpus.size;
+        }
+        if (total > memoryBudget)
+            logger.debug("Corpora still use ~" + total / 1_000_000 + " MB, but no more corpora are idle");
+    }
+
+    @Override
+    public void uncaughtException(Thread t, Throwable e) {
+        logger.error("IndexMemoryGovernor threw an exception!", e);
+    }
+}
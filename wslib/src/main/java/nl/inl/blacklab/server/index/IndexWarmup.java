@@ -0,0 +1,475 @@
+package nl.inl.blacklab.server.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.textpattern.TextPattern;
+import nl.inl.blacklab.searches.SearchEmpty;
+import nl.inl.blacklab.server.config.BLSConfigWarmup;
+import nl.inl.blacklab.server.exceptions.BlsException;
+import nl.inl.blacklab.server.util.BlsUtils;
+
+/**
+ * Warms up indexes after the server has started.
+ *
+ * Opens the configured corpora, reads through their forward index and terms
+ * files so the OS page cache contains them, and replays the most recent
+ * queries from the query log. Runs on its own thread (see {@link #start()}), so
+ * it doesn't hold up the engine's initialization threads while replaying queries.
+ *
+ * Also records queries to the query log, if enabled, so they may be replayed
+ * after the next restart. Queries are written asynchronously by a separate thread,
+ * and the log is rotated when it grows too large (keeping one older file), so
+ * recording doesn't slow down requests and the log doesn't grow without limit.
+ */
+public class IndexWarmup implements Runnable {
+
+    private static final Logger logger = LogManager.getLogger(IndexWarmup.class);
+
+    /** Read one byte per page when prefetching files */
+    private static final int PAGE_SIZE = 4096;
+
+    /** Number of hits to fetch (including KWICs) for each replayed query */
+    private static final int HITS_TO_FETCH = 20;
+
+    /** Separator between the fields in a query log line */
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /** Max. number of queries waiting to be written to the query log (more are dropped) */
+    private static final int MAX_QUEUED_QUERIES = 1000;
+
+    /** Suffix for the previous (rotated) query log file */
+    private static final String ROTATED_SUFFIX = ".1";
+
+    public enum Status {
+        DISABLED,
+        QUEUED,
+        OPENING,
+        PREFETCHING,
+        REPLAYING,
+        FINISHED;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final IndexManager indexManager;
+
+    private final BLSConfigWarmup config;
+
+    /** Where queries are recorded, or null if not recording */
+    private final File queryLogFile;
+
+    /** Previous query log file (rotated when queryLogFile grows too large), or null if not recording */
+    private final File rotatedQueryLogFile;
+
+    /** Query log lines waiting to be written */
+    private final BlockingQueue<String> queryLogQueue = new ArrayBlockingQueue<>(MAX_QUEUED_QUERIES);
+
+    /** Writes queued query log lines, or null if not recording (or not started yet) */
+    private Thread queryLogWriter;
+
+    /** Runs the warmup, or null if not started */
+    private Thread warmupThread;
+
+    /** Have we been closed? If so, we don't record any more queries (guarded by this) */
+    private boolean closed = false;
+
+    private Status status;
+
+    private int corporaTotal;
+
+    private int corporaOpened;
+
+    private long bytesPrefetched;
+
+    private int queriesTotal;
+
+    private int queriesReplayed;
+
+    private int errors;
+
+    private long startTime = -1;
+
+    private long endTime = -1;
+
+    public IndexWarmup(IndexManager indexManager, BLSConfigWarmup config) {
+        this.indexManager = indexManager;
+        this.config = config;
+        String queryLog = config.getQueryLog();
+        queryLogFile = StringUtils.isEmpty(queryLog) ? null : new File(queryLog);
+        rotatedQueryLogFile = queryLogFile == null ? null : new File(queryLog + ROTATED_SUFFIX);
+        status = config.isEnabled() ? Status.QUEUED : Status.DISABLED;
+    }
+
+    /**
+     * Start warming up in a separate thread.
+     */
+    public synchronized void start() {
+        if (warmupThread != null || closed)
+            return;
+        warmupThread = new Thread(this, "IndexWarmup");
+        warmupThread.setDaemon(true); // don't prevent JVM exiting
+        warmupThread.start();
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            startTime = System.currentTimeMillis();
+        }
+        try {
+            List<Index> corpora = findCorporaToWarmUp();
+            setStatus(Status.OPENING);
+            List<BlackLabIndex> opened = new ArrayList<>();
+            for (Index corpus: corpora) {
+                try {
+                    opened.add(corpus.blIndex());
+                } catch (BlsException | ErrorOpeningIndex e) {
+                    logger.warn("Warmup: could not open corpus " + corpus.getId() + ": " + e.getMessage());
+                    incrementErrors();
+                }
+                synchronized (this) {
+                    corporaOpened++;
+                }
+            }
+
+            if (config.isPrefetchFiles()) {
+                setStatus(Status.PREFETCHING);
+                for (BlackLabIndex index: opened) {
+                    prefetchFiles(index);
+                }
+            }
+
+            setStatus(Status.REPLAYING);
+            replayQueries(corpora);
+        } catch (RuntimeException e) {
+            logger.error("Error during warmup", e);
+            incrementErrors();
+        } finally {
+            synchronized (this) {
+                endTime = System.currentTimeMillis();
+                status = Status.FINISHED;
+            }
+            logger.info("Warmup finished in " + (endTime - startTime) + "ms: " + corporaOpened + " corpora opened, " +
+                    bytesPrefetched + " bytes prefetched, " + queriesReplayed + " queries replayed, " + errors +
+                    " errors");
+        }
+    }
+
+    private List<Index> findCorporaToWarmUp() {
+        List<Index> corpora = new ArrayList<>();
+        if (config.getCorpora().isEmpty()) {
+            corpora.addAll(indexManager.getAvailablePublicCorpora());
+        } else {
+            for (String corpusName: config.getCorpora()) {
+                try {
+                    corpora.add(indexManager.getIndex(corpusName));
+                } catch (BlsException e) {
+                    logger.warn("Warmup: corpus not found: " + corpusName);
+                    incrementErrors();
+                }
+            }
+        }
+        synchronized (this) {
+            corporaTotal = corpora.size();
+        }
+        return corpora;
+    }
+
+    /**
+     * Read through the forward index and terms files of an index.
+     *
+     * We touch one byte per page, which causes the OS to load the file into its page cache
+     * (memory-mapped files), so the first searches don't have to wait for disk I/O.
+     *
+     * @param index index to prefetch files for
+     */
+    private void prefetchFiles(BlackLabIndex index) {
+        IndexReader reader = index.reader();
+        if (!(reader instanceof DirectoryReader))
+            return;
+        Directory dir = ((DirectoryReader) reader).directory();
+        try {
+            for (String fileName: dir.listAll()) {
+                if (!shouldPrefetch(fileName))
+                    continue;
+                try (IndexInput input = dir.openInput(fileName, IOContext.READ)) {
+                    long length = input.length();
+                    for (long pos = 0; pos < length; pos += PAGE_SIZE) {
+                        input.seek(pos);
+                        input.readByte();
+                    }
+                    synchronized (this) {
+                        bytesPrefetched += length;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Warmup: error prefetching files for " + index.name() + ": " + e.getMessage());
+            incrementErrors();
+        }
+    }
+
+    /**
+     * Should we prefetch this index file?
+     *
+     * We prefetch our forward index and relation info files, as well as Lucene's terms dictionary.
+     *
+     * @param fileName index file name
+     * @return true if it should be prefetched
+     */
+    private static boolean shouldPrefetch(String fileName) {
+        return fileName.contains(".blfi.") || fileName.contains(".blri.") || fileName.endsWith(".tim") ||
+                fileName.endsWith(".tip");
+    }
+
+    private void replayQueries(Collection<Index> corpora) {
+        List<String[]> queries = readRecentQueries();
+        synchronized (this) {
+            queriesTotal = queries.size();
+        }
+        for (String[] query: queries) {
+            if (isClosed())
+                break;
+            String corpusName = query[0];
+            if (corpora.stream().noneMatch(c -> c.getId().equals(corpusName))) {
+                // Not a corpus we're warming up
+                incrementQueriesReplayed();
+                continue;
+            }
+            try {
+                BlackLabIndex index = indexManager.getIndex(corpusName).blIndex();
+                String defaultAnnotation = index.mainAnnotatedField().mainAnnotation().name();
+                TextPattern pattern = BlsUtils.parsePatt(index, defaultAnnotation, query[2], query[1]);
+                Query filter = query.length < 5 || query[4].isEmpty() ? null :
+                        BlsUtils.parseFilter(index, query[4], query[3]);
+                SearchEmpty search = index.search();
+                Hits hits = search.find(pattern.toQuery(search.queryInfo(), filter))
+                        .window(0, HITS_TO_FETCH).executeNoQueue();
+                hits.kwics(index.defaultContextSize());
+            } catch (Exception e) {
+                logger.warn("Warmup: error replaying query " + String.join(" | ", query) + ": " + e.getMessage());
+                incrementErrors();
+            }
+            incrementQueriesReplayed();
+        }
+    }
+
+    /**
+     * Read the most recent distinct queries from the query log.
+     *
+     * Reads the current and the previous (rotated) log file, which are both limited in size.
+     *
+     * @return queries as arrays of fields: corpus, pattern language, pattern, filter language, filter
+     */
+    private List<String[]> readRecentQueries() {
+        List<String[]> queries = new ArrayList<>();
+        if (queryLogFile == null)
+            return queries;
+        List<String> lines = new ArrayList<>();
+        synchronized (queryLogFile) {
+            try {
+                for (File file: List.of(rotatedQueryLogFile, queryLogFile)) {
+                    if (file.canRead())
+                        lines.addAll(FileUtils.readLines(file, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                logger.warn("Warmup: could not read query log " + queryLogFile + ": " + e.getMessage());
+                incrementErrors();
+                return queries;
+            }
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (int i = lines.size() - 1; i >= 0 && distinct.size() < config.getMaxQueries(); i--) {
+            String line = lines.get(i).trim();
+            if (!line.isEmpty())
+                distinct.add(line);
+        }
+        for (String line: distinct) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length >= 3)
+                queries.add(fields);
+        }
+        return queries;
+    }
+
+    /**
+     * Append a query to the query log, if recording is enabled.
+     *
+     * The query is queued and written by a separate thread. If too many queries are
+     * waiting to be written, it is dropped.
+     *
+     * @param corpusName corpus searched
+     * @param pattLanguage pattern language
+     * @param patt pattern
+     * @param filterLanguage filter language
+     * @param filter document filter query (may be empty)
+     */
+    public void recordQuery(String corpusName, String pattLanguage, String patt, String filterLanguage, String filter) {
+        if (queryLogFile == null || !config.isRecordQueries() || StringUtils.isBlank(patt) || isClosed())
+            return;
+        String line = StringUtils.join(List.of(corpusName, pattLanguage, sanitize(patt),
+                StringUtils.defaultString(filterLanguage), sanitize(StringUtils.defaultString(filter))),
+                FIELD_SEPARATOR) + "\n";
+        if (ensureQueryLogWriterStarted())
+            queryLogQueue.offer(line); // (if the queue is full, we don't record this query)
+    }
+
+    /**
+     * Start the query log writer if it isn't running yet.
+     *
+     * @return true if it is running, false if we've been closed
+     */
+    private synchronized boolean ensureQueryLogWriterStarted() {
+        if (closed)
+            return false;
+        if (queryLogWriter == null) {
+            queryLogWriter = new Thread(this::writeQueryLog, "QueryLogWriter");
+            queryLogWriter.setDaemon(true);
+            queryLogWriter.start();
+        }
+        return true;
+    }
+
+    /** Write queued query log lines until interrupted. */
+    private void writeQueryLog() {
+        List<String> lines = new ArrayList<>();
+        boolean interrupted = false;
+        while (!interrupted) {
+            try {
+                lines.add(queryLogQueue.take());
+            } catch (InterruptedException e) {
+                interrupted = true; // write what's still queued, then stop
+            }
+            queryLogQueue.drainTo(lines);
+            if (!lines.isEmpty()) {
+                appendToQueryLog(lines);
+                lines.clear();
+            }
+        }
+    }
+
+    private void appendToQueryLog(List<String> lines) {
+        synchronized (queryLogFile) {
+            try {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(queryLogFile, true),
+                        StandardCharsets.UTF_8)) {
+                    for (String line: lines)
+                        writer.write(line);
+                }
+                if (queryLogFile.length() > config.getMaxQueryLogSize()) {
+                    // Rotate, replacing the previous log file
+                    if (rotatedQueryLogFile.exists() && !rotatedQueryLogFile.delete() ||
+                            !queryLogFile.renameTo(rotatedQueryLogFile))
+                        logger.warn("Could not rotate query log " + queryLogFile);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not write to query log " + queryLogFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop warming up and recording queries.
+     *
+     * Queries that are still queued will be written first.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (warmupThread != null) {
+            warmupThread.interrupt();
+            warmupThread = null;
+        }
+        if (queryLogWriter != null) {
+            queryLogWriter.interrupt();
+            queryLogWriter = null;
+        }
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[\\t\\r\\n]+", " ");
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void setStatus(Status status) {
+        this.status = status;
+    }
+
+    private synchronized void incrementErrors() {
+        errors++;
+    }
+
+    private synchronized void incrementQueriesReplayed() {
+        queriesReplayed++;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized int getCorporaTotal() {
+        return corporaTotal;
+    }
+
+    public synchronized int getCorporaOpened() {
+        return corporaOpened;
+    }
+
+    public synchronized long getBytesPrefetched() {
+        return bytesPrefetched;
+    }
+
+    public synchronized int getQueriesTotal() {
+        return queriesTotal;
+    }
+
+    public synchronized int getQueriesReplayed() {
+        return queriesReplayed;
+    }
+
+    public synchronized int getErrors() {
+        return errors;
+    }
+
+    /**
+     * How long has the warmup been running, or how long did it take?
+     *
+     * @return time in ms, or 0 if not started yet
+     */
+    public synchronized long getTimeMs() {
+        if (startTime < 0)
+            return 0;
+        return (endTime < 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+}
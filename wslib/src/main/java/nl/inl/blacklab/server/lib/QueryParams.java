@@ -64,6 +64,8 @@ public interface QueryParams {
 
     Optional<Long> getSampleSeed();
 
+    String getSampleMode();
+
     boolean getUseCache();
 
     int getForwardIndexMatchFactor();
@@ -112,6 +114,13 @@ public interface QueryParams {
 
     boolean getWaitForTotal();
 
+    /**
+     * Should we return the largest groups found so far if grouping is still running?
+     *
+     * @return true if partial group results are acceptable
+     */
+    boolean getPartialGroups();
+
     boolean getIncludeTokenCount();
 
     boolean getIncludeCustomInfo();
@@ -122,6 +131,8 @@ public interface QueryParams {
 
     boolean getExplain();
 
+    boolean getProfile();
+
     boolean getSensitive();
 
     int getWordStart();
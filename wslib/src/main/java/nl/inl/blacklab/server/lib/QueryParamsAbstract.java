@@ -238,6 +238,9 @@ public abstract class QueryParamsAbstract implements QueryParams {
     @Override
     public Optional<Long> getSampleSeed() { return optLong(WebserviceParameter.SAMPLE_SEED); }
 
+    @Override
+    public String getSampleMode() { return get(WebserviceParameter.SAMPLE_MODE); }
+
     @Override
     public boolean getUseCache() { return getBool(WebserviceParameter.USE_CACHE); }
 
@@ -333,6 +336,9 @@ public abstract class QueryParamsAbstract implements QueryParams {
     @Override
     public boolean getWaitForTotal() { return getBool(WebserviceParameter.WAIT_FOR_TOTAL_COUNT); }
 
+    @Override
+    public boolean getPartialGroups() { return getBool(WebserviceParameter.PARTIAL_GROUPS); }
+
     @Override
     public boolean getIncludeTokenCount() {
         return getBool(WebserviceParameter.INCLUDE_TOKEN_COUNT);
@@ -356,6 +362,9 @@ public abstract class QueryParamsAbstract implements QueryParams {
     @Override
     public boolean getExplain() { return getBool(WebserviceParameter.EXPLAIN_QUERY_REWRITE); }
 
+    @Override
+    public boolean getProfile() { return getBool(WebserviceParameter.PROFILE); }
+
     @Override
     public boolean getSensitive() { return getBool(WebserviceParameter.SENSITIVE); }
 
@@ -6,6 +6,7 @@ import org.apache.lucene.search.Query;
 
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.results.QueryCostEstimate;
 import nl.inl.blacklab.search.results.SampleParameters;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.textpattern.TextPattern;
@@ -15,6 +16,7 @@ import nl.inl.blacklab.searches.SearchDocs;
 import nl.inl.blacklab.searches.SearchFacets;
 import nl.inl.blacklab.searches.SearchHitGroups;
 import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.server.config.ExpensiveQueryAction;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.jobs.ContextSettings;
 import nl.inl.blacklab.server.jobs.HitSortSettings;
@@ -72,6 +74,25 @@ public interface WebserviceParams extends QueryParams {
 
     SampleParameters sampleSettings();
 
+    /**
+     * The estimated cost of our query, made before running it.
+     *
+     * Only estimated when creating a hits search, if performance.expensiveQueryHits is configured
+     * and the hits weren't in the cache already. This doesn't estimate the cost itself.
+     *
+     * @return the estimate, or null if not estimated
+     */
+    QueryCostEstimate queryCostEstimate();
+
+    /**
+     * What we did with our query because it is expensive.
+     *
+     * A query is expensive if it is estimated to produce at least performance.expensiveQueryHits hits.
+     *
+     * @return the configured expensiveQueryAction, or null if the query is not expensive (or not estimated)
+     */
+    ExpensiveQueryAction expensiveQueryAction();
+
     boolean hasFacets();
 
     SearchSettings searchSettings();
@@ -1,5 +1,6 @@
 package nl.inl.blacklab.server.lib;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -22,7 +23,9 @@ import nl.inl.blacklab.search.ConcordanceType;
 import nl.inl.blacklab.search.extensions.XFRelations;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.QueryCostEstimate;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SampleParameters;
 import nl.inl.blacklab.search.results.SearchSettings;
@@ -35,8 +38,11 @@ import nl.inl.blacklab.searches.SearchEmpty;
 import nl.inl.blacklab.searches.SearchFacets;
 import nl.inl.blacklab.searches.SearchHitGroups;
 import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.server.config.BLSConfigPerformance;
+import nl.inl.blacklab.server.config.ExpensiveQueryAction;
 import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.exceptions.BlsException;
+import nl.inl.blacklab.server.exceptions.InternalServerError;
 import nl.inl.blacklab.server.jobs.ContextSettings;
 import nl.inl.blacklab.server.jobs.DocGroupSettings;
 import nl.inl.blacklab.server.jobs.DocGroupSortSettings;
@@ -46,6 +52,8 @@ import nl.inl.blacklab.server.jobs.HitGroupSortSettings;
 import nl.inl.blacklab.server.jobs.HitSortSettings;
 import nl.inl.blacklab.server.jobs.WindowSettings;
 import nl.inl.blacklab.server.lib.results.ApiVersion;
+import nl.inl.blacklab.server.search.FairSearchScheduler;
+import nl.inl.blacklab.server.search.RequestClass;
 import nl.inl.blacklab.server.search.SearchManager;
 import nl.inl.blacklab.webservice.WebserviceOperation;
 import nl.inl.blacklab.webservice.WebserviceParameter;
@@ -95,6 +103,12 @@ public class WebserviceParamsImpl implements WebserviceParams {
 
     private String inputFormat;
 
+    /** Cost estimate for our query (only valid if queryCostEstimated is set) */
+    private QueryCostEstimate queryCostEstimate;
+
+    /** Have we estimated the cost of our query yet? */
+    private boolean queryCostEstimated;
+
     private WebserviceParamsImpl(boolean isDocsOperation, boolean isDebugMode,
             QueryParams params) {
         this.isDocsOperation = isDocsOperation;
@@ -326,7 +340,7 @@ public class WebserviceParamsImpl implements WebserviceParams {
         Optional<Double> sample = getSampleFraction();
         Optional<Integer> sampleNum = getSampleNumber();
         if (sample.isEmpty() && sampleNum.isEmpty())
-            return null;
+            return expensiveQuerySample();
         Optional<Long> sampleSeed = getSampleSeed();
         boolean withSeed = sampleSeed.isPresent();
         SampleParameters p;
@@ -342,7 +356,91 @@ public class WebserviceParamsImpl implements WebserviceParams {
             } else
                 p = SampleParameters.fixedNumber(sampleNum.orElse(0));
         }
-        return p;
+        SampleParameters.Mode mode;
+        try {
+            mode = SampleParameters.Mode.fromName(StringUtils.defaultString(getSampleMode()));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest("ILLEGAL_SAMPLE_MODE", "Unknown sample mode '" + getSampleMode() +
+                    "'. Supported: hits, streaming, docs.");
+        }
+        if (mode == SampleParameters.Mode.DOCUMENTS && !p.isPercentage()) {
+            // Can't sample a fixed number of hits by skipping documents; sample hits as we go instead
+            mode = SampleParameters.Mode.STREAMING;
+        }
+        return p.withMode(mode);
+    }
+
+    /**
+     * Sample to take if the client didn't ask for one.
+     *
+     * @return sample parameters if our query is expensive and expensiveQueryAction is "sample", null otherwise
+     */
+    private SampleParameters expensiveQuerySample() {
+        try {
+            if (estimateExpensiveQueryAction() != ExpensiveQueryAction.SAMPLE)
+                return null;
+        } catch (BlsException e) {
+            // Invalid pattern; we'll report this when we try to find the hits
+            return null;
+        }
+        int sampleSize = performanceConfig().getExpensiveQuerySampleSize();
+        return SampleParameters.fixedNumber(sampleSize).withMode(SampleParameters.Mode.STREAMING);
+    }
+
+    private BLSConfigPerformance performanceConfig() {
+        return getSearchManager().config().getPerformance();
+    }
+
+    /**
+     * Estimate the cost of our query, if we haven't already.
+     *
+     * Only estimated if expensiveQueryHits is configured. If the hits for our query are already in
+     * the cache (running or finished), running it costs little, so we don't estimate it either.
+     *
+     * @return the estimate, or null if not estimated
+     */
+    private QueryCostEstimate estimateQueryCost() throws BlsException {
+        if (!queryCostEstimated) {
+            queryCostEstimated = true;
+            Optional<TextPattern> pattern = patternWithinContextTag();
+            if (performanceConfig().getExpensiveQueryHits() > 0 && pattern.isPresent()) {
+                SearchEmpty search = blIndex().search(getSearchField(), useCache());
+                try {
+                    BLSpanQuery query = pattern.get().toQuery(search.queryInfo(), filterQuery());
+                    if (!getSearchManager().getBlackLabCache().contains(search.find(query, searchSettings()))) {
+                        query.setQueryInfo(search.queryInfo()); // (as HitsFromQuery does, so the rewrite is reused)
+                        queryCostEstimate = QueryCostEstimate.estimate(blIndex(), query);
+                    }
+                } catch (InvalidQuery e) {
+                    throw new BadRequest("PATT_SYNTAX_ERROR", "Syntax error in CorpusQL pattern: " + e.getMessage());
+                } catch (IOException e) {
+                    throw new InternalServerError("Error estimating query cost: " + e.getMessage(), "INTERR_ESTIMATING_QUERY_COST");
+                }
+            }
+        }
+        return queryCostEstimate;
+    }
+
+    /**
+     * Estimate the cost of our query if necessary, and decide what to do if it's expensive.
+     *
+     * @return the configured expensiveQueryAction, or null if the query is not expensive
+     */
+    private ExpensiveQueryAction estimateExpensiveQueryAction() throws BlsException {
+        estimateQueryCost();
+        return expensiveQueryAction();
+    }
+
+    @Override
+    public QueryCostEstimate queryCostEstimate() {
+        return queryCostEstimate;
+    }
+
+    @Override
+    public ExpensiveQueryAction expensiveQueryAction() {
+        if (queryCostEstimate == null || queryCostEstimate.hits() < performanceConfig().getExpensiveQueryHits())
+            return null;
+        return performanceConfig().getExpensiveQueryAction();
     }
 
     private List<DocProperty> facetProps() {
@@ -382,7 +480,7 @@ public class WebserviceParamsImpl implements WebserviceParams {
                 && maxCount > maxHitsToCountAllowed) {
             maxCount = maxHitsToCountAllowed;
         }
-        return SearchSettings.get(maxRetrieve, maxCount, forwardIndexMatchFactor());
+        return SearchSettings.get(maxRetrieve, maxCount, forwardIndexMatchFactor()).withProfile(getProfile());
     }
 
     @Override
@@ -412,6 +510,12 @@ public class WebserviceParamsImpl implements WebserviceParams {
         SampleParameters sampleSettings = sampleSettings();
         if (sampleSettings == null)
             return hitsSorted();
+        if (sampleSettings.mode() != SampleParameters.Mode.ALL_HITS) {
+            // Sample while finding hits, then sort the (much smaller) sample
+            SearchHits sample = hitsFiltered().sample(sampleSettings);
+            HitSortSettings hitsSortSettings = hitsSortSettings();
+            return hitsSortSettings == null ? sample : sample.sort(hitsSortSettings.sortBy());
+        }
         return hitsSorted().sample(sampleSettings);
     }
 
@@ -444,6 +548,15 @@ public class WebserviceParamsImpl implements WebserviceParams {
             if (pattern.isEmpty())
                 throw new BadRequest("NO_PATTERN_GIVEN", "Text search pattern required. Please specify 'patt' parameter.");
 
+            ExpensiveQueryAction expensiveQueryAction = estimateExpensiveQueryAction();
+            if (expensiveQueryAction == ExpensiveQueryAction.REJECT) {
+                throw new BadRequest("QUERY_TOO_EXPENSIVE", "This query would produce too many hits (estimated: " +
+                        queryCostEstimate.hits() + "). Please make it more specific, or filter on fewer documents.");
+            } else if (expensiveQueryAction == ExpensiveQueryAction.BATCH) {
+                // Don't let this query hold up interactive searches
+                FairSearchScheduler.setRequestClass(RequestClass.BATCH);
+            }
+
             SearchSettings searchSettings = searchSettings();
             return search.find(pattern.get().toQuery(search.queryInfo(), filter), searchSettings);
         } catch (InvalidQuery e) {
@@ -653,6 +766,11 @@ public class WebserviceParamsImpl implements WebserviceParams {
         return params.getSampleSeed();
     }
 
+    @Override
+    public String getSampleMode() {
+        return params.getSampleMode();
+    }
+
     @Override
     public boolean getUseCache() {
         return params.getUseCache();
@@ -732,6 +850,11 @@ public class WebserviceParamsImpl implements WebserviceParams {
         return params.getWaitForTotal();
     }
 
+    @Override
+    public boolean getPartialGroups() {
+        return params.getPartialGroups();
+    }
+
     @Override
     public boolean getIncludeTokenCount() {
         return params.getIncludeTokenCount();
@@ -757,6 +880,11 @@ public class WebserviceParamsImpl implements WebserviceParams {
         return params.getExplain();
     }
 
+    @Override
+    public boolean getProfile() {
+        return params.getProfile();
+    }
+
     @Override
     public boolean getSensitive() {
         return params.getSensitive();
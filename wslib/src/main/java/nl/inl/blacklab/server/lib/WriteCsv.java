@@ -148,7 +148,7 @@ public class WriteCsv {
             for (Hit hit : hits) {
                 Document doc = luceneDocs.get(hit.doc());
                 if (doc == null) {
-                    doc = index.luceneDoc(hit.doc());
+                    doc = index.docMetadata().metadata(hit.doc());
                     luceneDocs.put(hit.doc(), doc);
                 }
                 String docPid = WebserviceOperations.getDocumentPid(index, hit.doc(), doc);
@@ -414,7 +414,7 @@ public class WriteCsv {
             StringBuilder sb = new StringBuilder();
 
             for (DocResult docResult : docs) {
-                Document doc = index.luceneDoc(docResult.docId());
+                Document doc = index.docMetadata().metadata(docResult.docId());
                 row.clear();
 
                 // Pid field, use lucene doc id if not provided
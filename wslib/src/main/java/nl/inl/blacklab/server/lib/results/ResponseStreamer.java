@@ -27,6 +27,7 @@ import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.Concordance;
 import nl.inl.blacklab.search.ConcordanceType;
+import nl.inl.blacklab.search.InitializationScheduler;
 import nl.inl.blacklab.search.Kwic;
 import nl.inl.blacklab.search.QueryExplanation;
 import nl.inl.blacklab.search.TermFrequency;
@@ -45,6 +46,7 @@ import nl.inl.blacklab.search.indexmetadata.RelationUtil;
 import nl.inl.blacklab.search.indexmetadata.TruncatableFreqList;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.MatchInfo;
+import nl.inl.blacklab.search.lucene.QueryProfiler;
 import nl.inl.blacklab.search.lucene.RelationInfo;
 import nl.inl.blacklab.search.lucene.RelationListInfo;
 import nl.inl.blacklab.search.lucene.SpanQueryCaptureRelationsBetweenSpans;
@@ -56,6 +58,7 @@ import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Group;
 import nl.inl.blacklab.search.results.Hit;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryCostEstimate;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.ResultGroups;
 import nl.inl.blacklab.search.results.ResultsStats;
@@ -65,10 +68,12 @@ import nl.inl.blacklab.search.results.WindowStats;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 import nl.inl.blacklab.search.textpattern.TextPatternSerializerCql;
 import nl.inl.blacklab.searches.SearchCache;
+import nl.inl.blacklab.server.config.ExpensiveQueryAction;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.index.Index;
+import nl.inl.blacklab.server.index.IndexWarmup;
 import nl.inl.blacklab.server.lib.ConcordanceContext;
 import nl.inl.blacklab.server.lib.ResultIndexMetadata;
 import nl.inl.blacklab.server.lib.SearchTimings;
@@ -138,6 +143,13 @@ public class ResponseStreamer {
     public static final String KEY_SAMPLE_SIZE = "sampleSize";
     public static final String KEY_GROUP_SIZE = "size";
 
+    // Query cost estimate
+    public static final String KEY_QUERY_COST = "queryCost";
+    public static final String KEY_QUERY_COST_HITS = "estimatedHits";
+    public static final String KEY_QUERY_COST_FILTER_SELECTIVITY = "filterSelectivity";
+    public static final String KEY_QUERY_COST_FORWARD_MATCHING = "forwardMatchingCost";
+    public static final String KEY_QUERY_COST_ACTION = "action";
+
     /** Key to use for corpus name (indexName/corpusName) */
     public String KEY_CORPUS_NAME;
 
@@ -407,6 +419,21 @@ public class ResponseStreamer {
                 ds.entry(KEY_SAMPLE_SIZE, sample.numberOfHitsSet());
         }
 
+        // Estimated cost of the query (if configured), and what we did because of it
+        QueryCostEstimate queryCost = params.queryCostEstimate();
+        if (queryCost != null) {
+            ds.startEntry(KEY_QUERY_COST).startMap();
+            {
+                ds.entry(KEY_QUERY_COST_HITS, queryCost.hits());
+                ds.entry(KEY_QUERY_COST_FILTER_SELECTIVITY, queryCost.filterSelectivity());
+                ds.entry(KEY_QUERY_COST_FORWARD_MATCHING, queryCost.forwardMatchingCost());
+                ExpensiveQueryAction action = params.expensiveQueryAction();
+                if (action != null)
+                    ds.entry(KEY_QUERY_COST_ACTION, action.toString());
+            }
+            ds.endMap().endEntry();
+        }
+
         if (!isNewApi) {
             // Legacy API: information about search progress
             // (moved to resultsStats in API v5)
@@ -1079,6 +1106,16 @@ public class ResponseStreamer {
                     throw new BadRequest("INVALID_QUERY", e.getMessage());
                 }
             }
+
+            // Include profile of how much work each part of the query did?
+            if (params.getProfile()) {
+                QueryProfiler profiler = resultHits.getHits().queryInfo().profiler();
+                if (profiler != null) {
+                    ds.startEntry("profile");
+                    queryProfileNodes(profiler.getRoots());
+                    ds.endEntry();
+                }
+            }
         }
         ds.endMap().endEntry();
 
@@ -1099,6 +1136,33 @@ public class ResponseStreamer {
         ds.endMap();
     }
 
+    private void queryProfileNodes(List<QueryProfiler.Node> nodes) {
+        ds.startList();
+        for (QueryProfiler.Node node: nodes) {
+            QueryProfiler.Stats total = node.total();
+            ds.startItem("node").startMap()
+                    .entry("query", node.getQuery())
+                    .entry("spans", node.getSpansClass())
+                    .entry("segments", node.getStatsPerSegment().size())
+                    .entry("nextDocCalls", total.getNextDocCalls())
+                    .entry("advanceCalls", total.getAdvanceCalls())
+                    .entry("twoPhaseMatchCalls", total.getTwoPhaseMatchCalls())
+                    .entry("nextStartPositionCalls", total.getNextStartPositionCalls())
+                    .entry("advanceStartPositionCalls", total.getAdvanceStartPositionCalls())
+                    .entry("docs", total.getDocs())
+                    .entry("hits", total.getHits())
+                    .entry("timeMs", total.getNanos() / 1_000_000)
+                    .entry("selfTimeMs", node.selfNanos() / 1_000_000);
+            if (!node.getChildren().isEmpty()) {
+                ds.startEntry("children");
+                queryProfileNodes(node.getChildren());
+                ds.endEntry();
+            }
+            ds.endMap().endItem();
+        }
+        ds.endList();
+    }
+
     public void hitsGroupedResponse(ResultHitsGrouped hitsGrouped) {
         ds.startMap();
         {
@@ -1322,6 +1386,30 @@ public class ResponseStreamer {
 
             userInfo(result.getUserInfo(), result.isDebugMode());
 
+            IndexWarmup warmup = result.getWarmup();
+            if (warmup.getStatus() != IndexWarmup.Status.DISABLED) {
+                ds.startEntry("warmup").startMap()
+                        .entry("status", warmup.getStatus().toString())
+                        .entry("corporaTotal", warmup.getCorporaTotal())
+                        .entry("corporaOpened", warmup.getCorporaOpened())
+                        .entry("bytesPrefetched", warmup.getBytesPrefetched())
+                        .entry("queriesTotal", warmup.getQueriesTotal())
+                        .entry("queriesReplayed", warmup.getQueriesReplayed())
+                        .entry("errors", warmup.getErrors())
+                        .entry("timeMs", warmup.getTimeMs())
+                        .endMap().endEntry();
+            }
+
+            InitializationScheduler initialization = result.getInitialization();
+            ds.startEntry("initialization").startMap()
+                    .entry("maxParallel", initialization.getMaxParallel())
+                    .entry("queued", initialization.getQueued())
+                    .entry("running", initialization.getRunning())
+                    .entry("completed", initialization.getCompleted())
+                    .entry("failed", initialization.getFailed())
+                    .entry("prioritized", initialization.getPrioritized())
+                    .endMap().endEntry();
+
             if (!modernizeApi && result.isDebugMode()) {
                 ds.startEntry("cacheStatus");
                 ds.value(result.getParams().getSearchManager().getBlackLabCache().getStatus());
@@ -54,7 +54,7 @@ public class ResultDocInfo {
             int luceneDocId = BlsUtils.getDocIdFromPid(index, docPid);
             if (luceneDocId < 0 || luceneDocId >= index.reader().maxDoc())
                 throw new NotFound("DOC_NOT_FOUND", "Document with pid '" + docPid + "' not found.");
-            this.document = index.luceneDoc(luceneDocId);
+            this.document = index.docMetadata().metadata(luceneDocId);
             if (this.document == null)
                 throw new InternalServerError("Couldn't fetch document with pid '" + docPid + "'.",
                         "INTERR_FETCHING_DOCUMENT_INFO");
@@ -33,7 +33,7 @@ public class ResultDocResult {
         this.annotationsToList = annotationsToList;
         // Find pid
         BlackLabIndex index = params.blIndex();
-        Document document = index.luceneDoc(dr.docId());
+        Document document = index.docMetadata().metadata(dr.docId());
         pid = WebserviceOperations.getDocumentPid(index, dr.identity().value(), document);
         docInfo = WebserviceOperations.docInfo(index, pid, document, metadataFieldsToList);
         // Snippets
@@ -41,6 +41,7 @@ import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.ResultsStats;
 import nl.inl.blacklab.search.results.ResultsStatsStatic;
+import nl.inl.blacklab.search.results.SampleParameters;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 import nl.inl.blacklab.search.textpattern.TextPatternAnd;
 import nl.inl.blacklab.search.textpattern.TextPatternTerm;
@@ -233,11 +234,17 @@ public class ResultHits {
         QueryInfo queryInfo = search.queryInfo();
         BLSpanQuery query = usedFilter ? tp.toQuery(queryInfo, fqb.build()) : tp.toQuery(queryInfo);
         SearchHits hits = search.find(query, params.searchSettings());
+        SampleParameters sampleSettings = params.sampleSettings();
+        boolean sampleWhileFinding = sampleSettings != null && sampleSettings.mode() != SampleParameters.Mode.ALL_HITS;
+        if (sampleWhileFinding) {
+            // Sample while finding hits, then sort the (much smaller) sample
+            hits = hits.sample(sampleSettings);
+        }
         if (params.hitsSortSettings() != null) {
             hits = hits.sort(params.hitsSortSettings().sortBy());
         }
-        if (params.sampleSettings() != null) {
-            hits = hits.sample(params.sampleSettings());
+        if (sampleSettings != null && !sampleWhileFinding) {
+            hits = hits.sample(sampleSettings);
         }
         return hits;
     }
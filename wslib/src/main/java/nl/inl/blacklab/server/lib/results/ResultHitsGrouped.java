@@ -65,8 +65,11 @@ public class ResultHitsGrouped {
         try (BlockTimer ignored = BlockTimer.create("Searching hit groups")) {
             // Get the window we're interested in
             search = params.hitsGroupedStats().executeAsync();
-            // Search is done; construct the results object
-            groups = search.get();
+            // If the client is fine with partial results and we're still grouping, return the
+            // largest groups found so far (their stats are not done, so the client knows to ask again).
+            HitGroups partial = params.getPartialGroups() && !search.isDone() ? search.partialResult() : null;
+            // Otherwise, wait for the search to finish; construct the results object
+            groups = partial != null ? partial : search.get();
         } catch (InterruptedException | ExecutionException e) {
             throw WebserviceOperations.translateSearchException(e);
         }
@@ -8,7 +8,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.search.InitializationScheduler;
 import nl.inl.blacklab.server.index.Index;
+import nl.inl.blacklab.server.index.IndexWarmup;
 import nl.inl.blacklab.server.lib.WebserviceParams;
 
 public class ResultServerInfo {
@@ -23,11 +25,17 @@ public class ResultServerInfo {
 
     private final List<ResultIndexStatus> indexStatuses;
 
+    private final IndexWarmup warmup;
+
+    private final InitializationScheduler initialization;
+
     ResultServerInfo(WebserviceParams params, boolean debugMode) {
         this.params = params;
         this.debugMode = debugMode;
 
         userInfo = WebserviceOperations.userInfo(params);
+        warmup = params.getSearchManager().getIndexWarmup();
+        initialization = params.getSearchManager().blackLabInstance().initializationScheduler();
         indexStatuses = new ArrayList<>();
         Collection<Index> indices = params.getIndexManager().getAllAvailableCorpora(params.getUser());
         for (Index index: indices) {
@@ -55,4 +63,12 @@ public class ResultServerInfo {
     public List<ResultIndexStatus> getIndexStatuses() {
         return indexStatuses;
     }
+
+    public IndexWarmup getWarmup() {
+        return warmup;
+    }
+
+    public InitializationScheduler getInitialization() {
+        return initialization;
+    }
 }
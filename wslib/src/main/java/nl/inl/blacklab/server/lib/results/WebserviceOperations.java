@@ -206,9 +206,11 @@ public class WebserviceOperations {
      */
     public static String getDocumentPid(BlackLabIndex index, int luceneDocId, Document document) {
         MetadataField pidField = index.metadataFields().pidField();
+        String pid;
         if (document == null)
-            document = index.luceneDoc(luceneDocId);
-        String pid = pidField == null ? null : document.get(pidField.name());
+            pid = index.docMetadata().pid(luceneDocId);
+        else
+            pid = pidField == null ? null : document.get(pidField.name());
         if (pid == null)
             return Integer.toString(luceneDocId);
         return pid;
@@ -301,7 +303,7 @@ public class WebserviceOperations {
      *
      * @param index index
      * @param hits hits we want the doc pids for
-     * @param luceneDocs map of doc id to Lucene document, to look up the pids
+     * @param luceneDocs map of doc id to document metadata, to look up the pids
      */
     public static Map<Integer, String> collectDocsAndPids(BlackLabIndex index, Hits hits,
             Map<Integer, Document> luceneDocs) {
@@ -309,7 +311,7 @@ public class WebserviceOperations {
         Map<Integer, String> docIdToPid = new HashMap<>();
         for (Hit hit : hits) {
             Document document = luceneDocs.computeIfAbsent(hit.doc(),
-                    __ -> index.luceneDoc(hit.doc()));
+                    __ -> index.docMetadata().metadata(hit.doc()));
             String docPid = getDocumentPid(index, hit.doc(), document);
             docIdToPid.put(hit.doc(), docPid);
         }
@@ -109,6 +109,9 @@ public class WebserviceRequestHandler {
             rs.collocationsResponse(tfl);
         } else {
             // Hits request
+            params.getSearchManager().getIndexWarmup().recordQuery(params.getCorpusName(),
+                    params.getPattLanguage(), params.getPattern(), params.getDocumentFilterLanguage(),
+                    params.getDocumentFilterQuery());
             if (shouldReturnListOfGroups(params)) {
                 // We're returning a list of groups
                 ResultHitsGrouped hitsGrouped = WebserviceOperations.hitsGrouped(params);
@@ -16,6 +16,7 @@ import org.apache.logging.log4j.Logger;
 
 import nl.inl.blacklab.exceptions.ServerOverloaded;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.HitsInternal;
 import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.searches.Search;
 import nl.inl.blacklab.searches.SearchCache;
@@ -42,11 +43,14 @@ public class BlsCache implements SearchCache {
      * Returns the amount of memory that can still be allocated before we get the
      * OutOfMemory exception.
      *
+     * Hits stored off-heap (see offHeapHitsThreshold) are subtracted as well, because they
+     * take up memory too, even if the Java heap doesn't show it.
+     *
      * @return the amount of memory that can still be allocated
      */
     public static long getFreeMemory() {
         Runtime runtime = Runtime.getRuntime();
-        return runtime.freeMemory() + (runtime.maxMemory() - runtime.totalMemory());
+        return runtime.freeMemory() + (runtime.maxMemory() - runtime.totalMemory()) - HitsInternal.offHeapMemoryUsed();
     }
 
     /**
@@ -109,12 +113,16 @@ public class BlsCache implements SearchCache {
 
     private String previousCacheStatsMessage = "";
 
+    /** Decides which queued search to start next */
+    private final FairSearchScheduler scheduler;
+
     public BlsCache(BLSConfig blsConfig, @SuppressWarnings("unused") ExecutorService executorService) {
         this.config = blsConfig.getCache();
         this.maxConcurrentSearches = blsConfig.getPerformance().getMaxConcurrentSearches();
         this.abandonedCountAbortTimeSec = blsConfig.getPerformance().getAbandonedCountAbortTimeSec();
         this.trace = blsConfig.getLog().getTrace().isCache();
         cacheDisabled = config.getMaxJobAgeSec() == 0 || config.getMaxNumberOfJobs() == 0;
+        scheduler = new FairSearchScheduler(blsConfig.getPerformance());
 
         if (!cacheDisabled) {
             worthinessComparator = (o1, o2) -> {
@@ -177,6 +185,7 @@ public class BlsCache implements SearchCache {
     @Override
     public synchronized <R extends SearchResult> BlsCacheEntry<R> getAsync(Search<R> search, boolean allowQueue) {
         //if (trace) logger.debug("getFromCache({}, allowQueue={})", search, allowQueue);
+        search.queryInfo().index().markUsed(); // (so it's not considered idle, even if the result was cached)
         BlsCacheEntry<R> future;
         boolean useCache = search.queryInfo().useCache() && !cacheDisabled;
         future = useCache ? (BlsCacheEntry<R>) searches.get(search) : null;
@@ -219,6 +228,9 @@ public class BlsCache implements SearchCache {
             // Already in cache.
             traceInfo("-- FOUND:    {}", search);
             future.updateLastAccess();
+            // If a user is now waiting for this (non-count) search, it shouldn't yield anymore
+            if (!(search instanceof SearchCount) && FairSearchScheduler.currentRequestClass() == RequestClass.INTERACTIVE)
+                future.makeInteractive();
             // If another running search needs this search, but it was queued, start it now.
             if (!allowQueue && !future.wasStarted())
                 future.start();
@@ -271,6 +283,11 @@ public class BlsCache implements SearchCache {
         }
     }
 
+    @Override
+    public synchronized boolean contains(Search<?> search) {
+        return search.queryInfo().useCache() && !cacheDisabled && searches.containsKey(search);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     synchronized public <R extends SearchResult> BlsCacheEntry<R> remove(Search<R> search) {
@@ -308,32 +325,34 @@ public class BlsCache implements SearchCache {
         return (int) searches.values().stream().filter(SearchCacheEntry::isRunning).count();
     }
 
+    /** Running searches, not counting those that have paused to let more urgent searches run */
+    private synchronized int numberOfActiveSearches() {
+        return (int) searches.values().stream().filter(s -> s.isRunning() && !s.isPaused()).count();
+    }
+
     private synchronized int numberOfQueuedSearches() {
         return (int) searches.values().stream().filter(s -> !s.wasStarted()).count();
     }
 
     /**
-     * If we can start another search, finds the oldest queued search and start it.
+     * If we can start another search, let the scheduler choose a queued search and start it.
+     *
+     * If we can't, running batch searches may be asked to yield to waiting interactive searches.
      *
      * @param report if true (and trace is on), report the search we started
      */
     synchronized void startSearchIfPossible(boolean report) {
+        // Pause or resume batch searches depending on whether interactive searches are waiting
+        scheduler.updateYielding(searches.values(), !canStartAnotherSearch());
+
         // Is server load low enough to start a search?
         if (canStartAnotherSearch()) {
-            // Find the oldest queued search and start it.
+            // Find the queued search that's next in line and start it.
             // Only start one per iteration (give it a little time to start its subtasks)
-
-            // Sort the searches based on descending "worthiness"
-            List<BlsCacheEntry<?>> searches = new ArrayList<>(this.searches.values());
-            for (BlsCacheEntry<?> s : searches)
-                s.calculateWorthiness(); // calculate once before sorting so we don't run into Comparable contract issues because of threading
-            searches.sort(worthinessComparator);
-
-            // Find & start oldest queued search
-            BlsCacheEntry<?> search1 = searches.stream().filter(s -> !s.wasStarted()).findFirst().orElse(null);
+            BlsCacheEntry<?> search1 = scheduler.selectNext(searches.values());
             if (search1 != null) {
                 if (report)
-                    traceInfo("-- UNQUEUE:  {}", search1);
+                    traceInfo("-- UNQUEUE:  {} ({}, user {})", search1, search1.requestClass(), search1.userId());
                 search1.start();
             }
         }
@@ -345,7 +364,7 @@ public class BlsCache implements SearchCache {
      * @return true if we can start a search, false if it's still too busy
      */
     private boolean canStartAnotherSearch() {
-        int runningSearches = numberOfRunningSearches();
+        int runningSearches = numberOfActiveSearches();
         if (runningSearches == 0)
             return true;
         long freeMemory = getFreeMemory();
@@ -366,8 +385,11 @@ public class BlsCache implements SearchCache {
         List<BlsCacheEntry<?>> searches = new ArrayList<>(this.searches.values());
 
         // Sort the searches based on descending "worthiness"
-        for (BlsCacheEntry<?> s : searches)
+        for (BlsCacheEntry<?> s : searches) {
             s.calculateWorthiness(); // calculate once before sorting so we don't run into Comparable contract issues because of threading
+            if (s.isRunning())
+                s.search().queryInfo().index().markUsed(); // long-running searches keep their index in use
+        }
         searches.sort(worthinessComparator);
 
         //------------------
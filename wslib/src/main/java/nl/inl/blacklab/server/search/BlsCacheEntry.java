@@ -19,6 +19,7 @@ import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.searches.Search;
 import nl.inl.blacklab.searches.SearchCacheEntry;
 import nl.inl.blacklab.searches.SearchCount;
+import nl.inl.util.YieldRequest;
 
 public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
 
@@ -50,6 +51,15 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     /** Our search */
     private final Search<T> search;
 
+    /** User this search was started for, or null if unknown */
+    private final String userId;
+
+    /** How urgent is this search? */
+    private volatile RequestClass requestClass;
+
+    /** Should our search pause to let more urgent searches run? (see FairSearchScheduler) */
+    private final YieldRequest yieldRequest = new YieldRequest();
+
 
     // OUTCOMES
 
@@ -107,6 +117,9 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         this.search = search;
         id = getNextEntryId();
         createTime = lastAccessTime = now();
+        userId = FairSearchScheduler.currentUserId();
+        // Counts may take a while; the user usually sees the first page of hits before that
+        requestClass = search instanceof SearchCount ? RequestClass.BATCH : FairSearchScheduler.currentRequestClass();
     }
 
     /**
@@ -121,6 +134,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         peekValue = search.peekObject(this);
         future = search.queryInfo().index().blackLab().searchExecutorService().submit(() -> {
             ThreadContext.put("requestId", requestId);
+            FairSearchScheduler.restoreRequestContext(userId, requestClass); // for searches we start
             executeSearch();
         });
     }
@@ -133,6 +147,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         // keep track of processing time, taking child searches into account
         // (child searches already in cache will add their original processing time)
         timer().start();
+        YieldRequest.setForCurrentThread(yieldRequest);
         try {
             result = search.executeInternal(this);
         } catch (Throwable e) {
@@ -151,6 +166,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
             //  as they "should".
             exceptionThrown = e;
         } finally {
+            YieldRequest.setForCurrentThread(null);
 
             // Stop keeping track of processing time for this task.
             timer().stop();
@@ -168,6 +184,60 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         return search;
     }
 
+    /**
+     * User this search was started for.
+     *
+     * @return unique user id, or null if unknown
+     */
+    public String userId() {
+        return userId;
+    }
+
+    /**
+     * How urgent is this search?
+     *
+     * @return request class
+     */
+    public RequestClass requestClass() {
+        return requestClass;
+    }
+
+    /**
+     * An interactive request needs the results of this search, so treat it as such.
+     */
+    public void makeInteractive() {
+        requestClass = RequestClass.INTERACTIVE;
+    }
+
+    /**
+     * Is our search asked to pause to let more urgent searches run?
+     *
+     * @return true if it should pause
+     */
+    public boolean isYieldRequested() {
+        return yieldRequest.isRequested();
+    }
+
+    /**
+     * Ask our search to pause (when it reaches a point where it can) or resume.
+     *
+     * @param yield true if it should pause, false if it may resume
+     */
+    public void setYieldRequested(boolean yield) {
+        yieldRequest.setRequested(yield);
+    }
+
+    /**
+     * Has our search actually paused because it was asked to yield?
+     *
+     * Until it reaches a point where it can pause, it is still running.
+     *
+     * @return true if it's paused
+     */
+    public boolean isPaused() {
+        return yieldRequest.isPaused();
+    }
+
     public long worthiness() {
         return worthiness;
     }
@@ -371,13 +441,14 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
             return "cancelled";
         if (isDone())
             return "finished";
-        return "running";
+        return isPaused() ? "paused" : "running";
     }
 
     public Map<String, Object> getInfo(boolean includeDebugInfo) {
         Map<String, Object> stats = new HashMap<>();
         stats.put("type", search instanceof SearchCount ? "count" : "search");
         stats.put("status", status());
+        stats.put("requestClass", requestClass.name().toLowerCase());
         if (exceptionThrown != null) {
              stats.put("exceptionThrown", exceptionThrown.getClass().getSimpleName());
         }
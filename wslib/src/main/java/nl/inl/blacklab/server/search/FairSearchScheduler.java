@@ -0,0 +1,191 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import nl.inl.blacklab.server.config.BLSConfigPerformance;
+
+/**
+ * Decides which queued search to start next, and which running searches should yield.
+ * <p>
+ * Searches are divided into interactive and batch searches (see {@link RequestClass}).
+ * If both kinds are queued, we start interactiveWeight interactive searches for each batch
+ * search. Within a class, the search from the user with the fewest running searches goes first
+ * (then the oldest), and users that already have maxRunningJobsPerUser running searches have to wait.
+ * <p>
+ * If enabled (batchSearchesYield) and interactive searches are waiting but the server is busy,
+ * running batch searches are asked to yield. They pause when they're done with the document
+ * they're working on (see HitsFromQuery). Only once they've actually paused do they stop
+ * counting towards maxConcurrentSearches. They're resumed when no more interactive searches
+ * are waiting.
+ * <p>
+ * Not thread-safe; BlsCache calls us while holding its lock.
+ */
+public class FairSearchScheduler {
+
+    /** ThreadContext key for the user a search is for */
+    private static final String CONTEXT_USER_ID = "userId";
+
+    /** ThreadContext key for the request class */
+    private static final String CONTEXT_REQUEST_CLASS = "requestClass";
+
+    /**
+     * Record who the searches started by the current thread are for, and how urgent they are.
+     *
+     * Search threads inherit this from the thread that created the search.
+     *
+     * @param userId unique id of the user
+     * @param requestClass how urgent the searches are
+     */
+    public static void setRequestContext(String userId, RequestClass requestClass) {
+        ThreadContext.put(CONTEXT_USER_ID, userId);
+        ThreadContext.put(CONTEXT_REQUEST_CLASS, requestClass.name());
+    }
+
+    /**
+     * Change how urgent the searches started by the current thread are.
+     *
+     * Used e.g. to run an expensive query as a batch search.
+     *
+     * @param requestClass how urgent the searches are
+     */
+    public static void setRequestClass(RequestClass requestClass) {
+        ThreadContext.put(CONTEXT_REQUEST_CLASS, requestClass.name());
+    }
+
+    /**
+     * Copy the request context to the current thread.
+     *
+     * @param userId user id, or null if unknown
+     * @param requestClass how urgent the searches are
+     */
+    static void restoreRequestContext(String userId, RequestClass requestClass) {
+        if (userId != null)
+            ThreadContext.put(CONTEXT_USER_ID, userId);
+        else
+            ThreadContext.remove(CONTEXT_USER_ID); // (thread may have run another user's search before)
+        ThreadContext.put(CONTEXT_REQUEST_CLASS, requestClass.name());
+    }
+
+    /** @return the user the current thread works for, or null if unknown (e.g. not a request) */
+    static String currentUserId() {
+        return ThreadContext.get(CONTEXT_USER_ID);
+    }
+
+    /** @return the request class of the current thread (interactive if unknown) */
+    static RequestClass currentRequestClass() {
+        String value = ThreadContext.get(CONTEXT_REQUEST_CLASS);
+        return RequestClass.BATCH.name().equals(value) ? RequestClass.BATCH : RequestClass.INTERACTIVE;
+    }
+
+    /** Max. running searches per user (0 or less for no limit) */
+    private final int maxRunningJobsPerUser;
+
+    /** Interactive searches to start for each batch search if both are waiting */
+    private final int interactiveWeight;
+
+    /** Should batch searches yield to waiting interactive searches? */
+    private final boolean batchSearchesYield;
+
+    /** Interactive searches started since the last batch search */
+    private int interactiveSinceBatch = 0;
+
+    FairSearchScheduler(BLSConfigPerformance config) {
+        maxRunningJobsPerUser = config.getMaxRunningJobsPerUser();
+        interactiveWeight = Math.max(1, config.getInteractiveSearchWeight());
+        batchSearchesYield = config.isBatchSearchesYield();
+    }
+
+    /** Queued searches we may start now, by class. */
+    private Map<RequestClass, List<BlsCacheEntry<?>>> startable(Collection<BlsCacheEntry<?>> entries,
+            Map<String, Integer> runningPerUser) {
+        Map<RequestClass, List<BlsCacheEntry<?>>> result = new HashMap<>();
+        for (BlsCacheEntry<?> entry: entries) {
+            if (!entry.wasStarted() && !isUserAtLimit(entry, runningPerUser))
+                result.computeIfAbsent(entry.requestClass(), k -> new ArrayList<>()).add(entry);
+        }
+        return result;
+    }
+
+    private boolean isUserAtLimit(BlsCacheEntry<?> entry, Map<String, Integer> runningPerUser) {
+        // (searches not started for a specific user, e.g. warmup searches, are not limited)
+        return maxRunningJobsPerUser > 0 && entry.userId() != null &&
+                runningPerUser.getOrDefault(entry.userId(), 0) >= maxRunningJobsPerUser;
+    }
+
+    private static Map<String, Integer> runningPerUser(Collection<BlsCacheEntry<?>> entries) {
+        Map<String, Integer> running = new HashMap<>();
+        for (BlsCacheEntry<?> entry: entries) {
+            if (entry.isRunning() && entry.userId() != null)
+                running.merge(entry.userId(), 1, Integer::sum);
+        }
+        return running;
+    }
+
+    /**
+     * Choose the queued search to start next.
+     *
+     * @param entries all cache entries
+     * @return search to start, or null if there's none we may start
+     */
+    BlsCacheEntry<?> selectNext(Collection<BlsCacheEntry<?>> entries) {
+        Map<String, Integer> runningPerUser = runningPerUser(entries);
+        Map<RequestClass, List<BlsCacheEntry<?>>> startable = startable(entries, runningPerUser);
+        List<BlsCacheEntry<?>> interactive = startable.get(RequestClass.INTERACTIVE);
+        List<BlsCacheEntry<?>> batch = startable.get(RequestClass.BATCH);
+        List<BlsCacheEntry<?>> candidates;
+        if (interactive != null && (batch == null || interactiveSinceBatch < interactiveWeight)) {
+            candidates = interactive;
+            interactiveSinceBatch++;
+        } else if (batch != null) {
+            candidates = batch;
+            interactiveSinceBatch = 0;
+        } else {
+            return null;
+        }
+        // Users with fewer running searches first, then the oldest search
+        return candidates.stream()
+                .min(Comparator.<BlsCacheEntry<?>>comparingInt(e -> e.userId() == null ? 0 : runningPerUser.getOrDefault(e.userId(), 0))
+                        .thenComparingLong(BlsCacheEntry::id))
+                .orElse(null);
+    }
+
+    /**
+     * Ask running batch searches to yield if interactive searches are waiting, or resume them if not.
+     *
+     * @param entries all cache entries
+     * @param atCapacity true if we can't start another search right now
+     */
+    void updateYielding(Collection<BlsCacheEntry<?>> entries, boolean atCapacity) {
+        List<BlsCacheEntry<?>> yielding = new ArrayList<>();
+        List<BlsCacheEntry<?>> runningBatch = new ArrayList<>();
+        for (BlsCacheEntry<?> entry: entries) {
+            if (entry.isYieldRequested()) {
+                if (entry.isRunning() && entry.requestClass() == RequestClass.BATCH)
+                    yielding.add(entry);
+                else
+                    entry.setYieldRequested(false); // done, or an interactive request needs it now
+            } else if (entry.isRunning() && entry.requestClass() == RequestClass.BATCH) {
+                runningBatch.add(entry);
+            }
+        }
+        List<BlsCacheEntry<?>> waiting = batchSearchesYield ?
+                startable(entries, runningPerUser(entries)).get(RequestClass.INTERACTIVE) : null;
+        if (waiting == null) {
+            // No interactive searches waiting; resume all batch searches
+            yielding.forEach(e -> e.setYieldRequested(false));
+        } else if (atCapacity) {
+            // Pause the oldest batch searches to make room for the waiting interactive searches
+            runningBatch.sort(Comparator.comparingLong((BlsCacheEntry<?> e) -> e.id()));
+            int toPause = Math.min(waiting.size() - yielding.size(), runningBatch.size());
+            for (int i = 0; i < toPause; i++)
+                runningBatch.get(i).setYieldRequested(true);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package nl.inl.blacklab.server.search;
+
+/**
+ * How urgent the searches for a request are.
+ */
+public enum RequestClass {
+    /** A user is waiting for the results, e.g. a page of hits. */
+    INTERACTIVE,
+
+    /** Results may take a while, e.g. a total count or a CSV export. */
+    BATCH
+}
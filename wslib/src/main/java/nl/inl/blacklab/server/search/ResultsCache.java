@@ -178,6 +178,11 @@ public class ResultsCache implements SearchCache {
         }
     }
 
+    @Override
+    public boolean contains(Search<?> search) {
+        return searchCache.asMap().containsKey(new SearchInfoWrapper(search, null));
+    }
+
     @Override
     public <T extends SearchResult> SearchCacheEntry<T> remove(Search<T> search) {
         SearchInfoWrapper searchWrapper = new SearchInfoWrapper(search, null);
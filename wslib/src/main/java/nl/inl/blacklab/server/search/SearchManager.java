@@ -15,6 +15,8 @@ import nl.inl.blacklab.server.auth.AuthManager;
 import nl.inl.blacklab.server.config.BLSConfig;
 import nl.inl.blacklab.server.exceptions.ConfigurationException;
 import nl.inl.blacklab.server.index.IndexManager;
+import nl.inl.blacklab.server.index.IndexMemoryGovernor;
+import nl.inl.blacklab.server.index.IndexWarmup;
 
 /**
  * Manages the lifetime of a number of objects needed for the web service.
@@ -38,6 +40,12 @@ public class SearchManager {
     /** Main BlackLab object, containing the search executor service */
     private BlackLabEngine blackLab;
 
+    /** Warms up indexes after startup and records queries to replay */
+    private IndexWarmup indexWarmup;
+
+    /** Unloads idle corpora if they use too much memory (if enabled) */
+    private IndexMemoryGovernor memoryGovernor;
+
     /**
      *
      * @param config configuration
@@ -64,6 +72,17 @@ public class SearchManager {
         // Find the indices
         indexMan = new IndexManager(this, config);
 
+        // Unload idle corpora if they use too much memory, if enabled
+        if (config.getPerformance().getCorporaMemoryBudgetMegs() > 0) {
+            memoryGovernor = new IndexMemoryGovernor(indexMan, config.getPerformance());
+            memoryGovernor.start();
+        }
+
+        // Warm up indexes in the background, if enabled
+        indexWarmup = new IndexWarmup(indexMan, config.getWarmup());
+        if (config.getWarmup().isEnabled())
+            indexWarmup.start(); // (on its own thread, so it doesn't hold up opening other corpora)
+
         // Init auth system
         authSystem = new AuthManager(config.getAuthentication());
     }
@@ -76,6 +95,14 @@ public class SearchManager {
      */
     public synchronized void cleanup() {
 
+        if (memoryGovernor != null) {
+            memoryGovernor.interrupt();
+            memoryGovernor = null;
+        }
+
+        // Stop recording queries
+        indexWarmup.close();
+
         // Stop any running searches
         cache.cleanup();
         cache = null;
@@ -87,6 +114,7 @@ public class SearchManager {
         config = null;
         authSystem = null;
         indexMan = null;
+        indexWarmup = null;
     }
 
     public BlackLabEngine getEngine() {
@@ -110,6 +138,10 @@ public class SearchManager {
         return indexMan;
     }
 
+    public IndexWarmup getIndexWarmup() {
+        return indexWarmup;
+    }
+
     public BlackLabEngine blackLabInstance() {
         return blackLab;
     }
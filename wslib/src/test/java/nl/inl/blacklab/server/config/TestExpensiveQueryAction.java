@@ -0,0 +1,20 @@
+package nl.inl.blacklab.server.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestExpensiveQueryAction {
+
+    @Test
+    public void testFromName() {
+        Assert.assertEquals(ExpensiveQueryAction.BATCH, ExpensiveQueryAction.fromName("batch"));
+        Assert.assertEquals(ExpensiveQueryAction.SAMPLE, ExpensiveQueryAction.fromName("Sample"));
+        Assert.assertEquals(ExpensiveQueryAction.REJECT, ExpensiveQueryAction.fromName("REJECT"));
+        Assert.assertEquals("reject", ExpensiveQueryAction.REJECT.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownName() {
+        new BLSConfigPerformance().setExpensiveQueryActionName("rejct");
+    }
+}
@@ -0,0 +1,136 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import nl.inl.blacklab.searches.Search;
+import nl.inl.blacklab.server.config.BLSConfigPerformance;
+
+public class TestFairSearchScheduler {
+
+    private final List<BlsCacheEntry<?>> entries = new ArrayList<>();
+
+    private static FairSearchScheduler scheduler(int maxRunningJobsPerUser, int interactiveSearchWeight,
+            boolean batchSearchesYield) {
+        BLSConfigPerformance config = new BLSConfigPerformance();
+        config.setMaxRunningJobsPerUser(maxRunningJobsPerUser);
+        config.setInteractiveSearchWeight(interactiveSearchWeight);
+        config.setBatchSearchesYield(batchSearchesYield);
+        return new FairSearchScheduler(config);
+    }
+
+    /** Add a queued search to our entries */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private BlsCacheEntry<?> queued(String userId, RequestClass requestClass) {
+        BlsCacheEntry<?> entry = Mockito.spy(new BlsCacheEntry(Mockito.mock(Search.class)));
+        Mockito.doReturn(userId).when(entry).userId();
+        Mockito.doReturn(requestClass).when(entry).requestClass();
+        Mockito.doReturn(false).when(entry).wasStarted();
+        Mockito.doReturn(false).when(entry).isDone();
+        Mockito.doReturn(false).when(entry).isPaused();
+        entries.add(entry);
+        return entry;
+    }
+
+    /** Add a running search to our entries */
+    private BlsCacheEntry<?> running(String userId, RequestClass requestClass) {
+        return start(queued(userId, requestClass));
+    }
+
+    private static BlsCacheEntry<?> start(BlsCacheEntry<?> entry) {
+        Mockito.doReturn(true).when(entry).wasStarted();
+        return entry;
+    }
+
+    private BlsCacheEntry<?> startNext(FairSearchScheduler scheduler) {
+        BlsCacheEntry<?> entry = scheduler.selectNext(entries);
+        if (entry != null)
+            start(entry);
+        return entry;
+    }
+
+    @Test
+    public void testWeightedRoundRobin() {
+        FairSearchScheduler scheduler = scheduler(0, 2, false);
+        for (int i = 0; i < 4; i++)
+            queued("user" + i, RequestClass.INTERACTIVE);
+        for (int i = 0; i < 2; i++)
+            queued("user" + i, RequestClass.BATCH);
+        List<RequestClass> started = new ArrayList<>();
+        BlsCacheEntry<?> entry;
+        while ((entry = startNext(scheduler)) != null)
+            started.add(entry.requestClass());
+        Assert.assertEquals(List.of(RequestClass.INTERACTIVE, RequestClass.INTERACTIVE, RequestClass.BATCH,
+                RequestClass.INTERACTIVE, RequestClass.INTERACTIVE, RequestClass.BATCH), started);
+    }
+
+    @Test
+    public void testFewestRunningFirst() {
+        FairSearchScheduler scheduler = scheduler(0, 4, false);
+        running("busy", RequestClass.INTERACTIVE);
+        BlsCacheEntry<?> olderFromBusyUser = queued("busy", RequestClass.INTERACTIVE);
+        BlsCacheEntry<?> fromOtherUser = queued("other", RequestClass.INTERACTIVE);
+        Assert.assertSame(fromOtherUser, startNext(scheduler));
+        Assert.assertSame(olderFromBusyUser, startNext(scheduler));
+    }
+
+    @Test
+    public void testMaxRunningJobsPerUser() {
+        FairSearchScheduler scheduler = scheduler(2, 4, false);
+        running("user", RequestClass.INTERACTIVE);
+        running("user", RequestClass.BATCH);
+        BlsCacheEntry<?> waiting = queued("user", RequestClass.INTERACTIVE);
+        Assert.assertNull(scheduler.selectNext(entries));
+
+        // Searches not started for a specific user (e.g. warmup) are not limited
+        BlsCacheEntry<?> anonymous = queued(null, RequestClass.INTERACTIVE);
+        Assert.assertSame(anonymous, startNext(scheduler));
+
+        // When one of the user's searches is done, the next one may start
+        Mockito.doReturn(true).when(entries.get(0)).isDone();
+        Assert.assertSame(waiting, startNext(scheduler));
+    }
+
+    @Test
+    public void testYielding() {
+        FairSearchScheduler scheduler = scheduler(0, 4, true);
+        BlsCacheEntry<?> oldestBatch = running("user1", RequestClass.BATCH);
+        BlsCacheEntry<?> newestBatch = running("user2", RequestClass.BATCH);
+        BlsCacheEntry<?> interactive = running("user3", RequestClass.INTERACTIVE);
+
+        // Nothing waiting: no need to yield
+        scheduler.updateYielding(entries, true);
+        Assert.assertFalse(oldestBatch.isYieldRequested());
+
+        // An interactive search is waiting, but we're not at capacity: it can just start
+        BlsCacheEntry<?> waiting = queued("user4", RequestClass.INTERACTIVE);
+        scheduler.updateYielding(entries, false);
+        Assert.assertFalse(oldestBatch.isYieldRequested());
+
+        // At capacity: only the oldest batch search is asked to yield, never the interactive one
+        scheduler.updateYielding(entries, true);
+        scheduler.updateYielding(entries, true);
+        Assert.assertTrue(oldestBatch.isYieldRequested());
+        Assert.assertFalse(newestBatch.isYieldRequested());
+        Assert.assertFalse(interactive.isYieldRequested());
+
+        // Once the waiting search has started, the batch search may resume
+        start(waiting);
+        scheduler.updateYielding(entries, true);
+        Assert.assertFalse(oldestBatch.isYieldRequested());
+    }
+
+    @Test
+    public void testYieldingDisabled() {
+        Assert.assertFalse(new BLSConfigPerformance().isBatchSearchesYield());
+        FairSearchScheduler scheduler = scheduler(0, 4, false);
+        BlsCacheEntry<?> batch = running("user1", RequestClass.BATCH);
+        queued("user2", RequestClass.INTERACTIVE);
+        scheduler.updateYielding(entries, true);
+        Assert.assertFalse(batch.isYieldRequested());
+    }
+}